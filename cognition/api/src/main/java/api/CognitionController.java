@@ -1,38 +1,57 @@
 package api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import core.CompactQuiz;
+import core.Flashcard;
 import core.Quiz;
 import core.User;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import json.CognitionStorage;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.DeleteMapping;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 /**
  * Controls the REST API logic,
  * implementing persistent local storage via {@link api.CognitionService}.
+ *
+ * <p>Users and quizzes carry the version assigned by the persistent storage. Requests that change
+ * a user or quiz may send the version they are based on as an If-Match header, for instance
+ * {@code If-Match: "3"}, and are rejected with 412 Precondition Failed if the stored version
+ * differs. Requests without the header change the stored object unconditionally.
  */
 @RestController
 public class CognitionController {
   private final CognitionService cognitionService;
+  private final ObjectMapper objectMapper;
 
   /**
-   * Initializes the application persistent storage.
+   * Creates the controller on top of the service holding the application persistent storage.
    *
-   * @throws IOException if an error occurs when initializing persistent storage.
+   * @param cognitionService holds the persistent storage.
+   * @param objectMapper     is used to read and write users, configured like the rest of the API.
    */
-  public CognitionController() throws IOException {
-    this.cognitionService = new CognitionService();
+  public CognitionController(CognitionService cognitionService, ObjectMapper objectMapper) {
+    this.cognitionService = Objects.requireNonNull(cognitionService);
+    this.objectMapper = Objects.requireNonNull(objectMapper);
   }
 
   public CognitionStorage getCognitionStorage() {
@@ -97,25 +116,14 @@ public class CognitionController {
   public void createUser(@RequestBody User user)
           throws IdentifierAlreadyInUseException, StorageException {
     try {
-      // Determine if user already exists
-      boolean userAlreadyExists;
-
-      List<User> users = getCognitionStorage().readUsers();
-
-      if (users.size() != 0) {
-        // Check for duplicates if we have content in local storage
-        userAlreadyExists = users.stream()
-                .anyMatch(u -> u.getUsername().equals(user.getUsername()));
-      } else {
-        // If local storage is empty, then a duplicate user cannot exist
-        userAlreadyExists = false;
-      }
-
-      if (userAlreadyExists) {
+      if (getCognitionStorage().exists(user.getUsername())) {
         throw new IdentifierAlreadyInUseException(user.getUsername());
-      } else {
-        getCognitionStorage().create(user);
       }
+
+      getCognitionStorage().create(user);
+    } catch (IllegalArgumentException e) {
+      // Another request created the same user after the existence check
+      throw new IdentifierAlreadyInUseException(user.getUsername());
     } catch (IOException e) {
       // An error occurred in persistent storage
       throw new StorageException();
@@ -126,18 +134,35 @@ public class CognitionController {
    * Performs a PUT request that updates a
    * user based on the provided parameters.
    *
-   * @param user is the new and updated User.
-   * @throws UserNotFoundException if the user cannot be found.
-   * @throws StorageException      if an error occurred with the persistent storage
+   * @param user    is the new and updated User.
+   * @param ifMatch is the version of the user the update is based on, or null.
+   * @throws UserNotFoundException           if the user cannot be found.
+   * @throws PreconditionFailedException     if the stored user has another version.
+   * @throws IdentifierAlreadyInUseException if another user owns one of the quizzes.
+   * @throws StorageException                if an error occurred with the persistent storage
    */
   @PutMapping(value = "/users",
           consumes = MediaType.APPLICATION_JSON_VALUE)
-  public void updateUser(@RequestBody User user)
-          throws UserNotFoundException, StorageException {
+  public void updateUser(@RequestBody User user,
+                         @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                 String ifMatch)
+          throws UserNotFoundException, PreconditionFailedException,
+          IdentifierAlreadyInUseException, StorageException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
+
     try {
-      getCognitionStorage().update(user.getUsername(), user);
+      if (expectedVersion == null) {
+        getCognitionStorage().update(user.getUsername(), user);
+      } else {
+        getCognitionStorage().update(user.getUsername(), user, expectedVersion);
+      }
     } catch (NoSuchElementException e) {
       throw new UserNotFoundException("User not found in local storage");
+    } catch (ConcurrentModificationException e) {
+      throw new PreconditionFailedException(e.getMessage());
+    } catch (IllegalArgumentException e) {
+      // The storage rejects quizzes that belong to another user
+      throw new IdentifierAlreadyInUseException();
     } catch (IOException e) {
       throw new StorageException();
     }
@@ -163,6 +188,93 @@ public class CognitionController {
     }
   }
 
+  /**
+   * Performs a GET request that exports all users as newline-delimited JSON, with one user and
+   * its quizzes per line. Users are written as they are read from the persistent storage, so the
+   * export does not hold all users in memory.
+   *
+   * @return the response, whose body is written after this method returns.
+   * @throws StorageException if an error occurred with the persistent storage
+   */
+  @GetMapping(value = "/export", produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> exportUsers() throws StorageException {
+    Stream<User> users;
+    try {
+      users = getCognitionStorage().streamUsers();
+    } catch (IOException e) {
+      throw new StorageException();
+    }
+
+    StreamingResponseBody body = output -> {
+      try (users) {
+        for (User user : (Iterable<User>) users::iterator) {
+          output.write(objectMapper.writeValueAsBytes(user));
+          output.write('\n');
+        }
+      } catch (UncheckedIOException e) {
+        throw new StorageException();
+      }
+    };
+
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+  }
+
+  /**
+   * Performs a POST request that imports users from newline-delimited JSON, in the format
+   * written by {@link #exportUsers()}. New users are created, and existing users are replaced.
+   *
+   * <p>The request body is read as the users are stored, in batches, and the next batch is only
+   * read once the previous one is persisted. The response reports the progress as a line like
+   * {@code {"imported":1000}} after every batch, and the last line holds the total. A line that
+   * is not a user stops the import, keeping the batches stored before it. As the response has
+   * already started, the line is reported in the last progress line instead of as an error
+   * status, like {@code {"imported":1000,"error":"Line 1001 is not a user."}}.
+   *
+   * @param body is the request body.
+   * @return the response, whose body is written after this method returns.
+   * @throws StorageException if an error occurred with the persistent storage
+   */
+  @PostMapping(value = "/import", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+          produces = MediaType.APPLICATION_NDJSON_VALUE)
+  public ResponseEntity<StreamingResponseBody> importUsers(InputStream body)
+          throws StorageException {
+    StreamingResponseBody progress = output -> {
+      long[] reported = {0};
+      try {
+        long count = getCognitionStorage().importUsers(new UserLines(body, objectMapper),
+            imported -> {
+              writeProgress(output, imported, null);
+              reported[0] = imported;
+            });
+
+        if (count == 0) {
+          writeProgress(output, 0, null);
+        }
+      } catch (InvalidImportException e) {
+        writeProgress(output, reported[0], e.getMessage());
+      } catch (IOException | UncheckedIOException e) {
+        throw new StorageException();
+      }
+    };
+
+    return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(progress);
+  }
+
+  private void writeProgress(OutputStream output, long imported, String error) {
+    ObjectNode line = objectMapper.createObjectNode().put("imported", imported);
+    if (error != null) {
+      line.put("error", error);
+    }
+
+    try {
+      output.write(objectMapper.writeValueAsBytes(line));
+      output.write('\n');
+      output.flush();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
   /**
    * Performs a GET request that returns a list
    * of quizzes belonging to a user based on supplied username.
@@ -183,7 +295,8 @@ public class CognitionController {
    * of quiz titles belonging to a user, based on supplied username.
    *
    * <p>This endpoint is useful because we do not want the client to fetch an unnecessary amount
-   * of data every single time. For a given view in the client, this is sufficient.
+   * of data every single time. For a given view in the client, this is sufficient. The flashcards
+   * of the quizzes are not loaded from the persistent storage.
    *
    * @param username is a String representation of the current User's username.
    * @return a list of quiz titles and identifiers corresponding to the current user.
@@ -193,10 +306,13 @@ public class CognitionController {
   @GetMapping("/quizzes/{username}/titles")
   public List<CompactQuiz> getQuizTitlesByUsername(@PathVariable String username)
           throws UserNotFoundException, StorageException {
-    return getUserByUsername(username).getQuizzes()
-            .stream()
-            .map(quiz -> new CompactQuiz(quiz.getUuid(), quiz.getName()))
-            .collect(Collectors.toList());
+    try {
+      return getCognitionStorage().readQuizHeaders(username);
+    } catch (NoSuchElementException e) {
+      throw new UserNotFoundException();
+    } catch (IOException e) {
+      throw new StorageException();
+    }
   }
 
   /**
@@ -210,25 +326,13 @@ public class CognitionController {
   @GetMapping("/quiz/{uuid}")
   public Quiz getQuizByUuid(@PathVariable String uuid)
           throws QuizNotFoundException, StorageException {
-
-    List<Quiz> quizzes = null;
     try {
-      quizzes = getQuizzes();
+      return getCognitionStorage().readQuiz(uuid);
+    } catch (NoSuchElementException e) {
+      throw new QuizNotFoundException("No quiz with the following identifier was found: " + uuid);
     } catch (IOException e) {
       throw new StorageException();
     }
-
-    if (quizzes.size() == 0) {
-      throw new QuizNotFoundException("No quizzes were found in persistent storage.");
-    }
-
-    return quizzes.stream()
-            .filter(q -> q.getUuid().equals(uuid))
-            .findFirst()
-            .orElseThrow(
-                    () -> new QuizNotFoundException(
-                            "No quiz with the following identifier was found: ")
-            );
   }
 
   /**
@@ -237,31 +341,30 @@ public class CognitionController {
    * the UUID of the quiz.
    *
    * @param newQuiz is the new quiz object.
-   * @throws QuizNotFoundException if the User belonging to the quiz to updated
-   *                               could not be found.
-   * @throws StorageException      if there was an error reading local storage
+   * @param ifMatch is the version of the quiz the update is based on, or null.
+   * @throws QuizNotFoundException       if no quiz with the UUID of the new quiz exists.
+   * @throws PreconditionFailedException if the stored quiz has another version.
+   * @throws StorageException            if there was an error reading local storage
    */
   @PutMapping("/quiz")
-  public void updateQuizByUuid(@RequestBody Quiz newQuiz)
-          throws QuizNotFoundException, StorageException {
-    User userToUpdate = null;
-
-    for (User user : getUsers()) {
-      for (Quiz quiz : user.getQuizzes()) {
-        if (quiz.getUuid().equals(newQuiz.getUuid())) {
-          userToUpdate = user;
-          break;
-        }
-      }
-    }
-
-    if (userToUpdate == null) {
-      throw new UserNotFoundException("User belonging to the quiz could not be found.");
-    }
+  public void updateQuizByUuid(@RequestBody Quiz newQuiz,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                       String ifMatch)
+          throws QuizNotFoundException, PreconditionFailedException, StorageException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
 
     try {
-      userToUpdate.updateQuiz(newQuiz);
-      getCognitionStorage().update(userToUpdate.getUsername(), userToUpdate);
+      // The quiz is replaced in the current state of the user, not in a copy read before
+      getCognitionStorage().modify(getQuizOwner(newQuiz.getUuid()), user -> {
+        checkVersion(user, newQuiz.getUuid(), expectedVersion);
+        // The quiz may have been moved or deleted since its owner was looked up
+        user.findQuiz(newQuiz.getUuid()).orElseThrow(NoSuchElementException::new);
+        user.updateQuiz(newQuiz);
+        return user;
+      });
+    } catch (NoSuchElementException e) {
+      throw new QuizNotFoundException(
+              "No quiz with the following identifier was found: " + newQuiz.getUuid());
     } catch (IOException e) {
       throw new StorageException();
     }
@@ -271,42 +374,39 @@ public class CognitionController {
    * Performs a DELETE request which
    * deletes a quiz from persistent storage based on the provided UUID of the quiz.
    *
-   * @param uuid is the UUID of the quiz.
-   * @throws QuizNotFoundException if the User belonging to the quiz to updated
-   *                               could not be found.
-   * @throws StorageException      if there was an error reading local storage
+   * @param uuid    is the UUID of the quiz.
+   * @param ifMatch is the version of the quiz the deletion is based on, or null.
+   * @throws QuizNotFoundException       if the User belonging to the quiz to updated
+   *                                     could not be found.
+   * @throws PreconditionFailedException if the stored quiz has another version.
+   * @throws StorageException            if there was an error reading local storage
    */
   @DeleteMapping("/quiz/{uuid}")
-  public void deleteQuizByUuid(@PathVariable String uuid) throws QuizNotFoundException {
-
-    User user = null;
-    Quiz quiz = null;
-
-    // Find user and quiz to delete
-    for (User u : getUsers()) {
-      List<Quiz> quizzes = u.getQuizzes();
-      for (Quiz q : quizzes) {
-        if (q.getUuid().equals(uuid)) {
-          user = u;
-          quiz = q;
-        }
-      }
-    }
-
-    if (quiz == null) {
-      throw new QuizNotFoundException("No quiz with the following identifier was found: " + uuid);
-    }
+  public void deleteQuizByUuid(@PathVariable String uuid,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                       String ifMatch)
+          throws QuizNotFoundException, PreconditionFailedException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
 
     try {
-      user.removeQuiz(quiz);
-      getCognitionStorage().update(user.getUsername(), user);
+      getCognitionStorage().modify(getQuizOwner(uuid), current -> {
+        checkVersion(current, uuid, expectedVersion);
+        Quiz quizToDelete = current.findQuiz(uuid).orElseThrow(NoSuchElementException::new);
+        current.removeQuiz(quizToDelete);
+        return current;
+      });
+    } catch (NoSuchElementException e) {
+      throw new QuizNotFoundException("No quiz with the following identifier was found: " + uuid);
     } catch (IOException e) {
       throw new StorageException();
     }
   }
 
   /**
-   * Performs a POST request which stores a new quiz in the persistent storage.
+   * Performs a POST request which stores a new quiz in the persistent storage. The UUID of the
+   * quiz is checked while the user is locked for the change, so a concurrent request storing the
+   * same quiz for the user cannot add it twice. A concurrent request storing the same quiz for
+   * another user holds another lock, so the storage rejects whichever change comes second.
    *
    * @param quiz     is the quiz object to be stored.
    * @param username is the user that the quiz is related to.
@@ -316,41 +416,209 @@ public class CognitionController {
    */
   @PostMapping("/quiz/{username}")
   public void createQuiz(@RequestBody Quiz quiz, @PathVariable String username)
-          throws UserNotFoundException, IdentifierAlreadyInUseException {
+          throws UserNotFoundException, IdentifierAlreadyInUseException, StorageException {
+    try {
+      getCognitionStorage().modify(username, current -> {
+        if (isQuizInUse(quiz.getUuid())) {
+          throw new IdentifierAlreadyInUseException(quiz.getUuid());
+        }
 
-    User user = getUserByUsername(username);
+        current.addQuiz(quiz);
+        return current;
+      });
+    } catch (NoSuchElementException e) {
+      throw new UserNotFoundException();
+    } catch (IllegalArgumentException e) {
+      // Another user stored the same quiz after the check
+      throw new IdentifierAlreadyInUseException(quiz.getUuid());
+    } catch (IOException | UncheckedIOException e) {
+      throw new StorageException();
+    }
+  }
 
-    List<Quiz> quizzes = null;
+  /**
+   * Determines whether any user owns a quiz with the given UUID.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return true if the UUID is in use.
+   * @throws UncheckedIOException if there was an error reading local storage
+   */
+  private boolean isQuizInUse(String uuid) {
     try {
-      quizzes = getQuizzes();
+      getQuizOwner(uuid);
+      return true;
+    } catch (NoSuchElementException e) {
+      return false;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Performs a POST request which adds a flashcard to a quiz. Only the quiz is
+   * changed, so the request does not carry the rest of the user.
+   *
+   * @param uuid      is the UUID of the quiz.
+   * @param flashcard is the flashcard to add.
+   * @param ifMatch   is the version of the quiz the change is based on, or null.
+   * @throws QuizNotFoundException           if no quiz with the given UUID exists.
+   * @throws IdentifierAlreadyInUseException if the quiz already has a flashcard with the UUID.
+   * @throws PreconditionFailedException     if the stored quiz has another version.
+   * @throws StorageException                if there was an error reading local storage
+   */
+  @PostMapping(value = "/quiz/{uuid}/flashcards", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public void addFlashcard(@PathVariable String uuid, @RequestBody Flashcard flashcard,
+                           @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                   String ifMatch)
+          throws QuizNotFoundException, IdentifierAlreadyInUseException,
+          PreconditionFailedException, StorageException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
+
+    try {
+      if (expectedVersion == null) {
+        getCognitionStorage().addFlashcard(uuid, flashcard);
+      } else {
+        getCognitionStorage().addFlashcard(uuid, flashcard, expectedVersion);
+      }
+    } catch (NoSuchElementException e) {
+      throw new QuizNotFoundException("No quiz with the following identifier was found: " + uuid);
+    } catch (IllegalArgumentException e) {
+      throw new IdentifierAlreadyInUseException(flashcard.getUuid());
+    } catch (ConcurrentModificationException e) {
+      throw new PreconditionFailedException(e.getMessage());
     } catch (IOException e) {
       throw new StorageException();
     }
+  }
 
-    boolean uuidAlreadyExists = quizzes.stream()
-            .anyMatch(q -> q.getUuid().equals(quiz.getUuid()));
+  /**
+   * Performs a PUT request which replaces the flashcard of a quiz that has the
+   * same UUID as the provided flashcard.
+   *
+   * @param uuid      is the UUID of the quiz.
+   * @param flashcard is the new version of the flashcard.
+   * @param ifMatch   is the version of the quiz the change is based on, or null.
+   * @throws FlashcardNotFoundException  if the quiz or the flashcard could not be found.
+   * @throws PreconditionFailedException if the stored quiz has another version.
+   * @throws StorageException            if there was an error reading local storage
+   */
+  @PutMapping(value = "/quiz/{uuid}/flashcards", consumes = MediaType.APPLICATION_JSON_VALUE)
+  public void replaceFlashcard(@PathVariable String uuid, @RequestBody Flashcard flashcard,
+                               @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                       String ifMatch)
+          throws FlashcardNotFoundException, PreconditionFailedException, StorageException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
 
-    if (uuidAlreadyExists) {
-      throw new IdentifierAlreadyInUseException(quiz.getUuid());
+    try {
+      if (expectedVersion == null) {
+        getCognitionStorage().replaceFlashcard(uuid, flashcard);
+      } else {
+        getCognitionStorage().replaceFlashcard(uuid, flashcard, expectedVersion);
+      }
+    } catch (NoSuchElementException e) {
+      throw new FlashcardNotFoundException("No flashcard " + flashcard.getUuid()
+              + " was found in the quiz " + uuid);
+    } catch (ConcurrentModificationException e) {
+      throw new PreconditionFailedException(e.getMessage());
+    } catch (IOException e) {
+      throw new StorageException();
     }
+  }
 
-    user.addQuiz(quiz);
+  /**
+   * Performs a DELETE request which removes a flashcard from a quiz.
+   *
+   * @param uuid          is the UUID of the quiz.
+   * @param flashcardUuid is the UUID of the flashcard.
+   * @param ifMatch       is the version of the quiz the change is based on, or null.
+   * @throws FlashcardNotFoundException  if the quiz or the flashcard could not be found.
+   * @throws PreconditionFailedException if the stored quiz has another version.
+   * @throws StorageException            if there was an error reading local storage
+   */
+  @DeleteMapping("/quiz/{uuid}/flashcards/{flashcardUuid}")
+  public void removeFlashcard(@PathVariable String uuid, @PathVariable String flashcardUuid,
+                              @RequestHeader(value = HttpHeaders.IF_MATCH, required = false)
+                                      String ifMatch)
+          throws FlashcardNotFoundException, PreconditionFailedException, StorageException {
+    Long expectedVersion = parseExpectedVersion(ifMatch);
 
     try {
-      getCognitionStorage().update(user.getUsername(), user);
+      if (expectedVersion == null) {
+        getCognitionStorage().removeFlashcard(uuid, flashcardUuid);
+      } else {
+        getCognitionStorage().removeFlashcard(uuid, flashcardUuid, expectedVersion);
+      }
+    } catch (NoSuchElementException e) {
+      throw new FlashcardNotFoundException("No flashcard " + flashcardUuid
+              + " was found in the quiz " + uuid);
+    } catch (ConcurrentModificationException e) {
+      throw new PreconditionFailedException(e.getMessage());
     } catch (IOException e) {
       throw new StorageException();
     }
   }
 
   /**
-   * Gets a list of all available quizzes.
+   * Parses the If-Match header of a request. The header holds the expected version as an entity
+   * tag, which is usually quoted.
+   *
+   * @param ifMatch is the value of the header, or null if it was not sent.
+   * @return the expected version, or null if any version may be changed.
+   * @throws PreconditionFailedException if the header does not hold a version, in which case
+   *                                     it cannot match any stored version.
+   */
+  private static Long parseExpectedVersion(String ifMatch) throws PreconditionFailedException {
+    if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*")) {
+      return null;
+    }
+
+    String tag = ifMatch.trim();
+    if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+      tag = tag.substring(1, tag.length() - 1);
+    }
+
+    try {
+      return Long.parseLong(tag);
+    } catch (NumberFormatException e) {
+      throw new PreconditionFailedException("Not a version: " + ifMatch);
+    }
+  }
+
+  /**
+   * Checks the version of a quiz before it is changed.
    *
-   * @return a list of all quizzes, or null if an error occurs when getting quizzes.
-   * @throws IOException if there was an error reading local storage
+   * @param user            is the current state of the user owning the quiz.
+   * @param uuid            is the UUID of the quiz.
+   * @param expectedVersion is the version the change is based on, or null to skip the check.
+   * @throws QuizNotFoundException       if the user does not own the quiz anymore.
+   * @throws PreconditionFailedException if the stored quiz has another version.
+   */
+  private static void checkVersion(User user, String uuid, Long expectedVersion)
+          throws QuizNotFoundException, PreconditionFailedException {
+    if (expectedVersion == null) {
+      return;
+    }
+
+    Quiz quiz = user.findQuiz(uuid)
+            .orElseThrow(() -> new QuizNotFoundException(
+                    "No quiz with the following identifier was found: " + uuid));
+
+    if (quiz.getVersion() != expectedVersion) {
+      throw new PreconditionFailedException("The quiz " + uuid + " has version "
+              + quiz.getVersion() + ", not " + expectedVersion + ".");
+    }
+  }
+
+  /**
+   * Gets the username of the user owning a quiz, as found by the quiz index of the persistent
+   * storage.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the username of the owner.
+   * @throws NoSuchElementException if no quiz with the given UUID exists.
+   * @throws IOException            if there was an error reading local storage
    */
-  private List<Quiz> getQuizzes() throws IOException {
-    return getCognitionStorage().readUsers().stream()
-            .flatMap(u -> u.getQuizzes().stream()).collect(Collectors.toList());
+  private String getQuizOwner(String uuid) throws NoSuchElementException, IOException {
+    return getCognitionStorage().readQuizOwner(uuid);
   }
 }
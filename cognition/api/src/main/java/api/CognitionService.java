@@ -3,6 +3,7 @@ package api;
 import java.io.IOException;
 import java.util.Objects;
 import json.CognitionStorage;
+import json.StorageOptions;
 import org.springframework.stereotype.Service;
 
 /**
@@ -32,7 +33,11 @@ public class CognitionService {
     if (isTest || RestApplication.isTestMode()) {
       setCognitionStorage(new CognitionStorage("cognitionTest.json"));
     } else {
-      setCognitionStorage(new CognitionStorage());
+      // The server journals changes to keep request latency independent of the size of the
+      // storage file, and keeps a heap image so that a restart only replays the journal. Its
+      // statistics are registered with JMX, so regressions show up without a profiler.
+      setCognitionStorage(new CognitionStorage("cognition.json",
+          StorageOptions.journaled().setHeapImage(true).setMonitored(true)));
     }
   }
 
@@ -0,0 +1,18 @@
+package api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception for when no flashcard was found in a quiz on the server.
+ */
+@ResponseStatus(value = HttpStatus.NOT_FOUND, reason = "No such Flashcard")
+public class FlashcardNotFoundException extends RuntimeException {
+  public FlashcardNotFoundException(String message) {
+    super(message);
+  }
+
+  public FlashcardNotFoundException() {
+    super("No flashcard was found.");
+  }
+}
@@ -0,0 +1,15 @@
+package api;
+
+/**
+ * Exception for when a line of an import is not a valid user. The import response has already
+ * started when a line is read, so the message is reported in its last progress line.
+ */
+public class InvalidImportException extends RuntimeException {
+  public InvalidImportException(String message) {
+    super(message);
+  }
+
+  public InvalidImportException() {
+    super("The import is not a list of users.");
+  }
+}
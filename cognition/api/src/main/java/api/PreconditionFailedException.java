@@ -0,0 +1,22 @@
+package api;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+/**
+ * Exception for when a change is based on a version that is no longer stored,
+ * because someone else changed the same object in the meantime.
+ */
+@ResponseStatus(
+        value = HttpStatus.PRECONDITION_FAILED,
+        reason = "The object was changed by someone else"
+)
+public class PreconditionFailedException extends RuntimeException {
+  public PreconditionFailedException(String message) {
+    super(message);
+  }
+
+  public PreconditionFailedException() {
+    super("The object was changed by someone else");
+  }
+}
@@ -0,0 +1,88 @@
+package api;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import core.User;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * Reads users from newline-delimited JSON, one user per line. A line is only read and parsed
+ * when the next user is requested, so the users are never held in memory together. Blank lines
+ * are skipped.
+ */
+final class UserLines implements Iterator<User> {
+  private final BufferedReader reader;
+  private final ObjectMapper objectMapper;
+  private String nextLine;
+  private long lineNumber;
+
+  UserLines(InputStream input, ObjectMapper objectMapper) {
+    this.reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+    this.objectMapper = Objects.requireNonNull(objectMapper);
+  }
+
+  /**
+   * Determines whether there is another user to read.
+   *
+   * @return true if another non-blank line was found.
+   * @throws UncheckedIOException if an error occurred when reading the input.
+   */
+  @Override
+  public boolean hasNext() {
+    try {
+      while (nextLine == null) {
+        String line = reader.readLine();
+
+        if (line == null) {
+          return false;
+        }
+
+        lineNumber++;
+        if (!line.isBlank()) {
+          nextLine = line;
+        }
+      }
+
+      return true;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Parses the next line.
+   *
+   * @return the user on the next line.
+   * @throws InvalidImportException if the line is not a user with a username and password.
+   * @throws UncheckedIOException   if an error occurred when reading the input.
+   */
+  @Override
+  public User next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    String line = nextLine;
+    nextLine = null;
+
+    try {
+      User user = objectMapper.readValue(line, User.class);
+
+      if (user == null || user.getUsername() == null || user.getPassword() == null) {
+        throw new InvalidImportException("Line " + lineNumber + " is not a user.");
+      }
+
+      return user;
+    } catch (JsonProcessingException e) {
+      throw new InvalidImportException("Line " + lineNumber + " is not a user.");
+    }
+  }
+}
@@ -1,5 +1,8 @@
 module cognition.api {
   requires spring.web;
+  requires spring.webmvc;
+  requires com.fasterxml.jackson.core;
+  requires com.fasterxml.jackson.databind;
   requires spring.boot;
   requires spring.boot.autoconfigure;
 
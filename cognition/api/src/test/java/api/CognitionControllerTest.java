@@ -1,5 +1,6 @@
 package api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import core.CompactQuiz;
 import core.Quiz;
 import core.User;
@@ -32,7 +33,7 @@ public class CognitionControllerTest {
     try {
       // Because we test the REST controller in isolation, a new instance is made and
       // its methods are tested like a unit test
-      cognitionController = new CognitionController();
+      cognitionController = new CognitionController(new CognitionService(), new ObjectMapper());
       cognitionStorage = new CognitionStorage("cognitionTest.json");
       cognitionController.setCognitionStorage(cognitionStorage);
 
@@ -122,13 +123,16 @@ public class CognitionControllerTest {
     // Update state in persistent storage
     User user = cognitionController.getUserByUsername(validUsername);
     user.addQuiz(quiz);
-    cognitionController.updateUser(user);
+    cognitionController.updateUser(user, null);
 
     // Read sample quiz
     List<CompactQuiz> quizTitles = cognitionController.getQuizTitlesByUsername(validUsername);
     CompactQuiz compactQuiz = quizTitles.get(0);
 
     Assertions.assertEquals(quiz.getName(), compactQuiz.getName());
+    Assertions.assertEquals(quiz.getDescription(), compactQuiz.getDescription());
+    Assertions.assertEquals(0, compactQuiz.getFlashcardCount());
+    Assertions.assertEquals(1, compactQuiz.getVersion());
   }
 
   @Test
@@ -143,7 +147,7 @@ public class CognitionControllerTest {
       user.addQuiz(quiz);
 
       // Update user
-      cognitionController.updateUser(user);
+      cognitionController.updateUser(user, null);
 
       User parsedUser = cognitionController.getUserByUsername(validUsername);
 
@@ -163,7 +167,7 @@ public class CognitionControllerTest {
     User user = new User("nonUser", "hheloas");
     Assertions.assertThrows(
              UserNotFoundException.class,
-            () -> cognitionController.updateUser(user)
+            () -> cognitionController.updateUser(user, null)
     );
   }
 
@@ -208,7 +212,7 @@ public class CognitionControllerTest {
     // Update state in persistent storage
     User user = cognitionController.getUserByUsername(validUsername);
     user.addQuiz(quiz);
-    cognitionController.updateUser(user);
+    cognitionController.updateUser(user, null);
 
     // Read sample quiz
     Quiz parsedQuiz = cognitionController.getQuizByUuid(uuid);
@@ -236,7 +240,7 @@ public class CognitionControllerTest {
       user.addQuiz(new Quiz(createUuid(), "quiz-name", "quiz-description"));
 
       // Update state
-      cognitionController.updateUser(user);
+      cognitionController.updateUser(user, null);
 
       // Get user's quizzes
       List<Quiz> quizzes = cognitionController.getQuizzesByUsername(user.getUsername());
@@ -259,7 +263,7 @@ public class CognitionControllerTest {
     user.addQuiz(quiz);
 
     // Update state
-    cognitionController.updateUser(user);
+    cognitionController.updateUser(user, null);
 
     // Update state of quiz
     String expectedName = "new-name";
@@ -268,7 +272,7 @@ public class CognitionControllerTest {
     quiz.setDescription(expectedDescription);
 
     // Update using controller
-    cognitionController.updateQuizByUuid(quiz);
+    cognitionController.updateQuizByUuid(quiz, null);
 
     // Inspect the user corresponding to the quiz, and verify that the quiz was
     // updated
@@ -283,12 +287,38 @@ public class CognitionControllerTest {
 
 
   @Test
-  @DisplayName("If user to update is null, then throw.")
-  void ifUserToUpdateIsNullThenThrow() {
+  @DisplayName("Conditional updates fail if the stored version changed.")
+  void conditionalUpdatesFailOnStaleVersion() {
+    User user = cognitionController.getUserByUsername(validUsername);
+    long version = user.getVersion();
+    Quiz quiz = new Quiz(createUuid(), "quiz-name", "quiz-description");
+    user.addQuiz(quiz);
+
+    cognitionController.updateUser(user, "\"" + version + "\"");
+    Assertions.assertThrows(PreconditionFailedException.class,
+        () -> cognitionController.updateUser(user, "\"" + version + "\""));
+    Assertions.assertThrows(PreconditionFailedException.class,
+        () -> cognitionController.updateUser(user, "not-a-version"));
+
+    quiz.setName("new-name");
+    cognitionController.updateQuizByUuid(quiz, "\"1\"");
+    Assertions.assertThrows(PreconditionFailedException.class,
+        () -> cognitionController.updateQuizByUuid(quiz, "\"1\""));
+    Assertions.assertThrows(PreconditionFailedException.class,
+        () -> cognitionController.deleteQuizByUuid(quiz.getUuid(), "\"1\""));
+
+    cognitionController.deleteQuizByUuid(quiz.getUuid(), "\"2\"");
+    Assertions.assertEquals(0,
+        cognitionController.getUserByUsername(validUsername).getQuizzes().size());
+  }
+
+  @Test
+  @DisplayName("If quiz to update does not exist, then throw.")
+  void ifQuizToUpdateDoesNotExistThenThrow() {
     Quiz quizNotBelongingToUser = new Quiz(createUuid(), "test-name", "test-description");
 
-    Assertions.assertThrows(UserNotFoundException.class,
-        () -> cognitionController.updateQuizByUuid(quizNotBelongingToUser));
+    Assertions.assertThrows(QuizNotFoundException.class,
+        () -> cognitionController.updateQuizByUuid(quizNotBelongingToUser, null));
   }
 
 
@@ -304,10 +334,10 @@ public class CognitionControllerTest {
     user.addQuiz(quiz);
 
     // Update state
-    cognitionController.updateUser(user);
+    cognitionController.updateUser(user, null);
 
     // Delete quiz
-    cognitionController.deleteQuizByUuid(quizUuid);
+    cognitionController.deleteQuizByUuid(quizUuid, null);
 
     // Verify state
     user = cognitionController.getUserByUsername(validUsername);
@@ -320,7 +350,7 @@ public class CognitionControllerTest {
   void ifQuizToDeleteIsNullThenThrow() {
     String nonExistingUuid = createUuid();
 
-    Assertions.assertThrows(QuizNotFoundException.class, () -> cognitionController.deleteQuizByUuid(nonExistingUuid));
+    Assertions.assertThrows(QuizNotFoundException.class, () -> cognitionController.deleteQuizByUuid(nonExistingUuid, null));
   }
 
   @Test
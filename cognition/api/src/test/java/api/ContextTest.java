@@ -1,5 +1,6 @@
 package api;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -16,7 +17,7 @@ public class ContextTest {
   @BeforeEach
   void setUp() {
     try {
-      cognitionController = new CognitionController();
+      cognitionController = new CognitionController(new CognitionService(), new ObjectMapper());
     } catch (IOException e) {
       fail();
     }
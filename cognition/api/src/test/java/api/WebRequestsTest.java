@@ -1,24 +1,32 @@
 package api;
 
 import com.google.gson.Gson;
+import core.Flashcard;
 import core.Quiz;
 import core.User;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.ImportAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
 import org.springframework.boot.test.autoconfigure.restdocs.AutoConfigureRestDocs;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.web.servlet.config.annotation.EnableWebMvc;
 
+import static org.hamcrest.Matchers.containsString;
 import static org.junit.jupiter.api.Assertions.fail;
 import static org.springframework.restdocs.mockmvc.MockMvcRestDocumentation.document;
 import static org.springframework.restdocs.operation.preprocess.Preprocessors.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
 /**
@@ -26,7 +34,8 @@ import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.
  * behind the API. This class is treated more like an integration test, given
  * the nature of the test methods.
  */
-@SpringBootTest(classes = CognitionController.class)
+@SpringBootTest(classes = {CognitionController.class, CognitionService.class})
+@ImportAutoConfiguration(JacksonAutoConfiguration.class)
 @AutoConfigureMockMvc
 @EnableWebMvc
 @AutoConfigureRestDocs(outputDir = "src/main/asciidoc")
@@ -40,6 +49,7 @@ public class WebRequestsTest {
     private final String password = "test-password";
     private final String quizUuid = "9f6c96cc-6a70-46bc-8f69-31b2ebd661cd";
     private final String invalidQuizUuid = "thisIsNotAUuid";
+    private final String flashcardUuid = "1c6a0a5e-2f57-4e0f-9a35-6f3b7c2d8e41";
 
     /*
      * Set state to indicate to CognitionController that we are in test mode, and
@@ -166,6 +176,28 @@ public class WebRequestsTest {
 
     }
 
+    @Test
+    @DisplayName("Expect 412 when updating user based on an old version.")
+    void expect412WhenUpdatingUserWithStaleVersion() {
+        User user = new User(username, "new-password");
+        String serialized = gson.toJson(user);
+
+        try {
+            initializeUser();
+
+            // A new user has version 1, so the first update succeeds and the second is stale
+            this.mvc.perform(put("/users").header(HttpHeaders.IF_MATCH, "\"1\"")
+                    .contentType(MediaType.APPLICATION_JSON).content(serialized))
+                    .andExpect(status().isOk());
+            this.mvc.perform(put("/users").header(HttpHeaders.IF_MATCH, "\"1\"")
+                    .contentType(MediaType.APPLICATION_JSON).content(serialized))
+                    .andExpect(status().isPreconditionFailed()).andDo(document("{methodName}",
+                            preprocessRequest(prettyPrint()), preprocessResponse(prettyPrint())));
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
     @Test
     @DisplayName("Expect 200 when getting quizzes by username")
     void expect200WhenGettingQuizzesByUsername() {
@@ -285,6 +317,161 @@ public class WebRequestsTest {
         }
     }
 
+    @Test
+    @DisplayName("Expect 412 when changing quiz based on an old version")
+    void expect412WhenChangingQuizWithStaleVersion() {
+        Quiz quiz = new Quiz(quizUuid, "Updated quiz", "Updated description");
+        String serializedQuiz = gson.toJson(quiz);
+
+        try {
+            initializeUser();
+            initializeQuiz();
+
+            this.mvc.perform(put("/quiz").header(HttpHeaders.IF_MATCH, "\"1\"")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedQuiz))
+                    .andExpect(status().isOk());
+            this.mvc.perform(put("/quiz").header(HttpHeaders.IF_MATCH, "\"1\"")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedQuiz))
+                    .andExpect(status().isPreconditionFailed());
+            this.mvc.perform(delete("/quiz/" + quizUuid).header(HttpHeaders.IF_MATCH, "\"1\""))
+                    .andExpect(status().isPreconditionFailed());
+            this.mvc.perform(delete("/quiz/" + quizUuid).header(HttpHeaders.IF_MATCH, "\"2\""))
+                    .andExpect(status().isOk());
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 when adding flashcard to quiz")
+    void expect200WhenAddingFlashcard() {
+        Flashcard flashcard = new Flashcard(flashcardUuid, "What is 2 + 2?", "4");
+        String serializedFlashcard = gson.toJson(flashcard);
+
+        try {
+            initializeUser();
+            initializeQuiz();
+
+            this.mvc.perform(post("/quiz/" + quizUuid + "/flashcards").header(HttpHeaders.IF_MATCH, "\"1\"")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedFlashcard))
+                    .andExpect(status().isOk()).andDo(document("{methodName}", preprocessRequest(prettyPrint()),
+                            preprocessResponse(prettyPrint())));
+            this.mvc.perform(post("/quiz/" + quizUuid + "/flashcards")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedFlashcard))
+                    .andExpect(status().isConflict());
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 when replacing flashcard in quiz")
+    void expect200WhenReplacingFlashcard() {
+        Flashcard flashcard = new Flashcard(flashcardUuid, "What is 2 + 3?", "5");
+        String serializedFlashcard = gson.toJson(flashcard);
+
+        try {
+            initializeUser();
+            initializeQuiz();
+            initializeFlashcard();
+
+            this.mvc.perform(put("/quiz/" + quizUuid + "/flashcards")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedFlashcard))
+                    .andExpect(status().isOk()).andDo(document("{methodName}", preprocessRequest(prettyPrint()),
+                            preprocessResponse(prettyPrint())));
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 when removing flashcard from quiz")
+    void expect200WhenRemovingFlashcard() {
+        try {
+            initializeUser();
+            initializeQuiz();
+            initializeFlashcard();
+
+            this.mvc.perform(delete("/quiz/" + quizUuid + "/flashcards/" + flashcardUuid))
+                    .andExpect(status().isOk()).andDo(document("{methodName}", preprocessRequest(prettyPrint()),
+                            preprocessResponse(prettyPrint())));
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 404 when replacing flashcard that is not in the quiz")
+    void expect404WhenReplacingMissingFlashcard() {
+        Flashcard flashcard = new Flashcard(flashcardUuid, "What is 2 + 3?", "5");
+        String serializedFlashcard = gson.toJson(flashcard);
+
+        try {
+            initializeUser();
+            initializeQuiz();
+
+            this.mvc.perform(put("/quiz/" + quizUuid + "/flashcards")
+                    .contentType(MediaType.APPLICATION_JSON).content(serializedFlashcard))
+                    .andExpect(status().isNotFound()).andDo(document("{methodName}",
+                            preprocessRequest(prettyPrint()), preprocessResponse(prettyPrint())));
+            this.mvc.perform(delete("/quiz/" + quizUuid + "/flashcards/" + flashcardUuid))
+                    .andExpect(status().isNotFound());
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 when exporting users.")
+    void expect200WhenExportingUsers() {
+        try {
+            initializeUser();
+            initializeQuiz();
+
+            MvcResult result = this.mvc.perform(get("/export").accept(MediaType.APPLICATION_NDJSON))
+                    .andExpect(request().asyncStarted()).andReturn();
+            this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                    .andExpect(content().string(containsString("\"username\":\"" + username + "\"")))
+                    .andDo(document("{methodName}"));
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 when importing users.")
+    void expect200WhenImportingUsers() {
+        User user = new User(username, password);
+        user.addQuiz(new Quiz(quizUuid, "Test quiz", "Test description for test quiz"));
+        String lines = gson.toJson(user) + "\n";
+
+        try {
+            MvcResult result = this.mvc.perform(post("/import").contentType(MediaType.APPLICATION_NDJSON)
+                    .content(lines)).andExpect(request().asyncStarted()).andReturn();
+            this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().string("{\"imported\":1}\n")).andDo(document("{methodName}"));
+            this.mvc.perform(get("/quiz/" + quizUuid)).andExpect(status().isOk());
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
+    @Test
+    @DisplayName("Expect 200 with an error line when importing a line that is not a user.")
+    void expect200WithErrorWhenImportingInvalidLine() {
+        try {
+            initializeUser();
+
+            MvcResult result = this.mvc.perform(post("/import").contentType(MediaType.APPLICATION_NDJSON)
+                    .content("this is not a user\n")).andExpect(request().asyncStarted()).andReturn();
+            this.mvc.perform(asyncDispatch(result)).andExpect(status().isOk())
+                    .andExpect(content().string("{\"imported\":0,\"error\":\"Line 1 is not a user.\"}\n"));
+        } catch (Exception e) {
+            fail();
+        }
+    }
+
     /**
      * Initializes a test user to be used when testing endpoints.
      *
@@ -305,4 +492,12 @@ public class WebRequestsTest {
         this.mvc.perform(post("/quiz/" + username).contentType(MediaType.APPLICATION_JSON).content(serializedQuiz))
                 .andExpect(status().isOk());
     }
+
+    private void initializeFlashcard() throws Exception {
+        Flashcard flashcard = new Flashcard(flashcardUuid, "What is 2 + 2?", "4");
+        String serializedFlashcard = gson.toJson(flashcard);
+
+        this.mvc.perform(post("/quiz/" + quizUuid + "/flashcards").contentType(MediaType.APPLICATION_JSON)
+                .content(serializedFlashcard)).andExpect(status().isOk());
+    }
 }
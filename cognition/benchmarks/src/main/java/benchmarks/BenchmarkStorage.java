@@ -0,0 +1,76 @@
+package benchmarks;
+
+import core.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import json.CognitionStorage;
+
+/**
+ * Creates and removes the storage files used by the benchmarks.
+ *
+ * <p>Benchmarks use their own storage files in the local storage directory, so they never touch
+ * the files of the application or of the tests.
+ */
+final class BenchmarkStorage {
+  private BenchmarkStorage() {
+  }
+
+  /**
+   * Opens a new storage holding the given users. Files left over by an earlier run are removed
+   * first.
+   *
+   * @param filename is the name of the storage file.
+   * @param mode     is the way the storage persists users.
+   * @param users    are the users to store.
+   * @return the storage.
+   * @throws IOException if an error occurred when writing the storage.
+   */
+  static CognitionStorage open(String filename, StorageMode mode, List<User> users)
+      throws IOException {
+    CognitionStorage storage = new CognitionStorage(filename, mode.options());
+    deleteFiles(storage.getStoragePath());
+
+    storage.importUsers(users.iterator(), count -> {
+    });
+    return storage;
+  }
+
+  /**
+   * Closes a storage and removes its storage file together with the journal, index, heap image,
+   * shards and key-value store next to it.
+   *
+   * @param storage is the storage to remove.
+   * @throws IOException if an error occurred when closing the storage or removing its files.
+   */
+  static void delete(CognitionStorage storage) throws IOException {
+    storage.close();
+    deleteFiles(storage.getStoragePath());
+  }
+
+  private static void deleteFiles(Path storagePath) throws IOException {
+    Path directory = storagePath.getParent();
+    String name = String.valueOf(storagePath.getFileName());
+    List<Path> files;
+
+    try (Stream<Path> walk = Files.walk(directory)) {
+      files = walk
+          .filter(file -> !file.equals(directory)
+              && directory.relativize(file).getName(0).toString().startsWith(name))
+          // Directories are deleted after their content
+          .sorted(Comparator.reverseOrder())
+          .collect(Collectors.toList());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    for (Path file : files) {
+      Files.deleteIfExists(file);
+    }
+  }
+}
@@ -0,0 +1,139 @@
+package benchmarks;
+
+import core.User;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+import json.BinaryCodec;
+import json.GzipCodec;
+import json.JsonCodec;
+import json.StorageCodec;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the cost of saving and loading storage files with every {@link Codec}, including the
+ * compression levels of {@link GzipCodec}.
+ *
+ * <p>{@link #save(FileSize)} encodes the users, compresses them and syncs them to disk, and
+ * {@link #load()} reads, decompresses and decodes them again. Together with the file size, which
+ * is reported as the {@code bytes} counter of {@code save}, this shows where compression pays for
+ * itself in reduced I/O and where the extra CPU time dominates.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CompressionBenchmark {
+  static final int QUIZZES = 5;
+  static final int FLASHCARDS = 20;
+
+  @Param({"10", "100", "1000", "5000"})
+  private int users;
+
+  @Param
+  private Codec codec;
+
+  private List<User> generated;
+  private StorageCodec storageCodec;
+  private Path path;
+
+  /**
+   * The storage formats to compare.
+   */
+  public enum Codec {
+    JSON,
+    GZIP_JSON_1,
+    GZIP_JSON_6,
+    GZIP_JSON_9,
+    BINARY,
+    GZIP_BINARY_1;
+
+    StorageCodec create() {
+      switch (this) {
+        case GZIP_JSON_1:
+          return new GzipCodec(new JsonCodec(), Deflater.BEST_SPEED);
+        case GZIP_JSON_6:
+          return new GzipCodec(new JsonCodec(), 6);
+        case GZIP_JSON_9:
+          return new GzipCodec(new JsonCodec(), Deflater.BEST_COMPRESSION);
+        case BINARY:
+          return new BinaryCodec();
+        case GZIP_BINARY_1:
+          return new GzipCodec(new BinaryCodec(), Deflater.BEST_SPEED);
+        default:
+          return new JsonCodec();
+      }
+    }
+  }
+
+  /**
+   * The size of the saved file, reported next to the time of {@link #save(FileSize)}.
+   */
+  @State(Scope.Thread)
+  @AuxCounters(AuxCounters.Type.EVENTS)
+  public static class FileSize {
+    public long bytes;
+  }
+
+  /**
+   * Writes the generated users to a temporary file, so that they can be loaded.
+   *
+   * @throws IOException if the file could not be written.
+   */
+  @Setup(Level.Trial)
+  public void writeFile() throws IOException {
+    generated = new SyntheticData(SyntheticData.SEED).users(users, QUIZZES, FLASHCARDS);
+    storageCodec = codec.create();
+    path = Files.createTempFile("cognition-benchmark", ".dat");
+    save(new FileSize());
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteFile() throws IOException {
+    Files.deleteIfExists(path);
+  }
+
+  @Benchmark
+  public void save(FileSize size) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING);
+         OutputStream output = new BufferedOutputStream(Channels.newOutputStream(channel))) {
+      storageCodec.write(output, generated, (username, offset, length) -> {
+      });
+      output.flush();
+      channel.force(true);
+      size.bytes = channel.size();
+    }
+  }
+
+  @Benchmark
+  public long load() throws IOException {
+    try (Stream<User> loaded = storageCodec.read(Files.newInputStream(path))) {
+      return loaded.count();
+    }
+  }
+}
@@ -0,0 +1,106 @@
+package benchmarks;
+
+import api.CognitionController;
+import api.RestApplication;
+import core.CompactQuiz;
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import json.CognitionStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures request handling in {@link CognitionController}, called in-process without HTTP or
+ * JSON mapping, on a journaled storage like the one used by the server.
+ *
+ * <p>This covers what the controller adds on top of {@link StorageBenchmark}: ownership lookups,
+ * version checks and the read-modify-write cycles of quiz and flashcard changes.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ControllerBenchmark {
+  @Param({"1", "1000", "100000"})
+  private int users;
+
+  private CognitionController controller;
+  private CognitionStorage storage;
+  private List<User> stored;
+  private Flashcard flashcard;
+  private int next;
+
+  /**
+   * Stores the generated users, and points a controller at them.
+   *
+   * @throws IOException if the storage could not be written.
+   */
+  @Setup(Level.Trial)
+  public void openController() throws IOException {
+    SyntheticData data = new SyntheticData(SyntheticData.SEED);
+    stored = data.users(users, StorageBenchmark.QUIZZES, StorageBenchmark.FLASHCARDS);
+    flashcard = data.flashcard();
+    storage = BenchmarkStorage.open("cognitionControllerBenchmark.json", StorageMode.JOURNALED,
+        stored);
+
+    // Keeps the controller from opening the storage of the application
+    RestApplication.setTestMode(true);
+    controller = new CognitionController();
+    controller.setCognitionStorage(storage);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteStorage() throws IOException {
+    BenchmarkStorage.delete(storage);
+  }
+
+  private User nextUser() {
+    User user = stored.get(next);
+    next = (next + 1) % stored.size();
+    return user;
+  }
+
+  @Benchmark
+  public User getUserByUsername() {
+    return controller.getUserByUsername(nextUser().getUsername());
+  }
+
+  @Benchmark
+  public List<CompactQuiz> getQuizTitlesByUsername() {
+    return controller.getQuizTitlesByUsername(nextUser().getUsername());
+  }
+
+  @Benchmark
+  public Quiz getQuizByUuid() {
+    return controller.getQuizByUuid(nextUser().getQuizzes().get(0).getUuid());
+  }
+
+  @Benchmark
+  public void updateQuizByUuid() {
+    controller.updateQuizByUuid(nextUser().getQuizzes().get(0), null);
+  }
+
+  @Benchmark
+  public void addAndRemoveFlashcard() {
+    String quizUuid = nextUser().getQuizzes().get(0).getUuid();
+    controller.addFlashcard(quizUuid, flashcard, null);
+    controller.removeFlashcard(quizUuid, flashcard.getUuid(), null);
+  }
+}
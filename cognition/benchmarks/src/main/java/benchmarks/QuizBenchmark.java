@@ -0,0 +1,56 @@
+package benchmarks;
+
+import core.Flashcard;
+import core.Quiz;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures filling a quiz with {@link Quiz#addFlashcards(List)}.
+ *
+ * <p>Every invocation starts from an empty quiz, so the benchmark runs in single-shot mode and
+ * measures the time to add all flashcards at once. Adding a flashcard checks that the quiz does
+ * not already contain it, so this shows how the cost of a bulk add grows with the size of the
+ * quiz.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class QuizBenchmark {
+  @Param({"10", "1000", "100000", "1000000"})
+  private int flashcards;
+
+  private List<Flashcard> generated;
+  private Quiz quiz;
+
+  @Setup(Level.Trial)
+  public void generate() {
+    generated = new SyntheticData(SyntheticData.SEED).flashcards(flashcards);
+  }
+
+  @Setup(Level.Invocation)
+  public void createQuiz() {
+    quiz = new SyntheticData(SyntheticData.SEED).quiz(0);
+  }
+
+  @Benchmark
+  public Quiz addFlashcards() {
+    quiz.addFlashcards(generated);
+    return quiz;
+  }
+}
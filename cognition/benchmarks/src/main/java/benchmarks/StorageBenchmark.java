@@ -0,0 +1,91 @@
+package benchmarks;
+
+import core.User;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import json.CognitionStorage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the CRUD operations of {@link CognitionStorage} for every {@link StorageMode}, with a
+ * growing number of stored users.
+ *
+ * <p>Every user has {@link #QUIZZES} quizzes of {@link #FLASHCARDS} flashcards. Reads and updates
+ * pick the stored users one after the other. {@link #createAndDelete()} stores a new user and
+ * removes it again, so the number of stored users stays the same.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StorageBenchmark {
+  static final int QUIZZES = 2;
+  static final int FLASHCARDS = 10;
+
+  @Param({"1", "1000", "100000"})
+  private int users;
+
+  @Param
+  private StorageMode mode;
+
+  private CognitionStorage storage;
+  private List<User> stored;
+  private User created;
+  private int next;
+
+  /**
+   * Stores the generated users in a new storage.
+   *
+   * @throws IOException if the storage could not be written.
+   */
+  @Setup(Level.Trial)
+  public void openStorage() throws IOException {
+    SyntheticData data = new SyntheticData(SyntheticData.SEED);
+    stored = data.users(users, QUIZZES, FLASHCARDS);
+    created = data.user(users, QUIZZES, FLASHCARDS);
+    storage = BenchmarkStorage.open("cognitionBenchmark.json", mode, stored);
+  }
+
+  @TearDown(Level.Trial)
+  public void deleteStorage() throws IOException {
+    BenchmarkStorage.delete(storage);
+  }
+
+  private User nextUser() {
+    User user = stored.get(next);
+    next = (next + 1) % stored.size();
+    return user;
+  }
+
+  @Benchmark
+  public User read() throws IOException {
+    return storage.read(nextUser().getUsername());
+  }
+
+  @Benchmark
+  public void update() throws IOException {
+    User user = nextUser();
+    storage.update(user.getUsername(), user);
+  }
+
+  @Benchmark
+  public void createAndDelete() throws IOException {
+    storage.create(created);
+    storage.delete(created.getUsername());
+  }
+}
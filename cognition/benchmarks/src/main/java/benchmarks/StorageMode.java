@@ -0,0 +1,41 @@
+package benchmarks;
+
+import json.StorageOptions;
+
+/**
+ * The ways {@link json.CognitionStorage} can persist users that the benchmarks compare.
+ */
+public enum StorageMode {
+  /**
+   * Resident users, rewriting the storage file on every change.
+   */
+  SNAPSHOT,
+
+  /**
+   * Resident users, appending every change to a journal.
+   */
+  JOURNALED,
+
+  /**
+   * No resident users, decoding users from the indexed storage file on every call.
+   */
+  FILE_BACKED,
+
+  /**
+   * Users stored in the embedded key-value store.
+   */
+  KEY_VALUE;
+
+  StorageOptions options() {
+    switch (this) {
+      case JOURNALED:
+        return StorageOptions.journaled();
+      case FILE_BACKED:
+        return StorageOptions.fileBacked();
+      case KEY_VALUE:
+        return StorageOptions.keyValue();
+      default:
+        return new StorageOptions();
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package benchmarks;
+
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+/**
+ * Generates users, quizzes and flashcards for the benchmarks.
+ *
+ * <p>The data is derived from a seed, so every run of a benchmark measures the same data. UUIDs
+ * are drawn from the seeded random generator instead of {@link UUID#randomUUID()}, and usernames
+ * are numbered, so that a benchmark can pick existing users and quizzes by index.
+ */
+final class SyntheticData {
+  static final long SEED = 2103;
+
+  private final Random random;
+  private long sequence;
+
+  SyntheticData(long seed) {
+    random = new Random(seed);
+  }
+
+  String uuid() {
+    return new UUID(random.nextLong(), random.nextLong()).toString();
+  }
+
+  Flashcard flashcard() {
+    long number = sequence++;
+    return new Flashcard(uuid(), "front-" + number, "answer-" + number);
+  }
+
+  List<Flashcard> flashcards(int count) {
+    List<Flashcard> flashcards = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      flashcards.add(flashcard());
+    }
+    return flashcards;
+  }
+
+  /**
+   * Generates a quiz.
+   *
+   * @param flashcards is the number of flashcards in the quiz.
+   * @return a quiz with a random UUID.
+   */
+  Quiz quiz(int flashcards) {
+    long number = sequence++;
+    Quiz quiz = new Quiz(uuid(), "quiz-" + number, "description-" + number);
+    quiz.setFlashcards(flashcards(flashcards));
+    return quiz;
+  }
+
+  List<Quiz> quizzes(int count, int flashcards) {
+    List<Quiz> quizzes = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      quizzes.add(quiz(flashcards));
+    }
+    return quizzes;
+  }
+
+  /**
+   * Generates a user named after its index, so that {@link #username(int)} finds it again.
+   *
+   * @param index      is the number of the user.
+   * @param quizzes    is the number of quizzes of the user.
+   * @param flashcards is the number of flashcards in every quiz.
+   * @return the user.
+   */
+  User user(int index, int quizzes, int flashcards) {
+    User user = new User(username(index), "password-" + index);
+    for (Quiz quiz : quizzes(quizzes, flashcards)) {
+      user.addQuiz(quiz);
+    }
+    return user;
+  }
+
+  /**
+   * Generates users named {@code user0}, {@code user1} and so on.
+   *
+   * @param count      is the number of users.
+   * @param quizzes    is the number of quizzes of every user.
+   * @param flashcards is the number of flashcards in every quiz.
+   * @return the users, in the order of their indexes.
+   */
+  List<User> users(int count, int quizzes, int flashcards) {
+    List<User> users = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      users.add(user(i, quizzes, flashcards));
+    }
+    return users;
+  }
+
+  static String username(int index) {
+    return "user" + index;
+  }
+}
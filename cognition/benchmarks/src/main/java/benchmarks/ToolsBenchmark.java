@@ -0,0 +1,45 @@
+package benchmarks;
+
+import core.tools.Tools;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link Tools#isValidUuid(String)}, which validates every UUID that reaches the model,
+ * for a valid UUID and for strings rejected early and late.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolsBenchmark {
+  // Not constants, so the JIT cannot fold the validation away
+  private String valid = new SyntheticData(SyntheticData.SEED).uuid();
+  private String tooShort = "not-a-uuid";
+  private String missingDashes = valid.replace('-', '0');
+
+  @Benchmark
+  public boolean validUuid() {
+    return Tools.isValidUuid(valid);
+  }
+
+  @Benchmark
+  public boolean tooShortUuid() {
+    return Tools.isValidUuid(tooShort);
+  }
+
+  @Benchmark
+  public boolean uuidWithoutDashes() {
+    return Tools.isValidUuid(missingDashes);
+  }
+}
@@ -0,0 +1,83 @@
+package benchmarks;
+
+import core.Quiz;
+import core.User;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link User#updateQuiz(Quiz)} and {@link User#addQuiz(Quiz)} on users with a growing
+ * number of quizzes.
+ *
+ * <p>{@link #updateQuiz()} replaces a quiz of a user that keeps its size, and is measured per call.
+ * {@link #addQuizzes()} adds every quiz to an empty user, like {@link QuizBenchmark}, since adding
+ * changes the size of the user.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserBenchmark {
+  @Param({"10", "1000", "100000"})
+  private int quizzes;
+
+  private List<Quiz> generated;
+  private User user;
+  private int next;
+
+  /**
+   * Generates the quizzes, and a user holding all of them for {@link #updateQuiz()}. Replacing a
+   * quiz keeps the number of quizzes, so the user is reused for every iteration.
+   */
+  @Setup(Level.Trial)
+  public void generate() {
+    generated = new SyntheticData(SyntheticData.SEED).quizzes(quizzes, 1);
+    user = new User("benchmark", "password");
+    for (Quiz quiz : generated) {
+      user.addQuiz(quiz);
+    }
+  }
+
+  /**
+   * Replaces the quizzes of the user one after the other, so every position in the list of
+   * quizzes is hit.
+   *
+   * @return the changed user.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.AverageTime)
+  public User updateQuiz() {
+    user.updateQuiz(generated.get(next));
+    next = (next + 1) % generated.size();
+    return user;
+  }
+
+  /**
+   * Adds every quiz to a new user.
+   *
+   * @return the filled user.
+   */
+  @Benchmark
+  @BenchmarkMode(Mode.SingleShotTime)
+  @OutputTimeUnit(TimeUnit.MILLISECONDS)
+  public User addQuizzes() {
+    User filled = new User("benchmark", "password");
+    for (Quiz quiz : generated) {
+      filled.addQuiz(quiz);
+    }
+    return filled;
+  }
+}
@@ -0,0 +1,96 @@
+package benchmarks;
+
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import core.UserValidation;
+import core.tools.Tools;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the validation run by every model constructor and deserialization, against the
+ * {@code trim()}, {@code matches(...)} and {@code split("-")} expressions the model used before
+ * {@link core.validation.Validators}. Run it with {@code -prof gc} to compare the bytes allocated
+ * per call, shown as {@code gc.alloc.rate.norm}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidationBenchmark {
+  // Not constants, so the JIT cannot fold the validation away
+  private String username = SyntheticData.username(42);
+  private String password = "  correct horse battery staple  ";
+  private String uuid = new SyntheticData(SyntheticData.SEED).uuid();
+  private String name = " Quiz name ";
+  private String description = "A description of the quiz, with some padding.  ";
+  private String front = "What is the capital of Norway? ";
+
+  @Benchmark
+  public UserValidation username() {
+    return User.isValidUsername(username);
+  }
+
+  @Benchmark
+  public UserValidation usernameBefore() {
+    boolean isOnlyWhitespaces = username.trim().equals("");
+    boolean hasIllegalCharacters = !(username.matches("^[a-zA-Z0-9A-]*"));
+    boolean isValidLength = username.length() >= 3 && username.length() < 36;
+
+    if (isOnlyWhitespaces || !isValidLength) {
+      return UserValidation.ILLEGAL_INPUT_LENGTH;
+    }
+
+    return hasIllegalCharacters ? UserValidation.ILLEGAL_INPUT : UserValidation.OK;
+  }
+
+  @Benchmark
+  public UserValidation password() {
+    return User.isValidPassword(password);
+  }
+
+  @Benchmark
+  public UserValidation passwordBefore() {
+    boolean hasOnlyWhitespaces = password.trim().equals("");
+
+    if (password.length() < 6) {
+      return UserValidation.ILLEGAL_INPUT_LENGTH;
+    }
+
+    return hasOnlyWhitespaces ? UserValidation.ILLEGAL_INPUT : UserValidation.OK;
+  }
+
+  @Benchmark
+  public boolean uuid() {
+    return Tools.isValidUuid(uuid);
+  }
+
+  @Benchmark
+  public boolean uuidBefore() {
+    return uuid != null && uuid.length() == 36 && uuid.split("-").length == 5;
+  }
+
+  @Benchmark
+  public boolean quizFields() {
+    return Quiz.isValidName(name) && Quiz.isValidDescription(description)
+        && Flashcard.isValidFront(front);
+  }
+
+  @Benchmark
+  public boolean quizFieldsBefore() {
+    return !name.trim().equals("") && name.length() >= 1
+        && !description.trim().equals("") && description.length() <= Quiz.MAX_DESCRIPTION_LENGTH
+        && !front.trim().equals("") && front.length() >= 1;
+  }
+}
@@ -9,6 +9,9 @@ import core.tools.Tools;
  * and keep track of the corresponding identifier,
  * in order to not fetch an unnecessary amount of data at once.
  * Thus, we first fetch a CompactQuiz, and then later fetch a complete Quiz on-demand.
+ *
+ * <p>Besides the title and identifier, a CompactQuiz carries the description, the number of
+ * flashcards and the version of the quiz, none of which require the flashcards to be loaded.
  */
 public class CompactQuiz {
   /**
@@ -21,6 +24,21 @@ public class CompactQuiz {
    */
   private String name;
 
+  /**
+   * This description corresponds to the description in {@link core.Quiz}.
+   */
+  private String description;
+
+  /**
+   * The number of flashcards in the corresponding {@link core.Quiz}.
+   */
+  private int flashcardCount;
+
+  /**
+   * This version corresponds to the version in {@link core.Quiz}.
+   */
+  private long version;
+
   /**
    * Initializes a "lighter" version of a Quiz object.
    * See {@link core.CompactQuiz} for more information.
@@ -33,6 +51,39 @@ public class CompactQuiz {
     setName(name);
   }
 
+  /**
+   * Initializes a "lighter" version of a Quiz object, including the details that are shown
+   * without loading the flashcards.
+   *
+   * @param uuid           corresponds to the UUID for a quiz in {@link core.Quiz}
+   * @param name           corresponds to the name for a quiz in {@link core.Quiz}
+   * @param description    corresponds to the description for a quiz in {@link core.Quiz}
+   * @param flashcardCount is the number of flashcards in the quiz
+   * @param version        corresponds to the version for a quiz in {@link core.Quiz}
+   */
+  public CompactQuiz(String uuid, String name, String description, int flashcardCount,
+                     long version) {
+    this(uuid, name);
+
+    if ((description != null && !Quiz.isValidDescription(description)) || flashcardCount < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.description = description;
+    this.flashcardCount = flashcardCount;
+    this.version = version;
+  }
+
+  /**
+   * Initializes a "lighter" version of the given quiz.
+   *
+   * @param quiz is the quiz to describe.
+   */
+  public CompactQuiz(Quiz quiz) {
+    this(quiz.getUuid(), quiz.getName(), quiz.getDescription(), quiz.flashcardCount(),
+        quiz.getVersion());
+  }
+
   private void setUuid(String uuid) {
     if (!Tools.isValidUuid(uuid)) {
       throw new IllegalArgumentException();
@@ -56,4 +107,16 @@ public class CompactQuiz {
   public String getName() {
     return name;
   }
+
+  public String getDescription() {
+    return description;
+  }
+
+  public int getFlashcardCount() {
+    return flashcardCount;
+  }
+
+  public long getVersion() {
+    return version;
+  }
 }
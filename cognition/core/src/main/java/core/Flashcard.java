@@ -1,13 +1,14 @@
 package core;
 
 import core.tools.Tools;
+import core.validation.Validators;
 import java.util.Objects;
 
 /**
  * A single Flashcard in a collection of flashcards, corresponding to a given Quiz.
  */
-public class Flashcard {
-  private String uuid;
+public class Flashcard implements Identifiable {
+  private Identifier uuid;
   private String front;
   private String answer;
 
@@ -33,16 +34,25 @@ public class Flashcard {
   }
 
   public static boolean isValidFront(String front) {
-    Boolean check = front.trim().equals("");
-    return !check && front.length() >= 1;
+    return !Validators.isBlank(front);
   }
 
   public static boolean isValidAnswer(String answer) {
-    Boolean check = answer.trim().equals("");
-    return !check && answer.length() >= 1;
+    return !Validators.isBlank(answer);
   }
 
+  /**
+   * Gets the UUID as a string. The UUID is held in a compact form, so this creates a new string,
+   * and {@link #identifier()} should be used to compare UUIDs.
+   *
+   * @return the UUID, or null if it has not been set.
+   */
   public String getUuid() {
+    return uuid == null ? null : uuid.toString();
+  }
+
+  @Override
+  public Identifier identifier() {
     return uuid;
   }
 
@@ -51,7 +61,7 @@ public class Flashcard {
       throw new IllegalArgumentException();
     }
 
-    this.uuid = uuid;
+    this.uuid = Identifier.valueOf(uuid);
   }
 
   public String getFront() {
@@ -0,0 +1,15 @@
+package core;
+
+/**
+ * An object identified by a UUID that does not change after it is set, so that it can be kept in
+ * a {@link UuidIndex}.
+ */
+interface Identifiable {
+
+  /**
+   * Gets the identifier of the object.
+   *
+   * @return the UUID, or null if it has not been set.
+   */
+  Identifier identifier();
+}
@@ -0,0 +1,143 @@
+package core;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.annotations.JsonAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+import java.io.IOException;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * The UUID of a quiz or flashcard, held as the two longs of the UUID instead of its 36 characters.
+ *
+ * <p>An identifier written exactly as {@link UUID#toString()} writes it, in lower case, is parsed
+ * into its bits, which takes less than half the memory of the string and is compared and hashed
+ * with two long comparisons. Identifiers that pass {@link core.tools.Tools#isValidUuid(String)}
+ * without being such a UUID, such as upper case UUIDs, keep their text, so that every identifier
+ * is written back exactly as it was read. Gson reads and writes an identifier as its string, and
+ * the model classes expose it to Jackson and the rest of the application as a string.
+ */
+@JsonAdapter(Identifier.Adapter.class)
+public final class Identifier {
+  private static final int LENGTH = 36;
+
+  private final long mostSignificantBits;
+  private final long leastSignificantBits;
+  private final String text;
+
+  private Identifier(long mostSignificantBits, long leastSignificantBits, String text) {
+    this.mostSignificantBits = mostSignificantBits;
+    this.leastSignificantBits = leastSignificantBits;
+    this.text = text;
+  }
+
+  /**
+   * Gets the identifier written as a string.
+   *
+   * @param uuid is the string form of the identifier.
+   * @return the identifier, holding the bits of the UUID if it is written in canonical form.
+   */
+  public static Identifier valueOf(String uuid) {
+    Objects.requireNonNull(uuid);
+
+    if (uuid.length() != LENGTH) {
+      return new Identifier(0, 0, uuid);
+    }
+
+    long mostSignificantBits = 0;
+    long leastSignificantBits = 0;
+
+    for (int i = 0; i < LENGTH; i++) {
+      char c = uuid.charAt(i);
+
+      if (i == 8 || i == 13 || i == 18 || i == 23) {
+        if (c != '-') {
+          return new Identifier(0, 0, uuid);
+        }
+
+        continue;
+      }
+
+      int digit = hexDigit(c);
+
+      if (digit < 0) {
+        return new Identifier(0, 0, uuid);
+      }
+
+      if (i < 18) {
+        mostSignificantBits = mostSignificantBits << 4 | digit;
+      } else {
+        leastSignificantBits = leastSignificantBits << 4 | digit;
+      }
+    }
+
+    return new Identifier(mostSignificantBits, leastSignificantBits, null);
+  }
+
+  /**
+   * Gets the value of a lower case hexadecimal digit, the only digits {@link UUID#toString()}
+   * writes.
+   *
+   * @param c is the character.
+   * @return the value of the digit, or -1 if the character is not a lower case hexadecimal digit.
+   */
+  private static int hexDigit(char c) {
+    if (c >= '0' && c <= '9') {
+      return c - '0';
+    }
+
+    if (c >= 'a' && c <= 'f') {
+      return c - 'a' + 10;
+    }
+
+    return -1;
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    Identifier identifier = (Identifier) o;
+    return mostSignificantBits == identifier.mostSignificantBits
+        && leastSignificantBits == identifier.leastSignificantBits
+        && Objects.equals(text, identifier.text);
+  }
+
+  @Override
+  public int hashCode() {
+    return text == null ? Long.hashCode(mostSignificantBits ^ leastSignificantBits)
+        : text.hashCode();
+  }
+
+  /**
+   * Gets the string form of the identifier, which is the string it was read from.
+   *
+   * @return the identifier as a string.
+   */
+  @Override
+  public String toString() {
+    return text == null ? new UUID(mostSignificantBits, leastSignificantBits).toString() : text;
+  }
+
+  /**
+   * Reads and writes identifiers as JSON strings, so that the stored JSON is unchanged.
+   */
+  static final class Adapter extends TypeAdapter<Identifier> {
+    @Override
+    public void write(JsonWriter out, Identifier value) throws IOException {
+      out.value(value.toString());
+    }
+
+    @Override
+    public Identifier read(JsonReader in) throws IOException {
+      return valueOf(in.nextString());
+    }
+  }
+}
@@ -2,20 +2,23 @@ package core;
 
 
 import core.tools.Tools;
-import java.util.ArrayList;
+import core.validation.Validators;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Creates a new Quiz object that stores a name, a description and a list of flashcards.
  */
-public class Quiz {
+public class Quiz implements Identifiable {
   public static final int MAX_DESCRIPTION_LENGTH = 260;
   public static final int MAX_TITLE_LENGTH = 60;
-  private String uuid;
+  private Identifier uuid;
   private String name;
   private String description;
-  private List<Flashcard> flashcards = new ArrayList<>();
+  private UuidIndex<Flashcard> flashcards = new UuidIndex<>();
+  private long version;
 
   public Quiz() {
   }
@@ -35,26 +38,35 @@ public class Quiz {
   }
 
   public static boolean isValidName(String name) {
-    return !name.trim().equals("") && name.length() >= 1;
+    return !Validators.isBlank(name);
   }
 
   public static boolean isValidDescription(String description) {
-    return !description.trim().equals("") && description.length() <= MAX_DESCRIPTION_LENGTH;
+    return description.length() <= MAX_DESCRIPTION_LENGTH && !Validators.isBlank(description);
   }
 
   /**
-   * Loops through all provided flashcards and runs them through the singular
-   * {@link core.Quiz#addFlashcard(Flashcard)} method.
+   * Adds the provided flashcards in order, like {@link core.Quiz#addFlashcard(Flashcard)}, but
+   * installs the new version of the flashcards only once.
    *
    * @param flashcards is the provided list of flashcards
    */
   public void addFlashcards(List<Flashcard> flashcards) {
-    for (Flashcard flashcard : Objects.requireNonNull(flashcards)) {
-      addFlashcard(flashcard);
-    }
+    this.flashcards.addAll(Objects.requireNonNull(flashcards));
   }
 
+  /**
+   * Gets the UUID as a string. The UUID is held in a compact form, so this creates a new string,
+   * and {@link #identifier()} should be used to compare UUIDs.
+   *
+   * @return the UUID, or null if it has not been set.
+   */
   public String getUuid() {
+    return uuid == null ? null : uuid.toString();
+  }
+
+  @Override
+  public Identifier identifier() {
     return uuid;
   }
 
@@ -63,7 +75,7 @@ public class Quiz {
       throw new IllegalArgumentException();
     }
 
-    this.uuid = uuid;
+    this.uuid = Identifier.valueOf(uuid);
   }
 
   /**
@@ -73,11 +85,17 @@ public class Quiz {
    * @param flashcard is a flashcard object
    */
   public void addFlashcard(Flashcard flashcard) {
-    Objects.requireNonNull(flashcard);
+    flashcards.add(Objects.requireNonNull(flashcard));
+  }
 
-    if (!flashcards.contains(flashcard)) {
-      flashcards.add(flashcard);
-    }
+  /**
+   * Finds the flashcard with a UUID, without copying the flashcards.
+   *
+   * @param uuid is the UUID of the flashcard.
+   * @return the flashcard, or an empty optional if the quiz has no flashcard with the UUID.
+   */
+  public Optional<Flashcard> findFlashcard(String uuid) {
+    return Optional.ofNullable(flashcards.get(uuid));
   }
 
   /**
@@ -91,6 +109,18 @@ public class Quiz {
     flashcards.remove(flashcard);
   }
 
+  /**
+   * Replaces the flashcard with the same UUID as the given flashcard, keeping its position.
+   *
+   * @param flashcard is the new version of the flashcard
+   * @throws NoSuchElementException if the quiz has no flashcard with the same UUID
+   */
+  public void replaceFlashcard(Flashcard flashcard) {
+    if (!flashcards.replace(Objects.requireNonNull(flashcard))) {
+      throw new NoSuchElementException();
+    }
+  }
+
   public String getName() {
     return name;
   }
@@ -126,20 +156,45 @@ public class Quiz {
   }
 
   /**
-   * Gets a copy of the flashcards.
+   * Gets the flashcards as an immutable snapshot. The same list is returned until the quiz
+   * changes, and later changes to the quiz do not change it.
    *
-   * @return a copy of the flashcards.
+   * @return the flashcards.
    */
   public List<Flashcard> getFlashcards() {
-    return new ArrayList<>(flashcards);
+    return flashcards.snapshot();
+  }
+
+  /**
+   * Gets the number of flashcards, without building a snapshot of them. Like {@link #identifier()},
+   * this is not a bean getter, so the count is not serialized as a property of the quiz.
+   *
+   * @return the number of flashcards.
+   */
+  public int flashcardCount() {
+    return flashcards.size();
   }
 
 
   /**
    * Sets the list of flashcards to the provided flashcards if the list is not
-   * null.
+   * null. Later flashcards with the UUID of an earlier flashcard are skipped.
    */
   public void setFlashcards(List<Flashcard> flashcards) {
-    this.flashcards = Objects.requireNonNull(flashcards);
+    this.flashcards = new UuidIndex<>(Objects.requireNonNull(flashcards));
+  }
+
+  /**
+   * Gets the version of the quiz in persistent storage. The version is assigned by the storage,
+   * and increases every time the stored quiz changes.
+   *
+   * @return the stored version, or 0 if the quiz has not been stored.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
   }
 }
@@ -1,16 +1,18 @@
 package core;
 
-import java.util.ArrayList;
+import core.validation.Validators;
 import java.util.List;
 import java.util.Objects;
+import java.util.Optional;
 
 /**
  * Class responsible for handling users.
  */
 public class User {
-  private final List<Quiz> quizzes = new ArrayList<>();
+  private UuidIndex<Quiz> quizzes = new UuidIndex<>();
   private String username;
   private String password;
+  private long version;
 
   public User() {
   }
@@ -37,18 +39,14 @@ public class User {
   public static UserValidation isValidUsername(String username) {
     final int maxInputLength = 36;
 
-    // Checks if username is only white space
-    boolean isOnlyWhitespaces = username.trim().equals("");
-    // Checks if username only includes letters and numbers
-    boolean hasIllegalCharacters = !(username.matches("^[a-zA-Z0-9A-]*"));
-    // Checks if username has a length above 3 char and under 36;
-    boolean isValidLength = username.length() >= 3 && username.length() < maxInputLength;
-
-    if (isOnlyWhitespaces || !isValidLength) {
+    // Checks if username has a length above 3 char and under 36, and is not only white space
+    if (username.length() < 3 || username.length() >= maxInputLength
+        || Validators.isBlank(username)) {
       return UserValidation.ILLEGAL_INPUT_LENGTH;
     }
 
-    if (hasIllegalCharacters) {
+    // Checks if username only includes letters, numbers and dashes
+    if (!Validators.isAlphanumericOrDash(username)) {
       return UserValidation.ILLEGAL_INPUT;
     }
 
@@ -64,13 +62,11 @@ public class User {
    *         {@link UserValidation#ILLEGAL_INPUT} if the password contains only whitespaces
    */
   public static UserValidation isValidPassword(String password) {
-    boolean hasOnlyWhitespaces = password.trim().equals("");
-
     if (password.length() < 6) {
       return UserValidation.ILLEGAL_INPUT_LENGTH;
     }
 
-    if (hasOnlyWhitespaces) {
+    if (Validators.isBlank(password)) {
       return UserValidation.ILLEGAL_INPUT;
     }
 
@@ -78,30 +74,43 @@ public class User {
   }
 
   /**
-   * Gets a copy of the quizzes.
+   * Gets the quizzes as an immutable snapshot. The same list is returned until the quizzes
+   * change, and later changes to the user do not change it.
    *
-   * @return a copy of the quizzes.
+   * @return the quizzes.
    */
   public List<Quiz> getQuizzes() {
-    return new ArrayList<>(quizzes);
+    return quizzes.snapshot();
+  }
+
+  /**
+   * Sets the quizzes to the provided quizzes. Later quizzes with the UUID of an earlier quiz are
+   * skipped.
+   *
+   * @param quizzes are the new quizzes.
+   */
+  public void setQuizzes(List<Quiz> quizzes) {
+    this.quizzes = new UuidIndex<>(Objects.requireNonNull(quizzes));
+  }
+
+  /**
+   * Finds the quiz with a UUID, without copying the quizzes.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the quiz, or an empty optional if the user has no quiz with the UUID.
+   */
+  public Optional<Quiz> findQuiz(String uuid) {
+    return Optional.ofNullable(quizzes.get(uuid));
   }
 
   /**
    * Update quiz. Takes in a quiz with id equal to one of the existing quizzes,
-   * and interchanges them.
+   * and interchanges them, keeping the position of the existing quiz.
    *
    * @param updatedQuiz updated version of quiz
    */
   public void updateQuiz(Quiz updatedQuiz) {
-    Objects.requireNonNull(updatedQuiz);
-    for (int i = 0; i < quizzes.size(); i++) {
-      Quiz quiz = quizzes.get(i);
-
-      if (quiz.getUuid().equals(updatedQuiz.getUuid())) {
-        quizzes.remove(quiz);
-        quizzes.add(updatedQuiz);
-      }
-    }
+    quizzes.replace(Objects.requireNonNull(updatedQuiz));
   }
 
   public String getUsername() {
@@ -139,16 +148,26 @@ public class User {
   }
 
   /**
-   * Adds new quiz to quizzes field.
+   * Gets the version of the user in persistent storage. The version is assigned by the storage,
+   * and increases every time the stored user changes.
+   *
+   * @return the stored version, or 0 if the user has not been stored.
+   */
+  public long getVersion() {
+    return version;
+  }
+
+  public void setVersion(long version) {
+    this.version = version;
+  }
+
+  /**
+   * Adds new quiz to quizzes field, unless the user already has a quiz with the same UUID.
    *
    * @param quiz new quiz.
    */
   public void addQuiz(Quiz quiz) {
-    Objects.requireNonNull(quiz);
-
-    if (!quizzes.contains(quiz)) {
-      quizzes.add(quiz);
-    }
+    quizzes.add(Objects.requireNonNull(quiz));
   }
 
   /**
@@ -157,13 +176,7 @@ public class User {
    * @param quiz the quiz to remove
    */
   public void removeQuiz(Quiz quiz) {
-    Objects.requireNonNull(quiz);
-    for (int i = 0; i < quizzes.size(); i++) {
-      if (quizzes.get(i).getUuid().equals(quiz.getUuid())) {
-        quizzes.remove(i);
-        return;
-      }
-    }
+    quizzes.removeUuid(Objects.requireNonNull(quiz).getUuid());
   }
 
   @Override
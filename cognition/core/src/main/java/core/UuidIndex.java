@@ -0,0 +1,279 @@
+package core;
+
+import java.util.AbstractCollection;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A collection of objects keyed by their UUID, which keeps the order the objects were added in.
+ *
+ * <p>Adding, finding, replacing and removing an object by its UUID takes constant time, whereas
+ * a list has to be searched from the start. Iteration returns the objects in insertion order, and
+ * a replaced object keeps the position of the object it replaced, so the collection serializes to
+ * the same JSON array as the list it replaces. Gson creates it with the no-arg constructor and
+ * fills it with {@link #add(Identifiable)} when deserializing, which keeps the first of several
+ * objects with the same UUID.
+ *
+ * <p>The objects are held in copy-on-write versions. Every change installs a new immutable
+ * version, which {@link #snapshot()} returns without copying, so readers on any thread iterate a
+ * consistent list without locks while the collection is changed. Versions share their array:
+ * adding writes to a slot past the end of every installed version, so it takes amortized constant
+ * time, and only replacing and removing copy the array. Changes are synchronized on the
+ * collection. Lookups by UUID use a concurrent map that is changed together with the versions.
+ *
+ * @param <T> is the type of the objects.
+ */
+final class UuidIndex<T extends Identifiable> extends AbstractCollection<T> {
+  private final Map<Identifier, T> elements = new ConcurrentHashMap<>();
+  private volatile Version<T> version = new Version<>(new Object[0], 0);
+
+  UuidIndex() {
+  }
+
+  /**
+   * Initializes an index holding the given objects, in order, skipping objects with a UUID that
+   * was already added.
+   *
+   * @param elements are the objects to add.
+   */
+  UuidIndex(Collection<? extends T> elements) {
+    addAll(elements);
+  }
+
+  /**
+   * Adds an object unless an object with the same UUID is already present.
+   *
+   * @param element is the object to add.
+   * @return true if the object was added.
+   */
+  @Override
+  public synchronized boolean add(T element) {
+    if (elements.putIfAbsent(Objects.requireNonNull(element).identifier(), element) != null) {
+      return false;
+    }
+
+    version = version.appended(element);
+    return true;
+  }
+
+  /**
+   * Adds the objects in order, skipping objects with a UUID that is already present. The new
+   * version is installed once, however many objects are added.
+   *
+   * @param added are the objects to add.
+   * @return true if any object was added.
+   */
+  @Override
+  public synchronized boolean addAll(Collection<? extends T> added) {
+    Version<T> current = version;
+    boolean changed = false;
+
+    try {
+      for (T element : added) {
+        if (elements.putIfAbsent(Objects.requireNonNull(element).identifier(), element) == null) {
+          current = current.appended(element);
+          changed = true;
+        }
+      }
+    } finally {
+      // Objects added before a null object stay added
+      version = current;
+    }
+
+    return changed;
+  }
+
+  /**
+   * Gets the object with a UUID.
+   *
+   * @param uuid is the UUID of the object.
+   * @return the object, or null if there is no object with the UUID.
+   */
+  T get(String uuid) {
+    return uuid == null ? null : elements.get(Identifier.valueOf(uuid));
+  }
+
+  /**
+   * Replaces the object with the same UUID as the given object, keeping its position.
+   *
+   * @param element is the new version of the object.
+   * @return true if an object was replaced, false if there is no object with the UUID.
+   */
+  synchronized boolean replace(T element) {
+    T previous = elements.replace(Objects.requireNonNull(element).identifier(), element);
+
+    if (previous == null) {
+      return false;
+    }
+
+    version = version.replaced(previous, element);
+    return true;
+  }
+
+  /**
+   * Removes the object with a UUID.
+   *
+   * @param uuid is the UUID of the object.
+   * @return the removed object, or null if there is no object with the UUID.
+   */
+  T removeUuid(String uuid) {
+    return uuid == null ? null : remove(Identifier.valueOf(uuid));
+  }
+
+  private synchronized T remove(Identifier identifier) {
+    T removed = elements.remove(identifier);
+
+    if (removed != null) {
+      version = version.without(removed);
+    }
+
+    return removed;
+  }
+
+  /**
+   * Gets the objects as an immutable list, in order. The list is the installed version, so
+   * repeated calls return the same list until the collection changes.
+   *
+   * @return the objects.
+   */
+  List<T> snapshot() {
+    return version;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return o instanceof Identifiable && elements.containsKey(((Identifiable) o).identifier());
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    return o instanceof Identifiable && remove(((Identifiable) o).identifier()) != null;
+  }
+
+  /**
+   * Iterates over the version installed when the iterator is created, so the iteration is not
+   * affected by later changes. Removing through the iterator removes the object from the
+   * collection.
+   *
+   * @return an iterator over the objects, in order.
+   */
+  @Override
+  public Iterator<T> iterator() {
+    Iterator<T> values = version.iterator();
+
+    return new Iterator<>() {
+      private T last;
+
+      @Override
+      public boolean hasNext() {
+        return values.hasNext();
+      }
+
+      @Override
+      public T next() {
+        last = values.next();
+        return last;
+      }
+
+      @Override
+      public void remove() {
+        if (last == null) {
+          throw new IllegalStateException();
+        }
+
+        UuidIndex.this.remove(last.identifier());
+        last = null;
+      }
+    };
+  }
+
+  @Override
+  public int size() {
+    return version.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    elements.clear();
+    version = new Version<>(new Object[0], 0);
+  }
+
+  /**
+   * An immutable version of the objects. A version only reads the first {@code size} slots of its
+   * array, which are never written again, so later versions can append to the same array.
+   *
+   * @param <T> is the type of the objects.
+   */
+  private static final class Version<T> extends AbstractList<T> implements RandomAccess {
+    private final Object[] array;
+    private final int size;
+
+    private Version(Object[] array, int size) {
+      this.array = array;
+      this.size = size;
+    }
+
+    /**
+     * Creates the version with an object added at the end. Must only be called on the installed
+     * version, or on a version derived from it that is about to be installed, since the slot
+     * after the end is written.
+     *
+     * @param element is the object to add.
+     * @return the new version.
+     */
+    private Version<T> appended(T element) {
+      Object[] target = array;
+
+      if (size == target.length) {
+        target = Arrays.copyOf(array, Math.max(4, size + (size >> 1)));
+      }
+
+      target[size] = element;
+      return new Version<>(target, size + 1);
+    }
+
+    private Version<T> replaced(T previous, T element) {
+      Object[] target = Arrays.copyOf(array, size);
+      target[position(previous)] = element;
+      return new Version<>(target, size);
+    }
+
+    private Version<T> without(T removed) {
+      int index = position(removed);
+      Object[] target = new Object[size - 1];
+      System.arraycopy(array, 0, target, 0, index);
+      System.arraycopy(array, index + 1, target, index, size - index - 1);
+      return new Version<>(target, size - 1);
+    }
+
+    private int position(T element) {
+      for (int i = 0; i < size; i++) {
+        // Objects are compared by identity, as the index holds one object per UUID
+        if (array[i] == element) {
+          return i;
+        }
+      }
+
+      throw new NoSuchElementException();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int index) {
+      return (T) array[Objects.checkIndex(index, size)];
+    }
+
+    @Override
+    public int size() {
+      return size;
+    }
+  }
+}
@@ -1,5 +1,6 @@
 package core.tools;
 
+import core.validation.Validators;
 import java.util.UUID;
 
 /**
@@ -27,6 +28,6 @@ public class Tools {
    * @return a boolean determining if the UUID is valid.
    */
   public static boolean isValidUuid(String uuid) {
-    return uuid != null && uuid.length() == 36 && uuid.split("-").length == 5;
+    return Validators.isUuidShaped(uuid);
   }
 }
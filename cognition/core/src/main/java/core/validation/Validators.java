@@ -0,0 +1,85 @@
+package core.validation;
+
+/**
+ * Validates the text of usernames, passwords, UUIDs and quiz fields.
+ *
+ * <p>Validation runs every time a model object is constructed or deserialized, so each check
+ * scans the characters of the string once, stops at the first character that decides the result
+ * and allocates nothing. The checks give the same results as the {@code trim()},
+ * {@code matches(...)} and {@code split("-")} expressions they replace.
+ */
+public final class Validators {
+  private static final int UUID_LENGTH = 36;
+  private static final int UUID_DASHES = 4;
+
+  private Validators() {
+  }
+
+  /**
+   * Checks if a string is empty or only holds whitespace, which is any character up to and
+   * including the space, the same characters {@link String#trim()} removes.
+   *
+   * @param text is the string to check.
+   * @return true if {@code text.trim()} is empty.
+   * @throws NullPointerException if the string is null.
+   */
+  public static boolean isBlank(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      if (text.charAt(i) > ' ') {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks if a string only holds ASCII letters, digits and dashes, which are the characters
+   * allowed in a username.
+   *
+   * @param text is the string to check.
+   * @return true if every character is a letter, digit or dash, including if the string is empty.
+   * @throws NullPointerException if the string is null.
+   */
+  public static boolean isAlphanumericOrDash(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      char c = text.charAt(i);
+
+      if (!((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+          || c == '-')) {
+        return false;
+      }
+    }
+
+    return true;
+  }
+
+  /**
+   * Checks if a string has the shape of a UUID, which is 36 characters split into five parts by
+   * dashes. Like {@code split("-")}, dashes after the last other character do not start a part.
+   *
+   * @param text is the string to check.
+   * @return true if the string has the shape of a UUID, false if it does not or is null.
+   */
+  public static boolean isUuidShaped(String text) {
+    if (text == null || text.length() != UUID_LENGTH) {
+      return false;
+    }
+
+    int dashes = 0;
+    int dashesBeforeLastPart = -1;
+
+    for (int i = 0; i < UUID_LENGTH; i++) {
+      if (text.charAt(i) == '-') {
+        dashes++;
+      } else if (dashes > UUID_DASHES) {
+        // This character starts a sixth part
+        return false;
+      } else {
+        dashesBeforeLastPart = dashes;
+      }
+    }
+
+    return dashesBeforeLastPart == UUID_DASHES;
+  }
+}
@@ -0,0 +1,380 @@
+package json;
+
+import core.CompactQuiz;
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.UUID;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stores users in a compact, length-prefixed binary format.
+ *
+ * <p>A file starts with a magic number and a format version, followed by one record per user and
+ * an end marker. Each record is prefixed by its length, so records can be skipped or located
+ * without decoding them. Strings are stored as a length followed by their UTF-8 bytes, and UUIDs
+ * in canonical form as two longs. The headers of all quizzes of a user come before any of their
+ * flashcards, so {@link #decodeQuizHeaders} stops reading before the first flashcard. The layout
+ * of a record is:
+ *
+ * <pre>
+ * user       = username password long:version int:quizCount header* flashcards*
+ * header     = uuid name description long:version int:flashcardCount
+ * flashcards = flashcard* (flashcardCount of the corresponding header)
+ * flashcard  = uuid front answer
+ * string     = int:byteCount byte* (byteCount is -1 for null)
+ * uuid       = 0 long:mostSignificantBits long:leastSignificantBits | 1 string | 2 (null)
+ * </pre>
+ *
+ * <p>Identifiers that are not canonical UUIDs are stored as strings, so every stored value is
+ * read back exactly. Users are decoded through the constructors of the model classes, so a stored
+ * value that violates their constraints cannot be read.
+ */
+public class BinaryCodec implements StorageCodec {
+  private static final int MAGIC = 0x434f4742;
+  private static final int VERSION = 1;
+  private static final int END = -1;
+  private static final int HEADER_LENGTH = 8;
+
+  private static final byte UUID_BITS = 0;
+  private static final byte UUID_STRING = 1;
+  private static final byte UUID_NULL = 2;
+
+  @Override
+  public void write(OutputStream output, Iterable<User> users, ElementListener listener)
+      throws IOException {
+    DataOutputStream data = new DataOutputStream(output);
+    ByteArrayOutputStream record = new ByteArrayOutputStream(256);
+    DataOutputStream recordData = new DataOutputStream(record);
+
+    data.writeInt(MAGIC);
+    data.writeInt(VERSION);
+    long position = HEADER_LENGTH;
+
+    for (User user : users) {
+      record.reset();
+      writeUser(recordData, user);
+
+      data.writeInt(record.size());
+      record.writeTo(data);
+      listener.element(user.getUsername(), position + Integer.BYTES, record.size());
+      position += Integer.BYTES + record.size();
+    }
+
+    data.writeInt(END);
+    data.flush();
+  }
+
+  @Override
+  public Stream<User> read(InputStream input) throws IOException {
+    DataInputStream data = new DataInputStream(
+        input instanceof BufferedInputStream ? input : new BufferedInputStream(input));
+
+    try {
+      readHeader(data);
+    } catch (IOException e) {
+      data.close();
+      throw e;
+    }
+
+    Iterator<User> iterator = new Iterator<>() {
+      private ByteBuffer next;
+      private boolean finished = false;
+
+      @Override
+      public boolean hasNext() {
+        if (next == null && !finished) {
+          try {
+            int length = data.readInt();
+
+            if (length == END) {
+              finished = true;
+            } else if (length < 0) {
+              throw new IOException("A stored user could not be read.");
+            } else {
+              byte[] bytes = new byte[length];
+              data.readFully(bytes);
+              next = ByteBuffer.wrap(bytes);
+            }
+          } catch (EOFException e) {
+            throw new UncheckedIOException(
+                new IOException("The storage does not contain a complete list of users.", e));
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }
+
+        return next != null;
+      }
+
+      @Override
+      public User next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        ByteBuffer element = next;
+        next = null;
+
+        try {
+          return decode(element);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+    };
+
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(iterator, Spliterator.ORDERED | Spliterator.NONNULL),
+        false
+    ).onClose(() -> {
+      try {
+        data.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  @Override
+  public User decode(ByteBuffer element) throws IOException {
+    try {
+      User user = new User(readString(element), readString(element));
+      user.setVersion(element.getLong());
+      int quizCount = readCount(element);
+      List<Quiz> quizzes = new ArrayList<>(quizCount);
+      int[] flashcardCounts = new int[quizCount];
+
+      for (int i = 0; i < quizCount; i++) {
+        Quiz quiz = new Quiz(readUuid(element), readString(element), readString(element));
+        quiz.setVersion(element.getLong());
+        flashcardCounts[i] = readCount(element);
+        quizzes.add(quiz);
+      }
+
+      for (int i = 0; i < quizCount; i++) {
+        Quiz quiz = quizzes.get(i);
+
+        for (int j = 0; j < flashcardCounts[i]; j++) {
+          quiz.addFlashcard(
+              new Flashcard(readUuid(element), readString(element), readString(element)));
+        }
+
+        user.addQuiz(quiz);
+      }
+
+      if (element.hasRemaining()) {
+        throw new IOException("A stored user could not be read.");
+      }
+
+      return user;
+    } catch (BufferUnderflowException | IllegalArgumentException | NullPointerException e) {
+      throw new IOException("A stored user could not be read.", e);
+    }
+  }
+
+  /**
+   * Decodes the quiz headers of a record, without reading any of its flashcards.
+   */
+  @Override
+  public List<CompactQuiz> decodeQuizHeaders(ByteBuffer element, String username)
+      throws IOException {
+    try {
+      if (!username.equals(readString(element))) {
+        throw new IOException("The stored user is not " + username + ".");
+      }
+
+      // The password and the version of the user
+      readString(element);
+      element.getLong();
+
+      int quizCount = readCount(element);
+      List<CompactQuiz> headers = new ArrayList<>(quizCount);
+
+      for (int i = 0; i < quizCount; i++) {
+        String uuid = readUuid(element);
+        String name = readString(element);
+        String description = readString(element);
+        long version = element.getLong();
+        headers.add(new CompactQuiz(uuid, name, description, readCount(element), version));
+      }
+
+      return headers;
+    } catch (BufferUnderflowException | IllegalArgumentException | NullPointerException e) {
+      throw new IOException("A stored user could not be read.", e);
+    }
+  }
+
+  @Override
+  public void scan(InputStream input, ElementListener listener) throws IOException {
+    DataInputStream data = new DataInputStream(input);
+    readHeader(data);
+    long position = HEADER_LENGTH;
+
+    try {
+      int length;
+      while ((length = data.readInt()) != END) {
+        if (length < 0) {
+          throw new IOException("A stored user could not be read.");
+        }
+
+        byte[] bytes = new byte[length];
+        data.readFully(bytes);
+        // The username is the first value of a record
+        String username = readString(ByteBuffer.wrap(bytes));
+        listener.element(username, position + Integer.BYTES, length);
+        position += Integer.BYTES + length;
+      }
+    } catch (EOFException | BufferUnderflowException e) {
+      throw new IOException("The storage does not contain a complete list of users.", e);
+    }
+  }
+
+  private static void readHeader(DataInputStream data) throws IOException {
+    try {
+      if (data.readInt() != MAGIC || data.readInt() != VERSION) {
+        throw new IOException("The storage does not contain a list of users.");
+      }
+    } catch (EOFException e) {
+      throw new IOException("The storage does not contain a list of users.", e);
+    }
+  }
+
+  private static void writeUser(DataOutputStream output, User user) throws IOException {
+    writeString(output, user.getUsername());
+    writeString(output, user.getPassword());
+    output.writeLong(user.getVersion());
+
+    List<Quiz> quizzes = user.getQuizzes();
+    output.writeInt(quizzes.size());
+
+    List<List<Flashcard>> flashcardLists = new ArrayList<>(quizzes.size());
+
+    for (Quiz quiz : quizzes) {
+      writeUuid(output, quiz.getUuid());
+      writeString(output, quiz.getName());
+      writeString(output, quiz.getDescription());
+      output.writeLong(quiz.getVersion());
+
+      List<Flashcard> flashcards = quiz.getFlashcards();
+      output.writeInt(flashcards.size());
+      flashcardLists.add(flashcards);
+    }
+
+    for (List<Flashcard> flashcards : flashcardLists) {
+      for (Flashcard flashcard : flashcards) {
+        writeUuid(output, flashcard.getUuid());
+        writeString(output, flashcard.getFront());
+        writeString(output, flashcard.getAnswer());
+      }
+    }
+  }
+
+  private static void writeString(DataOutputStream output, String string) throws IOException {
+    if (string == null) {
+      output.writeInt(-1);
+      return;
+    }
+
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static String readString(ByteBuffer input) throws IOException {
+    int length = input.getInt();
+
+    if (length == -1) {
+      return null;
+    }
+
+    if (length < 0 || length > input.remaining()) {
+      throw new IOException("A stored user could not be read.");
+    }
+
+    if (!input.hasArray()) {
+      byte[] bytes = new byte[length];
+      input.get(bytes);
+      return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    String string = new String(input.array(), input.arrayOffset() + input.position(), length,
+        StandardCharsets.UTF_8);
+    input.position(input.position() + length);
+    return string;
+  }
+
+  private static int readCount(ByteBuffer input) throws IOException {
+    int count = input.getInt();
+
+    // Every element takes at least one byte, which bounds the count of a valid record
+    if (count < 0 || count > input.remaining()) {
+      throw new IOException("A stored user could not be read.");
+    }
+
+    return count;
+  }
+
+  private static void writeUuid(DataOutputStream output, String uuid) throws IOException {
+    if (uuid == null) {
+      output.writeByte(UUID_NULL);
+      return;
+    }
+
+    UUID parsed = parseCanonicalUuid(uuid);
+
+    if (parsed == null) {
+      output.writeByte(UUID_STRING);
+      writeString(output, uuid);
+    } else {
+      output.writeByte(UUID_BITS);
+      output.writeLong(parsed.getMostSignificantBits());
+      output.writeLong(parsed.getLeastSignificantBits());
+    }
+  }
+
+  private static String readUuid(ByteBuffer input) throws IOException {
+    byte type = input.get();
+
+    return switch (type) {
+      case UUID_BITS -> new UUID(input.getLong(), input.getLong()).toString();
+      case UUID_STRING -> readString(input);
+      case UUID_NULL -> null;
+      default -> throw new IOException("A stored user could not be read.");
+    };
+  }
+
+  /**
+   * Parses a UUID, if it is written exactly as {@link UUID#toString()} would write it.
+   *
+   * @param uuid is the identifier to parse.
+   * @return the parsed UUID, or null if the identifier would not be read back unchanged.
+   */
+  private static UUID parseCanonicalUuid(String uuid) {
+    try {
+      UUID parsed = UUID.fromString(uuid);
+      return parsed.toString().equals(uuid) ? parsed : null;
+    } catch (IllegalArgumentException e) {
+      return null;
+    }
+  }
+}
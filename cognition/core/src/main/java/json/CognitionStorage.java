@@ -1,41 +1,128 @@
 package json;
 
 import com.google.gson.Gson;
-import com.google.gson.JsonIOException;
-import com.google.gson.reflect.TypeToken;
-import com.google.gson.stream.JsonReader;
+import core.CompactQuiz;
+import core.Flashcard;
+import core.Quiz;
 import core.User;
-import java.io.File;
-import java.io.FileWriter;
+import java.io.Closeable;
 import java.io.IOException;
-import java.io.StringReader;
-import java.nio.charset.StandardCharsets;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Objects;
-import java.util.function.BiConsumer;
+import java.util.Optional;
+import java.util.concurrent.locks.Lock;
+import java.util.function.LongConsumer;
+import java.util.function.UnaryOperator;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * CRUD (Create, Read, Update and Delete) operations for all local storage.
+ *
+ * <p>The storage file is read once, on first use, into a resident {@link UserRepository}.
+ * Subsequent reads are served from memory, and lookups by username or quiz UUID do not
+ * depend on the amount of stored data. Changes are applied in memory and then written to
+ * the storage file by a {@link StorageWriter}, which batches concurrent changes into a single
+ * atomic snapshot write. The mutating method waits for that write unless
+ * {@link StorageOptions#isWriteBehind()} is set.
+ *
+ * <p>If {@link StorageOptions#isJournaled()} is set, changes are instead appended to a
+ * {@link StorageJournal} next to the storage file, and the storage file is only rewritten when
+ * the journal is compacted. Any journal left on disk is replayed when the storage is loaded.
+ *
+ * <p>If {@link StorageOptions#isResident()} is not set, no users are kept in memory. Every call
+ * then decodes users from the storage file as a stream, and lookups stop as soon as a match is
+ * found. Lookups by username or quiz UUID use a {@link SnapshotIndex} to decode only the
+ * requested user. The index is rewritten with every snapshot, and rebuilt from the storage file
+ * if it is missing or describes another version of the file.
+ * With {@link StorageOptions#isMemoryMapped()}, the storage file is read through a
+ * {@link MappedSnapshot} instead of being copied into the heap on every call.
+ *
+ * <p>If {@link StorageOptions#getShardCount()} is positive, the resident users are stored in
+ * {@link StorageShards} instead of the storage file, and a change only rewrites the shard of the
+ * changed user. An existing storage file is split into shards the first time it is loaded.
+ *
+ * <p>The resident users act as a cache of the parsed storage file. Every read compares the
+ * storage file with the {@link FileStamp} of the version that was last loaded or written, and
+ * reloads the users if someone else changed the file, unless
+ * {@link StorageOptions#isDetectingExternalChanges()} is disabled. Reads of an unchanged file do
+ * not parse anything, and once the file was written more than a moment ago, they only look up
+ * its metadata. A change is counted as pending from before it is applied until a snapshot
+ * containing it is written, and the users are never reloaded while a change is pending, so a
+ * reload cannot drop a change that was applied in memory but not yet written.
+ *
+ * <p>The users are held by the {@link StorageBackend} selected by the options, which is a
+ * {@link ResidentBackend}, a {@link FileBackend} without a resident repository, or a
+ * {@link KeyValueBackend} for the key-value store. This class locks the users and collects the
+ * statistics, and leaves reading and persisting the users to the backend.
+ *
+ * <p>Operations on a single user hold a lock selected by the username from a
+ * {@link StripedLock}. Reads of a user share the lock, changes to the same user are serialized,
+ * and changes to different users proceed in parallel. {@link #modify} uses this to read, change
+ * and write a user atomically.
+ *
+ * <p>If {@link StorageOptions#isKeyValue()} is set, users are stored in {@link KeyValueUsers}, an
+ * embedded log-structured key-value store in a directory next to the storage file. Changes are
+ * appended to its log, and lookups by username or quiz UUID read a small part of the store, so
+ * neither depends on the number of stored users. Users in an existing storage file are moved into
+ * the store when it is created.
+ *
+ * <p>Every stored user and quiz carries a version, which increases whenever it changes.
+ * {@link #update(String, User, long)} only stores a change that is based on the current version,
+ * so clients can detect concurrent changes without holding locks between requests.
+ *
+ * <p>Journal records and snapshots carry CRC32C checksums. When the storage is loaded, the
+ * snapshot is verified and the journal is replayed up to its last valid record, so a crash in the
+ * middle of a write costs at most the record being written. {@link #getRecoveryReport()} tells
+ * how long this took and whether anything was discarded. With
+ * {@link StorageOptions#isHeapImage()}, the resident users are loaded from a binary
+ * {@link HeapImage} of the latest snapshot, when there is one, instead of decoding the storage
+ * file.
+ *
+ * <p>{@link #getStatistics()} counts the calls of every kind of operation together with their
+ * latencies, and the bytes and time spent reading, writing and syncing the stored files. With
+ * {@link StorageOptions#isMonitored()}, the statistics are also registered as an MXBean named
+ * {@code cognition:type=CognitionStorage,name=<storage file>} until the storage is closed.
+ *
+ * <p>{@link #modifyQuiz} and the flashcard operations built on it change a single quiz. The
+ * change is recorded as the new state of that quiz alone, so the journal entry and the copying
+ * grow with the size of the quiz, not with the account of its owner.
  */
-public class CognitionStorage {
+public class CognitionStorage implements Closeable {
+  private static final int LOCK_STRIPES = 64;
+  private static final int IMPORT_BATCH_SIZE = 1000;
 
   private final Gson gson = new Gson();
+  private final StorageOptions options;
   private Path storagePath;
+  private volatile StorageBackend backend;
+  private final StripedLock userLocks = new StripedLock(LOCK_STRIPES);
+  private final StorageStatistics statistics = new StorageStatistics(this::storedBytes);
+  private ObjectName managementName;
 
   /**
    * Creates a file if it does not already exist with the filename given.
    *
    * @param filename is the name of the file to be created.
-   * @throws IOException if an error occurs while directories for local storage. A
-   *                     potential exception is handled in the frontend.
+   * @param options  configures how changes are persisted. The options are copied, so
+   *                 changing them afterwards has no effect on this storage.
+   * @throws IOException              if an error occurs while directories for local storage. A
+   *                                  potential exception is handled in the frontend.
+   * @throws IllegalArgumentException if the options cannot be combined.
    */
-  public CognitionStorage(String filename) throws IOException {
+  public CognitionStorage(String filename, StorageOptions options) throws IOException {
     Objects.requireNonNull(filename);
+    this.options = Objects.requireNonNull(options).copy();
 
     setStoragePath(filename);
 
@@ -43,148 +130,467 @@ public class CognitionStorage {
     createDirectoryIfNotExists();
   }
 
+  /**
+   * Creates a file if it does not already exist with the filename given. Changes
+   * are written to the file before the mutating method returns.
+   *
+   * @param filename is the name of the file to be created.
+   * @throws IOException if an error occurs while directories for local storage. A
+   *                     potential exception is handled in the frontend.
+   */
+  public CognitionStorage(String filename) throws IOException {
+    this(filename, new StorageOptions());
+  }
+
   public CognitionStorage() throws IOException {
     this("cognition.json");
   }
 
   /**
-   * Reads all users from storage and deserializes the JSON array to a list of
-   * User objects.
+   * Gets all users from storage.
    *
    * @return a List of User objects
    * @throws IOException if an error occurred when trying to read from the storage
    *                     file
    */
   public List<User> readUsers() throws IOException {
-    if (isEmpty()) {
-      return new ArrayList<>();
-    }
-
+    long start = System.nanoTime();
     try {
-      return getGson().fromJson(
-          /* Initialize JsonReader */
-          new JsonReader(new StringReader(
-              /* StringReader parses the String data loaded from file. */
-              Files.readString(getStoragePath(), StandardCharsets.UTF_8)
-          )),
-          new TypeToken<List<User>>() {
-          }.getType());
-    } catch (IOException e) {
-      throw new IOException(
-          getStoragePath()
-              + " is present, but an error occurred when reading users from user storage.");
+      return backend.findAll();
+    } finally {
+      statistics.reads().recordSince(start);
     }
   }
 
   /**
-   * Writes a list of User objects to local storage.
+   * Streams all users from storage, one at a time. Without a resident repository,
+   * users are decoded from the storage file as the stream is consumed, so only
+   * the current user is held in memory. The key-value store is read a page of
+   * users at a time. The stream must be closed.
    *
-   * @param users is a list of User objects.
-   * @throws IOException     if an error occurred when trying to write to local
-   *                         storage.
-   * @throws JsonIOException if an error occurred when serializing the JSON
-   *                         content.
+   * @return a sequential stream of User objects, in the order they are stored
+   * @throws IOException if an error occurred when trying to read from the storage
+   *                     file
    */
-  private void writeToJson(List<User> users) throws JsonIOException, IOException {
-    Objects.requireNonNull(users);
-
-    try (FileWriter writer = new FileWriter(
-        String.valueOf(getStoragePath()), StandardCharsets.UTF_8)) {
-      try {
-        getGson().toJson(users, writer);
-      } catch (JsonIOException e) {
-        writer.flush();
-        writer.close();
-        throw new JsonIOException("An error occurred when serializing the JSON content.");
-      }
-
-      writer.flush();
-    }
+  public Stream<User> streamUsers() throws IOException {
+    return backend.stream();
   }
 
+
   /**
-   * Reads all users from file, appends the provided user, and then overwrites
-   * local storage file. Users are stored in an array.
+   * Appends the provided user to storage, and persists the change. Users are
+   * stored in an array.
    *
    * @param instance is the user that should be written to file
-   * @throws IOException if there is an error reading from local storage
+   * @throws IOException              if there is an error reading from or writing to local
+   *                                  storage
+   * @throws IllegalArgumentException if a user with the same username already exists, or
+   *                                  another user owns one of its quizzes
    */
   public void create(User instance) throws IOException {
     Objects.requireNonNull(instance);
 
-    List<User> users = readUsers();
-
-    if (users.size() == 0) {
-      // To maintain consistency in the dataset, a single user is also stored in a list
-      writeToJson(List.of(instance));
-    } else {
-      users.add(instance);
-      writeToJson(users);
+    long start = System.nanoTime();
+    try {
+      mutateLocked(Mutation.create(instance), instance.getUsername());
+    } finally {
+      statistics.creates().recordSince(start);
     }
   }
 
   /**
    * Takes in a username as a parameter and returns the corresponding user
-   * from local storage, if there is a match.
+   * from storage, if there is a match.
    *
    * @param username is the identifier of the corresponding User object in storage
    * @return the corresponding User object
-   * @throws IOException            if the file path in readUsers() is invalid
-   * @throws NoSuchElementException if there are no users in storage
+   * @throws IOException            if the storage file could not be read
+   * @throws NoSuchElementException if there is no user with the given username
    */
   public User read(String username) throws IOException, NoSuchElementException {
     Objects.requireNonNull(username);
 
-    List<User> users = readUsers();
+    long start = System.nanoTime();
+    try {
+      return lookup(username);
+    } finally {
+      statistics.reads().recordSince(start);
+    }
+  }
+
+  private User lookup(String username) throws IOException, NoSuchElementException {
+    Lock lock = userLocks.readLock(username);
+    lock.lock();
+    try {
+      return backend.find(username);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Determines whether a user with the given username exists in storage.
+   *
+   * @param username is the identifier of the user
+   * @return true if the user exists
+   * @throws IOException if the storage file could not be read
+   */
+  public boolean exists(String username) throws IOException {
+    Objects.requireNonNull(username);
+
+    long start = System.nanoTime();
+    Lock lock = userLocks.readLock(username);
+    lock.lock();
+    try {
+      return backend.contains(username);
+    } finally {
+      lock.unlock();
+      statistics.reads().recordSince(start);
+    }
+  }
+
+  /**
+   * Describes the quizzes of a user without loading their flashcards, for
+   * listings that only show the quizzes. The stored flashcards are skipped by
+   * {@link StorageCodec#decodeQuizHeaders}, so the cost depends on the number of
+   * quizzes rather than on the size of their flashcards.
+   *
+   * @param username is the identifier of the user
+   * @return the quizzes of the user, in the order they are stored
+   * @throws IOException            if the storage file could not be read
+   * @throws NoSuchElementException if there is no user with the given username
+   */
+  public List<CompactQuiz> readQuizHeaders(String username)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(username);
 
-    if (users.size() == 0) {
-      throw new NoSuchElementException();
+    long start = System.nanoTime();
+    Lock lock = userLocks.readLock(username);
+    lock.lock();
+    try {
+      return backend.findQuizHeaders(username);
+    } finally {
+      lock.unlock();
+      statistics.reads().recordSince(start);
     }
+  }
+
+  /**
+   * Gets the quiz with the given UUID, regardless of which user owns it.
+   *
+   * @param uuid is the UUID of the quiz
+   * @return the corresponding Quiz object
+   * @throws IOException            if the storage file could not be read
+   * @throws NoSuchElementException if there is no quiz with the given UUID
+   */
+  public Quiz readQuiz(String uuid) throws IOException, NoSuchElementException {
+    Objects.requireNonNull(uuid);
 
-    // Filters based on id and returns null if no match was found
-    return users.stream().filter(user -> user.getUsername().equals(username))
-        .findFirst().orElseThrow(NoSuchElementException::new);
+    long start = System.nanoTime();
+    try {
+      return backend.findQuiz(uuid);
+    } finally {
+      statistics.reads().recordSince(start);
+    }
   }
 
   /**
-   * Finds a user based on a username and lets a consumer modify the user list
-   * based on it. Writes the new user list to file.
+   * Gets the username of the user owning the quiz with the given UUID.
    *
-   * @param username user that should be taken action upon
-   * @param action   consumer that specifies the action
+   * @param uuid is the UUID of the quiz
+   * @return the username of the owner
+   * @throws IOException            if the storage file could not be read
+   * @throws NoSuchElementException if there is no quiz with the given UUID
+   */
+  public String readQuizOwner(String uuid) throws IOException, NoSuchElementException {
+    Objects.requireNonNull(uuid);
+
+    long start = System.nanoTime();
+    try {
+      return backend.findQuizOwner(uuid);
+    } finally {
+      statistics.reads().recordSince(start);
+    }
+  }
+
+  /**
+   * Updates a user.
+   *
+   * @param username is the users username
    * @throws IOException            if an error occurred when trying to read the
    *                                User from local storage
-   * @throws NoSuchElementException if no user with the given username was
-   *                                found.
+   * @throws NoSuchElementException   if no user with the given username was
+   *                                  found.
+   * @throws IllegalArgumentException if another user owns one of the quizzes.
+   */
+  public void update(String username, User instance) throws NoSuchElementException, IOException {
+    Objects.requireNonNull(username);
+    Objects.requireNonNull(instance);
+
+    long start = System.nanoTime();
+    try {
+      mutateLocked(Mutation.update(username, instance), username, instance.getUsername());
+    } finally {
+      statistics.updates().recordSince(start);
+    }
+  }
+
+  /**
+   * Updates a user, unless it was changed since the given version was read. This
+   * allows clients to detect conflicting changes without holding a lock between
+   * reading and updating the user.
+   *
+   * @param username        is the users username
+   * @param instance        is the new version of the user
+   * @param expectedVersion is the version of the stored user the change is based on
+   * @throws IOException                     if an error occurred when reading or
+   *                                         writing local storage.
+   * @throws NoSuchElementException          if no user with the given username was
+   *                                         found.
+   * @throws ConcurrentModificationException if the stored user has another version.
+   * @throws IllegalArgumentException        if another user owns one of the quizzes.
+   */
+  public void update(String username, User instance, long expectedVersion)
+      throws NoSuchElementException, IOException {
+    Objects.requireNonNull(username);
+    Objects.requireNonNull(instance);
+
+    long start = System.nanoTime();
+    List<Lock> locks = userLocks.lockForWriting(username, instance.getUsername());
+    try {
+      long version = lookup(username).getVersion();
+
+      if (version != expectedVersion) {
+        throw new ConcurrentModificationException(
+            "The user " + username + " has version " + version + ", not " + expectedVersion + ".");
+      }
+
+      mutate(Mutation.update(username, instance));
+    } finally {
+      userLocks.unlock(locks);
+      statistics.updates().recordSince(start);
+    }
+  }
+
+  /**
+   * Reads, changes and writes a user atomically. Other changes to the same user
+   * wait until the change is written, so concurrent read-modify-write cycles on a
+   * user cannot overwrite each other's changes.
+   *
+   * @param username is the users username
+   * @param change   is given a copy of the stored user, and returns the user to
+   *                 store. It must not change the username.
+   * @throws IOException              if an error occurred when reading or writing
+   *                                  local storage.
+   * @throws NoSuchElementException   if no user with the given username was
+   *                                  found.
+   * @throws IllegalArgumentException if the change renamed the user, or another
+   *                                  user owns one of the quizzes.
    */
-  private void updateUser(String username, BiConsumer<List<User>, Integer> action)
+  public void modify(String username, UnaryOperator<User> change)
       throws IOException, NoSuchElementException {
     Objects.requireNonNull(username);
-    Objects.requireNonNull(action);
+    Objects.requireNonNull(change);
+
+    long start = System.nanoTime();
+    List<Lock> locks = userLocks.lockForWriting(username);
+    try {
+      User changed = Objects.requireNonNull(change.apply(lookup(username)));
 
-    List<User> users = readUsers();
+      if (!username.equals(changed.getUsername())) {
+        throw new IllegalArgumentException("A modification cannot rename the user.");
+      }
 
-    if (users.size() == 0) {
-      throw new NoSuchElementException();
+      mutate(Mutation.update(username, changed));
+    } finally {
+      userLocks.unlock(locks);
+      statistics.updates().recordSince(start);
     }
+  }
+
+  /**
+   * Changes a single quiz, regardless of which user owns it. The quiz is read,
+   * changed and written while holding the lock of its owner. Only the changed
+   * quiz is copied, and journaled if journaling is enabled, so the cost of the
+   * change does not depend on the other quizzes of the owner. The versions of
+   * the quiz and of its owner increase by one.
+   *
+   * @param uuid   is the UUID of the quiz
+   * @param change returns the changed quiz. It may modify and return the quiz it
+   *               is given, but must not change its UUID.
+   * @throws IOException              if an error occurred when reading or writing local storage
+   * @throws NoSuchElementException   if there is no quiz with the given UUID
+   * @throws IllegalArgumentException if the change returns a quiz with another UUID
+   */
+  public void modifyQuiz(String uuid, UnaryOperator<Quiz> change)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(uuid);
+    Objects.requireNonNull(change);
 
-    for (int i = 0; i < users.size(); i++) {
-      User user = users.get(i);
-      if (user.getUsername().equals(username)) {
-        // Accept the provided action, passed in as parameter
-        action.accept(users, i);
+    long start = System.nanoTime();
+    try {
+      applyQuizChange(uuid, change);
+    } finally {
+      statistics.updates().recordSince(start);
+    }
+  }
 
-        writeToJson(users);
-        return;
+  private void applyQuizChange(String uuid, UnaryOperator<Quiz> change)
+      throws IOException, NoSuchElementException {
+    while (true) {
+      String owner = backend.findQuizOwner(uuid);
+      List<Lock> locks = userLocks.lockForWriting(owner);
+      try {
+        // The quiz may have moved to another user before the lock was acquired
+        if (owner.equals(backend.findQuizOwner(uuid))) {
+          Quiz changed = Objects.requireNonNull(change.apply(backend.findQuiz(uuid)));
+
+          if (!uuid.equals(changed.getUuid())) {
+            throw new IllegalArgumentException("A modification cannot change the UUID of a quiz.");
+          }
+
+          mutate(Mutation.updateQuiz(owner, changed));
+          return;
+        }
+      } finally {
+        userLocks.unlock(locks);
       }
     }
+  }
 
-    // If loop is finished, no user with the given username was found
-    throw new NoSuchElementException();
+  /**
+   * Adds a flashcard to a quiz.
+   *
+   * @param quizUuid  is the UUID of the quiz
+   * @param flashcard is the flashcard to add
+   * @throws IOException              if an error occurred when reading or writing local storage
+   * @throws NoSuchElementException   if there is no quiz with the given UUID
+   * @throws IllegalArgumentException if the quiz already has a flashcard with the same UUID
+   */
+  public void addFlashcard(String quizUuid, Flashcard flashcard)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcard);
+    modifyQuiz(quizUuid, quiz -> withFlashcardAdded(quiz, flashcard));
   }
 
   /**
-   * Updates a user.
+   * Adds a flashcard to a quiz, if the quiz has the expected version.
+   *
+   * @param quizUuid        is the UUID of the quiz
+   * @param flashcard       is the flashcard to add
+   * @param expectedVersion is the version of the quiz the change is based on
+   * @throws IOException                     if an error occurred when reading or writing
+   *                                         local storage
+   * @throws NoSuchElementException          if there is no quiz with the given UUID
+   * @throws IllegalArgumentException        if the quiz already has a flashcard with the
+   *                                         same UUID
+   * @throws ConcurrentModificationException if the stored quiz has another version
+   */
+  public void addFlashcard(String quizUuid, Flashcard flashcard, long expectedVersion)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcard);
+    modifyQuiz(quizUuid,
+        quiz -> withFlashcardAdded(checkVersion(quiz, expectedVersion), flashcard));
+  }
+
+  /**
+   * Replaces the flashcard of a quiz that has the same UUID as the given
+   * flashcard, keeping its position.
+   *
+   * @param quizUuid  is the UUID of the quiz
+   * @param flashcard is the new version of the flashcard
+   * @throws IOException            if an error occurred when reading or writing local storage
+   * @throws NoSuchElementException if there is no such quiz or flashcard
+   */
+  public void replaceFlashcard(String quizUuid, Flashcard flashcard)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcard);
+    modifyQuiz(quizUuid, quiz -> withFlashcardReplaced(quiz, flashcard));
+  }
+
+  /**
+   * Replaces a flashcard of a quiz, if the quiz has the expected version.
+   *
+   * @param quizUuid        is the UUID of the quiz
+   * @param flashcard       is the new version of the flashcard
+   * @param expectedVersion is the version of the quiz the change is based on
+   * @throws IOException                     if an error occurred when reading or writing
+   *                                         local storage
+   * @throws NoSuchElementException          if there is no such quiz or flashcard
+   * @throws ConcurrentModificationException if the stored quiz has another version
+   */
+  public void replaceFlashcard(String quizUuid, Flashcard flashcard, long expectedVersion)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcard);
+    modifyQuiz(quizUuid,
+        quiz -> withFlashcardReplaced(checkVersion(quiz, expectedVersion), flashcard));
+  }
+
+  /**
+   * Removes a flashcard from a quiz.
+   *
+   * @param quizUuid      is the UUID of the quiz
+   * @param flashcardUuid is the UUID of the flashcard
+   * @throws IOException            if an error occurred when reading or writing local storage
+   * @throws NoSuchElementException if there is no such quiz or flashcard
+   */
+  public void removeFlashcard(String quizUuid, String flashcardUuid)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcardUuid);
+    modifyQuiz(quizUuid, quiz -> withFlashcardRemoved(quiz, flashcardUuid));
+  }
+
+  /**
+   * Removes a flashcard from a quiz, if the quiz has the expected version.
+   *
+   * @param quizUuid        is the UUID of the quiz
+   * @param flashcardUuid   is the UUID of the flashcard
+   * @param expectedVersion is the version of the quiz the change is based on
+   * @throws IOException                     if an error occurred when reading or writing
+   *                                         local storage
+   * @throws NoSuchElementException          if there is no such quiz or flashcard
+   * @throws ConcurrentModificationException if the stored quiz has another version
+   */
+  public void removeFlashcard(String quizUuid, String flashcardUuid, long expectedVersion)
+      throws IOException, NoSuchElementException {
+    Objects.requireNonNull(flashcardUuid);
+    modifyQuiz(quizUuid,
+        quiz -> withFlashcardRemoved(checkVersion(quiz, expectedVersion), flashcardUuid));
+  }
+
+  private static Quiz checkVersion(Quiz quiz, long expectedVersion) {
+    if (quiz.getVersion() != expectedVersion) {
+      throw new ConcurrentModificationException("The quiz " + quiz.getUuid() + " has version "
+          + quiz.getVersion() + ", not " + expectedVersion + ".");
+    }
+
+    return quiz;
+  }
+
+  private static Quiz withFlashcardAdded(Quiz quiz, Flashcard flashcard) {
+    if (quiz.findFlashcard(flashcard.getUuid()).isPresent()) {
+      throw new IllegalArgumentException(
+          "The flashcard " + flashcard.getUuid() + " is already in the quiz.");
+    }
+
+    quiz.addFlashcard(flashcard);
+    return quiz;
+  }
+
+  private static Quiz withFlashcardReplaced(Quiz quiz, Flashcard flashcard) {
+    quiz.replaceFlashcard(flashcard);
+    return quiz;
+  }
+
+  private static Quiz withFlashcardRemoved(Quiz quiz, String flashcardUuid) {
+    Flashcard flashcard =
+        quiz.findFlashcard(flashcardUuid).orElseThrow(NoSuchElementException::new);
+    quiz.removeFlashcard(flashcard);
+    return quiz;
+  }
+
+  /**
+   * Deletes a user.
    *
    * @param username is the users username
    * @throws IOException            if an error occurred when trying to read the
@@ -192,28 +598,212 @@ public class CognitionStorage {
    * @throws NoSuchElementException if no user with the given username was
    *                                found.
    */
-  public void update(String username, User instance) throws NoSuchElementException, IOException {
-    updateUser(username, (users, index) -> {
-      // Remove old user
-      users.remove((int) index);
+  public void delete(String username) throws IOException, NoSuchElementException {
+    Objects.requireNonNull(username);
+
+    long start = System.nanoTime();
+    try {
+      mutateLocked(Mutation.delete(username), username);
+    } finally {
+      statistics.deletes().recordSince(start);
+    }
+  }
+
+  /**
+   * Creates or replaces every user provided by an iterator, for instance when importing a bulk
+   * export. Users are stored in batches, and the next batch is only taken from the iterator once
+   * the previous batch is persisted, also with write-behind persistence. A caller streaming users
+   * from a large or slow source therefore holds at most one batch in memory and never gets ahead
+   * of the storage writer. Replaced users get new versions, like with
+   * {@link #update(String, User)}.
+   *
+   * @param users    provides the users to store.
+   * @param progress is called with the number of users stored so far after every batch.
+   * @return the number of users stored.
+   * @throws IOException if an error occurred when reading or writing local storage. The batches
+   *                     stored before the error are kept.
+   */
+  public long importUsers(Iterator<User> users, LongConsumer progress) throws IOException {
+    Objects.requireNonNull(users);
+    Objects.requireNonNull(progress);
 
-      // Add new user
-      users.add(index, instance);
-    });
+    List<User> batch = new ArrayList<>(IMPORT_BATCH_SIZE);
+    long count = 0;
+
+    while (users.hasNext()) {
+      batch.add(Objects.requireNonNull(users.next()));
+
+      if (batch.size() == IMPORT_BATCH_SIZE || !users.hasNext()) {
+        importBatch(batch);
+        count += batch.size();
+        batch.clear();
+        progress.accept(count);
+      }
+    }
+
+    return count;
   }
 
   /**
-   * Deletes a user.
+   * Creates or replaces a batch of users while holding their write locks, and waits until the
+   * batch is persisted.
    *
-   * @param username is the users username
-   * @throws IOException if an error occurred when trying to read the
-   *                     User from local storage
+   * @param batch are the users to store.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  private void importBatch(List<User> batch) throws IOException {
+    String[] usernames = batch.stream().map(User::getUsername).toArray(String[]::new);
+    List<Lock> locks = userLocks.lockForWriting(usernames);
+    try {
+      backend.importAll(batch);
+      statistics.recordChanges(batch.size());
+    } finally {
+      userLocks.unlock(locks);
+    }
+  }
+
+  /**
+   * Gets a report of how the stored state was recovered when it was loaded, including the time it
+   * took and whether records after a crash had to be discarded. The state is loaded on first use.
+   *
+   * @return the report, or an empty optional if nothing was loaded yet, or the storage is
+   *         file-backed and never loads its users up front.
+   */
+  public Optional<RecoveryReport> getRecoveryReport() {
+    return backend.getRecoveryReport();
+  }
+
+  /**
+   * Gets the statistics of this storage, which are collected from its creation on.
+   *
+   * @return the live statistics, which change as the storage is used.
    */
-  public void delete(String username) throws IOException, NullPointerException {
-    updateUser(username, ((users, integer) -> {
-      // Remove old user
-      users.remove(integer.intValue());
-    }));
+  public StorageStatistics getStatistics() {
+    return statistics;
+  }
+
+  /**
+   * Computes the number of bytes taken by the storage file and the files next to it whose names
+   * start with its name, including the directories of shards and of the key-value store.
+   *
+   * @return the number of bytes, or -1 if the directory could not be listed.
+   */
+  private long storedBytes() {
+    Path directory = getStoragePath().getParent();
+    String name = String.valueOf(getStoragePath().getFileName());
+
+    try (Stream<Path> files = Files.walk(directory)) {
+      // Files deleted during the walk count as empty
+      return files
+          .filter(file -> !file.equals(directory)
+              && directory.relativize(file).getName(0).toString().startsWith(name))
+          .mapToLong(file -> file.toFile().isFile() ? file.toFile().length() : 0)
+          .sum();
+    } catch (IOException | UncheckedIOException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Registers the statistics with the platform MBean server, if enabled.
+   *
+   * @throws IllegalStateException if the statistics could not be registered, for instance
+   *                               because another storage of the same file is monitored.
+   */
+  private void registerStatistics() {
+    if (!options.isMonitored()) {
+      return;
+    }
+
+    try {
+      ObjectName name = new ObjectName("cognition:type=CognitionStorage,name="
+          + ObjectName.quote(String.valueOf(getStoragePath().getFileName())));
+      ManagementFactory.getPlatformMBeanServer().registerMBean(statistics, name);
+
+      synchronized (this) {
+        managementName = name;
+      }
+    } catch (JMException e) {
+      throw new IllegalStateException(
+          "Could not register the statistics of " + getStoragePath() + " with JMX", e);
+    }
+  }
+
+  private void unregisterStatistics() {
+    ObjectName name;
+    synchronized (this) {
+      name = managementName;
+      managementName = null;
+    }
+
+    if (name != null) {
+      try {
+        ManagementFactory.getPlatformMBeanServer().unregisterMBean(name);
+      } catch (JMException e) {
+        // Someone else unregistered the statistics already
+      }
+    }
+  }
+
+  /**
+   * Blocks until all changes are written to the storage file or journal. Only has
+   * an effect when write-behind persistence is enabled, as changes are otherwise
+   * written before the mutating method returns.
+   *
+   * @throws IOException if an error occurred when writing to local storage, or if
+   *                     the last background compaction of the journal failed.
+   */
+  public void flush() throws IOException {
+    backend.flush();
+  }
+
+  /**
+   * Writes all pending changes and stops the background writer and compaction,
+   * if any, and unregisters the statistics from JMX.
+   *
+   * @throws IOException if an error occurred when writing to local storage, or if
+   *                     the last background compaction failed and the failure was
+   *                     not reported yet.
+   */
+  @Override
+  public void close() throws IOException {
+    StorageBackend current = backend;
+
+    try {
+      if (current != null) {
+        current.close();
+      }
+    } finally {
+      unregisterStatistics();
+    }
+  }
+
+  /**
+   * Applies a mutation while holding the write locks of the affected users.
+   *
+   * @param mutation  is the change to apply.
+   * @param usernames are the usernames affected by the change.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  private void mutateLocked(Mutation mutation, String... usernames) throws IOException {
+    List<Lock> locks = userLocks.lockForWriting(usernames);
+    try {
+      mutate(mutation);
+    } finally {
+      userLocks.unlock(locks);
+    }
+  }
+
+  /**
+   * Applies a mutation and persists it through the backend. Unless write-behind
+   * persistence is enabled, this waits until the mutation is persisted.
+   *
+   * @param mutation is the change to apply.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  private void mutate(Mutation mutation) throws IOException {
+    statistics.recordChanges(1);
+    backend.apply(mutation);
   }
 
   public Path getStoragePath() {
@@ -224,10 +814,41 @@ public class CognitionStorage {
    * Sets the storage path of the JSON data.
    *
    * @param filename is the filename of the JSON data
+   * @throws IllegalStateException if monitoring is enabled and the statistics could
+   *                               not be registered with JMX
    */
   public void setStoragePath(String filename) {
+    // Pending changes belong to the previous file
+    try {
+      close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+
     storagePath = Paths.get(System.getProperty("user.home"),
         "it1901-gr2103", "cognition", filename);
+    backend = openBackend(new StorageFile(storagePath, options, statistics));
+    registerStatistics();
+  }
+
+  /**
+   * Creates the backend selected by the options, which checks that the options can
+   * be combined.
+   *
+   * @param file is the storage file.
+   * @return the backend holding the users.
+   * @throws IllegalArgumentException if the options cannot be combined.
+   */
+  private StorageBackend openBackend(StorageFile file) {
+    if (options.isKeyValue()) {
+      return new KeyValueBackend(getGson(), file, options, statistics);
+    }
+
+    if (!options.isResident()) {
+      return new FileBackend(getGson(), file, options);
+    }
+
+    return new ResidentBackend(getGson(), file, options, statistics);
   }
 
   public Gson getGson() {
@@ -238,15 +859,18 @@ public class CognitionStorage {
    * Checks if the storage is empty.
    *
    * @return a boolean indicating if the storage is empty.
+   * @throws UncheckedIOException if the key-value store could not be read.
    */
   public boolean isEmpty() {
-    File file = new File(String.valueOf(getStoragePath()));
-
-    // file.length is 0 if file does not exist or has no content
-    return file.length() == 0;
+    try {
+      return backend.isEmpty();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
   }
 
 
+
   /**
    * Creates the directories required if they do not exist.
    *
@@ -268,4 +892,4 @@ public class CognitionStorage {
       throw new IOException("An error occurred when trying to create directory: " + storagePath);
     }
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,115 @@
+package json;
+
+import com.google.gson.Gson;
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+/**
+ * Keeps no users in memory. Every call decodes the users it needs from the {@link StorageFile}
+ * as a stream, and lookups by username or quiz UUID decode only the requested user. Every change
+ * rewrites the storage file.
+ */
+final class FileBackend implements StorageBackend {
+  private final Gson gson;
+  private final StorageFile file;
+  private final Object writeLock = new Object();
+
+  /**
+   * Creates a file-backed backend.
+   *
+   * @param gson    copies users when changes are applied.
+   * @param file    is the storage file.
+   * @param options configures how changes are persisted.
+   * @throws IllegalArgumentException if the options require a resident repository.
+   */
+  FileBackend(Gson gson, StorageFile file, StorageOptions options) {
+    if (options.isJournaled() || options.isWriteBehind()) {
+      throw new IllegalArgumentException(
+          "Journaling and write-behind persistence require a resident repository.");
+    }
+
+    if (options.getShardCount() > 0) {
+      throw new IllegalArgumentException(
+          "Sharding requires a resident repository without journaling.");
+    }
+
+    this.gson = gson;
+    this.file = file;
+  }
+
+  @Override
+  public List<User> findAll() throws IOException {
+    return file.readAll();
+  }
+
+  @Override
+  public Stream<User> stream() throws IOException {
+    return file.stream();
+  }
+
+  @Override
+  public User find(String username) throws IOException, NoSuchElementException {
+    return file.find(username).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public boolean contains(String username) throws IOException {
+    return file.find(username).isPresent();
+  }
+
+  @Override
+  public List<CompactQuiz> findQuizHeaders(String username)
+      throws IOException, NoSuchElementException {
+    return file.findQuizHeaders(username).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public Quiz findQuiz(String uuid) throws IOException, NoSuchElementException {
+    return file.findQuizOwner(uuid)
+        .flatMap(user -> user.findQuiz(uuid))
+        .orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public String findQuizOwner(String uuid) throws IOException, NoSuchElementException {
+    return file.findQuizOwner(uuid)
+        .map(User::getUsername)
+        .orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public void apply(Mutation mutation) throws IOException {
+    synchronized (writeLock) {
+      UserRepository repository = new UserRepository(gson, file.readAll());
+      mutation.applyTo(repository);
+      file.write(repository.snapshot());
+    }
+  }
+
+  @Override
+  public void importAll(List<User> batch) throws IOException {
+    // Rewrite the storage file once per batch rather than once per user
+    synchronized (writeLock) {
+      UserRepository repository = new UserRepository(gson, file.readAll());
+      for (User user : batch) {
+        StorageBackend.upsert(repository.contains(user.getUsername()), user).applyTo(repository);
+      }
+      file.write(repository.snapshot());
+    }
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return file.isEmpty();
+  }
+
+  @Override
+  public void close() {
+    // Every change is written before it returns
+  }
+}
@@ -0,0 +1,191 @@
+package json;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32C;
+
+/**
+ * Identifies a version of a file without reading all of it.
+ *
+ * <p>A stamp consists of the size, modification time and file key (the inode on Unix) of the file,
+ * and a CRC32C checksum of its first and last 4 KB. Since snapshots are replaced by renaming a
+ * new file over the old one, every write by {@link CognitionStorage} changes the file key, and the
+ * checksum catches edits in place that keep both the size and the modification time.
+ * Two equal stamps therefore almost certainly describe the same content, while computing a stamp
+ * costs one metadata lookup and two small reads.
+ *
+ * <p>A stamp can be persisted with {@link #write(DataOutput)}, so that files derived from a
+ * storage file, such as its {@link SnapshotIndex}, can tell whether they still describe it. The
+ * file key is kept as its string form for this reason.
+ */
+final class FileStamp {
+  private static final int SAMPLE_SIZE = 4096;
+  private static final long SETTLED_NANOS = TimeUnit.SECONDS.toNanos(2);
+  private static final FileStamp MISSING = new FileStamp(-1, 0, "", 0);
+
+  private final long size;
+  private final long modified;
+  private final String fileKey;
+  private final long checksum;
+
+  private FileStamp(long size, long modified, String fileKey, long checksum) {
+    this.size = size;
+    this.modified = modified;
+    this.fileKey = Objects.requireNonNull(fileKey);
+    this.checksum = checksum;
+  }
+
+  /**
+   * Computes the stamp of a file.
+   *
+   * @param path is the path of the file.
+   * @return the stamp of the current version of the file. All missing files share one stamp.
+   * @throws IOException if the file could not be read.
+   */
+  static FileStamp of(Path path) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+      long size = channel.size();
+      CRC32C crc = new CRC32C();
+      ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size, SAMPLE_SIZE));
+
+      readFully(channel, buffer, 0);
+      crc.update(buffer.flip());
+
+      if (size > SAMPLE_SIZE) {
+        buffer.clear();
+        readFully(channel, buffer, Math.max(SAMPLE_SIZE, size - SAMPLE_SIZE));
+        crc.update(buffer.flip());
+      }
+
+      // File systems without file keys rely on the other parts of the stamp
+      Object fileKey = attributes.fileKey();
+      return new FileStamp(size, attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+          fileKey == null ? "" : fileKey.toString(), crc.getValue());
+    } catch (NoSuchFileException e) {
+      return MISSING;
+    }
+  }
+
+  /**
+   * Reads a stamp persisted by {@link #write(DataOutput)}.
+   *
+   * @param input is the input to read from.
+   * @return the stamp.
+   * @throws IOException if an error occurred when reading the stamp.
+   */
+  static FileStamp read(DataInput input) throws IOException {
+    long size = input.readLong();
+    long modified = input.readLong();
+    String fileKey = input.readUTF();
+    long checksum = input.readLong();
+    return new FileStamp(size, modified, fileKey, checksum);
+  }
+
+  /**
+   * Persists this stamp.
+   *
+   * @param output is the output to write to.
+   * @throws IOException if an error occurred when writing the stamp.
+   */
+  void write(DataOutput output) throws IOException {
+    output.writeLong(size);
+    output.writeLong(modified);
+    output.writeUTF(fileKey);
+    output.writeLong(checksum);
+  }
+
+  /**
+   * Determines whether this is the stamp of the current version of a file.
+   *
+   * @param path is the path of the file.
+   * @return true if the file exists and has this stamp.
+   * @throws IOException if the file could not be read.
+   */
+  boolean matches(Path path) throws IOException {
+    return size >= 0 && equals(of(path));
+  }
+
+  /**
+   * Determines cheaply whether a file is still the version described by this stamp. The file is
+   * not opened: its size, modification time and file key are compared with this stamp, which
+   * takes a single metadata lookup. File systems store modification times with a coarse
+   * granularity, so a file changed in place within the same tick as the write that was stamped
+   * keeps all three. Such a file was modified recently, so for a file modified within the last
+   * two seconds this returns false and the caller has to compare a full stamp, which also
+   * compares the checksum. Once the modification time is older, any later change in place moves
+   * it.
+   *
+   * @param path is the path of the file.
+   * @return true if the file has the metadata of this stamp and was modified long enough ago.
+   * @throws IOException if the metadata of the file could not be read.
+   */
+  boolean isSettledVersionOf(Path path) throws IOException {
+    BasicFileAttributes attributes;
+    try {
+      attributes = Files.readAttributes(path, BasicFileAttributes.class);
+    } catch (NoSuchFileException e) {
+      return false;
+    }
+
+    Object key = attributes.fileKey();
+    long now = TimeUnit.MILLISECONDS.toNanos(System.currentTimeMillis());
+    return size >= 0
+        && attributes.size() == size
+        && attributes.lastModifiedTime().to(TimeUnit.NANOSECONDS) == modified
+        && (key == null ? "" : key.toString()).equals(fileKey)
+        && now - modified > SETTLED_NANOS;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()
+        && channel.read(buffer, position + buffer.position()) >= 0) {
+      // Keep reading until the buffer is full or the end of the file is reached
+    }
+  }
+
+  /**
+   * Determines whether two stamps describe the same write of a file, comparing the size,
+   * modification time and file key but not the content. Content that changed while these stayed
+   * the same was damaged rather than written.
+   *
+   * @param stamp is the other stamp.
+   * @return true if the metadata of the stamps is the same.
+   */
+  boolean hasMetadataOf(FileStamp stamp) {
+    return size == stamp.size && modified == stamp.modified && fileKey.equals(stamp.fileKey);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+
+    if (o == null || getClass() != o.getClass()) {
+      return false;
+    }
+
+    FileStamp stamp = (FileStamp) o;
+    return size == stamp.size
+        && modified == stamp.modified
+        && checksum == stamp.checksum
+        && fileKey.equals(stamp.fileKey);
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(size, modified, fileKey, checksum);
+  }
+}
@@ -0,0 +1,178 @@
+package json;
+
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Binary image of the resident users, used to load them without decoding the storage file.
+ *
+ * <p>An image holds the users of one snapshot of the storage file, encoded with
+ * {@link BinaryCodec}, and records the {@link FileStamp} of that snapshot. As long as
+ * the storage file is still that snapshot, the users are read from the image instead, which is a
+ * sequential read of length-prefixed records rather than parsing JSON. Changes made after the
+ * snapshot are in the journal, and are replayed on top of the image as usual. The header holds a
+ * CRC32C checksum of the records, so a damaged image is ignored rather than loaded.
+ */
+final class HeapImage {
+  private static final int MAGIC = 0x434f4748;
+  private static final int VERSION = 1;
+  private static final int CHECKSUM_OFFSET = 2 * Integer.BYTES;
+
+  private static final StorageCodec codec = new BinaryCodec();
+
+  private HeapImage() {
+  }
+
+  static Path pathFor(Path storagePath) {
+    return storagePath.resolveSibling(storagePath.getFileName() + ".image");
+  }
+
+  /**
+   * Writes an image of the users in the current storage file, replacing any previous image
+   * atomically.
+   *
+   * @param imagePath   is the path of the image.
+   * @param storagePath is the path of the storage file the users were written to.
+   * @param users       are the users in the storage file.
+   * @param statistics  receives the bytes written, the serialize time and the fsync time.
+   * @throws IOException if an error occurred when writing the image.
+   */
+  static void write(Path imagePath, Path storagePath, List<User> users,
+                    StorageStatistics statistics) throws IOException {
+    // The checksum of the records follows the format, and is filled in once they are written
+    ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+    DataOutputStream headerOutput = new DataOutputStream(headerBytes);
+    headerOutput.writeInt(MAGIC);
+    headerOutput.writeInt(VERSION);
+    headerOutput.writeLong(0);
+    FileStamp.of(storagePath).write(headerOutput);
+    Path temporaryPath = SnapshotFile.createTemporaryFile(imagePath);
+
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+        ByteBuffer header = ByteBuffer.wrap(headerBytes.toByteArray());
+        writeFully(channel, header, 0);
+
+        long start = System.nanoTime();
+        CRC32C checksum = new CRC32C();
+        OutputStream output = new BufferedOutputStream(new CheckedOutputStream(
+            Channels.newOutputStream(channel.position(header.limit())), checksum));
+        codec.write(output, users, (username, offset, length) -> {
+        });
+        output.flush();
+
+        // The checksum is only known once the records are written
+        writeFully(channel, ByteBuffer.allocate(Long.BYTES).putLong(checksum.getValue()).flip(),
+            CHECKSUM_OFFSET);
+        statistics.recordSerialize(channel.size(), start);
+
+        long syncStart = System.nanoTime();
+        channel.force(true);
+        statistics.recordFsync(syncStart);
+      }
+
+      SnapshotFile.moveAtomically(temporaryPath, imagePath);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  /**
+   * Determines whether an image describes the current content of a storage file, without reading
+   * its records.
+   *
+   * @param imagePath   is the path of the image.
+   * @param storagePath is the path of the storage file.
+   * @return true if the image exists and was taken from the current storage file.
+   * @throws IOException if an error occurred when reading the image header.
+   */
+  static boolean matches(Path imagePath, Path storagePath) throws IOException {
+    try (DataInputStream input = new DataInputStream(Files.newInputStream(imagePath))) {
+      return readHeader(input, storagePath) != null;
+    } catch (NoSuchFileException | EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Reads the users in an image, if the image was taken from the current storage file.
+   *
+   * @param imagePath   is the path of the image.
+   * @param storagePath is the path of the storage file.
+   * @return the users in the image, or null if the image is missing, was taken from another
+   *         version of the storage file, or is damaged.
+   * @throws IOException if an error occurred when reading an existing image.
+   */
+  static List<User> read(Path imagePath, Path storagePath) throws IOException {
+    try (DataInputStream header = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(imagePath)))) {
+      Long expected = readHeader(header, storagePath);
+
+      if (expected == null) {
+        return null;
+      }
+
+      CRC32C checksum = new CRC32C();
+      List<User> users = new ArrayList<>();
+
+      try (InputStream input = new CheckedInputStream(header, checksum);
+           Stream<User> decoded = codec.read(input)) {
+        decoded.forEachOrdered(users::add);
+        input.transferTo(OutputStream.nullOutputStream());
+      } catch (IOException | UncheckedIOException e) {
+        return null;
+      }
+
+      return checksum.getValue() == expected ? users : null;
+    } catch (NoSuchFileException | EOFException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Reads the header of an image.
+   *
+   * @param input       is positioned at the start of the image.
+   * @param storagePath is the path of the storage file.
+   * @return the checksum of the records, or null if the image has another format or was taken
+   *         from another version of the storage file.
+   * @throws IOException if an error occurred when reading the header.
+   */
+  private static Long readHeader(DataInputStream input, Path storagePath) throws IOException {
+    if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+      return null;
+    }
+
+    long checksum = input.readLong();
+    return FileStamp.read(input).matches(storagePath) ? checksum : null;
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buffer, long position)
+      throws IOException {
+    while (buffer.hasRemaining()) {
+      channel.write(buffer, position + buffer.position());
+    }
+  }
+}
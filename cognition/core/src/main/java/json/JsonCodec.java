@@ -0,0 +1,215 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import core.CompactQuiz;
+import core.User;
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Stores users as a JSON array, serialized with Gson. This is the default format of
+ * {@link CognitionStorage}, and each element of the array is a user.
+ */
+public class JsonCodec implements StorageCodec {
+  private final Gson gson;
+
+  public JsonCodec() {
+    this(new Gson());
+  }
+
+  public JsonCodec(Gson gson) {
+    this.gson = Objects.requireNonNull(gson);
+  }
+
+  @Override
+  public void write(OutputStream output, Iterable<User> users, ElementListener listener)
+      throws IOException {
+    long position = 1;
+    output.write('[');
+    boolean first = true;
+
+    for (User user : users) {
+      if (!first) {
+        output.write(',');
+        position++;
+      }
+      first = false;
+
+      byte[] bytes;
+      try {
+        bytes = gson.toJson(user).getBytes(StandardCharsets.UTF_8);
+      } catch (JsonIOException e) {
+        throw new JsonIOException("An error occurred when serializing the JSON content.");
+      }
+
+      output.write(bytes);
+      listener.element(user.getUsername(), position, bytes.length);
+      position += bytes.length;
+    }
+
+    output.write(']');
+  }
+
+  @Override
+  public Stream<User> read(InputStream input) throws IOException {
+    return UserReader.stream(new UserReader(gson,
+        new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8))));
+  }
+
+  @Override
+  public User decode(ByteBuffer element) throws IOException {
+    try {
+      User user = gson.fromJson(StandardCharsets.UTF_8.decode(element).toString(), User.class);
+
+      if (user == null) {
+        throw new IOException("A stored user could not be read.");
+      }
+
+      return user;
+    } catch (JsonParseException e) {
+      throw new IOException("A stored user could not be read.", e);
+    }
+  }
+
+  /**
+   * Reads the quizzes of an element with a streaming reader, skipping over the flashcards instead
+   * of creating objects for them.
+   */
+  @Override
+  public List<CompactQuiz> decodeQuizHeaders(ByteBuffer element, String username)
+      throws IOException {
+    List<CompactQuiz> headers = new ArrayList<>();
+    String storedUsername = null;
+
+    try (JsonReader reader = new JsonReader(new InputStreamReader(
+        new BufferInputStream(element), StandardCharsets.UTF_8))) {
+      reader.beginObject();
+
+      while (reader.hasNext()) {
+        switch (reader.nextName()) {
+          case "username" -> storedUsername = reader.nextString();
+          case "quizzes" -> {
+            reader.beginArray();
+            while (reader.hasNext()) {
+              headers.add(readQuizHeader(reader));
+            }
+            reader.endArray();
+          }
+          default -> reader.skipValue();
+        }
+      }
+
+      reader.endObject();
+    } catch (IllegalStateException | IllegalArgumentException e) {
+      throw new IOException("A stored user could not be read.", e);
+    }
+
+    if (!username.equals(storedUsername)) {
+      throw new IOException("The stored user is not " + username + ".");
+    }
+
+    return headers;
+  }
+
+  private static CompactQuiz readQuizHeader(JsonReader reader) throws IOException {
+    String uuid = null;
+    String name = null;
+    String description = null;
+    long version = 0;
+    int flashcardCount = 0;
+
+    reader.beginObject();
+
+    while (reader.hasNext()) {
+      switch (reader.nextName()) {
+        case "uuid" -> uuid = reader.nextString();
+        case "name" -> name = reader.nextString();
+        case "description" -> description = reader.nextString();
+        case "version" -> version = reader.nextLong();
+        case "flashcards" -> {
+          reader.beginArray();
+          while (reader.hasNext()) {
+            reader.skipValue();
+            flashcardCount++;
+          }
+          reader.endArray();
+        }
+        default -> reader.skipValue();
+      }
+    }
+
+    reader.endObject();
+    return new CompactQuiz(uuid, name, description, flashcardCount, version);
+  }
+
+  /**
+   * Locates the elements of the top-level array with a small scanner that tracks nesting and
+   * string literals. Each element is decoded once to find its username.
+   */
+  @Override
+  public void scan(InputStream input, ElementListener listener) throws IOException {
+    ByteArrayOutputStream element = new ByteArrayOutputStream();
+    long position = 0;
+    long start = -1;
+    int depth = 0;
+    boolean inString = false;
+    boolean escaped = false;
+    int next;
+
+    while ((next = input.read()) != -1) {
+      byte current = (byte) next;
+
+      if (depth >= 1) {
+        element.write(current);
+      }
+
+      if (inString) {
+        if (escaped) {
+          escaped = false;
+        } else if (current == '\\') {
+          escaped = true;
+        } else if (current == '"') {
+          inString = false;
+        }
+      } else if (current == '"') {
+        inString = true;
+      } else if (current == '{' || current == '[') {
+        depth++;
+
+        if (depth == 2 && current == '{') {
+          // Start of an element of the top-level array
+          start = position;
+          element.reset();
+          element.write(current);
+        }
+      } else if (current == '}' || current == ']') {
+        depth--;
+
+        if (depth == 1 && start >= 0) {
+          User user = decode(ByteBuffer.wrap(element.toByteArray()));
+          listener.element(user.getUsername(), start, (int) (position - start + 1));
+          start = -1;
+        }
+      }
+
+      position++;
+    }
+
+    if (depth != 0 || inString) {
+      throw new IOException("The storage does not contain a complete list of users.");
+    }
+  }
+}
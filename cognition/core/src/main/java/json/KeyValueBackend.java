@@ -0,0 +1,166 @@
+package json;
+
+import com.google.gson.Gson;
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Keeps the users in {@link KeyValueUsers}, an embedded log-structured key-value store in a
+ * directory next to the storage file. The store is opened on first use, and if it does not exist
+ * yet, the users in the storage file are moved into it.
+ */
+final class KeyValueBackend implements StorageBackend {
+  private final Gson gson;
+  private final StorageFile file;
+  private final StorageStatistics statistics;
+  private volatile KeyValueUsers keyValueUsers;
+  private volatile RecoveryReport recoveryReport;
+
+  /**
+   * Creates a key-value backend, without opening the store.
+   *
+   * @param gson       copies users when changes are applied.
+   * @param file       is the storage file, whose users are moved into a new store.
+   * @param options    configures how changes are persisted.
+   * @param statistics records the bytes and time spent on the store.
+   * @throws IllegalArgumentException if the options cannot be used with the key-value store.
+   */
+  KeyValueBackend(Gson gson, StorageFile file, StorageOptions options,
+                  StorageStatistics statistics) {
+    if (options.isResident() || options.isMemoryMapped() || !options.getCodec().isIndexable()) {
+      throw new IllegalArgumentException("The key-value store cannot be resident or "
+          + "memory-mapped, and requires an indexable codec.");
+    }
+
+    if (options.isJournaled() || options.isWriteBehind() || options.getShardCount() > 0) {
+      throw new IllegalArgumentException("Journaling, write-behind persistence and sharding "
+          + "require a resident repository.");
+    }
+
+    this.gson = gson;
+    this.file = file;
+    this.statistics = statistics;
+  }
+
+  @Override
+  public List<User> findAll() throws IOException {
+    return getKeyValueUsers().findAll();
+  }
+
+  @Override
+  public Stream<User> stream() throws IOException {
+    return getKeyValueUsers().stream();
+  }
+
+  @Override
+  public User find(String username) throws IOException, NoSuchElementException {
+    return getKeyValueUsers().find(username).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public boolean contains(String username) throws IOException {
+    return getKeyValueUsers().contains(username);
+  }
+
+  @Override
+  public List<CompactQuiz> findQuizHeaders(String username)
+      throws IOException, NoSuchElementException {
+    return getKeyValueUsers().findQuizHeaders(username).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public Quiz findQuiz(String uuid) throws IOException, NoSuchElementException {
+    return find(findQuizOwner(uuid)).findQuiz(uuid).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public String findQuizOwner(String uuid) throws IOException, NoSuchElementException {
+    return getKeyValueUsers().findQuizOwner(uuid).orElseThrow(NoSuchElementException::new);
+  }
+
+  @Override
+  public void apply(Mutation mutation) throws IOException {
+    mutation.applyTo(getKeyValueUsers());
+  }
+
+  @Override
+  public void importAll(List<User> batch) throws IOException {
+    getKeyValueUsers().importAll(batch);
+  }
+
+  @Override
+  public boolean isEmpty() throws IOException {
+    return getKeyValueUsers().isEmpty();
+  }
+
+  @Override
+  public Optional<RecoveryReport> getRecoveryReport() {
+    return Optional.ofNullable(recoveryReport);
+  }
+
+  @Override
+  public void close() throws IOException {
+    KeyValueUsers current;
+    synchronized (this) {
+      current = keyValueUsers;
+      keyValueUsers = null;
+    }
+
+    if (current != null) {
+      current.close();
+    }
+  }
+
+  /**
+   * Gets the users in the key-value store, opening the store on first use. If the store does not
+   * exist yet, the users in the storage file are moved into it.
+   *
+   * @return the users in the key-value store.
+   * @throws IOException if an error occurred when opening the store or reading the storage file.
+   */
+  private KeyValueUsers getKeyValueUsers() throws IOException {
+    KeyValueUsers current = keyValueUsers;
+    if (current != null) {
+      return current;
+    }
+
+    synchronized (this) {
+      return openKeyValueUsers();
+    }
+  }
+
+  private KeyValueUsers openKeyValueUsers() throws IOException {
+    if (keyValueUsers == null) {
+      long start = System.nanoTime();
+      boolean migrating = !Files.exists(KeyValueUsers.directoryFor(file.getPath()))
+          && !file.isEmpty();
+      KeyValueUsers opened =
+          new KeyValueUsers(gson, file.getCodec(), file.getPath(), statistics);
+
+      if (migrating) {
+        try (Stream<User> users = file.stream()) {
+          opened.restoreAll(users::iterator);
+        } catch (IOException | UncheckedIOException e) {
+          opened.close();
+          throw new IOException(file.getPath()
+              + " is present, but an error occurred when moving its users to the key-value store.");
+        }
+      }
+
+      keyValueUsers = opened;
+      recoveryReport = new RecoveryReport(Duration.ofNanos(System.nanoTime() - start), 0, false,
+          opened.getReplayedRecords(), opened.getDiscardedBytes(), false);
+    }
+
+    return keyValueUsers;
+  }
+}
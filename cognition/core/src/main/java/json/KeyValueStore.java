@@ -0,0 +1,765 @@
+package json;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiPredicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.CRC32C;
+
+/**
+ * An embedded key-value store organized as a log-structured merge tree.
+ *
+ * <p>Changes are appended to a write-ahead log and applied to a sorted in-memory table. When the
+ * table grows beyond its limit, it is written to a new immutable {@link SegmentFile} and the log
+ * is emptied. A lookup checks the table and then the segments from newest to oldest, and each
+ * segment finds the key through its sparse index, so a lookup reads at most one block per
+ * segment. Once there are enough segments, a background thread merges them into one, dropping
+ * overwritten values and deleted keys, which bounds both the number of segments a lookup visits
+ * and the space taken by old values.
+ *
+ * <p>The store lives in a directory of its own. A manifest lists the live segments, oldest first,
+ * and is replaced atomically whenever a segment is added or segments are merged, so segments that
+ * were written but never listed are deleted when the store is opened. Log records carry a CRC32C
+ * checksum, and replaying the log stops at the first incomplete record. A lock file prevents two
+ * stores from using the same directory at the same time.
+ *
+ * <p>Writes are serialized, while lookups and scans run concurrently with each other. A write
+ * appends and syncs the log without blocking them, and then applies all of its changes to the
+ * table while holding the lock that lookups and scans hold for reading, so they see either all
+ * or none of the changes of a write.
+ */
+final class KeyValueStore implements Closeable {
+  /**
+   * The value of a deleted key in the table and in segments.
+   */
+  static final byte[] TOMBSTONE = new byte[0];
+
+  private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.dat");
+  private static final String MANIFEST_NAME = "MANIFEST";
+  private static final String LOG_NAME = "log.dat";
+  private static final String LOCK_NAME = "LOCK";
+
+  private final Path directory;
+  private final long tableLimit;
+  private final int mergeThreshold;
+  private final StorageStatistics statistics;
+  private final Object writeLock = new Object();
+  // Held for reading while the table and segments are used, and for writing while changes are
+  // applied to the table or the segments are replaced
+  private final ReadWriteLock segmentsLock = new ReentrantReadWriteLock();
+  private final FileChannel lockChannel;
+  private final FileChannel log;
+  private volatile ConcurrentSkipListMap<String, byte[]> table = new ConcurrentSkipListMap<>();
+  private volatile List<SegmentFile> segments;
+  private long tableSize;
+  private int replayedRecords;
+  private long discardedBytes;
+  private long nextSegment;
+  private boolean merging;
+  private IOException mergeFailure;
+  private ExecutorService merger;
+
+  /**
+   * Opens the store in the given directory, creating it if it does not exist, and replays the
+   * write-ahead log.
+   *
+   * @param directory      is the directory holding the files of the store.
+   * @param tableLimit     is the number of bytes of keys and values held in memory before they
+   *                       are written to a segment.
+   * @param mergeThreshold is the number of segments at which the segments are merged.
+   * @throws IOException if the store could not be opened, for instance because it is already
+   *                     open.
+   */
+  KeyValueStore(Path directory, long tableLimit, int mergeThreshold) throws IOException {
+    this(directory, tableLimit, mergeThreshold, new StorageStatistics());
+  }
+
+  /**
+   * Opens the store in the given directory like {@link #KeyValueStore(Path, long, int)}, and
+   * records the bytes written to the log and to segments.
+   *
+   * @param directory      is the directory holding the files of the store.
+   * @param tableLimit     is the number of bytes of keys and values held in memory before they
+   *                       are written to a segment.
+   * @param mergeThreshold is the number of segments at which the segments are merged.
+   * @param statistics     receives the bytes written, the time spent writing and syncing the
+   *                       log, and the bytes replayed from the log.
+   * @throws IOException if the store could not be opened, for instance because it is already
+   *                     open.
+   */
+  KeyValueStore(Path directory, long tableLimit, int mergeThreshold,
+                StorageStatistics statistics) throws IOException {
+    if (tableLimit <= 0 || mergeThreshold < 2) {
+      throw new IllegalArgumentException();
+    }
+
+    this.directory = Objects.requireNonNull(directory);
+    this.tableLimit = tableLimit;
+    this.mergeThreshold = mergeThreshold;
+    this.statistics = Objects.requireNonNull(statistics);
+
+    Files.createDirectories(directory);
+    lockChannel = FileChannel.open(directory.resolve(LOCK_NAME),
+        StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+
+    try {
+      if (lock(lockChannel) == null) {
+        throw new IOException(directory + " is used by another storage.");
+      }
+
+      segments = openSegments();
+      log = FileChannel.open(directory.resolve(LOG_NAME),
+          StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    } catch (IOException | RuntimeException e) {
+      closeAll();
+      lockChannel.close();
+      throw e;
+    }
+
+    try {
+      replayLog();
+    } catch (IOException | RuntimeException e) {
+      close();
+      throw e;
+    }
+  }
+
+  private static FileLock lock(FileChannel channel) throws IOException {
+    try {
+      return channel.tryLock();
+    } catch (OverlappingFileLockException e) {
+      // The directory is used by another store in this process
+      return null;
+    }
+  }
+
+  /**
+   * Gets the value of a key.
+   *
+   * @param key is the key to look up.
+   * @return the value, or null if the key is not stored.
+   * @throws IOException if an error occurred when reading a segment.
+   */
+  byte[] get(String key) throws IOException {
+    Objects.requireNonNull(key);
+
+    segmentsLock.readLock().lock();
+    try {
+      byte[] value = table.get(key);
+
+      for (int i = segments.size() - 1; value == null && i >= 0; i--) {
+        value = segments.get(i).get(key);
+      }
+
+      return value == TOMBSTONE ? null : value;
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Visits the keys starting with a prefix, in ascending order, together with their values.
+   *
+   * @param prefix  is the prefix of the keys to visit.
+   * @param visitor is given every key and value, and returns false to stop the scan.
+   * @throws IOException if an error occurred when reading a segment.
+   */
+  void scan(String prefix, BiPredicate<String, byte[]> visitor) throws IOException {
+    scan(prefix, prefix, visitor);
+  }
+
+  /**
+   * Visits the keys starting with a prefix that are not smaller than a given key, in ascending
+   * order, together with their values. Scanning from the key after the last visited key continues
+   * an earlier scan, without holding the store between the two.
+   *
+   * @param prefix  is the prefix of the keys to visit.
+   * @param fromKey is the smallest key to visit. It must start with the prefix.
+   * @param visitor is given every key and value, and returns false to stop the scan.
+   * @throws IOException if an error occurred when reading a segment.
+   */
+  void scan(String prefix, String fromKey, BiPredicate<String, byte[]> visitor)
+      throws IOException {
+    Objects.requireNonNull(prefix);
+    Objects.requireNonNull(fromKey);
+    Objects.requireNonNull(visitor);
+
+    segmentsLock.readLock().lock();
+    try {
+      List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+      sources.add(table.tailMap(fromKey).entrySet().iterator());
+      for (int i = segments.size() - 1; i >= 0; i--) {
+        sources.add(segments.get(i).iterator(fromKey));
+      }
+
+      Iterator<Map.Entry<String, byte[]>> entries = combine(sources);
+      while (entries.hasNext()) {
+        Map.Entry<String, byte[]> entry = entries.next();
+
+        if (!entry.getKey().startsWith(prefix)) {
+          return;
+        }
+
+        if (entry.getValue() != TOMBSTONE && !visitor.test(entry.getKey(), entry.getValue())) {
+          return;
+        }
+      }
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    } finally {
+      segmentsLock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Writes several changes atomically. The changes are on disk when this method returns, and
+   * lookups and scans see either all of them or none.
+   *
+   * @param changes maps keys to their new values. A null value deletes the key.
+   * @throws IOException if an error occurred when writing to disk, or if the last background
+   *                     merge failed, in which case the changes are not written.
+   */
+  void write(Map<String, byte[]> changes) throws IOException {
+    Objects.requireNonNull(changes);
+
+    synchronized (writeLock) {
+      throwMergeFailure();
+      appendToLog(changes);
+
+      segmentsLock.writeLock().lock();
+      try {
+        for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+          byte[] value = change.getValue() == null ? TOMBSTONE : change.getValue();
+          table.put(change.getKey(), value);
+          tableSize += change.getKey().length() + value.length;
+        }
+      } finally {
+        segmentsLock.writeLock().unlock();
+      }
+
+      if (tableSize >= tableLimit) {
+        flush();
+      }
+    }
+  }
+
+  /**
+   * Throws the failure of the last background merge, if it has not been reported yet. Must be
+   * called while holding the write lock.
+   *
+   * @throws IOException if the last merge failed.
+   */
+  private void throwMergeFailure() throws IOException {
+    IOException failure = mergeFailure;
+    mergeFailure = null;
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Gets the number of segments, which is mostly interesting for tests.
+   *
+   * @return the number of live segments.
+   */
+  int segmentCount() {
+    return segments.size();
+  }
+
+  /**
+   * Writes the table to a new segment and empties the log. Must be called while holding the
+   * write lock.
+   *
+   * @throws IOException if an error occurred when writing the segment.
+   */
+  private void flush() throws IOException {
+    if (table.isEmpty()) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    SegmentFile segment = SegmentFile.write(
+        directory.resolve(segmentName(nextSegment++)), table.entrySet().iterator());
+    statistics.recordSerialize(Files.size(segment.getPath()), start);
+
+    List<SegmentFile> updated = new ArrayList<>(segments);
+    updated.add(segment);
+    writeManifest(updated);
+
+    segmentsLock.writeLock().lock();
+    try {
+      segments = List.copyOf(updated);
+      table = new ConcurrentSkipListMap<>();
+    } finally {
+      segmentsLock.writeLock().unlock();
+    }
+
+    // Every change in the log is now in a listed segment
+    log.truncate(0);
+    log.force(true);
+    tableSize = 0;
+
+    if (!merging) {
+      scheduleMerge(getMerger());
+    }
+  }
+
+  /**
+   * Starts merging the live segments in the background, if there are enough of them. Must be
+   * called while holding the write lock.
+   *
+   * @param executor runs the merge.
+   */
+  private void scheduleMerge(ExecutorService executor) {
+    if (segments.size() >= mergeThreshold) {
+      merging = true;
+      List<SegmentFile> inputs = segments;
+      executor.execute(() -> merge(inputs));
+    }
+  }
+
+  /**
+   * Merges segments into a single segment. The inputs must be the oldest live segments, so
+   * deleted keys can be dropped, as there is no older value they hide.
+   *
+   * @param inputs are the segments to merge, oldest first.
+   */
+  private void merge(List<SegmentFile> inputs) {
+    SegmentFile merged = null;
+
+    try {
+      List<Iterator<Map.Entry<String, byte[]>>> sources = new ArrayList<>();
+      for (int i = inputs.size() - 1; i >= 0; i--) {
+        sources.add(inputs.get(i).iterator(""));
+      }
+
+      Iterator<Map.Entry<String, byte[]>> entries = combine(sources);
+      String name;
+      synchronized (writeLock) {
+        name = segmentName(nextSegment++);
+      }
+
+      long start = System.nanoTime();
+      merged = SegmentFile.write(directory.resolve(name), new Iterator<>() {
+        private Map.Entry<String, byte[]> next = advance();
+
+        @Override
+        public boolean hasNext() {
+          return next != null;
+        }
+
+        @Override
+        public Map.Entry<String, byte[]> next() {
+          Map.Entry<String, byte[]> current = next;
+          next = advance();
+          return current;
+        }
+
+        private Map.Entry<String, byte[]> advance() {
+          while (entries.hasNext()) {
+            Map.Entry<String, byte[]> entry = entries.next();
+            if (entry.getValue() != TOMBSTONE) {
+              return entry;
+            }
+          }
+          return null;
+        }
+      });
+      statistics.recordSerialize(Files.size(merged.getPath()), start);
+
+      synchronized (writeLock) {
+        // Segments flushed during the merge are newer than the inputs, and stay after them
+        List<SegmentFile> updated = new ArrayList<>();
+        updated.add(merged);
+        updated.addAll(segments.subList(inputs.size(), segments.size()));
+        writeManifest(updated);
+
+        segmentsLock.writeLock().lock();
+        try {
+          segments = List.copyOf(updated);
+        } finally {
+          segmentsLock.writeLock().unlock();
+        }
+      }
+
+      for (SegmentFile input : inputs) {
+        input.close();
+        Files.deleteIfExists(input.getPath());
+      }
+    } catch (IOException | UncheckedIOException e) {
+      // The inputs stay live, and are merged again after the next flush
+      synchronized (writeLock) {
+        mergeFailure = new IOException("Could not merge the segments in " + directory, e);
+      }
+
+      if (merged != null) {
+        try {
+          merged.close();
+          Files.deleteIfExists(merged.getPath());
+        } catch (IOException ignored) {
+          // The unlisted segment is deleted when the store is opened
+        }
+      }
+    } finally {
+      synchronized (writeLock) {
+        merging = false;
+
+        // Segments flushed during the merge may call for another merge, unless the store closes
+        // or the merge failed, which is retried once the failure is reported
+        if (merger != null && mergeFailure == null) {
+          scheduleMerge(merger);
+        }
+      }
+    }
+  }
+
+  /**
+   * Combines sorted sources into one sorted iterator. If several sources contain a key, the
+   * value of the earliest source is used.
+   *
+   * @param sources are the sources, newest first.
+   * @return the entries of all sources, one per key.
+   */
+  private static Iterator<Map.Entry<String, byte[]>> combine(
+      List<Iterator<Map.Entry<String, byte[]>>> sources) {
+    // Heads of the sources, ordered by key and then by the age of their source
+    PriorityQueue<Head> heads = new PriorityQueue<>(Comparator
+        .comparing((Head head) -> head.entry.getKey())
+        .thenComparingInt(head -> head.source));
+
+    for (int i = 0; i < sources.size(); i++) {
+      if (sources.get(i).hasNext()) {
+        heads.add(new Head(sources.get(i).next(), i, sources.get(i)));
+      }
+    }
+
+    return new Iterator<>() {
+      @Override
+      public boolean hasNext() {
+        return !heads.isEmpty();
+      }
+
+      @Override
+      public Map.Entry<String, byte[]> next() {
+        Head newest = heads.poll();
+        if (newest == null) {
+          throw new NoSuchElementException();
+        }
+
+        advance(newest);
+
+        // Skip the older values of the same key
+        while (!heads.isEmpty() && heads.peek().entry.getKey().equals(newest.entry.getKey())) {
+          advance(heads.poll());
+        }
+
+        return newest.entry;
+      }
+
+      private void advance(Head head) {
+        if (head.iterator.hasNext()) {
+          heads.add(new Head(head.iterator.next(), head.source, head.iterator));
+        }
+      }
+    };
+  }
+
+  private void appendToLog(Map<String, byte[]> changes) throws IOException {
+    long start = System.nanoTime();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream payload = new DataOutputStream(bytes);
+    payload.writeInt(changes.size());
+
+    for (Map.Entry<String, byte[]> change : changes.entrySet()) {
+      byte[] key = change.getKey().getBytes(StandardCharsets.UTF_8);
+      payload.writeInt(key.length);
+      payload.write(key);
+
+      if (change.getValue() == null) {
+        payload.writeInt(-1);
+      } else {
+        payload.writeInt(change.getValue().length);
+        payload.write(change.getValue());
+      }
+    }
+
+    CRC32C crc = new CRC32C();
+    crc.update(bytes.toByteArray());
+
+    ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + bytes.size());
+    record.putInt(bytes.size()).putInt((int) crc.getValue()).put(bytes.toByteArray()).flip();
+
+    while (record.hasRemaining()) {
+      log.write(record, log.size());
+    }
+    statistics.recordSerialize(record.limit(), start);
+
+    long syncStart = System.nanoTime();
+    log.force(false);
+    statistics.recordFsync(syncStart);
+  }
+
+  /**
+   * Gets the number of records replayed from the write-ahead log when the store was opened.
+   *
+   * @return the number of valid records in the log.
+   */
+  int getReplayedRecords() {
+    return replayedRecords;
+  }
+
+  /**
+   * Gets the number of bytes truncated from the write-ahead log when the store was opened.
+   *
+   * @return the number of bytes after the last valid record, which is 0 after a clean shutdown.
+   */
+  long getDiscardedBytes() {
+    return discardedBytes;
+  }
+
+  /**
+   * Applies the records in the write-ahead log to the table. The log is truncated after the
+   * last complete record, so that a record torn by a crash is not followed by new records.
+   *
+   * @throws IOException if an error occurred when reading the log.
+   */
+  private void replayLog() throws IOException {
+    long start = System.nanoTime();
+    ByteBuffer content = ByteBuffer.allocate((int) log.size());
+    while (content.hasRemaining() && log.read(content, content.position()) >= 0) {
+      // Keep reading until the whole log is in memory
+    }
+    content.flip();
+
+    long valid = 0;
+    try {
+      while (content.remaining() >= 2 * Integer.BYTES) {
+        int length = content.getInt();
+        int checksum = content.getInt();
+
+        if (length < 0 || length > content.remaining()) {
+          break;
+        }
+
+        byte[] payload = new byte[length];
+        content.get(payload);
+
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        if ((int) crc.getValue() != checksum) {
+          break;
+        }
+
+        ByteBuffer changes = ByteBuffer.wrap(payload);
+        for (int count = changes.getInt(); count > 0; count--) {
+          byte[] key = new byte[changes.getInt()];
+          changes.get(key);
+          int valueLength = changes.getInt();
+          byte[] value = TOMBSTONE;
+
+          if (valueLength >= 0) {
+            value = new byte[valueLength];
+            changes.get(value);
+          }
+
+          String decoded = new String(key, StandardCharsets.UTF_8);
+          table.put(decoded, value);
+          tableSize += decoded.length() + value.length;
+        }
+
+        valid = content.position();
+        replayedRecords++;
+      }
+    } catch (BufferUnderflowException | NegativeArraySizeException e) {
+      // A record with a valid checksum but invalid content was not written by this class
+      throw new IOException(directory.resolve(LOG_NAME) + " is corrupt.", e);
+    }
+
+    statistics.recordParse(valid, start);
+
+    if (valid < log.size()) {
+      discardedBytes = log.size() - valid;
+      log.truncate(valid);
+      log.force(true);
+    }
+  }
+
+  /**
+   * Opens the segments listed in the manifest, and deletes segments that are not listed, which
+   * are left over from an interrupted flush or merge.
+   *
+   * @return the live segments, oldest first.
+   * @throws IOException if a listed segment could not be opened.
+   */
+  private List<SegmentFile> openSegments() throws IOException {
+    Path manifest = directory.resolve(MANIFEST_NAME);
+    List<String> names = Files.exists(manifest)
+        ? Files.readAllLines(manifest, StandardCharsets.UTF_8)
+        : List.of();
+    Set<String> listed = new HashSet<>();
+    List<SegmentFile> opened = new ArrayList<>();
+    segments = opened;
+
+    for (String name : names) {
+      Matcher matcher = SEGMENT_NAME.matcher(name);
+      if (!matcher.matches()) {
+        continue;
+      }
+
+      listed.add(name);
+      opened.add(SegmentFile.open(directory.resolve(name)));
+      nextSegment = Math.max(nextSegment, Long.parseLong(matcher.group(1)) + 1);
+    }
+
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+      for (Path path : paths) {
+        String name = String.valueOf(path.getFileName());
+        Matcher matcher = SEGMENT_NAME.matcher(name);
+
+        if (matcher.matches()) {
+          nextSegment = Math.max(nextSegment, Long.parseLong(matcher.group(1)) + 1);
+        }
+
+        if (!listed.contains(name) && (matcher.matches() || name.endsWith(".tmp"))) {
+          Files.deleteIfExists(path);
+        }
+      }
+    }
+
+    return List.copyOf(opened);
+  }
+
+  private void writeManifest(List<SegmentFile> live) throws IOException {
+    StringBuilder content = new StringBuilder();
+    for (SegmentFile segment : live) {
+      content.append(segment.getPath().getFileName()).append('\n');
+    }
+
+    Path manifest = directory.resolve(MANIFEST_NAME);
+    Path temporaryPath = Files.createTempFile(directory, MANIFEST_NAME, ".tmp");
+    try {
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE)) {
+        ByteBuffer bytes = StandardCharsets.UTF_8.encode(content.toString());
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+        channel.force(true);
+      }
+
+      SnapshotFile.moveAtomically(temporaryPath, manifest);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  private static String segmentName(long number) {
+    return String.format("segment-%06d.dat", number);
+  }
+
+  /**
+   * Gets the executor running merges. Must be called while holding the write lock.
+   *
+   * @return the merge executor.
+   */
+  private ExecutorService getMerger() {
+    if (merger == null) {
+      merger = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cognition-storage-merger-" + directory.getFileName());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    return merger;
+  }
+
+  /**
+   * Waits for a running merge and closes all files. Changes in the table stay in the log, and are
+   * replayed when the store is opened again.
+   *
+   * @throws IOException if an error occurred when closing the files, or if the last merge failed
+   *                     and the failure was not reported yet.
+   */
+  @Override
+  public void close() throws IOException {
+    ExecutorService currentMerger;
+    synchronized (writeLock) {
+      currentMerger = merger;
+      merger = null;
+    }
+
+    if (currentMerger != null) {
+      currentMerger.shutdown();
+      try {
+        currentMerger.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    synchronized (writeLock) {
+      closeAll();
+      lockChannel.close();
+      throwMergeFailure();
+    }
+  }
+
+  private void closeAll() throws IOException {
+    if (log != null) {
+      log.close();
+    }
+
+    if (segments != null) {
+      for (SegmentFile segment : segments) {
+        segment.close();
+      }
+    }
+  }
+
+  /**
+   * The current entry of a source being merged.
+   */
+  private static final class Head {
+    private final Map.Entry<String, byte[]> entry;
+    private final int source;
+    private final Iterator<Map.Entry<String, byte[]>> iterator;
+
+    private Head(Map.Entry<String, byte[]> entry, int source,
+                 Iterator<Map.Entry<String, byte[]>> iterator) {
+      this.entry = entry;
+      this.source = source;
+      this.iterator = iterator;
+    }
+  }
+}
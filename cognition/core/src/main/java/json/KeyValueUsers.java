@@ -0,0 +1,512 @@
+package json;
+
+import com.google.gson.Gson;
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stores users in a {@link KeyValueStore}, as the key-value backend of {@link CognitionStorage}.
+ *
+ * <p>Every user is stored under the key {@code user:<username>}, encoded as a single element of
+ * the configured {@link StorageCodec}, and every quiz has a key {@code quiz:<uuid>} holding the
+ * username of its owner. A change to a user writes the user and the quiz keys that changed in one
+ * atomic batch, so the cost of a change does not depend on the number of stored users. Users are
+ * listed in the order of their usernames.
+ *
+ * <p>Like {@link UserRepository}, storing a user assigns the versions of the user and its quizzes.
+ * A quiz UUID belongs to a single user, so storing a user whose quiz is owned by another user is
+ * rejected. The owners are checked and the user is written while holding a lock shared by all
+ * users, so two users cannot claim the same UUID at the same time.
+ */
+final class KeyValueUsers implements Closeable {
+  private static final String USER_PREFIX = "user:";
+  private static final String QUIZ_PREFIX = "quiz:";
+  private static final long TABLE_LIMIT = 4L * 1024 * 1024;
+  private static final int MERGE_THRESHOLD = 4;
+  private static final int IMPORT_BATCH_SIZE = 1000;
+  private static final int STREAM_PAGE_SIZE = 256;
+
+  private final Gson gson;
+  private final StorageCodec codec;
+  private final KeyValueStore store;
+  private final StorageStatistics statistics;
+  // Held while the quiz owners are checked and the claiming user is written
+  private final Object quizOwnersLock = new Object();
+
+  /**
+   * Opens the key-value store belonging to a storage file.
+   *
+   * @param gson        is used to create private copies of users.
+   * @param codec       is used to encode and decode users. It must be indexable.
+   * @param storagePath is the path of the storage file.
+   * @param statistics  receives the bytes read and written, and the time spent on them.
+   * @throws IOException if the store could not be opened.
+   */
+  KeyValueUsers(Gson gson, StorageCodec codec, Path storagePath, StorageStatistics statistics)
+      throws IOException {
+    this.gson = Objects.requireNonNull(gson);
+    this.codec = Objects.requireNonNull(codec);
+    this.statistics = Objects.requireNonNull(statistics);
+
+    if (!codec.isIndexable()) {
+      throw new IllegalArgumentException("The key-value store requires an indexable codec.");
+    }
+
+    this.store = new KeyValueStore(
+        directoryFor(storagePath), TABLE_LIMIT, MERGE_THRESHOLD, statistics);
+  }
+
+  /**
+   * Gets the directory holding the key-value store of a storage file.
+   *
+   * @param storagePath is the path of the storage file.
+   * @return the path of the directory.
+   */
+  static Path directoryFor(Path storagePath) {
+    return storagePath.resolveSibling(storagePath.getFileName() + ".kv");
+  }
+
+  Optional<User> find(String username) throws IOException {
+    byte[] value = store.get(USER_PREFIX + Objects.requireNonNull(username));
+    return value == null ? Optional.empty() : Optional.of(decode(value));
+  }
+
+  /**
+   * Describes the quizzes of a user, decoding the stored user with
+   * {@link StorageCodec#decodeQuizHeaders}.
+   *
+   * @param username is the username of the user.
+   * @return the quizzes of the user, if the user exists.
+   * @throws IOException if an error occurred when reading the store.
+   */
+  Optional<List<CompactQuiz>> findQuizHeaders(String username) throws IOException {
+    byte[] value = store.get(USER_PREFIX + Objects.requireNonNull(username));
+
+    if (value == null) {
+      return Optional.empty();
+    }
+
+    long start = System.nanoTime();
+    List<CompactQuiz> headers = codec.decodeQuizHeaders(ByteBuffer.wrap(value), username);
+    statistics.recordParse(value.length, start);
+    return Optional.of(headers);
+  }
+
+  boolean contains(String username) throws IOException {
+    return store.get(USER_PREFIX + Objects.requireNonNull(username)) != null;
+  }
+
+  /**
+   * Gets the username of the user owning the quiz with the given UUID.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the username of the owner, if the quiz exists.
+   * @throws IOException if an error occurred when reading the store.
+   */
+  Optional<String> findQuizOwner(String uuid) throws IOException {
+    byte[] owner = store.get(QUIZ_PREFIX + Objects.requireNonNull(uuid));
+    return owner == null
+        ? Optional.empty()
+        : Optional.of(new String(owner, StandardCharsets.UTF_8));
+  }
+
+  /**
+   * Gets all users, in the order of their usernames.
+   *
+   * @return a list of User objects.
+   * @throws IOException if an error occurred when reading the store.
+   */
+  List<User> findAll() throws IOException {
+    List<byte[]> values = new ArrayList<>();
+    store.scan(USER_PREFIX, (key, value) -> values.add(value));
+
+    List<User> users = new ArrayList<>(values.size());
+    for (byte[] value : values) {
+      users.add(decode(value));
+    }
+
+    return users;
+  }
+
+  /**
+   * Streams all users, in the order of their usernames. The users are read from the store in
+   * pages, so only one page is held in memory, and the store is not held between pages. A user
+   * changed while the stream is consumed is seen either before or after the change. Errors while
+   * reading are thrown as {@link UncheckedIOException}.
+   *
+   * @return a sequential stream of User objects.
+   */
+  Stream<User> stream() {
+    Iterator<User> users = new Iterator<>() {
+      private final Deque<byte[]> page = new ArrayDeque<>();
+      private String fromKey = USER_PREFIX;
+      private boolean exhausted;
+
+      @Override
+      public boolean hasNext() {
+        if (page.isEmpty() && !exhausted) {
+          readPage();
+        }
+
+        return !page.isEmpty();
+      }
+
+      @Override
+      public User next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+
+        try {
+          return decode(page.poll());
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      private void readPage() {
+        String[] lastKey = new String[1];
+
+        try {
+          store.scan(USER_PREFIX, fromKey, (key, value) -> {
+            page.add(value);
+            lastKey[0] = key;
+            return page.size() < STREAM_PAGE_SIZE;
+          });
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+
+        if (page.size() < STREAM_PAGE_SIZE) {
+          exhausted = true;
+        } else {
+          // The smallest key after the last one read
+          fromKey = lastKey[0] + '\0';
+        }
+      }
+    };
+
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(users, Spliterator.ORDERED | Spliterator.NONNULL),
+        false);
+  }
+
+  boolean isEmpty() throws IOException {
+    boolean[] empty = {true};
+    store.scan(USER_PREFIX, (key, value) -> empty[0] = false);
+    return empty[0];
+  }
+
+  /**
+   * Gets the number of records replayed from the log of the store when it was opened.
+   *
+   * @return the number of valid records in the log.
+   */
+  int getReplayedRecords() {
+    return store.getReplayedRecords();
+  }
+
+  /**
+   * Gets the number of bytes discarded from the log of the store when it was opened.
+   *
+   * @return the number of bytes after the last valid record.
+   */
+  long getDiscardedBytes() {
+    return store.getDiscardedBytes();
+  }
+
+  /**
+   * Stores a new user. The stored user and its quizzes get version 1.
+   *
+   * @param user is the user to store.
+   * @return the stored user.
+   * @throws IOException              if an error occurred when writing the store.
+   * @throws IllegalArgumentException if a user with the same username already exists, or another
+   *                                  user owns one of its quizzes.
+   */
+  User insert(User user) throws IOException {
+    Objects.requireNonNull(user);
+
+    if (contains(user.getUsername())) {
+      throw new IllegalArgumentException(
+          "The username " + user.getUsername() + " is already in use.");
+    }
+
+    User stored = copy(user);
+    UserRepository.assignVersions(gson, null, stored);
+
+    synchronized (quizOwnersLock) {
+      requireOwnQuizzes(stored.getUsername(), stored, Map.of());
+      store.write(changes(null, stored));
+    }
+
+    return stored;
+  }
+
+  /**
+   * Replaces the user with the given username, assigning versions like
+   * {@link UserRepository#replace(String, User)}.
+   *
+   * @param username is the username of the user to replace.
+   * @param user     is the new version of the user.
+   * @return the stored user.
+   * @throws IOException              if an error occurred when reading or writing the store.
+   * @throws NoSuchElementException   if no user with the given username exists.
+   * @throws IllegalArgumentException if another user owns one of its quizzes.
+   */
+  User replace(String username, User user) throws IOException, NoSuchElementException {
+    Objects.requireNonNull(user);
+    User previous = find(username).orElseThrow(NoSuchElementException::new);
+
+    User stored = copy(user);
+    UserRepository.assignVersions(gson, previous, stored);
+
+    synchronized (quizOwnersLock) {
+      requireOwnQuizzes(username, stored, Map.of());
+      store.write(changes(previous, stored));
+    }
+
+    return stored;
+  }
+
+  /**
+   * Replaces a single quiz of a user, assigning versions like
+   * {@link UserRepository#replaceQuiz(String, Quiz)}. Only the key of the user is written, as the
+   * quiz keys are unchanged.
+   *
+   * @param username is the username of the user owning the quiz.
+   * @param quiz     is the new version of the quiz.
+   * @return the stored user.
+   * @throws IOException            if an error occurred when reading or writing the store.
+   * @throws NoSuchElementException if the user does not exist or does not own the quiz.
+   */
+  User replaceQuiz(String username, Quiz quiz) throws IOException, NoSuchElementException {
+    User previous = find(username).orElseThrow(NoSuchElementException::new);
+
+    User stored = UserRepository.withQuiz(previous,
+        gson.fromJson(gson.toJsonTree(quiz), Quiz.class));
+    stored.setVersion(previous.getVersion() + 1);
+    store.write(Map.of(USER_PREFIX + username, encode(stored)));
+    return stored;
+  }
+
+  /**
+   * Removes the user with the given username, together with its quiz keys.
+   *
+   * @param username is the username of the user to remove.
+   * @throws IOException            if an error occurred when reading or writing the store.
+   * @throws NoSuchElementException if no user with the given username exists.
+   */
+  void remove(String username) throws IOException, NoSuchElementException {
+    User previous = find(username).orElseThrow(NoSuchElementException::new);
+    store.write(changes(previous, null));
+  }
+
+  /**
+   * Stores or replaces a batch of users in a single write, assigning versions like
+   * {@link #insert(User)} and {@link #replace(String, User)}.
+   *
+   * @param users are the users to store.
+   * @throws IOException              if an error occurred when reading or writing the store.
+   * @throws IllegalArgumentException if another user owns a quiz of one of the users. None of
+   *                                  the users are stored then.
+   */
+  void importAll(List<User> users) throws IOException {
+    Map<String, User> pending = new HashMap<>();
+    Map<String, byte[]> batch = new LinkedHashMap<>();
+
+    synchronized (quizOwnersLock) {
+      for (User user : users) {
+        String username = user.getUsername();
+        User previous = pending.containsKey(username)
+            ? pending.get(username)
+            : find(username).orElse(null);
+
+        User stored = copy(user);
+        UserRepository.assignVersions(gson, previous, stored);
+        requireOwnQuizzes(username, stored, batch);
+        batch.putAll(changes(previous, stored, batch));
+        pending.put(username, stored);
+      }
+
+      store.write(batch);
+    }
+  }
+
+  /**
+   * Stores users exactly as provided, including their versions, for instance when moving the
+   * users of a storage file into the store. Users are written in batches.
+   *
+   * @param users are the users to store.
+   * @throws IOException if an error occurred when writing the store.
+   */
+  void restoreAll(Iterable<User> users) throws IOException {
+    Map<String, byte[]> batch = new LinkedHashMap<>();
+    int count = 0;
+
+    for (User user : users) {
+      batch.putAll(changes(null, user));
+
+      if (++count % IMPORT_BATCH_SIZE == 0) {
+        store.write(batch);
+        batch.clear();
+      }
+    }
+
+    if (!batch.isEmpty()) {
+      store.write(batch);
+    }
+  }
+
+  /**
+   * Computes the keys to write when a user is replaced.
+   *
+   * @param previous is the stored user, or null if the user is new.
+   * @param stored   is the new user, or null if the user is removed.
+   * @return the changed keys and their new values, where null deletes a key.
+   * @throws IOException if the store could not be read or the new user could not be encoded.
+   */
+  private Map<String, byte[]> changes(User previous, User stored) throws IOException {
+    return changes(previous, stored, Map.of());
+  }
+
+  /**
+   * Computes the keys to write when a user is replaced, as part of a batch that is not written
+   * yet.
+   *
+   * @param previous is the stored user, or null if the user is new.
+   * @param stored   is the new user, or null if the user is removed.
+   * @param batch    are the changes written together with these, which take precedence over the
+   *                 store.
+   * @return the changed keys and their new values, where null deletes a key.
+   * @throws IOException if the store could not be read or the new user could not be encoded.
+   */
+  private Map<String, byte[]> changes(User previous, User stored, Map<String, byte[]> batch)
+      throws IOException {
+    Map<String, byte[]> changes = new LinkedHashMap<>();
+    Set<String> kept = new HashSet<>();
+    boolean renamed = previous != null && stored != null
+        && !previous.getUsername().equals(stored.getUsername());
+
+    if (stored != null) {
+      byte[] owner = stored.getUsername().getBytes(StandardCharsets.UTF_8);
+
+      for (Quiz quiz : stored.getQuizzes()) {
+        kept.add(quiz.getUuid());
+        changes.put(QUIZ_PREFIX + quiz.getUuid(), owner);
+      }
+    }
+
+    if (previous != null) {
+      for (Quiz quiz : previous.getQuizzes()) {
+        if (!kept.contains(quiz.getUuid())) {
+          // Only remove the key if it still points to this user
+          if (isOwner(batch, quiz.getUuid(), previous.getUsername())) {
+            changes.put(QUIZ_PREFIX + quiz.getUuid(), null);
+          }
+        } else if (!renamed) {
+          // The quiz still points to the same owner
+          changes.remove(QUIZ_PREFIX + quiz.getUuid());
+        }
+      }
+
+      if (stored == null || renamed) {
+        changes.put(USER_PREFIX + previous.getUsername(), null);
+      }
+    }
+
+    if (stored != null) {
+      changes.put(USER_PREFIX + stored.getUsername(), encode(stored));
+    }
+
+    return changes;
+  }
+
+  /**
+   * Checks that no quiz of a user about to be stored is owned by another user. Must be called
+   * while holding the lock of the quiz owners, until the user is written.
+   *
+   * @param username is the username of the user to replace, or of the new user.
+   * @param stored   is the user about to be stored.
+   * @param batch    are the changes written together with the user, which take precedence over
+   *                 the store.
+   * @throws IOException              if an error occurred when reading the store.
+   * @throws IllegalArgumentException if another user owns one of the quizzes.
+   */
+  private void requireOwnQuizzes(String username, User stored, Map<String, byte[]> batch)
+      throws IOException {
+    for (Quiz quiz : stored.getQuizzes()) {
+      String key = QUIZ_PREFIX + quiz.getUuid();
+      byte[] owner = batch.containsKey(key) ? batch.get(key) : store.get(key);
+
+      if (owner != null && !username.equals(new String(owner, StandardCharsets.UTF_8))) {
+        throw new IllegalArgumentException("The quiz " + quiz.getUuid() + " is already in use.");
+      }
+    }
+  }
+
+  private boolean isOwner(Map<String, byte[]> batch, String uuid, String username)
+      throws IOException {
+    String key = QUIZ_PREFIX + uuid;
+    byte[] owner = batch.containsKey(key) ? batch.get(key) : store.get(key);
+    return owner != null && username.equals(new String(owner, StandardCharsets.UTF_8));
+  }
+
+  private byte[] encode(User user) throws IOException {
+    // The bytes are counted when the store writes them
+    long start = System.nanoTime();
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    long[] element = new long[2];
+    codec.write(output, List.of(user), (username, offset, length) -> {
+      element[0] = offset;
+      element[1] = length;
+    });
+
+    byte[] bytes = output.toByteArray();
+    byte[] value = new byte[(int) element[1]];
+    System.arraycopy(bytes, (int) element[0], value, 0, value.length);
+    statistics.recordSerialize(0, start);
+    return value;
+  }
+
+  private User decode(byte[] value) throws IOException {
+    long start = System.nanoTime();
+    User user = codec.decode(ByteBuffer.wrap(value));
+    statistics.recordParse(value.length, start);
+    return user;
+  }
+
+  private User copy(User user) {
+    return gson.fromJson(gson.toJsonTree(user), User.class);
+  }
+
+  @Override
+  public void close() throws IOException {
+    store.close();
+  }
+}
@@ -0,0 +1,96 @@
+package json;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts durations in buckets whose bounds are powers of two microseconds.
+ *
+ * <p>Bucket 0 counts durations below one microsecond, and bucket {@code i} counts durations of at
+ * least 2<sup>i-1</sup> and less than 2<sup>i</sup> microseconds. The last bucket also counts
+ * everything longer. Recording a duration only increments two {@link LongAdder}s, so threads
+ * recording concurrently do not contend, and percentiles are estimated from the buckets when
+ * {@link #snapshot()} is called.
+ */
+final class LatencyHistogram {
+  static final int BUCKETS = 32;
+
+  private final LongAdder[] buckets = new LongAdder[BUCKETS];
+  private final LongAdder totalNanos = new LongAdder();
+
+  LatencyHistogram() {
+    for (int i = 0; i < BUCKETS; i++) {
+      buckets[i] = new LongAdder();
+    }
+  }
+
+  /**
+   * Records a duration.
+   *
+   * @param nanos is the duration in nanoseconds.
+   */
+  void record(long nanos) {
+    long micros = Math.max(0, nanos) / 1000;
+    int bucket = Math.min(Long.SIZE - Long.numberOfLeadingZeros(micros), BUCKETS - 1);
+
+    buckets[bucket].increment();
+    totalNanos.add(Math.max(0, nanos));
+  }
+
+  /**
+   * Records the time elapsed since a start time.
+   *
+   * @param startNanos is the value of {@link System#nanoTime()} when the measured call started.
+   */
+  void recordSince(long startNanos) {
+    record(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Gets the current counts. Durations recorded while the snapshot is taken may or may not be
+   * included.
+   *
+   * @return the number of durations, their mean and estimated percentiles, and the counts of
+   *         every bucket.
+   */
+  OperationStatistics snapshot() {
+    long[] counts = new long[BUCKETS];
+    long count = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      counts[i] = buckets[i].sum();
+      count += counts[i];
+    }
+
+    double meanMicros = count == 0 ? 0 : totalNanos.sum() / 1000.0 / count;
+
+    return new OperationStatistics(count, meanMicros, percentile(counts, count, 0.5),
+        percentile(counts, count, 0.99), counts);
+  }
+
+  /**
+   * Estimates a percentile as the upper bound of the bucket holding it.
+   *
+   * @param counts   are the counts of every bucket.
+   * @param count    is the sum of the counts.
+   * @param quantile is the percentile as a fraction between 0 and 1.
+   * @return the upper bound of the bucket in microseconds, or 0 if nothing was recorded.
+   */
+  private static long percentile(long[] counts, long count, double quantile) {
+    if (count == 0) {
+      return 0;
+    }
+
+    long rank = (long) Math.ceil(quantile * count);
+    long seen = 0;
+
+    for (int i = 0; i < BUCKETS; i++) {
+      seen += counts[i];
+
+      if (seen >= rank) {
+        return 1L << i;
+      }
+    }
+
+    return 1L << (BUCKETS - 1);
+  }
+}
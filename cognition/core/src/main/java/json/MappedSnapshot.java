@@ -0,0 +1,96 @@
+package json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Objects;
+
+/**
+ * A storage file mapped into memory with {@link FileChannel#map}.
+ *
+ * <p>Users are decoded directly from the mapped pages, so repeated reads are served from the
+ * operating system's page cache instead of copying the file into the Java heap on every call. The
+ * mapping records the {@link FileStamp} of the file, and is only replaced when the stamp
+ * changes. Since snapshots are replaced by renaming a new file over the old one, a mapping keeps
+ * describing one complete version of the file even while a new version is written. Other
+ * programs must likewise replace the file rather than truncate it in place, as reading a mapped
+ * page that no longer exists in the file fails.
+ */
+final class MappedSnapshot {
+  private final MappedByteBuffer buffer;
+  private final long size;
+  private final FileStamp stamp;
+
+  private MappedSnapshot(MappedByteBuffer buffer, long size, FileStamp stamp) {
+    this.buffer = Objects.requireNonNull(buffer);
+    this.size = size;
+    this.stamp = Objects.requireNonNull(stamp);
+  }
+
+  /**
+   * Maps a storage file into memory.
+   *
+   * @param path is the path of the storage file.
+   * @return the mapped file.
+   * @throws IOException if the file could not be mapped, for instance because it is larger than
+   *                     the 2 GB a single mapping can hold.
+   */
+  static MappedSnapshot map(Path path) throws IOException {
+    // Stamped before mapping, so a file replaced in between is mapped again on the next check
+    FileStamp stamp = FileStamp.of(path);
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      long size = channel.size();
+
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException(path + " is too large to be mapped into memory.");
+      }
+
+      // The mapping stays valid after the channel is closed
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      return new MappedSnapshot(buffer, size, stamp);
+    }
+  }
+
+  /**
+   * Determines whether this mapping still describes the current content of a storage file.
+   *
+   * @param path is the path of the storage file.
+   * @return true if the stamp of the file is unchanged.
+   * @throws IOException if the file could not be read.
+   */
+  boolean matches(Path path) throws IOException {
+    return stamp.matches(path);
+  }
+
+  /**
+   * Opens a stream over the whole mapped file.
+   *
+   * @return a stream reading the mapped bytes.
+   */
+  InputStream openStream() {
+    return new BufferInputStream(buffer.duplicate());
+  }
+
+  /**
+   * Gets a range of the mapped file, without copying it.
+   *
+   * @param offset is the offset of the first byte.
+   * @param length is the number of bytes.
+   * @return a buffer holding the range, or null if the range lies outside the mapped file.
+   */
+  ByteBuffer slice(long offset, int length) {
+    if (offset < 0 || length < 0 || offset + length > size) {
+      return null;
+    }
+
+    ByteBuffer range = buffer.duplicate();
+    range.position((int) offset);
+    range.limit((int) offset + length);
+    return range.slice();
+  }
+}
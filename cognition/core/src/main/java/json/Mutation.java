@@ -0,0 +1,158 @@
+package json;
+
+import core.Quiz;
+import core.User;
+import java.io.IOException;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+/**
+ * A single change to the stored users. Mutations are applied to the resident
+ * {@link UserRepository} or to the {@link KeyValueUsers} and, when journaling is enabled, appended
+ * to the {@link StorageJournal}.
+ *
+ * <p>Every mutation carries the complete state of the affected user, or for a change to a single
+ * quiz, the complete state of that quiz and the resulting version of its owner. Replaying a
+ * mutation that has already been applied therefore leaves the repository unchanged, and a quiz
+ * change is journaled without the other quizzes of the user.
+ */
+final class Mutation {
+  /**
+   * Describes what kind of change a mutation is.
+   */
+  enum Type {
+    CREATE,
+    UPDATE,
+    DELETE,
+    UPDATE_QUIZ
+  }
+
+  private final Type type;
+  private final String username;
+  private final User user;
+  private final Quiz quiz;
+  private final long userVersion;
+
+  private Mutation(Type type, String username, User user) {
+    this(type, username, user, null, 0);
+  }
+
+  private Mutation(Type type, String username, User user, Quiz quiz, long userVersion) {
+    this.type = Objects.requireNonNull(type);
+    this.username = Objects.requireNonNull(username);
+    this.user = user;
+    this.quiz = quiz;
+    this.userVersion = userVersion;
+  }
+
+  static Mutation create(User user) {
+    return new Mutation(Type.CREATE, user.getUsername(), Objects.requireNonNull(user));
+  }
+
+  static Mutation update(String username, User user) {
+    return new Mutation(Type.UPDATE, username, Objects.requireNonNull(user));
+  }
+
+  static Mutation delete(String username) {
+    return new Mutation(Type.DELETE, username, null);
+  }
+
+  static Mutation updateQuiz(String username, Quiz quiz) {
+    return new Mutation(Type.UPDATE_QUIZ, username, null, Objects.requireNonNull(quiz), 0);
+  }
+
+  Type getType() {
+    return type;
+  }
+
+  String getUsername() {
+    return username;
+  }
+
+  User getUser() {
+    return user;
+  }
+
+  Quiz getQuiz() {
+    return quiz;
+  }
+
+  /**
+   * Applies the mutation to a repository.
+   *
+   * @param repository is the repository to change.
+   * @return the mutation as it was applied, carrying the user with the versions assigned by the
+   *         repository. This is the mutation to append to the journal.
+   * @throws NoSuchElementException   if the user to update or delete does not exist, or does not
+   *                                  own the quiz to update.
+   * @throws IllegalArgumentException if the user to create already exists, or another user owns
+   *                                  one of the quizzes of the user to store.
+   */
+  Mutation applyTo(UserRepository repository) {
+    return switch (type) {
+      case CREATE -> new Mutation(type, username, repository.insert(user));
+      case UPDATE -> new Mutation(type, username, repository.replace(username, user));
+      case DELETE -> {
+        repository.remove(username);
+        yield this;
+      }
+      case UPDATE_QUIZ -> applied(repository.replaceQuiz(username, quiz));
+    };
+  }
+
+  /**
+   * Applies the mutation to users in a key-value store.
+   *
+   * @param users are the users to change.
+   * @return the mutation as it was applied, carrying the user with its assigned versions.
+   * @throws IOException              if an error occurred when reading or writing the store.
+   * @throws NoSuchElementException   if the user to update or delete does not exist, or does not
+   *                                  own the quiz to update.
+   * @throws IllegalArgumentException if the user to create already exists, or another user owns
+   *                                  one of the quizzes of the user to store.
+   */
+  Mutation applyTo(KeyValueUsers users) throws IOException {
+    return switch (type) {
+      case CREATE -> new Mutation(type, username, users.insert(user));
+      case UPDATE -> new Mutation(type, username, users.replace(username, user));
+      case DELETE -> {
+        users.remove(username);
+        yield this;
+      }
+      case UPDATE_QUIZ -> applied(users.replaceQuiz(username, quiz));
+    };
+  }
+
+  /**
+   * Creates the applied version of a quiz change.
+   *
+   * @param stored is the user as stored after the change.
+   * @return a mutation carrying the stored quiz and the version of the stored user.
+   */
+  private Mutation applied(User stored) {
+    Quiz storedQuiz = stored.findQuiz(quiz.getUuid()).orElseThrow();
+    return new Mutation(type, username, null, storedQuiz, stored.getVersion());
+  }
+
+  /**
+   * Applies the mutation to a repository during recovery. Unlike
+   * {@link #applyTo(UserRepository)}, this never throws because the user is missing or already
+   * present, as the repository may already contain the effect of the mutation, and the user is
+   * stored with the versions it carries.
+   *
+   * @param repository is the repository to change.
+   */
+  void replay(UserRepository repository) {
+    switch (type) {
+      case CREATE, UPDATE ->
+          repository.restore(repository.contains(username) ? username : user.getUsername(), user);
+      case DELETE -> {
+        if (repository.contains(username)) {
+          repository.remove(username);
+        }
+      }
+      case UPDATE_QUIZ -> repository.restoreQuiz(username, quiz, userVersion);
+      default -> throw new IllegalStateException("Unknown mutation type: " + type);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package json;
+
+import java.util.Arrays;
+import javax.management.ConstructorParameters;
+
+/**
+ * The number and latency of the calls of one kind of storage operation, as exposed by
+ * {@link StorageStatisticsMXBean}.
+ *
+ * <p>Latencies are counted in buckets whose upper bounds are powers of two microseconds, so the
+ * percentiles are estimates that are at most a factor of two above the actual latency.
+ */
+public final class OperationStatistics {
+  private final long count;
+  private final double meanMicros;
+  private final long medianMicros;
+  private final long p99Micros;
+  private final long[] histogram;
+
+  /**
+   * Initializes the statistics of an operation. Also used by JMX clients to reconstruct the
+   * statistics from their open type.
+   *
+   * @param count        is the number of calls.
+   * @param meanMicros   is the mean latency in microseconds.
+   * @param medianMicros is the estimated median latency in microseconds.
+   * @param p99Micros    is the estimated 99th percentile latency in microseconds.
+   * @param histogram    are the number of calls in every bucket.
+   */
+  @ConstructorParameters({"count", "meanMicros", "medianMicros", "p99Micros", "histogram"})
+  public OperationStatistics(long count, double meanMicros, long medianMicros, long p99Micros,
+                             long[] histogram) {
+    this.count = count;
+    this.meanMicros = meanMicros;
+    this.medianMicros = medianMicros;
+    this.p99Micros = p99Micros;
+    this.histogram = histogram.clone();
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public double getMeanMicros() {
+    return meanMicros;
+  }
+
+  public long getMedianMicros() {
+    return medianMicros;
+  }
+
+  public long getP99Micros() {
+    return p99Micros;
+  }
+
+  /**
+   * Gets the number of calls in every bucket. Bucket 0 counts calls taking less than one
+   * microsecond, and bucket {@code i} counts calls taking at least 2<sup>i-1</sup> and less than
+   * 2<sup>i</sup> microseconds. The last bucket also counts every longer call.
+   *
+   * @return a copy of the bucket counts.
+   */
+  public long[] getHistogram() {
+    return histogram.clone();
+  }
+
+  @Override
+  public String toString() {
+    return count + " calls, mean " + String.format("%.1f", meanMicros) + " us, median < "
+        + medianMicros + " us, p99 < " + p99Micros + " us, histogram "
+        + Arrays.toString(histogram);
+  }
+}
@@ -0,0 +1,115 @@
+package json;
+
+import java.time.Duration;
+import java.util.Objects;
+
+/**
+ * Describes how {@link CognitionStorage} recovered its state when it was opened.
+ *
+ * <p>Opening the storage loads the latest snapshot and replays the records written after it,
+ * either from the journal or from the write-ahead log of the key-value store. Every record carries
+ * a CRC32C checksum, and replaying stops at the first record that is incomplete or does not match
+ * its checksum, which is what a crash in the middle of a write leaves behind. The snapshot is
+ * verified against the checksum in its index, and a snapshot that cannot be decoded completely is
+ * recovered up to its last complete user.
+ */
+public final class RecoveryReport {
+  private final Duration duration;
+  private final int loadedUsers;
+  private final boolean fromImage;
+  private final int replayedRecords;
+  private final long discardedBytes;
+  private final boolean snapshotDamaged;
+
+  RecoveryReport(Duration duration, int loadedUsers, boolean fromImage, int replayedRecords,
+                 long discardedBytes, boolean snapshotDamaged) {
+    this.duration = Objects.requireNonNull(duration);
+    this.loadedUsers = loadedUsers;
+    this.fromImage = fromImage;
+    this.replayedRecords = replayedRecords;
+    this.discardedBytes = discardedBytes;
+    this.snapshotDamaged = snapshotDamaged;
+  }
+
+  /**
+   * Gets the time it took to open the storage.
+   *
+   * @return the time spent loading the snapshot and replaying records.
+   */
+  public Duration getDuration() {
+    return duration;
+  }
+
+  /**
+   * Gets the number of users loaded from the snapshot.
+   *
+   * @return the number of users in the snapshot, or 0 for the key-value store, which does not
+   *         load its users up front.
+   */
+  public int getLoadedUsers() {
+    return loadedUsers;
+  }
+
+  /**
+   * Determines whether the users were loaded from a {@link HeapImage} instead of being decoded
+   * from the storage file.
+   *
+   * @return true if the snapshot was loaded from its heap image.
+   */
+  public boolean isFromImage() {
+    return fromImage;
+  }
+
+  /**
+   * Gets the number of valid records that were replayed.
+   *
+   * @return the number of journal or log records applied after the snapshot.
+   */
+  public int getReplayedRecords() {
+    return replayedRecords;
+  }
+
+  /**
+   * Gets the number of bytes that were not replayed, because they follow the last valid record.
+   *
+   * @return the number of discarded bytes, which is 0 after a clean shutdown.
+   */
+  public long getDiscardedBytes() {
+    return discardedBytes;
+  }
+
+  /**
+   * Determines whether the snapshot did not match its checksum or could not be decoded
+   * completely. A copy of the damaged snapshot is then kept next to the storage file.
+   *
+   * @return true if the snapshot was damaged.
+   */
+  public boolean isSnapshotDamaged() {
+    return snapshotDamaged;
+  }
+
+  /**
+   * Determines whether the storage was recovered without losing any written data.
+   *
+   * @return true if no bytes were discarded and the snapshot was intact.
+   */
+  public boolean isClean() {
+    return discardedBytes == 0 && !snapshotDamaged;
+  }
+
+  @Override
+  public String toString() {
+    String summary = "Loaded " + loadedUsers + " users" + (fromImage ? " from the heap image" : "")
+        + " and replayed " + replayedRecords + " records in " + duration.toMillis() + " ms";
+
+    if (discardedBytes > 0) {
+      summary += ", discarding " + discardedBytes + " bytes after the last valid record";
+    }
+
+    if (snapshotDamaged) {
+      summary += ", recovering a damaged snapshot";
+    }
+
+    return summary + ".";
+  }
+}
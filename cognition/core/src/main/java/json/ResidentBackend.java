@@ -0,0 +1,773 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonParseException;
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Keeps all users in a resident {@link UserRepository}, which is loaded from the storage file on
+ * first use. Changes are applied in memory and then written to the storage file by a
+ * {@link StorageWriter}, which batches concurrent changes into a single atomic snapshot write.
+ *
+ * <p>With {@link StorageOptions#isJournaled()}, changes are instead appended to a
+ * {@link StorageJournal}, which is folded into the storage file by a background compaction. With
+ * {@link StorageOptions#getShardCount()}, the users are stored in {@link StorageShards}, and a
+ * change only rewrites the shard of the changed user.
+ *
+ * <p>The resident users act as a cache of the parsed storage file, and are reloaded when someone
+ * else changes the file. A change is counted as pending from before it is applied until a snapshot
+ * containing it is written, and the users are never reloaded while a change is pending.
+ */
+final class ResidentBackend implements StorageBackend {
+  private final Gson gson;
+  private final StorageFile file;
+  private final StorageOptions options;
+  private final StorageStatistics statistics;
+  private final StorageJournal journal;
+  private final StorageShards shards;
+  private final Object writeLock = new Object();
+  private volatile UserRepository repository;
+  private volatile FileStamp storageStamp;
+  private long startedChanges;
+  private long appliedChanges;
+  private long writtenChanges;
+  private volatile RecoveryReport recoveryReport;
+  private StorageWriter writer;
+  private ExecutorService compactor;
+  private IOException compactionFailure;
+  private Thread shutdownHook;
+
+  /**
+   * Creates a resident backend, without loading the users.
+   *
+   * @param gson       copies users when changes are applied, and encodes the journal.
+   * @param file       is the storage file.
+   * @param options    configures how changes are persisted.
+   * @param statistics records the bytes and time spent on the stored files.
+   * @throws IllegalArgumentException if sharding is combined with journaling.
+   */
+  ResidentBackend(Gson gson, StorageFile file, StorageOptions options,
+                  StorageStatistics statistics) {
+    if (options.getShardCount() > 0 && options.isJournaled()) {
+      throw new IllegalArgumentException(
+          "Sharding requires a resident repository without journaling.");
+    }
+
+    this.gson = gson;
+    this.file = file;
+    this.options = options;
+    this.statistics = statistics;
+    this.journal = new StorageJournal(gson, file.getPath(), statistics);
+    this.shards = options.getShardCount() > 0
+        ? new StorageShards(file.getCodec(), file.getPath(), options.getShardCount(), statistics)
+        : null;
+  }
+
+  @Override
+  public List<User> findAll() throws IOException {
+    return getRepository().findAll();
+  }
+
+  @Override
+  public Stream<User> stream() throws IOException {
+    return getRepository().stream();
+  }
+
+  @Override
+  public User find(String username) throws IOException, NoSuchElementException {
+    return getRepository().find(username);
+  }
+
+  @Override
+  public boolean contains(String username) throws IOException {
+    return getRepository().contains(username);
+  }
+
+  @Override
+  public List<CompactQuiz> findQuizHeaders(String username)
+      throws IOException, NoSuchElementException {
+    return getRepository().findQuizHeaders(username);
+  }
+
+  @Override
+  public Quiz findQuiz(String uuid) throws IOException, NoSuchElementException {
+    return getRepository().findQuiz(uuid);
+  }
+
+  @Override
+  public String findQuizOwner(String uuid) throws IOException, NoSuchElementException {
+    return getRepository().findQuizOwner(uuid);
+  }
+
+  /**
+   * Applies a mutation to the resident users and persists it, either by appending it to the
+   * journal or through the storage writer. Without write-behind persistence, this waits until the
+   * storage writer has written a snapshot containing the mutation. Concurrent mutations share the
+   * same snapshot write. A journaled mutation whose record cannot be appended or synced is undone
+   * before the error is thrown, so it is neither visible nor lost on the next start.
+   *
+   * @param mutation is the change to apply.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  @Override
+  public void apply(Mutation mutation) throws IOException {
+    long ticket = applyMutation(mutation);
+
+    if (ticket > 0 && !options.isWriteBehind()) {
+      getWriter().await(ticket);
+    }
+  }
+
+  @Override
+  public void importAll(List<User> batch) throws IOException {
+    UserRepository current = getRepository();
+    long ticket = 0;
+
+    for (User user : batch) {
+      ticket = applyMutation(StorageBackend.upsert(current.contains(user.getUsername()), user));
+    }
+
+    if (ticket > 0) {
+      getWriter().await(ticket);
+    }
+  }
+
+  /**
+   * Applies a mutation and persists it like {@link #apply(Mutation)}, but without waiting for the
+   * storage writer.
+   *
+   * @param mutation is the change to apply.
+   * @return the ticket of the snapshot write that will contain the mutation, or 0 if the mutation
+   *         is already persisted.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  private long applyMutation(Mutation mutation) throws IOException {
+    UserRepository current = getRepository();
+
+    if (options.isJournaled()) {
+      User previous = current.peek(mutation.getUsername());
+      long appended;
+      synchronized (writeLock) {
+        throwCompactionFailure();
+        Mutation applied = mutation.applyTo(current);
+
+        try {
+          appended = journal.append(applied);
+        } catch (IOException | RuntimeException e) {
+          revert(current, mutation, previous);
+          throw e;
+        }
+
+        compactIfNeeded(current);
+      }
+
+      try {
+        // Concurrent mutations share the fsync, as it is not made under the write lock
+        journal.sync(appended);
+      } catch (IOException e) {
+        revert(current, mutation, previous);
+        throw e;
+      }
+
+      return 0;
+    }
+
+    applyPending(mutation, current);
+
+    if (shards != null) {
+      shards.markDirty(mutation.getUsername());
+
+      if (mutation.getUser() != null) {
+        // A renamed user moves to the shard of its new username
+        shards.markDirty(mutation.getUser().getUsername());
+      }
+    }
+
+    return getWriter().requestWrite();
+  }
+
+  /**
+   * Undoes a journaled mutation whose record could not be appended or synced, so that a change
+   * that may be lost on restart does not stay visible. The caller still holds the locks of the
+   * changed users, so the mutation is the last change made to them.
+   *
+   * @param repository holds the resident users.
+   * @param mutation   is the mutation that was applied.
+   * @param previous   is the stored user before the mutation, or null if it created the user.
+   */
+  private static void revert(UserRepository repository, Mutation mutation, User previous) {
+    String changedUsername = switch (mutation.getType()) {
+      case CREATE, UPDATE -> mutation.getUser().getUsername();
+      case UPDATE_QUIZ -> mutation.getUsername();
+      case DELETE -> null;
+    };
+
+    repository.revert(mutation.getUsername(), previous, changedUsername);
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return file.isEmpty();
+  }
+
+  /**
+   * Blocks until all changes are written to the storage file or journal. Only has an effect when
+   * write-behind persistence is enabled, as changes are otherwise written before
+   * {@link #apply(Mutation)} returns.
+   *
+   * @throws IOException if an error occurred when writing to local storage, or if the last
+   *                     background compaction of the journal failed.
+   */
+  @Override
+  public void flush() throws IOException {
+    StorageWriter current;
+    synchronized (this) {
+      current = writer;
+    }
+
+    if (current != null) {
+      current.flush();
+    }
+
+    synchronized (writeLock) {
+      throwCompactionFailure();
+    }
+  }
+
+  @Override
+  public Optional<RecoveryReport> getRecoveryReport() {
+    return Optional.ofNullable(recoveryReport);
+  }
+
+  /**
+   * Writes all pending changes and stops the background writer and compaction, if any.
+   *
+   * @throws IOException if an error occurred when writing to local storage, or if the last
+   *                     background compaction failed and the failure was not reported yet.
+   */
+  @Override
+  public void close() throws IOException {
+    removeShutdownHook();
+
+    StorageWriter currentWriter;
+    synchronized (this) {
+      currentWriter = writer;
+      writer = null;
+    }
+
+    ExecutorService currentCompactor;
+    synchronized (writeLock) {
+      currentCompactor = compactor;
+      compactor = null;
+    }
+
+    if (currentWriter != null) {
+      currentWriter.close();
+    }
+
+    if (currentWriter != null && options.isHeapImage() && !options.isJournaled()
+        && shards == null) {
+      // The storage file now holds every change, so an image of it lets the next start skip it
+      UserRepository current;
+      synchronized (this) {
+        current = repository;
+      }
+
+      Path path = file.getPath();
+      if (current != null && !HeapImage.matches(HeapImage.pathFor(path), path)) {
+        writeImage(current.snapshot());
+      }
+    }
+
+    if (currentCompactor != null) {
+      currentCompactor.shutdown();
+      try {
+        currentCompactor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    journal.close();
+
+    synchronized (writeLock) {
+      throwCompactionFailure();
+    }
+  }
+
+  /**
+   * Writes a snapshot of the users to the storage file, and records the stamp of the written file
+   * as the version of the file the resident users match.
+   *
+   * @param users are the users to write.
+   * @throws IOException if an error occurred when writing the storage file.
+   */
+  private void writeFile(List<User> users) throws JsonIOException, IOException {
+    FileStamp stamp = file.write(users);
+
+    synchronized (this) {
+      storageStamp = stamp;
+    }
+  }
+
+  /**
+   * Starts folding the journal into the storage file in the background, if the journal has
+   * reached the compaction threshold. Must be called while holding the write lock, so that the
+   * snapshot matches the rotated journal exactly.
+   *
+   * @param repository holds the state to write.
+   * @throws IOException if an error occurred when rotating the journal.
+   */
+  private void compactIfNeeded(UserRepository repository) throws IOException {
+    if (journal.size() < options.getCompactionThreshold() || journal.isRotated()) {
+      // Below the threshold, or the previous compaction is still running
+      return;
+    }
+
+    compact(repository);
+  }
+
+  /**
+   * Throws the failure of the last compaction, if it has not been reported yet. Must be called
+   * while holding the write lock.
+   *
+   * @throws IOException if the last compaction failed.
+   */
+  private void throwCompactionFailure() throws IOException {
+    IOException failure = compactionFailure;
+    compactionFailure = null;
+
+    if (failure != null) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Starts folding the journal into the storage file in the background. Must be called while
+   * holding the write lock, and only if no compaction is running.
+   *
+   * @param repository holds the state to write.
+   * @throws IOException if an error occurred when rotating the journal.
+   */
+  private void compact(UserRepository repository) throws IOException {
+    List<User> snapshot = repository.snapshot();
+    journal.rotate();
+
+    getCompactor().execute(() -> {
+      try {
+        writeFile(snapshot);
+        writeImage(snapshot);
+        journal.deleteRotated();
+      } catch (IOException | JsonIOException e) {
+        // The rotated journal is kept and replayed on the next start
+        synchronized (writeLock) {
+          compactionFailure =
+              new IOException("Could not compact the journal of " + file.getPath(), e);
+        }
+      }
+    });
+  }
+
+  /**
+   * Writes a {@link HeapImage} of the users that were just written to the storage file, if
+   * enabled. The image only speeds up the next start, so a failure only removes it.
+   *
+   * @param users are the users in the storage file.
+   */
+  private void writeImage(List<User> users) {
+    if (!options.isHeapImage()) {
+      return;
+    }
+
+    Path imagePath = HeapImage.pathFor(file.getPath());
+
+    try {
+      HeapImage.write(imagePath, file.getPath(), users, statistics);
+    } catch (IOException e) {
+      try {
+        Files.deleteIfExists(imagePath);
+      } catch (IOException ignored) {
+        // A stale image is detected by the size and modification time of the storage file
+      }
+    }
+  }
+
+  /**
+   * Gets the resident users, loading them from the storage file and replaying the journal on
+   * first use, and reloading them if someone else changed the storage file.
+   *
+   * <p>An unchanged storage file that was written more than a moment ago is recognized by a
+   * metadata lookup alone. Only a recently written file is stamped in full, which reads its first
+   * and last 4 KB. Neither happens while holding the lock of the backend, which is only taken to
+   * reload the users once the file is known to have changed.
+   *
+   * @return the repository holding all users.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private UserRepository getRepository() throws IOException {
+    UserRepository current = loadRepository();
+
+    if (!detectsExternalChanges()) {
+      return current;
+    }
+
+    Path path = file.getPath();
+    FileStamp known = storageStamp;
+    if (known != null && known.isSettledVersionOf(path)) {
+      return current;
+    }
+
+    FileStamp stamp = FileStamp.of(path);
+    if (stamp.equals(known)) {
+      return current;
+    }
+
+    synchronized (this) {
+      // A write of ours that completed since the file was stamped installed a new stamp
+      if (storageStamp == known && startedChanges == writtenChanges) {
+        // Someone else changed the storage file, since every change of ours is written
+        current.reset(file.readAll());
+        storageStamp = stamp;
+      }
+    }
+
+    return current;
+  }
+
+  /**
+   * Applies a mutation to the resident users, counting it as pending until
+   * {@link #writeSnapshot(UserRepository)} has written it, so that {@link #getRepository()} does
+   * not reload the users in the meantime.
+   *
+   * @param mutation   is the change to apply.
+   * @param repository holds the resident users.
+   */
+  private void applyPending(Mutation mutation, UserRepository repository) {
+    synchronized (this) {
+      startedChanges++;
+    }
+
+    boolean applied = false;
+    try {
+      mutation.applyTo(repository);
+      applied = true;
+    } finally {
+      synchronized (this) {
+        if (applied) {
+          appliedChanges++;
+        } else {
+          // A mutation that failed changed nothing, so there is nothing to write
+          startedChanges--;
+        }
+      }
+    }
+  }
+
+  /**
+   * Writes a snapshot of the resident users to the storage file, and marks the changes applied
+   * before the snapshot was taken as written.
+   *
+   * @param repository holds the resident users.
+   * @throws IOException if an error occurred when writing the storage file.
+   */
+  private void writeSnapshot(UserRepository repository) throws IOException {
+    long covered;
+    synchronized (this) {
+      covered = appliedChanges;
+    }
+
+    writeFile(repository.snapshot());
+
+    synchronized (this) {
+      writtenChanges = Math.max(writtenChanges, covered);
+    }
+  }
+
+  /**
+   * Determines whether the resident users are reloaded when the storage file is changed by
+   * someone else. Journaled and sharded storage is not reloaded, since the storage file does not
+   * hold the current state.
+   *
+   * @return true if external changes are detected.
+   */
+  private boolean detectsExternalChanges() {
+    return options.isDetectingExternalChanges() && !options.isJournaled() && shards == null;
+  }
+
+  /**
+   * Gets the resident users, loading them from the storage file and replaying the journal on
+   * first use. Once loaded, the users are returned without taking the lock of the backend.
+   *
+   * @return the repository holding all users.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private UserRepository loadRepository() throws IOException {
+    UserRepository current = repository;
+    if (current != null) {
+      return current;
+    }
+
+    synchronized (this) {
+      return loadRepositoryLocked();
+    }
+  }
+
+  private UserRepository loadRepositoryLocked() throws IOException {
+    if (repository == null && shards != null) {
+      long start = System.nanoTime();
+      repository = loadShards();
+      report(start, repository.size(), false, 0, 0, false);
+    }
+
+    if (repository == null) {
+      long start = System.nanoTime();
+      storageStamp = FileStamp.of(file.getPath());
+      List<User> users = options.isHeapImage() ? readImage() : null;
+      boolean fromImage = users != null;
+      boolean damaged = false;
+
+      if (!fromImage) {
+        users = new ArrayList<>();
+        damaged = !recoverUsers(users);
+      }
+
+      UserRepository loaded = new UserRepository(gson, users);
+      int replayed = 0;
+      long discarded = 0;
+
+      if (journal.exists()) {
+        List<Mutation> mutations = journal.read();
+        for (Mutation mutation : mutations) {
+          mutation.replay(loaded);
+        }
+
+        replayed = mutations.size();
+        discarded = journal.getDiscardedBytes();
+      }
+
+      if (options.isJournaled() && !damaged && journal.exists() && !journal.isRotated()) {
+        // Serving requests does not wait for the replayed mutations to be folded
+        synchronized (writeLock) {
+          compact(loaded);
+        }
+      } else if (damaged || journal.exists()) {
+        // Fold the replayed mutations into a fresh storage file, so the journal starts empty
+        synchronized (writeLock) {
+          List<User> snapshot = loaded.snapshot();
+          writeFile(snapshot);
+          writeImage(snapshot);
+          journal.deleteAll();
+        }
+      } else if (!fromImage) {
+        writeImage(users);
+      }
+
+      repository = loaded;
+      report(start, users.size(), fromImage, replayed, discarded, damaged);
+    }
+
+    return repository;
+  }
+
+  /**
+   * Reads the users in the {@link HeapImage} of the storage file.
+   *
+   * @return the users, or null if there is no current and intact image.
+   * @throws IOException if an error occurred when reading an existing image.
+   */
+  private List<User> readImage() throws IOException {
+    long start = System.nanoTime();
+    Path imagePath = HeapImage.pathFor(file.getPath());
+    List<User> users = HeapImage.read(imagePath, file.getPath());
+
+    if (users != null) {
+      statistics.recordParse(Files.size(imagePath), start);
+    }
+
+    return users;
+  }
+
+  /**
+   * Loads the users of the storage file when the resident users are first loaded, verifying the
+   * file against the checksum recorded in its index. If the file cannot be decoded completely,
+   * for instance because it was cut off, the users before the damaged part are kept. A damaged
+   * file is copied next to the storage file with the suffix {@code .damaged} before it is
+   * replaced.
+   *
+   * @param users receives the users of the storage file.
+   * @return true if the storage file is intact.
+   * @throws IOException if the storage file could not be read, or not a single user could be
+   *                     decoded from it.
+   */
+  private boolean recoverUsers(List<User> users) throws IOException {
+    if (file.isEmpty()) {
+      return true;
+    }
+
+    Path path = file.getPath();
+    SnapshotIndex persisted = file.getCodec().isIndexable()
+        ? SnapshotIndex.read(SnapshotIndex.pathFor(path))
+        : null;
+    boolean verifiable = persisted != null && persisted.isVerifiable(path);
+    CRC32C checksum = new CRC32C();
+    long start = System.nanoTime();
+
+    try (InputStream input = new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(path)), checksum);
+         Stream<User> decoded = file.getCodec().read(input)) {
+      decoded.forEachOrdered(users::add);
+      input.transferTo(OutputStream.nullOutputStream());
+      statistics.recordParse(Files.size(path), start);
+    } catch (IOException | UncheckedIOException | JsonParseException e) {
+      if (users.isEmpty()) {
+        throw new IOException(
+            path + " is present, but an error occurred when reading users from user storage.");
+      }
+
+      keepDamagedCopy(path);
+      return false;
+    }
+
+    if (verifiable && checksum.getValue() != persisted.getChecksum()) {
+      keepDamagedCopy(path);
+      return false;
+    }
+
+    return true;
+  }
+
+  private static void keepDamagedCopy(Path path) throws IOException {
+    Files.copy(path, path.resolveSibling(path.getFileName() + ".damaged"),
+        StandardCopyOption.REPLACE_EXISTING);
+  }
+
+  /**
+   * Records how the storage was recovered, for {@link #getRecoveryReport()}.
+   *
+   * @param start           is the value of {@link System#nanoTime()} when recovery started.
+   * @param loadedUsers     is the number of users loaded from the snapshot.
+   * @param fromImage       is whether the users were loaded from a heap image.
+   * @param replayedRecords is the number of replayed journal records.
+   * @param discardedBytes  is the number of bytes after the last valid record.
+   * @param snapshotDamaged is whether the snapshot was damaged.
+   */
+  private void report(long start, int loadedUsers, boolean fromImage, int replayedRecords,
+                      long discardedBytes, boolean snapshotDamaged) {
+    recoveryReport = new RecoveryReport(Duration.ofNanos(System.nanoTime() - start), loadedUsers,
+        fromImage, replayedRecords, discardedBytes, snapshotDamaged);
+  }
+
+  /**
+   * Loads the resident users from the shards. If there are no shards yet, the users in the
+   * storage file are split into shards, and if the shards were written with a different number
+   * of shards, every user is moved to its new shard.
+   *
+   * @return the repository holding all users.
+   * @throws IOException if an error occurred when reading or writing the shards.
+   */
+  private UserRepository loadShards() throws IOException {
+    if (!shards.exists()) {
+      UserRepository loaded = new UserRepository(gson, file.readAll());
+      shards.writeAll(loaded.snapshot());
+      return loaded;
+    }
+
+    UserRepository loaded;
+    try {
+      loaded = new UserRepository(gson, shards.read());
+    } catch (IOException | UncheckedIOException e) {
+      throw new IOException(shards.getDirectory()
+          + " is present, but an error occurred when reading users from user storage.");
+    }
+
+    if (!shards.isBalanced()) {
+      shards.writeAll(loaded.snapshot());
+    }
+
+    return loaded;
+  }
+
+  /**
+   * Gets the executor running compactions. Must be called while holding the write lock.
+   *
+   * @return the compaction executor.
+   */
+  private ExecutorService getCompactor() {
+    if (compactor == null) {
+      compactor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable,
+            "cognition-storage-compactor-" + file.getPath().getFileName());
+        thread.setDaemon(true);
+        return thread;
+      });
+    }
+
+    return compactor;
+  }
+
+  private synchronized StorageWriter getWriter() {
+    if (writer == null) {
+      UserRepository current = repository;
+      StorageShards currentShards = shards;
+      writer = new StorageWriter(
+          "cognition-storage-writer-" + file.getPath().getFileName(),
+          currentShards != null
+              ? () -> currentShards.writeDirty(current)
+              : () -> writeSnapshot(current),
+          options.isWriteBehind()
+              ? options.getFlushDelayMillis()
+              : options.getGroupCommitWindowMillis());
+
+      if (options.isWriteBehind() && shutdownHook == null) {
+        shutdownHook = new Thread(() -> {
+          try {
+            close();
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        }, "cognition-storage-shutdown-" + file.getPath().getFileName());
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+      }
+    }
+
+    return writer;
+  }
+
+  /**
+   * Removes the shutdown hook registered by {@link #getWriter()}, unless this is called by the
+   * hook itself.
+   */
+  private synchronized void removeShutdownHook() {
+    if (shutdownHook != null && shutdownHook != Thread.currentThread()) {
+      try {
+        Runtime.getRuntime().removeShutdownHook(shutdownHook);
+      } catch (IllegalStateException e) {
+        // The virtual machine is shutting down, and the hook is running or has run
+      }
+    }
+
+    shutdownHook = null;
+  }
+}
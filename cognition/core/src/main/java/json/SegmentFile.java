@@ -0,0 +1,324 @@
+package json;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * An immutable file of key-value pairs sorted by key, written by {@link KeyValueStore}.
+ *
+ * <p>The records are followed by a sparse index, which holds the key and offset of every
+ * {@value #INDEX_INTERVAL}th record and is kept in memory while the segment is open. A lookup
+ * searches the index for the block that may contain the key, and reads and scans only that block.
+ * The layout of a segment is:
+ *
+ * <pre>
+ * segment = record* int:indexCount (string:key long:offset)* long:indexOffset int:magic
+ * record  = string:key int:valueLength byte* (valueLength is -1 for a deleted key)
+ * string  = int:byteCount byte*
+ * </pre>
+ */
+final class SegmentFile implements Closeable {
+  private static final int MAGIC = 0x434f4753;
+  private static final int INDEX_INTERVAL = 16;
+  private static final int TRAILER_LENGTH = Long.BYTES + Integer.BYTES;
+
+  private final Path path;
+  private final FileChannel channel;
+  private final String[] indexKeys;
+  private final long[] indexOffsets;
+  private final long dataLength;
+
+  private SegmentFile(Path path, FileChannel channel, String[] indexKeys, long[] indexOffsets,
+                      long dataLength) {
+    this.path = path;
+    this.channel = channel;
+    this.indexKeys = indexKeys;
+    this.indexOffsets = indexOffsets;
+    this.dataLength = dataLength;
+  }
+
+  /**
+   * Writes a segment. The file is written to a temporary file, synced to disk and then renamed,
+   * so the segment is either complete or missing.
+   *
+   * @param path    is the file to write.
+   * @param entries are the entries to write, in ascending order of their keys. A value equal to
+   *                {@link KeyValueStore#TOMBSTONE} marks a deleted key.
+   * @return the opened segment.
+   * @throws IOException if an error occurred when writing the file.
+   */
+  static SegmentFile write(Path path, Iterator<Map.Entry<String, byte[]>> entries)
+      throws IOException {
+    Path temporaryPath = SnapshotFile.createTemporaryFile(path);
+
+    try {
+      try (FileChannel output = FileChannel.open(temporaryPath, StandardOpenOption.WRITE);
+           DataOutputStream data = new DataOutputStream(
+               new BufferedOutputStream(Channels.newOutputStream(output)))) {
+        List<byte[]> indexKeys = new ArrayList<>();
+        List<Long> indexOffsets = new ArrayList<>();
+        long position = 0;
+        int count = 0;
+
+        while (entries.hasNext()) {
+          Map.Entry<String, byte[]> entry = entries.next();
+          byte[] key = entry.getKey().getBytes(StandardCharsets.UTF_8);
+
+          if (count++ % INDEX_INTERVAL == 0) {
+            indexKeys.add(key);
+            indexOffsets.add(position);
+          }
+
+          data.writeInt(key.length);
+          data.write(key);
+
+          if (entry.getValue() == KeyValueStore.TOMBSTONE) {
+            data.writeInt(-1);
+            position += 2 * Integer.BYTES + key.length;
+          } else {
+            data.writeInt(entry.getValue().length);
+            data.write(entry.getValue());
+            position += 2 * Integer.BYTES + key.length + entry.getValue().length;
+          }
+        }
+
+        data.writeInt(indexKeys.size());
+        for (int i = 0; i < indexKeys.size(); i++) {
+          data.writeInt(indexKeys.get(i).length);
+          data.write(indexKeys.get(i));
+          data.writeLong(indexOffsets.get(i));
+        }
+
+        data.writeLong(position);
+        data.writeInt(MAGIC);
+        data.flush();
+        output.force(true);
+      }
+
+      SnapshotFile.moveAtomically(temporaryPath, path);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+
+    return open(path);
+  }
+
+  /**
+   * Opens a segment and reads its sparse index.
+   *
+   * @param path is the file to open.
+   * @return the opened segment.
+   * @throws IOException if the file could not be read or is not a complete segment.
+   */
+  static SegmentFile open(Path path) throws IOException {
+    FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+
+    try {
+      long size = channel.size();
+      if (size < TRAILER_LENGTH + Integer.BYTES) {
+        throw new IOException(path + " is not a complete segment.");
+      }
+
+      ByteBuffer trailer = read(channel, size - TRAILER_LENGTH, TRAILER_LENGTH);
+      long dataLength = trailer.getLong();
+
+      if (trailer.getInt() != MAGIC || dataLength < 0 || dataLength > size - TRAILER_LENGTH) {
+        throw new IOException(path + " is not a complete segment.");
+      }
+
+      ByteBuffer index = read(channel, dataLength, (int) (size - TRAILER_LENGTH - dataLength));
+      int count = checkLength(index, index.getInt());
+      String[] keys = new String[count];
+      long[] offsets = new long[count];
+
+      for (int i = 0; i < count; i++) {
+        keys[i] = readKey(index);
+        offsets[i] = index.getLong();
+      }
+
+      return new SegmentFile(path, channel, keys, offsets, dataLength);
+    } catch (BufferUnderflowException e) {
+      channel.close();
+      throw new IOException(path + " is not a complete segment.", e);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  /**
+   * Looks up the value of a key.
+   *
+   * @param key is the key to look up.
+   * @return the value, {@link KeyValueStore#TOMBSTONE} if the key was deleted, or null if the
+   *         segment does not contain the key.
+   * @throws IOException if an error occurred when reading the segment.
+   */
+  byte[] get(String key) throws IOException {
+    int block = Arrays.binarySearch(indexKeys, key);
+
+    if (block < 0) {
+      // The block starting with the greatest key below the searched key
+      block = -block - 2;
+      if (block < 0) {
+        return null;
+      }
+    }
+
+    ByteBuffer records = readBlock(block);
+    try {
+      while (records.hasRemaining()) {
+        int comparison = readKey(records).compareTo(key);
+        byte[] value = readValue(records);
+
+        if (comparison == 0) {
+          return value;
+        } else if (comparison > 0) {
+          return null;
+        }
+      }
+    } catch (BufferUnderflowException e) {
+      throw new IOException(path + " is not a complete segment.", e);
+    }
+
+    return null;
+  }
+
+  /**
+   * Iterates over the entries of the segment in ascending order of their keys, reading one block
+   * at a time. Errors while reading are thrown as {@link UncheckedIOException}.
+   *
+   * @param fromKey is the smallest key to return.
+   * @return the entries with a key greater than or equal to the given key. Deleted keys have the
+   *         value {@link KeyValueStore#TOMBSTONE}.
+   */
+  Iterator<Map.Entry<String, byte[]>> iterator(String fromKey) {
+    int start = Arrays.binarySearch(indexKeys, fromKey);
+    int firstBlock = start < 0 ? Math.max(0, -start - 2) : start;
+
+    return new Iterator<>() {
+      private int block = firstBlock;
+      private ByteBuffer records = ByteBuffer.allocate(0);
+      private Map.Entry<String, byte[]> next = advance();
+
+      @Override
+      public boolean hasNext() {
+        return next != null;
+      }
+
+      @Override
+      public Map.Entry<String, byte[]> next() {
+        if (next == null) {
+          throw new NoSuchElementException();
+        }
+
+        Map.Entry<String, byte[]> current = next;
+        next = advance();
+        return current;
+      }
+
+      private Map.Entry<String, byte[]> advance() {
+        try {
+          while (true) {
+            while (!records.hasRemaining()) {
+              if (block >= indexKeys.length) {
+                return null;
+              }
+              records = readBlock(block++);
+            }
+
+            String key = readKey(records);
+            byte[] value = readValue(records);
+
+            if (key.compareTo(fromKey) >= 0) {
+              return Map.entry(key, value);
+            }
+          }
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        } catch (BufferUnderflowException e) {
+          throw new UncheckedIOException(
+              new IOException(path + " is not a complete segment.", e));
+        }
+      }
+    };
+  }
+
+  private ByteBuffer readBlock(int block) throws IOException {
+    long start = indexOffsets[block];
+    long end = block + 1 < indexOffsets.length ? indexOffsets[block + 1] : dataLength;
+
+    if (start < 0 || end < start || end > dataLength) {
+      throw new IOException(path + " is not a complete segment.");
+    }
+
+    return read(channel, start, (int) (end - start));
+  }
+
+  private static ByteBuffer read(FileChannel channel, long position, int length)
+      throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    while (buffer.hasRemaining()) {
+      if (channel.read(buffer, position + buffer.position()) < 0) {
+        throw new EOFException();
+      }
+    }
+
+    return buffer.flip();
+  }
+
+  private static String readKey(ByteBuffer buffer) {
+    byte[] key = new byte[checkLength(buffer, buffer.getInt())];
+    buffer.get(key);
+    return new String(key, StandardCharsets.UTF_8);
+  }
+
+  private static byte[] readValue(ByteBuffer buffer) {
+    int length = buffer.getInt();
+
+    if (length == -1) {
+      return KeyValueStore.TOMBSTONE;
+    }
+
+    byte[] value = new byte[checkLength(buffer, length)];
+    buffer.get(value);
+    return value;
+  }
+
+  private static int checkLength(ByteBuffer buffer, int length) {
+    // A corrupt length must not cause a large allocation
+    if (length < 0 || length > buffer.remaining()) {
+      throw new BufferUnderflowException();
+    }
+
+    return length;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+}
@@ -0,0 +1,170 @@
+package json;
+
+import com.google.gson.JsonIOException;
+import core.User;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedOutputStream;
+
+/**
+ * Writes storage files atomically.
+ */
+final class SnapshotFile {
+  private SnapshotFile() {
+  }
+
+  /**
+   * Writes users to a file with the given codec.
+   *
+   * <p>The users are written to a temporary file in the same directory, which is synced to disk
+   * and then atomically renamed over the target file. Readers therefore see either the previous
+   * or the new content, never a partially written file.
+   *
+   * @param codec is used to encode the users.
+   * @param path  is the file to write.
+   * @param users are the users to write.
+   * @return the locations of the users in the written file, the owners of their quizzes, and the
+   *         checksum and stamp of the file.
+   * @throws IOException     if an error occurred when writing the file.
+   * @throws JsonIOException if an error occurred when serializing the JSON content.
+   */
+  static SnapshotIndex.Builder write(StorageCodec codec, Path path, Iterable<User> users)
+      throws IOException, JsonIOException {
+    return write(codec, path, users, new StorageStatistics());
+  }
+
+  /**
+   * Writes users to a file with the given codec, like {@link #write(StorageCodec, Path, Iterable)},
+   * and records the bytes written and the time spent encoding and syncing them.
+   *
+   * @param codec      is used to encode the users.
+   * @param path       is the file to write.
+   * @param users      are the users to write.
+   * @param statistics receives the bytes written, the serialize time and the fsync time.
+   * @return the locations of the users in the written file, the owners of their quizzes, and the
+   *         checksum and stamp of the file.
+   * @throws IOException     if an error occurred when writing the file.
+   * @throws JsonIOException if an error occurred when serializing the JSON content.
+   */
+  static SnapshotIndex.Builder write(StorageCodec codec, Path path, Iterable<User> users,
+                                     StorageStatistics statistics)
+      throws IOException, JsonIOException {
+    Objects.requireNonNull(users);
+    Objects.requireNonNull(statistics);
+
+    Path temporaryPath = createTemporaryFile(path);
+    SnapshotIndex.Builder indexBuilder = new SnapshotIndex.Builder();
+
+    try {
+      CRC32C checksum = new CRC32C();
+
+      try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.WRITE);
+           OutputStream output = new BufferedOutputStream(
+               new CheckedOutputStream(Channels.newOutputStream(channel), checksum))) {
+        // The users may only be iterable once, so their quizzes are indexed as they are written
+        Iterable<User> indexedUsers = () -> new Iterator<>() {
+          private final Iterator<User> iterator = users.iterator();
+
+          @Override
+          public boolean hasNext() {
+            return iterator.hasNext();
+          }
+
+          @Override
+          public User next() {
+            User user = iterator.next();
+            indexBuilder.addQuizzes(user);
+            return user;
+          }
+        };
+
+        long start = System.nanoTime();
+        codec.write(output, indexedUsers, indexBuilder::add);
+        output.flush();
+        statistics.recordSerialize(channel.size(), start);
+
+        long syncStart = System.nanoTime();
+        channel.force(true);
+        statistics.recordFsync(syncStart);
+      }
+
+      indexBuilder.setChecksum(checksum.getValue());
+      // Renaming keeps the file key and modification time, so this is the stamp of the target
+      indexBuilder.setStamp(FileStamp.of(temporaryPath));
+
+      moveAtomically(temporaryPath, path);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+
+    return indexBuilder;
+  }
+
+  /**
+   * Creates an empty temporary file next to a file, to be moved over it once it is written.
+   *
+   * @param target is the file that the temporary file will replace.
+   * @return the path of the temporary file.
+   * @throws IOException if the file could not be created.
+   */
+  static Path createTemporaryFile(Path target) throws IOException {
+    Path directory = target.toAbsolutePath().getParent();
+    Path name = target.getFileName();
+
+    if (directory == null || name == null) {
+      throw new IOException(target + " is not a file in a directory.");
+    }
+
+    return Files.createTempFile(directory, name.toString(), ".tmp");
+  }
+
+  /**
+   * Replaces the target file by the source file, atomically if the file system
+   * supports it. The directory of the target is synced afterwards, so that the
+   * rename itself survives a power loss.
+   *
+   * @param source is the file to move.
+   * @param target is the file to replace.
+   * @throws IOException if an error occurred when moving the file.
+   */
+  static void moveAtomically(Path source, Path target) throws IOException {
+    try {
+      Files.move(source, target,
+          StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } catch (AtomicMoveNotSupportedException e) {
+      Files.move(source, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    syncDirectory(target.toAbsolutePath().getParent());
+  }
+
+  /**
+   * Forces the entries of a directory to disk. Platforms that cannot open a
+   * directory as a channel, like Windows, make renames durable without it, so
+   * an error opening or syncing the directory is ignored.
+   *
+   * @param directory is the directory to sync.
+   */
+  private static void syncDirectory(Path directory) {
+    if (directory == null) {
+      return;
+    }
+
+    try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+      channel.force(true);
+    } catch (IOException e) {
+      // The directory cannot be synced on this platform
+    }
+  }
+}
@@ -0,0 +1,310 @@
+package json;
+
+import core.Quiz;
+import core.User;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+import java.util.zip.CheckedInputStream;
+
+/**
+ * Index of where each user is located in a storage file.
+ *
+ * <p>For every element of the storage file, the index holds the byte offset and length of
+ * the element, keyed by username. A single user can then be decoded by reading only its own bytes.
+ * The index also maps the UUID of every quiz to the username of its owner, so that a quiz is
+ * found without decoding any other user. The index is persisted in a sidecar file next to the
+ * storage file, together with the {@link FileStamp} of the storage file it describes, so that a
+ * stale index is detected and rebuilt, and a CRC32C checksum of its content, so that a
+ * damaged storage file is detected when it is loaded.
+ */
+final class SnapshotIndex {
+  private static final int MAGIC = 0x434f4749;
+  private static final int VERSION = 1;
+
+  private final FileStamp snapshotStamp;
+  private final long snapshotChecksum;
+  private final Map<String, Entry> entries;
+  private final Map<String, String> quizOwners;
+
+  /**
+   * The location of a single user in a storage file.
+   */
+  static final class Entry {
+    private final long offset;
+    private final int length;
+
+    Entry(long offset, int length) {
+      this.offset = offset;
+      this.length = length;
+    }
+
+    long getOffset() {
+      return offset;
+    }
+
+    int getLength() {
+      return length;
+    }
+  }
+
+  private SnapshotIndex(FileStamp snapshotStamp, long snapshotChecksum,
+                        Map<String, Entry> entries, Map<String, String> quizOwners) {
+    this.snapshotStamp = Objects.requireNonNull(snapshotStamp);
+    this.snapshotChecksum = snapshotChecksum;
+    this.entries = Objects.requireNonNull(entries);
+    this.quizOwners = Objects.requireNonNull(quizOwners);
+  }
+
+  static Path pathFor(Path storagePath) {
+    return storagePath.resolveSibling(storagePath.getFileName() + ".index");
+  }
+
+  /**
+   * Gets the location of a user.
+   *
+   * @param username is the username of the user.
+   * @return the location of the user, or null if the user is not in the storage file.
+   */
+  Entry get(String username) {
+    return entries.get(username);
+  }
+
+  /**
+   * Gets the owner of a quiz.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the username of the user owning the quiz, or null if the quiz is not in the storage
+   *         file.
+   */
+  String getQuizOwner(String uuid) {
+    return quizOwners.get(uuid);
+  }
+
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Gets the checksum of the storage file described by this index.
+   *
+   * @return the CRC32C checksum of all bytes of the storage file.
+   */
+  long getChecksum() {
+    return snapshotChecksum;
+  }
+
+  /**
+   * Determines whether this index describes the current content of a storage file.
+   *
+   * @param storagePath is the path of the storage file.
+   * @return true if the stamp of the file matches the index.
+   * @throws IOException if the file could not be read.
+   */
+  boolean matches(Path storagePath) throws IOException {
+    return snapshotStamp.matches(storagePath);
+  }
+
+  /**
+   * Determines whether the checksum of this index applies to a storage file, which is the case if
+   * the file still has the size, modification time and file key recorded in the index. A file
+   * that does not match the checksum then was damaged, rather than replaced by someone else.
+   *
+   * @param storagePath is the path of the storage file.
+   * @return true if the metadata of the file matches the index.
+   * @throws IOException if the file could not be read.
+   */
+  boolean isVerifiable(Path storagePath) throws IOException {
+    return snapshotStamp.hasMetadataOf(FileStamp.of(storagePath));
+  }
+
+  /**
+   * Reads a persisted index.
+   *
+   * @param indexPath is the path of the sidecar file.
+   * @return the index, or null if the sidecar file is missing or could not be parsed.
+   * @throws IOException if an error occurred when reading an existing sidecar file.
+   */
+  static SnapshotIndex read(Path indexPath) throws IOException {
+    if (!Files.exists(indexPath)) {
+      return null;
+    }
+
+    try (DataInputStream input = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(indexPath)))) {
+      if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+        return null;
+      }
+
+      FileStamp stamp = FileStamp.read(input);
+      long checksum = input.readLong();
+      int count = input.readInt();
+      Map<String, Entry> entries = new HashMap<>();
+
+      for (int i = 0; i < count; i++) {
+        String username = input.readUTF();
+        entries.put(username, new Entry(input.readLong(), input.readInt()));
+      }
+
+      int quizCount = input.readInt();
+      Map<String, String> quizOwners = new HashMap<>();
+
+      for (int i = 0; i < quizCount; i++) {
+        String uuid = input.readUTF();
+        quizOwners.put(uuid, input.readUTF());
+      }
+
+      return new SnapshotIndex(stamp, checksum, entries, quizOwners);
+    } catch (EOFException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Persists this index to a sidecar file, replacing it atomically.
+   *
+   * @param indexPath is the path of the sidecar file.
+   * @throws IOException if an error occurred when writing the file.
+   */
+  void write(Path indexPath) throws IOException {
+    Path temporaryPath = SnapshotFile.createTemporaryFile(indexPath);
+
+    try {
+      try (DataOutputStream output = new DataOutputStream(
+          new BufferedOutputStream(Files.newOutputStream(temporaryPath)))) {
+        output.writeInt(MAGIC);
+        output.writeInt(VERSION);
+        snapshotStamp.write(output);
+        output.writeLong(snapshotChecksum);
+        output.writeInt(entries.size());
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+          output.writeUTF(entry.getKey());
+          output.writeLong(entry.getValue().offset);
+          output.writeInt(entry.getValue().length);
+        }
+
+        output.writeInt(quizOwners.size());
+
+        for (Map.Entry<String, String> quizOwner : quizOwners.entrySet()) {
+          output.writeUTF(quizOwner.getKey());
+          output.writeUTF(quizOwner.getValue());
+        }
+      }
+
+      SnapshotFile.moveAtomically(temporaryPath, indexPath);
+    } finally {
+      Files.deleteIfExists(temporaryPath);
+    }
+  }
+
+  /**
+   * Builds an index by scanning a storage file with {@link StorageCodec#scan}, and reading it once
+   * more to find the owners of the quizzes and compute its checksum.
+   *
+   * @param codec       is used to locate the users.
+   * @param storagePath is the path of the storage file.
+   * @return an index of the storage file.
+   * @throws IOException if the file could not be read or is not a list of users.
+   */
+  static SnapshotIndex scan(StorageCodec codec, Path storagePath) throws IOException {
+    // Stamped before scanning, so a file replaced in between is scanned again on the next check
+    Builder builder = new Builder();
+    builder.setStamp(FileStamp.of(storagePath));
+
+    try (InputStream input = new BufferedInputStream(Files.newInputStream(storagePath))) {
+      codec.scan(input, builder::add);
+    } catch (IOException e) {
+      throw new IOException(storagePath + " does not contain a complete list of users.", e);
+    }
+
+    CRC32C checksum = new CRC32C();
+
+    try (InputStream input = new CheckedInputStream(
+        new BufferedInputStream(Files.newInputStream(storagePath)), checksum);
+         Stream<User> users = codec.read(input)) {
+      users.forEach(builder::addQuizzes);
+      // Trailing bytes after the last user are part of the checksum as well
+      input.transferTo(OutputStream.nullOutputStream());
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    builder.setChecksum(checksum.getValue());
+
+    return builder.build();
+  }
+
+  /**
+   * Collects the locations of users while a storage file is written or scanned.
+   */
+  static final class Builder {
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, String> quizOwners = new HashMap<>();
+    private FileStamp stamp;
+    private long checksum;
+
+    /**
+     * Adds the location of a user. If the username is already present, the first location is
+     * kept, matching the user that is read when the file is loaded.
+     *
+     * @param username is the username of the user.
+     * @param offset   is the byte offset of the user in the storage file.
+     * @param length   is the number of bytes of the user in the storage file.
+     */
+    void add(String username, long offset, int length) {
+      entries.putIfAbsent(username, new Entry(offset, length));
+    }
+
+    /**
+     * Adds the quizzes of a user. If a quiz is already present, the first owner is kept, matching
+     * the user that is found when the file is searched.
+     *
+     * @param user is a user in the storage file.
+     */
+    void addQuizzes(User user) {
+      for (Quiz quiz : user.getQuizzes()) {
+        quizOwners.putIfAbsent(quiz.getUuid(), user.getUsername());
+      }
+    }
+
+    /**
+     * Sets the checksum of the storage file.
+     *
+     * @param checksum is the CRC32C checksum of all bytes of the storage file.
+     */
+    void setChecksum(long checksum) {
+      this.checksum = checksum;
+    }
+
+    /**
+     * Sets the stamp of the storage file.
+     *
+     * @param stamp is the stamp of the storage file described by the index.
+     */
+    void setStamp(FileStamp stamp) {
+      this.stamp = stamp;
+    }
+
+    FileStamp getStamp() {
+      return stamp;
+    }
+
+    SnapshotIndex build() {
+      return new SnapshotIndex(stamp, checksum, entries, quizOwners);
+    }
+  }
+}
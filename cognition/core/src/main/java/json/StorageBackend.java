@@ -0,0 +1,145 @@
+package json;
+
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Holds the users of a {@link CognitionStorage}, and decides how they are read and persisted.
+ * The storage selects one backend from its {@link StorageOptions}, and handles the locking of
+ * users and the statistics itself, so a backend is only called while the storage holds the locks
+ * of the affected users.
+ *
+ * <p>There is a backend for every way of storing users: {@link ResidentBackend} keeps them in
+ * memory, {@link FileBackend} reads them from the storage file on every call, and
+ * {@link KeyValueBackend} keeps them in {@link KeyValueUsers}.
+ */
+interface StorageBackend extends Closeable {
+  /**
+   * Gets all users.
+   *
+   * @return copies of the users, in the order they are stored.
+   * @throws IOException if an error occurred when reading local storage.
+   */
+  List<User> findAll() throws IOException;
+
+  /**
+   * Streams all users, in the order they are stored. The stream must be closed.
+   *
+   * @return a sequential stream of the users.
+   * @throws IOException if an error occurred when opening local storage.
+   */
+  Stream<User> stream() throws IOException;
+
+  /**
+   * Gets a user.
+   *
+   * @param username is the username of the user.
+   * @return a copy of the user.
+   * @throws IOException            if an error occurred when reading local storage.
+   * @throws NoSuchElementException if there is no user with the username.
+   */
+  User find(String username) throws IOException, NoSuchElementException;
+
+  /**
+   * Determines whether a user exists.
+   *
+   * @param username is the username of the user.
+   * @return true if the user exists.
+   * @throws IOException if an error occurred when reading local storage.
+   */
+  boolean contains(String username) throws IOException;
+
+  /**
+   * Describes the quizzes of a user without their flashcards.
+   *
+   * @param username is the username of the user.
+   * @return the quizzes of the user, in the order they are stored.
+   * @throws IOException            if an error occurred when reading local storage.
+   * @throws NoSuchElementException if there is no user with the username.
+   */
+  List<CompactQuiz> findQuizHeaders(String username) throws IOException, NoSuchElementException;
+
+  /**
+   * Gets a quiz, regardless of which user owns it.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return a copy of the quiz.
+   * @throws IOException            if an error occurred when reading local storage.
+   * @throws NoSuchElementException if there is no quiz with the UUID.
+   */
+  Quiz findQuiz(String uuid) throws IOException, NoSuchElementException;
+
+  /**
+   * Gets the username of the user owning a quiz.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the username of the owner.
+   * @throws IOException            if an error occurred when reading local storage.
+   * @throws NoSuchElementException if there is no quiz with the UUID.
+   */
+  String findQuizOwner(String uuid) throws IOException, NoSuchElementException;
+
+  /**
+   * Applies a mutation and persists it. Unless write-behind persistence is enabled, this returns
+   * once the mutation is persisted.
+   *
+   * @param mutation is the change to apply.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  void apply(Mutation mutation) throws IOException;
+
+  /**
+   * Creates or replaces a batch of users, and returns once the batch is persisted, also with
+   * write-behind persistence.
+   *
+   * @param batch are the users to store.
+   * @throws IOException if an error occurred when reading or writing local storage.
+   */
+  void importAll(List<User> batch) throws IOException;
+
+  /**
+   * Determines whether there are no stored users.
+   *
+   * @return true if the storage is empty.
+   * @throws IOException if an error occurred when reading local storage.
+   */
+  boolean isEmpty() throws IOException;
+
+  /**
+   * Blocks until all changes are persisted. Does nothing unless changes are persisted in the
+   * background.
+   *
+   * @throws IOException if an error occurred when writing local storage.
+   */
+  default void flush() throws IOException {
+  }
+
+  /**
+   * Gets a report of how the stored state was recovered when it was loaded.
+   *
+   * @return the report, or an empty optional if nothing was loaded yet, or the backend never
+   *         loads its users up front.
+   */
+  default Optional<RecoveryReport> getRecoveryReport() {
+    return Optional.empty();
+  }
+
+  /**
+   * Creates a mutation storing a user, which creates the user if it does not exist yet and
+   * replaces it otherwise.
+   *
+   * @param exists is whether a user with the username of the user exists.
+   * @param user   is the user to store.
+   * @return the mutation.
+   */
+  static Mutation upsert(boolean exists, User user) {
+    return exists ? Mutation.update(user.getUsername(), user) : Mutation.create(user);
+  }
+}
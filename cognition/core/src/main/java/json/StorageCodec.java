@@ -0,0 +1,110 @@
+package json;
+
+import core.CompactQuiz;
+import core.User;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Encodes and decodes the users in a storage file.
+ *
+ * <p>A storage file holds a sequence of elements, one per user, optionally surrounded by framing
+ * written by the codec. Every element can be decoded on its own, which lets
+ * {@link CognitionStorage} locate users by their byte offset and length in the file and decode
+ * only the user it needs.
+ */
+public interface StorageCodec {
+
+  /**
+   * Receives the location of each user while a storage file is written or scanned.
+   */
+  @FunctionalInterface
+  interface ElementListener {
+    /**
+     * Called once for every user, in the order the users are stored.
+     *
+     * @param username is the username of the user.
+     * @param offset   is the byte offset of the element in the file.
+     * @param length   is the number of bytes of the element.
+     */
+    void element(String username, long offset, int length);
+  }
+
+  /**
+   * Determines whether users can be located in files written by this codec, so that
+   * {@link #scan} and {@link #decode} are supported and single users can be read by their
+   * location.
+   *
+   * @return true if files written by this codec can be indexed.
+   */
+  default boolean isIndexable() {
+    return true;
+  }
+
+  /**
+   * Writes users to a stream. The stream is neither flushed nor closed.
+   *
+   * @param output   is the stream to write to.
+   * @param users    are the users to write.
+   * @param listener is told where each user is written.
+   * @throws IOException if an error occurred when writing to the stream.
+   */
+  void write(OutputStream output, Iterable<User> users, ElementListener listener)
+      throws IOException;
+
+  /**
+   * Decodes users from a stream as they are consumed. The input is closed when the returned
+   * stream is closed. Errors while decoding are thrown as
+   * {@link java.io.UncheckedIOException}.
+   *
+   * @param input is the stream to read from.
+   * @return a sequential stream of users, in the order they are stored.
+   * @throws IOException if the input does not start with a list of users.
+   */
+  Stream<User> read(InputStream input) throws IOException;
+
+  /**
+   * Decodes a single element, as located by {@link #write} or {@link #scan}.
+   *
+   * @param element holds the bytes of the element.
+   * @return the decoded user.
+   * @throws IOException if the bytes are not a valid element.
+   */
+  User decode(ByteBuffer element) throws IOException;
+
+  /**
+   * Decodes the quizzes of a single element without their flashcards. Codecs that store the
+   * flashcards apart from the rest of a quiz override this to avoid decoding them.
+   *
+   * @param element  holds the bytes of the element.
+   * @param username is the username of the user the element is expected to hold.
+   * @return the quizzes of the user, in the order they are stored.
+   * @throws IOException if the bytes are not a valid element of the given user.
+   */
+  default List<CompactQuiz> decodeQuizHeaders(ByteBuffer element, String username)
+      throws IOException {
+    User user = decode(element);
+
+    if (!user.getUsername().equals(username)) {
+      throw new IOException("The stored user is not " + username + ".");
+    }
+
+    List<CompactQuiz> headers = new ArrayList<>();
+    user.getQuizzes().forEach(quiz -> headers.add(new CompactQuiz(quiz)));
+    return headers;
+  }
+
+  /**
+   * Locates the users in a stream without keeping them in memory.
+   *
+   * @param input    is the stream to read from. It is not closed.
+   * @param listener is told where each user is located.
+   * @throws IOException if the input is not a complete list of users.
+   */
+  void scan(InputStream input, ElementListener listener) throws IOException;
+}
@@ -0,0 +1,96 @@
+package json;
+
+import core.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Converts storage files between formats, for instance from JSON to binary.
+ *
+ * <p>Users are streamed from the source file to the target file, so files larger than the
+ * available memory can be converted. The target file is replaced atomically. Usage:
+ *
+ * <pre>
+ * StorageConverter &lt;format&gt; &lt;source&gt; &lt;format&gt; &lt;target&gt;
+ * </pre>
+ *
+ * <p>The formats are {@code json}, {@code binary}, {@code gzip} (compressed JSON) and
+ * {@code gzip-binary} (compressed binary).
+ */
+public final class StorageConverter {
+  private StorageConverter() {
+  }
+
+  /**
+   * Converts a storage file to another format.
+   *
+   * @param source      is the file to read.
+   * @param sourceCodec is the format of the source file.
+   * @param target      is the file to write. It may be the same as the source file.
+   * @param targetCodec is the format of the target file.
+   * @return the number of converted users.
+   * @throws IOException if an error occurred when reading or writing the files.
+   */
+  public static long convert(Path source, StorageCodec sourceCodec,
+                             Path target, StorageCodec targetCodec) throws IOException {
+    Objects.requireNonNull(sourceCodec);
+    Objects.requireNonNull(targetCodec);
+
+    long[] count = {0};
+
+    try (Stream<User> users = Files.size(source) == 0
+        ? Stream.empty()
+        : sourceCodec.read(Files.newInputStream(source))) {
+      // The source is read while the temporary target is written, and only then replaced
+      SnapshotFile.write(targetCodec, target.toAbsolutePath(),
+          users.peek(user -> count[0]++)::iterator);
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    return count[0];
+  }
+
+  /**
+   * Gets the codec with the given name.
+   *
+   * @param name is "json", "binary", "gzip" or "gzip-binary".
+   * @return the codec.
+   * @throws IllegalArgumentException if there is no codec with the given name.
+   */
+  public static StorageCodec codecFor(String name) {
+    return switch (name) {
+      case "json" -> new JsonCodec();
+      case "binary" -> new BinaryCodec();
+      case "gzip" -> new GzipCodec(new JsonCodec());
+      case "gzip-binary" -> new GzipCodec(new BinaryCodec());
+      default -> throw new IllegalArgumentException("Unknown storage format: " + name);
+    };
+  }
+
+  /**
+   * Converts a storage file from the command line.
+   *
+   * @param args are the source format, source file, target format and target file.
+   */
+  public static void main(String[] args) {
+    if (args.length != 4) {
+      System.err.println("Usage: StorageConverter <format> <source> <format> <target>");
+      System.exit(2);
+    }
+
+    try {
+      long count = convert(Paths.get(args[1]), codecFor(args[0]),
+          Paths.get(args[3]), codecFor(args[2]));
+      System.out.println("Converted " + count + " users.");
+    } catch (IOException | IllegalArgumentException e) {
+      System.err.println(e.getMessage());
+      System.exit(1);
+    }
+  }
+}
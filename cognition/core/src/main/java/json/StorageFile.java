@@ -0,0 +1,376 @@
+package json;
+
+import com.google.gson.JsonIOException;
+import core.CompactQuiz;
+import core.User;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Reads and writes the storage file of a {@link CognitionStorage}, which holds a snapshot of all
+ * users encoded by the configured {@link StorageCodec}.
+ *
+ * <p>Lookups by username or quiz UUID use a {@link SnapshotIndex} to decode only the requested
+ * user. The index is rewritten with every snapshot, and rebuilt from the storage file if it is
+ * missing or describes another version of the file. With {@link StorageOptions#isMemoryMapped()},
+ * the file is read through a {@link MappedSnapshot} instead of being copied into the heap on every
+ * call.
+ */
+final class StorageFile {
+  private final Path path;
+  private final StorageCodec codec;
+  private final boolean memoryMapped;
+  private final StorageStatistics statistics;
+  private final Object indexLock = new Object();
+  private final Object mappingLock = new Object();
+  private SnapshotIndex index;
+  private MappedSnapshot mappedSnapshot;
+
+  /**
+   * Creates a storage file, without touching the file system.
+   *
+   * @param path       is the path of the storage file.
+   * @param options    selects the codec and whether the file is memory-mapped.
+   * @param statistics records the bytes and time spent reading and writing the file.
+   */
+  StorageFile(Path path, StorageOptions options, StorageStatistics statistics) {
+    this.path = Objects.requireNonNull(path);
+    this.codec = options.getCodec();
+    this.memoryMapped = options.isMemoryMapped();
+    this.statistics = Objects.requireNonNull(statistics);
+  }
+
+  Path getPath() {
+    return path;
+  }
+
+  StorageCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Determines whether the storage file is missing or empty.
+   *
+   * @return true if there are no users in the file.
+   */
+  boolean isEmpty() {
+    // file.length is 0 if file does not exist or has no content
+    return new File(String.valueOf(path)).length() == 0;
+  }
+
+  /**
+   * Reads all users from the storage file. The file is decoded incrementally by the configured
+   * {@link StorageCodec}, without first reading it into memory as a whole.
+   *
+   * @return a List of User objects
+   * @throws IOException if an error occurred when trying to read from the storage file
+   */
+  List<User> readAll() throws IOException {
+    long start = System.nanoTime();
+    long size = new File(String.valueOf(path)).length();
+
+    try (Stream<User> users = stream()) {
+      List<User> loaded = users.collect(Collectors.toCollection(ArrayList::new));
+      statistics.recordParse(size, start);
+      return loaded;
+    } catch (IOException | UncheckedIOException e) {
+      throw new IOException(
+          path + " is present, but an error occurred when reading users from user storage.");
+    }
+  }
+
+  /**
+   * Opens a stream decoding users from the storage file.
+   *
+   * @return a stream of User objects, which must be closed.
+   * @throws IOException if the storage file could not be opened.
+   */
+  Stream<User> stream() throws IOException {
+    if (isEmpty()) {
+      return Stream.empty();
+    }
+
+    if (memoryMapped) {
+      return codec.read(getMappedSnapshot().openStream());
+    }
+
+    return codec.read(Files.newInputStream(path));
+  }
+
+  /**
+   * Writes a list of User objects to local storage, atomically replacing the storage file with
+   * {@link SnapshotFile}, and records the location of each user in the snapshot index.
+   *
+   * @param users is a list of User objects.
+   * @return the stamp of the written file.
+   * @throws IOException     if an error occurred when trying to write to local storage.
+   * @throws JsonIOException if an error occurred when serializing the JSON content.
+   */
+  FileStamp write(List<User> users) throws JsonIOException, IOException {
+    SnapshotIndex.Builder indexBuilder = SnapshotFile.write(codec, path, users, statistics);
+
+    // The previous snapshot is replaced, so its mapping and index no longer describe the file
+    synchronized (mappingLock) {
+      mappedSnapshot = null;
+    }
+
+    synchronized (indexLock) {
+      index = null;
+    }
+
+    if (codec.isIndexable()) {
+      writeIndex(indexBuilder);
+    }
+
+    // The stamp of the written file, even if someone else replaced it since
+    return indexBuilder.getStamp();
+  }
+
+  /**
+   * Persists the index of a snapshot that was just written. The snapshot is already durable at
+   * this point, so a failure only removes the sidecar file, which is rebuilt on demand.
+   *
+   * @param indexBuilder holds the locations of the users in the snapshot.
+   */
+  private void writeIndex(SnapshotIndex.Builder indexBuilder) {
+    Path indexPath = SnapshotIndex.pathFor(path);
+
+    try {
+      SnapshotIndex snapshotIndex = indexBuilder.build();
+      snapshotIndex.write(indexPath);
+
+      synchronized (indexLock) {
+        index = snapshotIndex;
+      }
+    } catch (IOException e) {
+      try {
+        Files.deleteIfExists(indexPath);
+      } catch (IOException ignored) {
+        // A stale index is detected by its stamp
+      }
+    }
+  }
+
+  /**
+   * Finds a user by decoding only the bytes of that user, as located by the snapshot index. Falls
+   * back to streaming the file if the file changed after the index was validated.
+   *
+   * @param username is the username of the user.
+   * @return the user, if it exists.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  Optional<User> find(String username) throws IOException {
+    if (isEmpty()) {
+      return Optional.empty();
+    }
+
+    if (!codec.isIndexable()) {
+      return findFirst(user -> user.getUsername().equals(username));
+    }
+
+    SnapshotIndex.Entry entry = getIndex().get(username);
+
+    if (entry == null) {
+      return Optional.empty();
+    }
+
+    ByteBuffer element = readElement(entry);
+
+    try {
+      User user = element == null ? null : decode(element);
+
+      if (user != null && username.equals(user.getUsername())) {
+        return Optional.of(user);
+      }
+    } catch (IOException e) {
+      // The file was replaced after the index was validated
+    }
+
+    return findFirst(user -> user.getUsername().equals(username));
+  }
+
+  /**
+   * Describes the quizzes of a user by decoding only the headers of that user, as located by the
+   * snapshot index. Falls back to streaming the file if the file changed after the index was
+   * validated.
+   *
+   * @param username is the username of the user.
+   * @return the quizzes of the user, if the user exists.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  Optional<List<CompactQuiz>> findQuizHeaders(String username) throws IOException {
+    if (isEmpty()) {
+      return Optional.empty();
+    }
+
+    if (codec.isIndexable()) {
+      SnapshotIndex.Entry entry = getIndex().get(username);
+
+      if (entry == null) {
+        return Optional.empty();
+      }
+
+      ByteBuffer element = readElement(entry);
+
+      try {
+        if (element != null) {
+          long start = System.nanoTime();
+          int length = element.remaining();
+          List<CompactQuiz> headers = codec.decodeQuizHeaders(element, username);
+          statistics.recordParse(length, start);
+          return Optional.of(headers);
+        }
+      } catch (IOException e) {
+        // The file was replaced after the index was validated
+      }
+    }
+
+    return findFirst(user -> user.getUsername().equals(username))
+        .map(user -> user.getQuizzes().stream().map(CompactQuiz::new)
+            .collect(Collectors.toList()));
+  }
+
+  /**
+   * Finds the owner of a quiz by decoding only that user, as located by the snapshot index. Falls
+   * back to streaming the file if the file changed after the index was validated.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the user owning the quiz, if it exists.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  Optional<User> findQuizOwner(String uuid) throws IOException {
+    if (isEmpty()) {
+      return Optional.empty();
+    }
+
+    if (codec.isIndexable()) {
+      String owner = getIndex().getQuizOwner(uuid);
+
+      if (owner == null) {
+        return Optional.empty();
+      }
+
+      Optional<User> user = find(owner).filter(u -> u.findQuiz(uuid).isPresent());
+
+      if (user.isPresent()) {
+        return user;
+      }
+    }
+
+    return findFirst(user -> user.findQuiz(uuid).isPresent());
+  }
+
+  /**
+   * Decodes users from the storage file until one matches the given predicate.
+   *
+   * @param predicate determines which user to find.
+   * @return the first matching user, if any.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private Optional<User> findFirst(Predicate<User> predicate) throws IOException {
+    try (Stream<User> users = stream()) {
+      return users.filter(predicate).findFirst();
+    } catch (UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  /**
+   * Gets a memory mapping of the current storage file, mapping the file again only if its
+   * {@link FileStamp} changed since it was last mapped.
+   *
+   * @return the mapped storage file.
+   * @throws IOException if the storage file could not be mapped.
+   */
+  private MappedSnapshot getMappedSnapshot() throws IOException {
+    synchronized (mappingLock) {
+      if (mappedSnapshot == null || !mappedSnapshot.matches(path)) {
+        mappedSnapshot = MappedSnapshot.map(path);
+      }
+
+      return mappedSnapshot;
+    }
+  }
+
+  /**
+   * Gets an index describing the current storage file, reading the sidecar file or scanning the
+   * storage file if the cached index is stale.
+   *
+   * @return the index of the storage file.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private SnapshotIndex getIndex() throws IOException {
+    synchronized (indexLock) {
+      if (index != null && index.matches(path)) {
+        return index;
+      }
+
+      Path indexPath = SnapshotIndex.pathFor(path);
+      SnapshotIndex persisted = SnapshotIndex.read(indexPath);
+
+      if (persisted != null && persisted.matches(path)) {
+        index = persisted;
+      } else {
+        index = SnapshotIndex.scan(codec, path);
+        index.write(indexPath);
+      }
+
+      return index;
+    }
+  }
+
+  private User decode(ByteBuffer element) throws IOException {
+    long start = System.nanoTime();
+    int length = element.remaining();
+    User user = codec.decode(element);
+    statistics.recordParse(length, start);
+    return user;
+  }
+
+  /**
+   * Reads an element of the storage file, as located by the snapshot index.
+   *
+   * @param entry is the location of the element.
+   * @return a buffer holding the element, or null if it lies outside the mapped file.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private ByteBuffer readElement(SnapshotIndex.Entry entry) throws IOException {
+    return memoryMapped
+        ? getMappedSnapshot().slice(entry.getOffset(), entry.getLength())
+        : readRange(entry.getOffset(), entry.getLength());
+  }
+
+  /**
+   * Reads a range of the storage file with a positional read.
+   *
+   * @param offset is the offset of the first byte.
+   * @param length is the number of bytes.
+   * @return a buffer holding the bytes in the range.
+   * @throws IOException if an error occurred when reading the storage file.
+   */
+  private ByteBuffer readRange(long offset, int length) throws IOException {
+    ByteBuffer buffer = ByteBuffer.allocate(length);
+
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      while (buffer.hasRemaining()
+          && channel.read(buffer, offset + buffer.position()) >= 0) {
+        // Keep reading until the whole range is in the buffer
+      }
+    }
+
+    return buffer.flip();
+  }
+}
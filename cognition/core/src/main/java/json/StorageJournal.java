@@ -0,0 +1,309 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedByInterruptException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.MalformedInputException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only log of mutations, stored next to the storage file.
+ *
+ * <p>Each mutation is appended as a single line of JSON, so a change costs a write proportional
+ * to the size of the affected user rather than to the size of the whole storage file. Every line
+ * starts with the CRC32C checksum of its JSON as eight hexadecimal digits, so that a record torn
+ * or damaged by a crash is detected when the journal is replayed.
+ *
+ * <p>{@link #append(Mutation)} writes a record without forcing it to the disk, and
+ * {@link #sync(long)} forces every record appended before it. Appends are serialized, but a
+ * mutation waits for the disk outside of them, so mutations appended while another mutation waits
+ * share the next fsync, like the tickets of {@link StorageWriter}.
+ *
+ * <p>The journal is folded into the storage file by compaction: {@link #rotate()} moves the
+ * current journal aside so that new mutations go to a fresh journal while the snapshot is written,
+ * and {@link #deleteRotated()} removes the moved journal once the snapshot is on disk.
+ */
+final class StorageJournal implements Closeable {
+  private final Gson gson;
+  private final Path path;
+  private final Path rotatedPath;
+  private final StorageStatistics statistics;
+  private final Object syncLock = new Object();
+  private FileChannel channel;
+  private long size;
+  private long discardedBytes;
+  private long appended;
+  private long synced;
+
+  /**
+   * Initializes the journal belonging to a storage file. No file is created until the first
+   * mutation is appended.
+   *
+   * @param gson        is used to serialize mutations.
+   * @param storagePath is the path of the storage file.
+   * @param statistics  receives the bytes appended and replayed, and the time spent on them.
+   */
+  StorageJournal(Gson gson, Path storagePath, StorageStatistics statistics) {
+    this.gson = Objects.requireNonNull(gson);
+    this.statistics = Objects.requireNonNull(statistics);
+    this.path = pathFor(storagePath);
+    this.rotatedPath = storagePath.resolveSibling(storagePath.getFileName() + ".journal.old");
+  }
+
+  static Path pathFor(Path storagePath) {
+    return storagePath.resolveSibling(storagePath.getFileName() + ".journal");
+  }
+
+  /**
+   * Determines whether there are mutations on disk that are not yet part of the storage file.
+   *
+   * @return true if a journal file exists.
+   */
+  synchronized boolean exists() {
+    return Files.exists(rotatedPath) || Files.exists(path);
+  }
+
+  /**
+   * Reads all mutations on disk, oldest first. Reading a journal file stops at the first record
+   * that is incomplete or does not match its checksum, for instance because the process stopped
+   * while it was being written, since nothing after it can be trusted.
+   *
+   * @return the mutations in the journal.
+   * @throws IOException if an error occurred when reading the journal.
+   */
+  synchronized List<Mutation> read() throws IOException {
+    discardedBytes = 0;
+    List<Mutation> mutations = new ArrayList<>();
+    readFile(rotatedPath, mutations);
+    readFile(path, mutations);
+    return mutations;
+  }
+
+  private void readFile(Path file, List<Mutation> mutations) throws IOException {
+    if (!Files.exists(file)) {
+      return;
+    }
+
+    long start = System.nanoTime();
+    long valid = 0;
+
+    try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (!line.isBlank()) {
+          Mutation mutation = decode(line);
+
+          if (mutation == null) {
+            break;
+          }
+
+          mutations.add(mutation);
+        }
+
+        valid += line.getBytes(StandardCharsets.UTF_8).length + 1;
+      }
+    } catch (MalformedInputException e) {
+      // The bytes after the last valid record are not even text
+    }
+
+    discardedBytes += Math.max(0, Files.size(file) - valid);
+    statistics.recordParse(valid, start);
+  }
+
+  /**
+   * Gets the number of bytes skipped by the last call to {@link #read()}.
+   *
+   * @return the number of bytes after the last valid record of each journal file.
+   */
+  synchronized long getDiscardedBytes() {
+    return discardedBytes;
+  }
+
+  private static String checksumOf(String json) {
+    CRC32C crc = new CRC32C();
+    crc.update(json.getBytes(StandardCharsets.UTF_8));
+    return String.format("%08x", crc.getValue());
+  }
+
+  /**
+   * Decodes a record of the journal.
+   *
+   * @param line is the record, without its line break.
+   * @return the mutation, or null if the record is incomplete or does not match its checksum.
+   */
+  private Mutation decode(String line) {
+    if (line.length() < 9 || line.charAt(8) != ' ') {
+      return null;
+    }
+
+    String json = line.substring(9);
+    if (!line.startsWith(checksumOf(json))) {
+      return null;
+    }
+
+    try {
+      return gson.fromJson(json, Mutation.class);
+    } catch (JsonParseException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Appends a mutation to the journal. The mutation is only durable once {@link #sync(long)} has
+   * been called with the returned ticket.
+   *
+   * @param mutation is the mutation to append.
+   * @return a ticket that can be passed to {@link #sync(long)}.
+   * @throws IOException if an error occurred when writing to the journal.
+   */
+  synchronized long append(Mutation mutation) throws IOException {
+    Objects.requireNonNull(mutation);
+
+    if (channel == null) {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+          StandardOpenOption.APPEND);
+      size = channel.size();
+    }
+
+    long start = System.nanoTime();
+    String json = gson.toJson(mutation);
+    ByteBuffer line =
+        ByteBuffer.wrap((checksumOf(json) + " " + json + "\n").getBytes(StandardCharsets.UTF_8));
+
+    while (line.hasRemaining()) {
+      channel.write(line);
+    }
+
+    size += line.limit();
+    statistics.recordSerialize(line.limit(), start);
+    return ++appended;
+  }
+
+  /**
+   * Blocks until the mutation with the given ticket, and every mutation appended before it, is
+   * on the disk. A single fsync covers every mutation appended before it starts, so concurrent
+   * callers mostly find their mutation already synced.
+   *
+   * @param ticket is the ticket returned by {@link #append(Mutation)}.
+   * @throws IOException if an error occurred when forcing the journal to the disk.
+   */
+  void sync(long ticket) throws IOException {
+    synchronized (syncLock) {
+      if (synced >= ticket) {
+        return;
+      }
+
+      long target;
+      FileChannel current;
+      synchronized (this) {
+        target = appended;
+        current = channel;
+      }
+
+      try {
+        // Appends continue while the disk catches up, and are covered by the next sync
+        if (current != null) {
+          long start = System.nanoTime();
+          current.force(false);
+          statistics.recordFsync(start);
+        }
+      } catch (ClosedByInterruptException e) {
+        throw e;
+      } catch (ClosedChannelException e) {
+        // A journal is forced before it is closed
+      }
+
+      synced = target;
+    }
+  }
+
+  /**
+   * Gets the size of the current journal.
+   *
+   * @return the number of bytes in the current journal.
+   */
+  synchronized long size() {
+    return size;
+  }
+
+  /**
+   * Determines whether a rotated journal is waiting to be deleted, meaning a compaction is in
+   * progress or was interrupted.
+   *
+   * @return true if a rotated journal exists.
+   */
+  synchronized boolean isRotated() {
+    return Files.exists(rotatedPath);
+  }
+
+  /**
+   * Moves the current journal aside. Mutations appended afterwards go to a new journal.
+   *
+   * @throws IOException if an error occurred when moving the journal.
+   */
+  synchronized void rotate() throws IOException {
+    close();
+
+    if (Files.exists(path)) {
+      Files.move(path, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+    }
+  }
+
+  /**
+   * Deletes the journal moved aside by {@link #rotate()}. Must only be called once a snapshot
+   * containing all of its mutations has been written.
+   *
+   * @throws IOException if an error occurred when deleting the journal.
+   */
+  synchronized void deleteRotated() throws IOException {
+    Files.deleteIfExists(rotatedPath);
+  }
+
+  /**
+   * Deletes all journal files. Must only be called once a snapshot containing all mutations has
+   * been written.
+   *
+   * @throws IOException if an error occurred when deleting the journal.
+   */
+  synchronized void deleteAll() throws IOException {
+    close();
+    Files.deleteIfExists(rotatedPath);
+    Files.deleteIfExists(path);
+  }
+
+  /**
+   * Forces the appended mutations to the disk and closes the current journal. Mutations appended
+   * afterwards reopen it.
+   *
+   * @throws IOException if an error occurred when forcing or closing the journal.
+   */
+  @Override
+  public synchronized void close() throws IOException {
+    if (channel != null) {
+      try {
+        long start = System.nanoTime();
+        channel.force(false);
+        statistics.recordFsync(start);
+      } finally {
+        channel.close();
+        channel = null;
+      }
+    }
+
+    size = 0;
+  }
+}
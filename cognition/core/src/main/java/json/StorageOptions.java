@@ -0,0 +1,348 @@
+package json;
+
+import java.util.Objects;
+
+/**
+ * Configures how {@link CognitionStorage} persists its data.
+ *
+ * <p>The default options write every mutation to disk before the mutating call returns, by
+ * atomically replacing the storage file. Mutations arriving within the group commit window share
+ * a single write.
+ */
+public class StorageOptions {
+  private boolean resident = true;
+  private boolean memoryMapped = false;
+  private boolean writeBehind = false;
+  private long flushDelayMillis = 50;
+  private long groupCommitWindowMillis = 2;
+  private boolean journaled = false;
+  private long compactionThreshold = 4L * 1024 * 1024;
+  private int shardCount = 0;
+  private StorageCodec codec = new JsonCodec();
+  private boolean detectingExternalChanges = true;
+  private boolean keyValue = false;
+  private boolean heapImage = false;
+  private boolean monitored = false;
+
+  /**
+   * Gets options where mutations are written to disk by a background thread. Mutating calls then
+   * return as soon as the in-memory state is updated.
+   *
+   * @return options with write-behind persistence enabled.
+   */
+  public static StorageOptions writeBehind() {
+    return new StorageOptions().setWriteBehind(true);
+  }
+
+  /**
+   * Gets options where mutations are appended to a journal next to the storage file, which is
+   * folded into the storage file by a background compaction once it grows large.
+   *
+   * @return options with journaling enabled.
+   */
+  public static StorageOptions journaled() {
+    return new StorageOptions().setJournaled(true);
+  }
+
+  /**
+   * Gets options where no users are kept in memory. Every call decodes the users it needs from
+   * the storage file as a stream, which keeps memory use bounded for large stores at the cost of
+   * reading the file on every call.
+   *
+   * @return options with the resident repository disabled.
+   */
+  public static StorageOptions fileBacked() {
+    return new StorageOptions().setResident(false);
+  }
+
+  /**
+   * Gets options where users are stored in shard files selected by the hash of their username,
+   * so that a change only rewrites the shard of the changed user.
+   *
+   * @param shardCount is the number of shard files.
+   * @return options with sharding enabled.
+   */
+  public static StorageOptions sharded(int shardCount) {
+    return new StorageOptions().setShardCount(shardCount);
+  }
+
+  /**
+   * Gets options where the storage file is a GZIP-compressed JSON array. Compression trades CPU
+   * time on every load and save for smaller files and less disk I/O.
+   *
+   * @param level is the compression level, from 0 (no compression) to 9 (best compression).
+   * @return options with compression enabled.
+   */
+  public static StorageOptions compressed(int level) {
+    return new StorageOptions().setCodec(new GzipCodec(new JsonCodec(), level));
+  }
+
+  /**
+   * Gets options where users are stored in an embedded key-value store next to the storage file,
+   * instead of in the storage file itself. A change only writes the changed user to a log, and
+   * lookups read a small part of the store, so stores far larger than the memory can be used.
+   *
+   * @return options with the key-value store enabled.
+   */
+  public static StorageOptions keyValue() {
+    return new StorageOptions().setResident(false).setKeyValue(true);
+  }
+
+  /**
+   * Creates a copy of these options, which does not change when these options change.
+   *
+   * @return a copy of these options.
+   */
+  public StorageOptions copy() {
+    StorageOptions copy = new StorageOptions();
+    copy.resident = resident;
+    copy.memoryMapped = memoryMapped;
+    copy.writeBehind = writeBehind;
+    copy.flushDelayMillis = flushDelayMillis;
+    copy.groupCommitWindowMillis = groupCommitWindowMillis;
+    copy.journaled = journaled;
+    copy.compactionThreshold = compactionThreshold;
+    copy.shardCount = shardCount;
+    copy.codec = codec;
+    copy.detectingExternalChanges = detectingExternalChanges;
+    copy.keyValue = keyValue;
+    copy.heapImage = heapImage;
+    copy.monitored = monitored;
+    return copy;
+  }
+
+  public boolean isResident() {
+    return resident;
+  }
+
+  /**
+   * Sets whether users are loaded once and kept in memory. Journaling and write-behind
+   * persistence require a resident repository.
+   *
+   * @param resident true to keep users in memory.
+   * @return these options.
+   */
+  public StorageOptions setResident(boolean resident) {
+    this.resident = resident;
+    return this;
+  }
+
+  public boolean isMemoryMapped() {
+    return memoryMapped;
+  }
+
+  /**
+   * Sets whether the storage file is read through a memory mapping, which is only replaced when
+   * the size or modification time of the file changes. Repeated reads are then served from the
+   * page cache instead of being copied into the heap. Files larger than 2 GB cannot be mapped.
+   *
+   * @param memoryMapped true to map the storage file into memory.
+   * @return these options.
+   */
+  public StorageOptions setMemoryMapped(boolean memoryMapped) {
+    this.memoryMapped = memoryMapped;
+    return this;
+  }
+
+  public boolean isWriteBehind() {
+    return writeBehind;
+  }
+
+  /**
+   * Sets whether mutations are written to disk by a background thread.
+   *
+   * @param writeBehind true to enable write-behind persistence.
+   * @return these options.
+   */
+  public StorageOptions setWriteBehind(boolean writeBehind) {
+    this.writeBehind = writeBehind;
+    return this;
+  }
+
+  public long getFlushDelayMillis() {
+    return flushDelayMillis;
+  }
+
+  /**
+   * Sets how long the background writer waits for further mutations before writing, so that
+   * bursts of mutations result in a single write. Only used with write-behind persistence.
+   *
+   * @param flushDelayMillis is the delay in milliseconds.
+   * @return these options.
+   */
+  public StorageOptions setFlushDelayMillis(long flushDelayMillis) {
+    if (flushDelayMillis < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.flushDelayMillis = flushDelayMillis;
+    return this;
+  }
+
+  public long getGroupCommitWindowMillis() {
+    return groupCommitWindowMillis;
+  }
+
+  /**
+   * Sets how long the storage writer waits for concurrent mutations before writing, so that they
+   * are committed with a single write and fsync. Not used with write-behind persistence, which
+   * uses the flush delay instead.
+   *
+   * @param groupCommitWindowMillis is the window in milliseconds.
+   * @return these options.
+   */
+  public StorageOptions setGroupCommitWindowMillis(long groupCommitWindowMillis) {
+    if (groupCommitWindowMillis < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.groupCommitWindowMillis = groupCommitWindowMillis;
+    return this;
+  }
+
+  public boolean isJournaled() {
+    return journaled;
+  }
+
+  /**
+   * Sets whether mutations are appended to a journal instead of rewriting the storage file.
+   * Journal records are written before the mutating call returns, so write-behind persistence
+   * has no effect when journaling is enabled.
+   *
+   * @param journaled true to enable journaling.
+   * @return these options.
+   */
+  public StorageOptions setJournaled(boolean journaled) {
+    this.journaled = journaled;
+    return this;
+  }
+
+  public long getCompactionThreshold() {
+    return compactionThreshold;
+  }
+
+  /**
+   * Sets the journal size at which the journal is folded into the storage file.
+   *
+   * @param compactionThreshold is the size in bytes.
+   * @return these options.
+   */
+  public StorageOptions setCompactionThreshold(long compactionThreshold) {
+    if (compactionThreshold <= 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.compactionThreshold = compactionThreshold;
+    return this;
+  }
+
+  public int getShardCount() {
+    return shardCount;
+  }
+
+  /**
+   * Sets the number of shard files users are spread over, in a directory next to the storage
+   * file. Zero stores all users in the storage file itself. Sharding requires a resident
+   * repository and cannot be combined with journaling. Changing the number of shards moves every
+   * user to its new shard on the next load.
+   *
+   * @param shardCount is the number of shards, or zero to disable sharding.
+   * @return these options.
+   */
+  public StorageOptions setShardCount(int shardCount) {
+    if (shardCount < 0) {
+      throw new IllegalArgumentException();
+    }
+
+    this.shardCount = shardCount;
+    return this;
+  }
+
+  public StorageCodec getCodec() {
+    return codec;
+  }
+
+  /**
+   * Sets the format of the storage file and shards, which is {@link JsonCodec} by default.
+   * Existing files are not converted when the codec changes; use {@link StorageConverter} to
+   * convert them first.
+   *
+   * @param codec is used to encode and decode users.
+   * @return these options.
+   */
+  public StorageOptions setCodec(StorageCodec codec) {
+    this.codec = Objects.requireNonNull(codec);
+    return this;
+  }
+
+  public boolean isDetectingExternalChanges() {
+    return detectingExternalChanges;
+  }
+
+  /**
+   * Sets whether the resident users are reloaded when the storage file is changed by another
+   * program. Detecting a change costs a metadata lookup and two small reads of the storage file
+   * per call, but no parsing. Has no effect on journaled or sharded storage.
+   *
+   * @param detectingExternalChanges true to reload the storage file when it changes.
+   * @return these options.
+   */
+  public StorageOptions setDetectingExternalChanges(boolean detectingExternalChanges) {
+    this.detectingExternalChanges = detectingExternalChanges;
+    return this;
+  }
+
+  public boolean isKeyValue() {
+    return keyValue;
+  }
+
+  /**
+   * Sets whether users are stored in an embedded key-value store in a directory next to the
+   * storage file. The key-value store cannot be combined with a resident repository or a memory
+   * mapping, and requires an indexable codec. Users in an existing storage file are moved into
+   * the store when it is created.
+   *
+   * @param keyValue true to store users in the key-value store.
+   * @return these options.
+   */
+  public StorageOptions setKeyValue(boolean keyValue) {
+    this.keyValue = keyValue;
+    return this;
+  }
+
+  public boolean isHeapImage() {
+    return heapImage;
+  }
+
+  /**
+   * Sets whether a binary image of the resident users is kept next to the storage file. The image
+   * is written together with the snapshots written by journal compaction, and when the storage is
+   * closed, and lets the next start read the users sequentially instead of decoding the storage
+   * file. Combined with journaling, only the journal written after the image is replayed. Sharded
+   * storage and storage without a resident repository do not use an image.
+   *
+   * @param heapImage true to keep a heap image.
+   * @return these options.
+   */
+  public StorageOptions setHeapImage(boolean heapImage) {
+    this.heapImage = heapImage;
+    return this;
+  }
+
+  public boolean isMonitored() {
+    return monitored;
+  }
+
+  /**
+   * Sets whether the {@link StorageStatistics} of the storage are registered with the platform
+   * MBean server, so that they can be read over JMX while the storage is open. The statistics
+   * are collected either way.
+   *
+   * @param monitored true to register the statistics as an MXBean.
+   * @return these options.
+   */
+  public StorageOptions setMonitored(boolean monitored) {
+    this.monitored = monitored;
+    return this;
+  }
+}
@@ -0,0 +1,258 @@
+package json;
+
+import core.User;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Splits the stored users over a fixed number of shard files.
+ *
+ * <p>The shards live in a directory next to the storage file, named after it with a
+ * {@code .shards} suffix. Each user is stored in the shard selected by the hash of its username,
+ * and each shard file holds users in the same format as the storage file. A change
+ * to a user marks only its shard as dirty, so persisting the change rewrites one small file
+ * instead of every user. Shard files are replaced atomically with {@link SnapshotFile}.
+ *
+ * <p>If the number of shards changes, users are found in the wrong shard when loading, and
+ * {@link #isBalanced()} returns false until every shard is rewritten with {@link #writeAll}.
+ */
+final class StorageShards {
+  private static final Pattern SHARD_NAME = Pattern.compile("shard-(\\d+)\\.json");
+
+  private final StorageCodec codec;
+  private final Path directory;
+  private final int count;
+  private final StorageStatistics statistics;
+  private final Set<Integer> dirty = new TreeSet<>();
+  private boolean balanced = true;
+
+  /**
+   * Initializes the shards of a storage file. Nothing is read or created until needed.
+   *
+   * @param codec       is used to encode and decode users.
+   * @param storagePath is the path of the storage file.
+   * @param count       is the number of shards.
+   */
+  StorageShards(StorageCodec codec, Path storagePath, int count) {
+    this(codec, storagePath, count, new StorageStatistics());
+  }
+
+  /**
+   * Initializes the shards of a storage file, recording the bytes read and written.
+   *
+   * @param codec       is used to encode and decode users.
+   * @param storagePath is the path of the storage file.
+   * @param count       is the number of shards.
+   * @param statistics  receives the bytes read and written, and the time spent on them.
+   */
+  StorageShards(StorageCodec codec, Path storagePath, int count, StorageStatistics statistics) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("The number of shards must be positive.");
+    }
+
+    this.codec = Objects.requireNonNull(codec);
+    this.directory = directoryFor(storagePath);
+    this.count = count;
+    this.statistics = Objects.requireNonNull(statistics);
+  }
+
+  /**
+   * Gets the directory holding the shards of a storage file.
+   *
+   * @param storagePath is the path of the storage file.
+   * @return the path of the shard directory.
+   */
+  static Path directoryFor(Path storagePath) {
+    return storagePath.resolveSibling(storagePath.getFileName() + ".shards");
+  }
+
+  Path getDirectory() {
+    return directory;
+  }
+
+  /**
+   * Gets the shard a user is stored in.
+   *
+   * @param username is the username of the user.
+   * @return the number of the shard.
+   */
+  int shardOf(String username) {
+    return Math.floorMod(username.hashCode(), count);
+  }
+
+  /**
+   * Gets the path of a shard file.
+   *
+   * @param shard is the number of the shard.
+   * @return the path of the shard file.
+   */
+  Path pathOf(int shard) {
+    return directory.resolve(String.format("shard-%04d.json", shard));
+  }
+
+  boolean exists() {
+    return Files.isDirectory(directory);
+  }
+
+  /**
+   * Reads the users in every shard file, in shard order. Also determines whether the shards were
+   * written with the current number of shards.
+   *
+   * @return the stored users.
+   * @throws IOException if a shard file could not be read.
+   */
+  synchronized List<User> read() throws IOException {
+    List<User> users = new ArrayList<>();
+    balanced = true;
+
+    for (var shard : listShardFiles().entrySet()) {
+      long size = Files.size(shard.getValue());
+      if (size == 0) {
+        continue;
+      }
+
+      long start = System.nanoTime();
+      try (Stream<User> stored = codec.read(Files.newInputStream(shard.getValue()))) {
+        for (Iterator<User> iterator = stored.iterator(); iterator.hasNext(); ) {
+          User user = iterator.next();
+          if (shardOf(user.getUsername()) != shard.getKey()) {
+            balanced = false;
+          }
+          users.add(user);
+        }
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      statistics.recordParse(size, start);
+    }
+
+    return users;
+  }
+
+  /**
+   * Determines whether every user read by {@link #read()} was in its own shard.
+   *
+   * @return false if the shards must be rewritten.
+   */
+  synchronized boolean isBalanced() {
+    return balanced;
+  }
+
+  /**
+   * Marks the shard of a user as changed.
+   *
+   * @param username is the username of the changed user.
+   */
+  synchronized void markDirty(String username) {
+    dirty.add(shardOf(username));
+  }
+
+  /**
+   * Rewrites every shard that was marked as changed since the last write.
+   *
+   * @param repository holds the current users.
+   * @throws IOException if a shard could not be written. Shards that were not written stay dirty.
+   */
+  void writeDirty(UserRepository repository) throws IOException {
+    Set<Integer> pending;
+    synchronized (this) {
+      pending = new TreeSet<>(dirty);
+      dirty.clear();
+    }
+
+    if (pending.isEmpty()) {
+      return;
+    }
+
+    Files.createDirectories(directory);
+    List<User> users = repository.snapshot();
+
+    Iterator<Integer> iterator = pending.iterator();
+    try {
+      while (iterator.hasNext()) {
+        int shard = iterator.next();
+        SnapshotFile.write(codec, pathOf(shard), users.stream()
+            .filter(user -> shardOf(user.getUsername()) == shard)
+            .collect(Collectors.toList()), statistics);
+        iterator.remove();
+      }
+    } finally {
+      synchronized (this) {
+        dirty.addAll(pending);
+      }
+    }
+  }
+
+  /**
+   * Writes all users to their shards, and deletes shard files left over from a different number
+   * of shards.
+   *
+   * @param users are the users to store.
+   * @throws IOException if a shard could not be written.
+   */
+  synchronized void writeAll(List<User> users) throws IOException {
+    Files.createDirectories(directory);
+
+    List<List<User>> shards = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      shards.add(new ArrayList<>());
+    }
+
+    for (User user : users) {
+      shards.get(shardOf(user.getUsername())).add(user);
+    }
+
+    for (int i = 0; i < count; i++) {
+      SnapshotFile.write(codec, pathOf(i), shards.get(i), statistics);
+    }
+
+    for (var shard : listShardFiles().entrySet()) {
+      if (shard.getKey() >= count) {
+        Files.deleteIfExists(shard.getValue());
+      }
+    }
+
+    dirty.clear();
+    balanced = true;
+  }
+
+  /**
+   * Lists the shard files in the shard directory.
+   *
+   * @return the shard files, keyed and ordered by shard number.
+   * @throws IOException if the directory could not be listed.
+   */
+  private TreeMap<Integer, Path> listShardFiles() throws IOException {
+    TreeMap<Integer, Path> files = new TreeMap<>();
+
+    if (!exists()) {
+      return files;
+    }
+
+    try (DirectoryStream<Path> paths = Files.newDirectoryStream(directory)) {
+      for (Path path : paths) {
+        Matcher matcher = SHARD_NAME.matcher(String.valueOf(path.getFileName()));
+        if (matcher.matches()) {
+          files.put(Integer.parseInt(matcher.group(1)), path);
+        }
+      }
+    }
+
+    return files;
+  }
+}
@@ -0,0 +1,169 @@
+package json;
+
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counts the operations of a {@link CognitionStorage} and the I/O they cause.
+ *
+ * <p>The storage records the latency of every read, create, update and delete, and the classes
+ * writing and reading its files record the bytes they move and the time spent parsing,
+ * serializing and syncing. Recording only increments {@link LongAdder}s, so statistics are always
+ * collected, and they are read with {@link CognitionStorage#getStatistics()} or, if
+ * {@link StorageOptions#isMonitored()} is set, through JMX.
+ */
+public final class StorageStatistics implements StorageStatisticsMXBean {
+  private final LatencyHistogram reads = new LatencyHistogram();
+  private final LatencyHistogram creates = new LatencyHistogram();
+  private final LatencyHistogram updates = new LatencyHistogram();
+  private final LatencyHistogram deletes = new LatencyHistogram();
+  private final LongAdder bytesRead = new LongAdder();
+  private final LongAdder bytesWritten = new LongAdder();
+  private final LongAdder parseNanos = new LongAdder();
+  private final LongAdder serializeNanos = new LongAdder();
+  private final LongAdder fsyncs = new LongAdder();
+  private final LongAdder fsyncNanos = new LongAdder();
+  private final LongAdder changes = new LongAdder();
+  private final LongSupplier fileSize;
+
+  /**
+   * Initializes statistics that are not shown to anyone, for writes made outside a storage.
+   */
+  StorageStatistics() {
+    this(() -> 0);
+  }
+
+  /**
+   * Initializes empty statistics.
+   *
+   * @param fileSize computes the current size of the stored files.
+   */
+  StorageStatistics(LongSupplier fileSize) {
+    this.fileSize = Objects.requireNonNull(fileSize);
+  }
+
+  LatencyHistogram reads() {
+    return reads;
+  }
+
+  LatencyHistogram creates() {
+    return creates;
+  }
+
+  LatencyHistogram updates() {
+    return updates;
+  }
+
+  LatencyHistogram deletes() {
+    return deletes;
+  }
+
+  /**
+   * Records that bytes were decoded.
+   *
+   * @param bytes      is the number of bytes decoded.
+   * @param startNanos is the value of {@link System#nanoTime()} when decoding started.
+   */
+  void recordParse(long bytes, long startNanos) {
+    bytesRead.add(bytes);
+    parseNanos.add(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records that bytes were encoded and written, but not yet synced.
+   *
+   * @param bytes      is the number of bytes written.
+   * @param startNanos is the value of {@link System#nanoTime()} when encoding started.
+   */
+  void recordSerialize(long bytes, long startNanos) {
+    bytesWritten.add(bytes);
+    serializeNanos.add(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records that written data was forced to the disk.
+   *
+   * @param startNanos is the value of {@link System#nanoTime()} when the sync started.
+   */
+  void recordFsync(long startNanos) {
+    fsyncs.increment();
+    fsyncNanos.add(System.nanoTime() - startNanos);
+  }
+
+  /**
+   * Records logical changes, which are the denominator of the write amplification.
+   *
+   * @param count is the number of users created, changed or deleted.
+   */
+  void recordChanges(long count) {
+    changes.add(count);
+  }
+
+  @Override
+  public OperationStatistics getReads() {
+    return reads.snapshot();
+  }
+
+  @Override
+  public OperationStatistics getCreates() {
+    return creates.snapshot();
+  }
+
+  @Override
+  public OperationStatistics getUpdates() {
+    return updates.snapshot();
+  }
+
+  @Override
+  public OperationStatistics getDeletes() {
+    return deletes.snapshot();
+  }
+
+  @Override
+  public long getBytesRead() {
+    return bytesRead.sum();
+  }
+
+  @Override
+  public long getBytesWritten() {
+    return bytesWritten.sum();
+  }
+
+  @Override
+  public long getParseMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(parseNanos.sum());
+  }
+
+  @Override
+  public long getSerializeMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(serializeNanos.sum());
+  }
+
+  @Override
+  public long getFsyncs() {
+    return fsyncs.sum();
+  }
+
+  @Override
+  public long getFsyncMicros() {
+    return TimeUnit.NANOSECONDS.toMicros(fsyncNanos.sum());
+  }
+
+  @Override
+  public long getFileSize() {
+    return fileSize.getAsLong();
+  }
+
+  @Override
+  public long getChanges() {
+    return changes.sum();
+  }
+
+  @Override
+  public double getWriteAmplification() {
+    long count = changes.sum();
+    return count == 0 ? 0 : (double) bytesWritten.sum() / count;
+  }
+}
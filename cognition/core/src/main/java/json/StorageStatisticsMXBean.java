@@ -0,0 +1,107 @@
+package json;
+
+/**
+ * Management interface of {@link StorageStatistics}, registered with the platform MBean server
+ * when {@link StorageOptions#isMonitored()} is set, so that a running storage can be observed
+ * with JConsole, VisualVM or a JMX exporter without attaching a profiler.
+ *
+ * <p>All counters are cumulative since the storage was created. Times are in microseconds.
+ */
+public interface StorageStatisticsMXBean {
+
+  /**
+   * Gets the statistics of the calls reading users or quizzes.
+   *
+   * @return the number and latency of reads.
+   */
+  OperationStatistics getReads();
+
+  /**
+   * Gets the statistics of the calls creating users.
+   *
+   * @return the number and latency of creates.
+   */
+  OperationStatistics getCreates();
+
+  /**
+   * Gets the statistics of the calls changing users or quizzes.
+   *
+   * @return the number and latency of updates.
+   */
+  OperationStatistics getUpdates();
+
+  /**
+   * Gets the statistics of the calls deleting users.
+   *
+   * @return the number and latency of deletes.
+   */
+  OperationStatistics getDeletes();
+
+  /**
+   * Gets the number of bytes decoded from snapshots, images, journals and the key-value store.
+   *
+   * @return the number of bytes read.
+   */
+  long getBytesRead();
+
+  /**
+   * Gets the number of bytes written to snapshots, images, journals and the key-value store,
+   * including the bytes rewritten by compactions and merges.
+   *
+   * @return the number of bytes written.
+   */
+  long getBytesWritten();
+
+  /**
+   * Gets the time spent decoding users.
+   *
+   * @return the parse time in microseconds.
+   */
+  long getParseMicros();
+
+  /**
+   * Gets the time spent encoding and writing users, not counting the time waiting for the data
+   * to reach the disk.
+   *
+   * @return the serialize time in microseconds.
+   */
+  long getSerializeMicros();
+
+  /**
+   * Gets the number of times written data was forced to the disk.
+   *
+   * @return the number of fsync calls.
+   */
+  long getFsyncs();
+
+  /**
+   * Gets the time spent waiting for written data to reach the disk.
+   *
+   * @return the fsync time in microseconds.
+   */
+  long getFsyncMicros();
+
+  /**
+   * Gets the number of bytes taken by the storage file and the files next to it, such as the
+   * journal, index, heap image, shards and key-value store.
+   *
+   * @return the size on disk in bytes, or -1 if it could not be determined.
+   */
+  long getFileSize();
+
+  /**
+   * Gets the number of users that were created, changed or deleted.
+   *
+   * @return the number of logical changes.
+   */
+  long getChanges();
+
+  /**
+   * Gets the number of bytes written per logical change. A full snapshot rewrite makes this grow
+   * with the size of the store, while journaled and key-value storage keep it close to the size
+   * of a user.
+   *
+   * @return the write amplification, or 0 if nothing was changed.
+   */
+  double getWriteAmplification();
+}
@@ -0,0 +1,190 @@
+package json;
+
+import java.io.IOException;
+import java.util.Objects;
+
+/**
+ * Writes the resident users to disk on a dedicated thread, using group commit.
+ *
+ * <p>Mutations call {@link #requestWrite()} after they are applied in memory, which returns a
+ * ticket immediately. The writer thread waits for a short window so that concurrent mutations
+ * are batched, and then writes the current state in one go. Since the written state contains
+ * every change applied before the batch started, a single write covers all mutations requested
+ * before it, so many mutations cost a single write and a single fsync.
+ *
+ * <p>Callers that need durability wait for their ticket with {@link #await(long)}. Callers using
+ * write-behind persistence do not wait at all.
+ */
+final class StorageWriter {
+  private final BatchWriter writer;
+  private final long windowMillis;
+  private final Thread thread;
+
+  private long requested = 0;
+  private long written = 0;
+  private boolean closed = false;
+  private IOException failure;
+  private long failedFrom = 0;
+  private long failedTo = 0;
+
+  /**
+   * Writes the current state of the resident users to persistent storage.
+   */
+  @FunctionalInterface
+  interface BatchWriter {
+    void write() throws IOException;
+  }
+
+  /**
+   * Initializes and starts a writer.
+   *
+   * @param name         is the name of the writer thread.
+   * @param writer       writes the current state to persistent storage.
+   * @param windowMillis is the time to wait for more mutations before writing a batch.
+   */
+  StorageWriter(String name, BatchWriter writer, long windowMillis) {
+    this.writer = Objects.requireNonNull(writer);
+    this.windowMillis = windowMillis;
+
+    thread = new Thread(this::run, name);
+    thread.setDaemon(true);
+    thread.start();
+  }
+
+  /**
+   * Schedules a write of the current state. Must be called after the mutation is applied.
+   *
+   * @return a ticket that can be passed to {@link #await(long)}.
+   */
+  synchronized long requestWrite() {
+    if (closed) {
+      throw new IllegalStateException("The writer is closed.");
+    }
+
+    requested++;
+    notifyAll();
+    return requested;
+  }
+
+  /**
+   * Determines whether every requested write has completed.
+   *
+   * @return true if no write is pending or in progress.
+   */
+  synchronized boolean isIdle() {
+    return requested == written;
+  }
+
+  /**
+   * Blocks until the write covering the given ticket is on disk.
+   *
+   * @param ticket is the ticket returned by {@link #requestWrite()}.
+   * @throws IOException if the write covering the ticket failed.
+   */
+  synchronized void await(long ticket) throws IOException {
+    while (written < ticket) {
+      try {
+        wait();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while waiting for pending writes.");
+      }
+    }
+
+    if (failure != null && ticket >= failedFrom && ticket <= failedTo) {
+      throw failure;
+    }
+  }
+
+  /**
+   * Blocks until every write requested before this call is on disk.
+   *
+   * @throws IOException if the most recent write failed.
+   */
+  void flush() throws IOException {
+    long ticket;
+    synchronized (this) {
+      ticket = requested;
+    }
+
+    await(ticket);
+  }
+
+  /**
+   * Writes all pending changes and stops the writer thread.
+   *
+   * @throws IOException if the last write failed.
+   */
+  void close() throws IOException {
+    synchronized (this) {
+      closed = true;
+      notifyAll();
+    }
+
+    try {
+      thread.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized (this) {
+      if (failure != null && failedTo == written) {
+        throw failure;
+      }
+    }
+  }
+
+  private void run() {
+    while (true) {
+      synchronized (this) {
+        while (requested == written && !closed) {
+          try {
+            wait();
+          } catch (InterruptedException e) {
+            closed = true;
+          }
+        }
+
+        if (requested == written) {
+          return;
+        }
+      }
+
+      if (windowMillis > 0) {
+        try {
+          Thread.sleep(windowMillis);
+        } catch (InterruptedException e) {
+          // Write what we have immediately
+          Thread.currentThread().interrupt();
+        }
+      }
+
+      long from;
+      long target;
+      synchronized (this) {
+        from = written + 1;
+        target = requested;
+      }
+
+      IOException result = null;
+      try {
+        writer.write();
+      } catch (IOException e) {
+        result = e;
+      } catch (RuntimeException e) {
+        result = new IOException("An error occurred when writing users to storage.", e);
+      }
+
+      synchronized (this) {
+        if (result != null) {
+          failure = result;
+          failedFrom = from;
+          failedTo = target;
+        }
+
+        written = target;
+        notifyAll();
+      }
+    }
+  }
+}
@@ -0,0 +1,84 @@
+package json;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * A fixed set of read-write locks, selected by the hash of a key.
+ *
+ * <p>Work on different keys usually maps to different stripes and runs in parallel, while work on
+ * the same key always maps to the same stripe. Readers of a stripe share its lock. Locks of
+ * several keys are always acquired in stripe order, so that two threads locking the same keys
+ * cannot deadlock.
+ */
+final class StripedLock {
+  private final ReadWriteLock[] stripes;
+
+  /**
+   * Initializes the locks.
+   *
+   * @param count is the number of stripes.
+   */
+  StripedLock(int count) {
+    if (count <= 0) {
+      throw new IllegalArgumentException("The number of stripes must be positive.");
+    }
+
+    stripes = new ReadWriteLock[count];
+    for (int i = 0; i < count; i++) {
+      stripes[i] = new ReentrantReadWriteLock();
+    }
+  }
+
+  /**
+   * Gets the lock to hold while reading the given key.
+   *
+   * @param key is the key to read.
+   * @return the read lock of the stripe of the key.
+   */
+  Lock readLock(String key) {
+    return stripes[stripeOf(key)].readLock();
+  }
+
+  /**
+   * Acquires the write locks of the given keys, in stripe order.
+   *
+   * @param keys are the keys to write.
+   * @return the acquired locks, which must be passed to {@link #unlock(List)}.
+   */
+  List<Lock> lockForWriting(String... keys) {
+    TreeSet<Integer> indices = new TreeSet<>();
+    for (String key : keys) {
+      indices.add(stripeOf(key));
+    }
+
+    List<Lock> locks = new ArrayList<>(indices.size());
+    for (int index : indices) {
+      Lock lock = stripes[index].writeLock();
+      lock.lock();
+      locks.add(lock);
+    }
+
+    return locks;
+  }
+
+  /**
+   * Releases locks acquired by {@link #lockForWriting(String...)}.
+   *
+   * @param locks are the locks to release.
+   */
+  void unlock(List<Lock> locks) {
+    for (int i = locks.size() - 1; i >= 0; i--) {
+      locks.get(i).unlock();
+    }
+  }
+
+  private int stripeOf(String key) {
+    return Math.floorMod(Objects.requireNonNull(key).hashCode(), stripes.length);
+  }
+}
@@ -0,0 +1,96 @@
+package json;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import core.User;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Reads the users in a JSON storage file one at a time. Used by {@link JsonCodec}.
+ *
+ * <p>The file is decoded incrementally from a buffered stream by Gson's {@link JsonReader}, so
+ * only the user currently being decoded is held in memory, and callers can stop as soon as they
+ * have found what they are looking for.
+ */
+final class UserReader implements Iterator<User>, Closeable {
+  private final Gson gson;
+  private final JsonReader reader;
+
+  /**
+   * Reads users from the given source, which must contain a JSON array of users.
+   *
+   * @param gson   is used to deserialize users.
+   * @param source is the character stream to read from. It is closed together with this reader.
+   * @throws IOException if the source does not start with an array.
+   */
+  UserReader(Gson gson, Reader source) throws IOException {
+    this.gson = Objects.requireNonNull(gson);
+    this.reader = new JsonReader(Objects.requireNonNull(source));
+
+    try {
+      reader.beginArray();
+    } catch (IOException | IllegalStateException e) {
+      reader.close();
+      throw new IOException("The storage does not contain a list of users.", e);
+    }
+  }
+
+  /**
+   * Streams the users from a reader. The returned stream must be closed to release the reader.
+   *
+   * @param userReader is the reader to stream users from.
+   * @return a sequential stream of users, in the order they are stored.
+   */
+  static Stream<User> stream(UserReader userReader) {
+    return StreamSupport.stream(
+        Spliterators.spliteratorUnknownSize(userReader,
+            Spliterator.ORDERED | Spliterator.NONNULL),
+        false
+    ).onClose(() -> {
+      try {
+        userReader.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    });
+  }
+
+  @Override
+  public boolean hasNext() {
+    try {
+      return reader.peek() != JsonToken.END_ARRAY;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public User next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+
+    try {
+      return gson.fromJson(reader, User.class);
+    } catch (JsonParseException e) {
+      throw new UncheckedIOException(new IOException("A stored user could not be read.", e));
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    reader.close();
+  }
+}
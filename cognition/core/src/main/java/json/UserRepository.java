@@ -0,0 +1,606 @@
+package json;
+
+import com.google.gson.Gson;
+import core.CompactQuiz;
+import core.Quiz;
+import core.User;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Resident domain model backing {@link CognitionStorage}.
+ *
+ * <p>Users are kept in a map keyed by username, preserving the order they were stored in, and
+ * every quiz is indexed by its UUID together with the username of its owner. The repository owns
+ * private copies of all objects: instances passed in are copied before they are stored, and
+ * instances handed out are copies as well. The stored objects are therefore never mutated, which
+ * allows {@link #snapshot()} to hand a consistent list of users to a background writer.
+ *
+ * <p>Storing a user assigns the versions of the user and its quizzes, which clients use to detect
+ * changes made by others. Replayed changes are stored with the versions they were written with.
+ *
+ * <p>The maps are guarded by a read-write lock, which is only held to look up or install stored
+ * objects. Copying a user or quiz, which serializes it with Gson, happens outside the lock, so
+ * reads and changes of different users run in parallel. A change reads the stored user, builds
+ * its replacement without the lock, and installs it only if the stored user is still the one it
+ * read, retrying otherwise. Callers serialize changes to the same user themselves, through the
+ * {@link StripedLock} of {@link CognitionStorage}, so a retry only happens when the users are
+ * reloaded at the same time.
+ *
+ * <p>A quiz UUID belongs to a single user. Since changes of different users hold different
+ * stripes, the quizzes of a user are checked against the quiz index while installing it under the
+ * write lock, so two users cannot claim the same UUID at the same time.
+ */
+final class UserRepository {
+  private final Gson gson;
+  private final Map<String, User> users = new LinkedHashMap<>();
+  private final Map<String, QuizEntry> quizzes = new HashMap<>();
+  private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+  /**
+   * Initializes a repository containing the given users.
+   *
+   * @param gson  is used to create private copies of the users.
+   * @param users are the users loaded from persistent storage. If several users share the same
+   *              username, the first one is kept.
+   */
+  UserRepository(Gson gson, Collection<User> users) {
+    this.gson = Objects.requireNonNull(gson);
+    load(users);
+  }
+
+  /**
+   * Replaces all users, for instance after the storage file was changed by someone else.
+   *
+   * @param users are the users loaded from persistent storage. If several users share the same
+   *              username, the first one is kept.
+   */
+  void reset(Collection<User> users) {
+    Objects.requireNonNull(users);
+    lock.writeLock().lock();
+    try {
+      this.users.clear();
+      quizzes.clear();
+      load(users);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void load(Collection<User> users) {
+    for (User user : Objects.requireNonNull(users)) {
+      if (!this.users.containsKey(user.getUsername())) {
+        this.users.put(user.getUsername(), user);
+        index(user);
+      }
+    }
+  }
+
+  /**
+   * Gets copies of all users, in the order they were stored.
+   *
+   * @return a list of User objects.
+   */
+  List<User> findAll() {
+    List<User> stored = snapshot();
+    List<User> copies = new ArrayList<>(stored.size());
+
+    for (User user : stored) {
+      copies.add(copy(user));
+    }
+
+    return copies;
+  }
+
+  /**
+   * Streams copies of all users, in the order they were stored. Users are copied as the stream
+   * is consumed, and the stream is not affected by later changes.
+   *
+   * @return a sequential stream of User objects.
+   */
+  Stream<User> stream() {
+    return snapshot().stream().map(this::copy);
+  }
+
+  /**
+   * Gets a copy of the user with the given username.
+   *
+   * @param username is the identifier of the user.
+   * @return a copy of the corresponding User object.
+   * @throws NoSuchElementException if no user with the given username exists.
+   */
+  User find(String username) throws NoSuchElementException {
+    return copy(stored(username));
+  }
+
+  /**
+   * Describes the quizzes of the user with the given username, without copying their flashcards.
+   *
+   * @param username is the identifier of the user.
+   * @return the quizzes of the user, in the order they are stored.
+   * @throws NoSuchElementException if no user with the given username exists.
+   */
+  List<CompactQuiz> findQuizHeaders(String username) throws NoSuchElementException {
+    List<CompactQuiz> headers = new ArrayList<>();
+    for (Quiz quiz : stored(username).getQuizzes()) {
+      headers.add(new CompactQuiz(quiz));
+    }
+
+    return headers;
+  }
+
+  boolean contains(String username) {
+    Objects.requireNonNull(username);
+    lock.readLock().lock();
+    try {
+      return users.containsKey(username);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  int size() {
+    lock.readLock().lock();
+    try {
+      return users.size();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  boolean isEmpty() {
+    return size() == 0;
+  }
+
+  /**
+   * Gets a copy of the quiz with the given UUID.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return a copy of the corresponding Quiz object.
+   * @throws NoSuchElementException if no quiz with the given UUID exists.
+   */
+  Quiz findQuiz(String uuid) throws NoSuchElementException {
+    return gson.fromJson(gson.toJsonTree(entry(uuid).quiz), Quiz.class);
+  }
+
+  /**
+   * Gets the username of the user owning the quiz with the given UUID.
+   *
+   * @param uuid is the UUID of the quiz.
+   * @return the username of the owner.
+   * @throws NoSuchElementException if no quiz with the given UUID exists.
+   */
+  String findQuizOwner(String uuid) throws NoSuchElementException {
+    return entry(uuid).owner;
+  }
+
+  /**
+   * Stores a copy of a new user. The stored user and its quizzes get version 1.
+   *
+   * @param user is the user to store.
+   * @return the stored user, which must not be modified.
+   * @throws IllegalArgumentException if a user with the same username already exists, or another
+   *                                  user owns one of its quizzes.
+   */
+  User insert(User user) {
+    User stored = copy(Objects.requireNonNull(user));
+    assignVersions(gson, null, stored);
+
+    lock.writeLock().lock();
+    try {
+      if (users.containsKey(stored.getUsername())) {
+        throw new IllegalArgumentException(
+            "The username " + stored.getUsername() + " is already in use.");
+      }
+
+      requireOwnQuizzes(stored.getUsername(), stored);
+      users.put(stored.getUsername(), stored);
+      index(stored);
+      return stored;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Replaces the user with the given username by a copy of the provided user. The replacement
+   * keeps the position of the replaced user, even if its username differs. The version of the
+   * user increases by one, and so does the version of every quiz whose content changed. Quizzes
+   * that were added get version 1.
+   *
+   * @param username is the username of the user to replace.
+   * @param user     is the new version of the user.
+   * @return the stored user, which must not be modified.
+   * @throws NoSuchElementException   if no user with the given username exists.
+   * @throws IllegalArgumentException if another user owns one of its quizzes.
+   */
+  User replace(String username, User user) throws NoSuchElementException {
+    User stored = copy(Objects.requireNonNull(user));
+
+    while (true) {
+      User previous = stored(username);
+      assignVersions(gson, previous, stored);
+
+      if (install(username, previous, stored)) {
+        return stored;
+      }
+    }
+  }
+
+  /**
+   * Replaces a single quiz of a user by a copy of the provided quiz. Only the quiz is copied; the
+   * other quizzes are shared with the replaced user, which is safe since stored objects are never
+   * mutated. The versions of the user and the quiz increase by one.
+   *
+   * @param username is the username of the user owning the quiz.
+   * @param quiz     is the new version of the quiz.
+   * @return the stored user, which must not be modified.
+   * @throws NoSuchElementException if the user does not exist or does not own the quiz.
+   */
+  User replaceQuiz(String username, Quiz quiz) throws NoSuchElementException {
+    Quiz copied = gson.fromJson(gson.toJsonTree(quiz), Quiz.class);
+
+    while (true) {
+      User previous = stored(username);
+      User stored = withQuiz(previous, copied);
+      stored.setVersion(previous.getVersion() + 1);
+
+      if (install(username, previous, stored)) {
+        return stored;
+      }
+    }
+  }
+
+  /**
+   * Stores a copy of a quiz exactly as provided, including its version, and sets the version of
+   * its owner. Used to replay quiz changes that were already versioned. Nothing is changed if the
+   * user does not own the quiz anymore.
+   *
+   * @param username    is the username of the user owning the quiz.
+   * @param quiz        is the quiz to store.
+   * @param userVersion is the version of the user after the change.
+   */
+  void restoreQuiz(String username, Quiz quiz, long userVersion) {
+    Quiz copied = gson.fromJson(gson.toJsonTree(quiz), Quiz.class);
+
+    try {
+      while (true) {
+        User previous = stored(username);
+        User stored = withQuiz(previous, copied);
+        copied.setVersion(quiz.getVersion());
+        stored.setVersion(userVersion);
+
+        if (install(username, previous, stored)) {
+          return;
+        }
+      }
+    } catch (NoSuchElementException e) {
+      // The user was removed, or the quiz was moved or removed by a later change
+    }
+  }
+
+  /**
+   * Creates a new version of a user in which one quiz is replaced, keeping the position of the
+   * quiz. The version of the replaced quiz increases by one, and the other quizzes are shared with
+   * the given user.
+   *
+   * @param user is the stored user.
+   * @param quiz is a private copy of the new version of the quiz, whose version is set.
+   * @return a new user with the same username, password and version as the given user.
+   * @throws NoSuchElementException if the user does not own the quiz.
+   */
+  static User withQuiz(User user, Quiz quiz) throws NoSuchElementException {
+    User changed = new User(user.getUsername(), user.getPassword());
+    changed.setVersion(user.getVersion());
+    boolean found = false;
+
+    for (Quiz current : user.getQuizzes()) {
+      if (current.identifier().equals(quiz.identifier())) {
+        quiz.setVersion(current.getVersion() + 1);
+        changed.addQuiz(quiz);
+        found = true;
+      } else {
+        changed.addQuiz(current);
+      }
+    }
+
+    if (!found) {
+      throw new NoSuchElementException();
+    }
+
+    return changed;
+  }
+
+  /**
+   * Stores a copy of a user exactly as provided, including its versions, replacing the user with
+   * the given username if it exists. Used to replay changes that were already versioned.
+   *
+   * @param username is the username of the user to replace.
+   * @param user     is the user to store.
+   */
+  void restore(String username, User user) {
+    Objects.requireNonNull(username);
+    User stored = copy(Objects.requireNonNull(user));
+
+    lock.writeLock().lock();
+    try {
+      User previous = users.get(username);
+
+      if (previous == null) {
+        users.put(stored.getUsername(), stored);
+        index(stored);
+      } else {
+        put(username, previous, stored);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Undoes a change whose persistence failed, putting back the user that was stored before it.
+   * The caller must still hold the lock serializing changes to the user, so that nothing was
+   * built on the change in the meantime.
+   *
+   * @param username        is the username the change was made for.
+   * @param previous        is the stored user before the change, or null if the change created it.
+   * @param changedUsername is the username of the user stored by the change, or null if the
+   *                        change deleted the user.
+   */
+  void revert(String username, User previous, String changedUsername) {
+    Objects.requireNonNull(username);
+    lock.writeLock().lock();
+    try {
+      User changed = changedUsername == null ? null : users.get(changedUsername);
+
+      if (changed != null && previous != null) {
+        put(changedUsername, changed, previous);
+      } else if (changed != null) {
+        users.remove(changedUsername);
+        unindex(changed);
+      } else if (previous != null) {
+        // A deleted user is put back at the end
+        users.put(username, previous);
+        index(previous);
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the stored user with the given username, without copying it.
+   *
+   * @param username is the identifier of the user.
+   * @return the stored user, which must not be modified, or null if there is no such user.
+   */
+  User peek(String username) {
+    Objects.requireNonNull(username);
+    lock.readLock().lock();
+    try {
+      return users.get(username);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Installs a new version of a user, unless the stored user changed since it was read.
+   *
+   * @param username is the username of the user to replace.
+   * @param previous is the stored user the new version was built from.
+   * @param stored   is the new version of the user.
+   * @return true if the user was installed, false if the stored user is not the previous one.
+   * @throws IllegalArgumentException if another user owns one of the quizzes of the new version.
+   */
+  private boolean install(String username, User previous, User stored) {
+    lock.writeLock().lock();
+    try {
+      if (users.get(username) != previous) {
+        return false;
+      }
+
+      requireOwnQuizzes(username, stored);
+      put(username, previous, stored);
+      return true;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  private void put(String username, User previous, User stored) {
+    unindex(previous);
+
+    if (username.equals(stored.getUsername())) {
+      users.put(username, stored);
+    } else {
+      // Renaming a user is rare, so rebuilding the map to keep the order is acceptable
+      Map<String, User> renamed = new LinkedHashMap<>();
+      users.forEach((key, value) -> {
+        if (key.equals(username)) {
+          renamed.put(stored.getUsername(), stored);
+        } else if (!key.equals(stored.getUsername())) {
+          renamed.put(key, value);
+        }
+      });
+      users.clear();
+      users.putAll(renamed);
+    }
+
+    index(stored);
+  }
+
+  /**
+   * Removes the user with the given username.
+   *
+   * @param username is the username of the user to remove.
+   * @throws NoSuchElementException if no user with the given username exists.
+   */
+  void remove(String username) throws NoSuchElementException {
+    Objects.requireNonNull(username);
+    lock.writeLock().lock();
+    try {
+      User previous = users.remove(username);
+
+      if (previous == null) {
+        throw new NoSuchElementException();
+      }
+
+      unindex(previous);
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the stored users without copying them. The returned list is a point-in-time view and
+   * must not be modified, but it can safely be serialized by another thread since stored users
+   * are never mutated.
+   *
+   * @return the stored users, in the order they were stored.
+   */
+  List<User> snapshot() {
+    lock.readLock().lock();
+    try {
+      return List.copyOf(users.values());
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  /**
+   * Gets the stored user with the given username, without copying it.
+   *
+   * @param username is the identifier of the user.
+   * @return the stored user, which must not be modified.
+   * @throws NoSuchElementException if no user with the given username exists.
+   */
+  private User stored(String username) throws NoSuchElementException {
+    Objects.requireNonNull(username);
+    User user;
+    lock.readLock().lock();
+    try {
+      user = users.get(username);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    if (user == null) {
+      throw new NoSuchElementException();
+    }
+
+    return user;
+  }
+
+  private QuizEntry entry(String uuid) throws NoSuchElementException {
+    Objects.requireNonNull(uuid);
+    QuizEntry entry;
+    lock.readLock().lock();
+    try {
+      entry = quizzes.get(uuid);
+    } finally {
+      lock.readLock().unlock();
+    }
+
+    if (entry == null) {
+      throw new NoSuchElementException();
+    }
+
+    return entry;
+  }
+
+  /**
+   * Checks that no quiz of a user about to be stored is owned by another user. Must be called
+   * while holding the write lock, so that the check and the installation are atomic.
+   *
+   * @param username is the username of the user to replace, or of the new user.
+   * @param stored   is the user about to be stored.
+   * @throws IllegalArgumentException if another user owns one of the quizzes.
+   */
+  private void requireOwnQuizzes(String username, User stored) {
+    for (Quiz quiz : stored.getQuizzes()) {
+      QuizEntry entry = quizzes.get(quiz.getUuid());
+
+      if (entry != null && !entry.owner.equals(username)) {
+        throw new IllegalArgumentException("The quiz " + quiz.getUuid() + " is already in use.");
+      }
+    }
+  }
+
+  private void index(User user) {
+    for (Quiz quiz : user.getQuizzes()) {
+      quizzes.put(quiz.getUuid(), new QuizEntry(user.getUsername(), quiz));
+    }
+  }
+
+  private void unindex(User user) {
+    for (Quiz quiz : user.getQuizzes()) {
+      QuizEntry entry = quizzes.get(quiz.getUuid());
+
+      // Only remove the entry if it still points to this user
+      if (entry != null && entry.owner.equals(user.getUsername())) {
+        quizzes.remove(quiz.getUuid());
+      }
+    }
+  }
+
+  private User copy(User user) {
+    return gson.fromJson(gson.toJsonTree(user), User.class);
+  }
+
+  /**
+   * Assigns the versions of a user that is about to replace another one.
+   *
+   * @param gson     is used to compare quizzes.
+   * @param previous is the stored user to replace, or null if the user is new.
+   * @param stored   is the private copy of the new user, whose versions are set.
+   */
+  static void assignVersions(Gson gson, User previous, User stored) {
+    Map<String, Quiz> previousQuizzes = new HashMap<>();
+
+    if (previous != null) {
+      for (Quiz quiz : previous.getQuizzes()) {
+        previousQuizzes.put(quiz.getUuid(), quiz);
+      }
+    }
+
+    stored.setVersion(previous == null ? 1 : previous.getVersion() + 1);
+
+    for (Quiz quiz : stored.getQuizzes()) {
+      Quiz previousQuiz = previousQuizzes.get(quiz.getUuid());
+
+      if (previousQuiz == null) {
+        quiz.setVersion(1);
+        continue;
+      }
+
+      // The quiz keeps its version unless something other than the version changed
+      quiz.setVersion(previousQuiz.getVersion());
+      if (!gson.toJsonTree(quiz).equals(gson.toJsonTree(previousQuiz))) {
+        quiz.setVersion(previousQuiz.getVersion() + 1);
+      }
+    }
+  }
+
+  /**
+   * An entry in the quiz index, pointing to a quiz and the username of its owner.
+   */
+  private static final class QuizEntry {
+    private final String owner;
+    private final Quiz quiz;
+
+    private QuizEntry(String owner, Quiz quiz) {
+      this.owner = owner;
+      this.quiz = quiz;
+    }
+  }
+}
@@ -1,11 +1,14 @@
 module cognition.core {
   requires transitive com.google.gson;
+  requires java.management;
 
   exports core;
   exports core.tools;
+  exports core.validation;
   exports json;
 
   opens core;
   opens core.tools;
+  opens core.validation;
   opens json;
 }
\ No newline at end of file
@@ -65,8 +65,10 @@ public class FlashcardTest {
   @Test
   @DisplayName("Working hash method")
   void workingHashMethod() {
-    int expectedHash = Objects.hash(flashcard.getUuid());
+    int expectedHash = Objects.hash(Identifier.valueOf(flashcard.getUuid()));
 
     Assertions.assertEquals(expectedHash, flashcard.hashCode());
+    Assertions.assertEquals(new Flashcard(flashcard.getUuid(), "other-front", "other-answer")
+        .hashCode(), flashcard.hashCode());
   }
 }
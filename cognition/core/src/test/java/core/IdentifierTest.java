@@ -0,0 +1,54 @@
+package core;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+import static core.tools.Tools.createUuid;
+
+public class IdentifierTest {
+
+  @Test
+  @DisplayName("Canonical UUIDs round trip.")
+  void canonicalUuidsRoundTrip() {
+    String uuid = createUuid();
+    Identifier identifier = Identifier.valueOf(uuid);
+
+    Assertions.assertEquals(uuid, identifier.toString());
+    Assertions.assertEquals(Identifier.valueOf(uuid), identifier);
+    Assertions.assertEquals(Identifier.valueOf(uuid).hashCode(), identifier.hashCode());
+    Assertions.assertNotEquals(Identifier.valueOf(createUuid()), identifier);
+
+    String bounds = new UUID(-1, Long.MIN_VALUE).toString();
+    Assertions.assertEquals(bounds, Identifier.valueOf(bounds).toString());
+  }
+
+  @Test
+  @DisplayName("Other identifiers keep their text.")
+  void otherIdentifiersKeepTheirText() {
+    String upperCase = createUuid().toUpperCase();
+    String notHex = "4efd2ea4-a598-3ec5-bc09-09ffc0q625aq";
+
+    Assertions.assertEquals(upperCase, Identifier.valueOf(upperCase).toString());
+    Assertions.assertEquals(notHex, Identifier.valueOf(notHex).toString());
+    Assertions.assertEquals(Identifier.valueOf(notHex), Identifier.valueOf(notHex));
+    Assertions.assertNotEquals(Identifier.valueOf(upperCase),
+        Identifier.valueOf(upperCase.toLowerCase()));
+  }
+
+  @Test
+  @DisplayName("Serializes as a string.")
+  void serializesAsString() {
+    Gson gson = new Gson();
+    Flashcard flashcard = new Flashcard(createUuid(), "front", "answer");
+
+    String json = gson.toJson(flashcard);
+    Assertions.assertEquals("{\"uuid\":\"" + flashcard.getUuid()
+        + "\",\"front\":\"front\",\"answer\":\"answer\"}", json);
+    Assertions.assertEquals(flashcard, gson.fromJson(json, Flashcard.class));
+    Assertions.assertFalse(gson.toJson(new Quiz()).contains("uuid"));
+  }
+}
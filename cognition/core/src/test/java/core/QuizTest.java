@@ -64,6 +64,7 @@ public class QuizTest {
     quiz.addFlashcards(flashcards);
 
     Assertions.assertEquals(flashcards, quiz.getFlashcards());
+    Assertions.assertEquals(5, quiz.flashcardCount());
   }
 
   @Test
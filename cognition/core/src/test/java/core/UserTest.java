@@ -5,6 +5,7 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 
+import java.util.List;
 import java.util.UUID;
 
 import static core.tools.Tools.createUuid;
@@ -162,4 +163,39 @@ public class UserTest {
 
     Assertions.assertTrue(quizWasUpdated);
   }
+
+  @Test
+  @DisplayName("Update keeps quiz position.")
+  void updateKeepsQuizPosition() {
+    Quiz first = new Quiz(createUuid(), "first", "description");
+    Quiz second = new Quiz(createUuid(), "second", "description");
+    user.addQuiz(first);
+    user.addQuiz(second);
+
+    Quiz updated = new Quiz(first.getUuid(), "updated", "description");
+    user.updateQuiz(updated);
+
+    Assertions.assertSame(updated, user.getQuizzes().get(0));
+    Assertions.assertSame(updated, user.findQuiz(first.getUuid()).orElseThrow());
+    Assertions.assertTrue(user.findQuiz(createUuid()).isEmpty());
+
+    // Updating a quiz the user does not have changes nothing
+    user.updateQuiz(new Quiz(createUuid(), "other", "description"));
+    Assertions.assertEquals(2, user.getQuizzes().size());
+  }
+
+  @Test
+  @DisplayName("Can set quizzes.")
+  void canSetQuizzes() {
+    Quiz quiz = new Quiz(createUuid(), "name", "description");
+    user.addQuiz(new Quiz(createUuid(), "replaced", "description"));
+    List<Quiz> before = user.getQuizzes();
+
+    user.setQuizzes(List.of(quiz, new Quiz(quiz.getUuid(), "duplicate", "description")));
+
+    Assertions.assertEquals(List.of(quiz), user.getQuizzes());
+    Assertions.assertEquals(1, before.size());
+    Assertions.assertNotSame(quiz, before.get(0));
+    Assertions.assertThrows(NullPointerException.class, () -> user.setQuizzes(null));
+  }
 }
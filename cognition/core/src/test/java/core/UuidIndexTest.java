@@ -0,0 +1,155 @@
+package core;
+
+import com.google.gson.Gson;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static core.tools.Tools.createUuid;
+
+public class UuidIndexTest {
+  private UuidIndex<Flashcard> index;
+  private Flashcard first;
+  private Flashcard second;
+  private Flashcard third;
+
+  @BeforeEach
+  void setUp() {
+    first = new Flashcard(createUuid(), "first-front", "first-answer");
+    second = new Flashcard(createUuid(), "second-front", "second-answer");
+    third = new Flashcard(createUuid(), "third-front", "third-answer");
+    index = new UuidIndex<>(List.of(first, second, third));
+  }
+
+  @Test
+  @DisplayName("Keeps insertion order.")
+  void keepsInsertionOrder() {
+    Assertions.assertEquals(List.of(first, second, third), new ArrayList<>(index));
+  }
+
+  @Test
+  @DisplayName("Skips duplicate UUIDs.")
+  void skipsDuplicateUuids() {
+    Flashcard duplicate = new Flashcard(second.getUuid(), "other-front", "other-answer");
+
+    Assertions.assertFalse(index.add(duplicate));
+    Assertions.assertEquals(3, index.size());
+    Assertions.assertSame(second, index.get(second.getUuid()));
+  }
+
+  @Test
+  @DisplayName("Replaces in place.")
+  void replacesInPlace() {
+    Flashcard replacement = new Flashcard(second.getUuid(), "new-front", "new-answer");
+
+    Assertions.assertTrue(index.replace(replacement));
+    Assertions.assertEquals(List.of(first, replacement, third), new ArrayList<>(index));
+    Assertions.assertSame(replacement, index.get(second.getUuid()));
+
+    Assertions.assertFalse(index.replace(new Flashcard(createUuid(), "front", "answer")));
+    Assertions.assertEquals(3, index.size());
+  }
+
+  @Test
+  @DisplayName("Removes by UUID.")
+  void removesByUuid() {
+    Assertions.assertSame(second, index.removeUuid(second.getUuid()));
+    Assertions.assertNull(index.removeUuid(second.getUuid()));
+    Assertions.assertFalse(index.contains(second));
+    Assertions.assertEquals(List.of(first, third), new ArrayList<>(index));
+
+    // Removing through the iterator removes the UUID as well
+    index.removeIf(flashcard -> flashcard == first);
+    Assertions.assertNull(index.get(first.getUuid()));
+    Assertions.assertEquals(List.of(third), new ArrayList<>(index));
+  }
+
+  @Test
+  @DisplayName("Snapshots are shared until a change.")
+  void snapshotsAreSharedUntilChange() {
+    List<Flashcard> snapshot = index.snapshot();
+
+    Assertions.assertSame(snapshot, index.snapshot());
+    Assertions.assertThrows(UnsupportedOperationException.class, () -> snapshot.add(first));
+
+    // Changes install a new snapshot and leave the old one as it was
+    index.removeUuid(first.getUuid());
+    Assertions.assertNotSame(snapshot, index.snapshot());
+    Assertions.assertEquals(List.of(first, second, third), snapshot);
+    Assertions.assertEquals(List.of(second, third), index.snapshot());
+
+    // Failed changes keep the snapshot
+    List<Flashcard> unchanged = index.snapshot();
+    index.add(second);
+    index.removeUuid(first.getUuid());
+    Assertions.assertSame(unchanged, index.snapshot());
+
+    index.removeIf(flashcard -> flashcard == second);
+    Assertions.assertEquals(List.of(third), index.snapshot());
+  }
+
+  @Test
+  @DisplayName("Adds several objects at once, skipping duplicate UUIDs.")
+  void addsAllSkippingDuplicateUuids() {
+    Flashcard fourth = new Flashcard(createUuid(), "fourth-front", "fourth-answer");
+    Flashcard duplicate = new Flashcard(first.getUuid(), "other-front", "other-answer");
+    List<Flashcard> before = index.snapshot();
+
+    Assertions.assertTrue(index.addAll(List.of(duplicate, fourth)));
+    Assertions.assertEquals(List.of(first, second, third), before);
+    Assertions.assertEquals(List.of(first, second, third, fourth), index.snapshot());
+
+    // Unchanged collections keep the snapshot
+    List<Flashcard> unchanged = index.snapshot();
+    Assertions.assertFalse(index.addAll(List.of(first, fourth)));
+    Assertions.assertSame(unchanged, index.snapshot());
+  }
+
+  @Test
+  @DisplayName("Readers on other threads see complete snapshots while objects are added.")
+  void readersSeeCompleteSnapshots() throws InterruptedException {
+    List<Flashcard> added = new ArrayList<>();
+    for (int i = 0; i < 10000; i++) {
+      added.add(new Flashcard(createUuid(), "front-" + i, "answer-" + i));
+    }
+
+    AtomicBoolean consistent = new AtomicBoolean(true);
+    Thread writer = new Thread(() -> added.forEach(index::add));
+    writer.start();
+
+    while (writer.isAlive()) {
+      List<Flashcard> snapshot = index.snapshot();
+      // Every snapshot is the initial objects followed by a prefix of the added ones
+      for (int i = 3; i < snapshot.size(); i++) {
+        if (snapshot.get(i) != added.get(i - 3)) {
+          consistent.set(false);
+        }
+      }
+    }
+
+    writer.join();
+    Assertions.assertTrue(consistent.get());
+    Assertions.assertEquals(10003, index.snapshot().size());
+  }
+
+  @Test
+  @DisplayName("Serializes as a JSON array.")
+  void serializesAsJsonArray() {
+    Gson gson = new Gson();
+    Quiz quiz = new Quiz(createUuid(), "name", "description");
+    quiz.addFlashcards(List.of(first, second, third));
+
+    String json = gson.toJson(quiz);
+    Assertions.assertEquals(gson.toJson(List.of(first, second, third)),
+        gson.toJsonTree(quiz).getAsJsonObject().get("flashcards").toString());
+
+    Quiz read = gson.fromJson(json, Quiz.class);
+    Assertions.assertEquals(quiz.getFlashcards(), read.getFlashcards());
+    Assertions.assertTrue(read.findFlashcard(third.getUuid()).isPresent());
+  }
+}
@@ -0,0 +1,58 @@
+package core.validation;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.util.UUID;
+
+public class ValidatorsTest {
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", " ", "\t\n", " \u0000 ", "a", " a ", "\u00a0", "   -"})
+  @DisplayName("Blank matches trim.")
+  void blankMatchesTrim(String text) {
+    Assertions.assertEquals(text.trim().equals(""), Validators.isBlank(text));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {"", "username", "User-Name-42", "user name", "user_name", "æøå",
+      "user\n", "[user]", "AZaz09"})
+  @DisplayName("Username characters match the former pattern.")
+  void usernameCharactersMatchPattern(String text) {
+    Assertions.assertEquals(text.matches("^[a-zA-Z0-9A-]*"),
+        Validators.isAlphanumericOrDash(text));
+  }
+
+  @ParameterizedTest
+  @ValueSource(strings = {
+      "4efd2ea4-a598-3ec5-bc09-09ffc0f625af",
+      "4efd2ea4-a598-3ec5-bc09-09ffc0q625aq",
+      "4efd2ea4a5983ec5bc0909ffc0f625af0000",
+      "4efd2ea4-a598-3ec5-bc09-09ffc0f625a-",
+      "4efd2ea4-a598-3ec5-bc09-09ffc0f62---",
+      "4efd2ea4-a598-3ec5-bc09-09ffc0f6-5af",
+      "-efd2ea4-a598-3ec5-bc09-09ffc0f625af",
+      "--fd2ea4-a598-3ec5-bc0909ffc0f625af0",
+      "4efd2ea4--598-3ec5-bc0909ffc0f625af0",
+      "------------------------------------",
+      "not-a-uuid"})
+  @DisplayName("UUID shape matches split.")
+  void uuidShapeMatchesSplit(String text) {
+    Assertions.assertEquals(text.length() == 36 && text.split("-").length == 5,
+        Validators.isUuidShaped(text));
+  }
+
+  @Test
+  @DisplayName("Accepts random UUIDs and rejects null.")
+  void acceptsRandomUuids() {
+    for (int i = 0; i < 100; i++) {
+      Assertions.assertTrue(Validators.isUuidShaped(UUID.randomUUID().toString()));
+    }
+
+    Assertions.assertFalse(Validators.isUuidShaped(null));
+    Assertions.assertThrows(NullPointerException.class, () -> Validators.isBlank(null));
+  }
+}
@@ -1,18 +1,34 @@
 package json;
 
 import com.google.gson.JsonIOException;
+import core.CompactQuiz;
 import core.Flashcard;
 import core.Quiz;
 import core.User;
 import org.junit.jupiter.api.*;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
 import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import javax.management.JMException;
+import javax.management.JMX;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 import static org.junit.jupiter.api.Assertions.fail;
 
@@ -146,11 +162,13 @@ public class CognitionStorageTest {
                                        "front": "front-1",
                                        "answer": "answer-1"
                                    }
-                               ]
+                               ],
+                               "version": 1
                            }
                        ],
                        "username": "username",
-                       "password": "password"
+                       "password": "password",
+                       "version": 1
                    }
                ]""".replaceAll("\\s+", "");
   }
@@ -336,4 +354,1127 @@ public class CognitionStorageTest {
             Paths.get(System.getProperty("user.home"), "it1901-gr2103", "cognition", "cognitionTest.json"),
             cognitionStorage.getStoragePath());
   }
+
+  @Test
+  @DisplayName("Can read quiz and owner by quiz UUID.")
+  void canReadQuizByUuid() {
+    String uuid = UUID.randomUUID().toString();
+    User user = new User("quiz-owner", "quiz-owner-password");
+    user.addQuiz(new Quiz(uuid, "quiz-name", "quiz-description"));
+    createUser(user);
+
+    try {
+      Assertions.assertEquals("quiz-name", cognitionStorage.readQuiz(uuid).getName());
+      Assertions.assertEquals("quiz-owner", cognitionStorage.readQuizOwner(uuid));
+
+      cognitionStorage.delete("quiz-owner");
+    } catch (IOException e) {
+      fail();
+    }
+
+    Assertions.assertThrows(NoSuchElementException.class, () -> cognitionStorage.readQuiz(uuid));
+  }
+
+  @Test
+  @DisplayName("Stored users are not affected by changes to returned users.")
+  void storedUsersAreCopies() {
+    String username = "copied-username";
+    User user = new User(username, "copied-password");
+    createUser(user);
+
+    // Mutate both the created instance and a read instance without updating storage
+    user.addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "quiz-description"));
+
+    try {
+      cognitionStorage.read(username)
+          .addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "quiz-description"));
+
+      Assertions.assertEquals(0, cognitionStorage.read(username).getQuizzes().size());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Creating a user with an existing username throws.")
+  void creatingDuplicateUserThrows() {
+    createUser(new User("duplicate-username", "duplicate-password"));
+
+    Assertions.assertThrows(IllegalArgumentException.class,
+        () -> cognitionStorage.create(new User("duplicate-username", "other-password")));
+  }
+
+  @Test
+  @DisplayName("Write-behind storage writes changes after flushing.")
+  void writeBehindStorageWritesChangesAfterFlushing() {
+    try {
+      CognitionStorage writeBehindStorage = new CognitionStorage(
+          "cognitionTest.json", StorageOptions.writeBehind());
+
+      for (int i = 0; i < 10; i++) {
+        writeBehindStorage.create(new User("write-behind-" + i, "write-behind-password"));
+      }
+
+      writeBehindStorage.delete("write-behind-0");
+      writeBehindStorage.flush();
+
+      // A new instance reads the state from file
+      CognitionStorage reloadedStorage = new CognitionStorage("cognitionTest.json");
+      Assertions.assertEquals(9, reloadedStorage.readUsers().size());
+      Assertions.assertFalse(reloadedStorage.exists("write-behind-0"));
+
+      writeBehindStorage.close();
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Journaled storage replays and compacts the journal.")
+  void journaledStorageReplaysAndCompactsJournal() {
+    try {
+      CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled().setCompactionThreshold(1024));
+      Path journalPath = StorageJournal.pathFor(journaledStorage.getStoragePath());
+
+      try {
+        journaledStorage.create(new User("journal-user", "journal-password"));
+
+        // A single mutation is appended to the journal instead of rewriting the storage file
+        Assertions.assertTrue(Files.exists(journalPath));
+        Assertions.assertTrue(journaledStorage.isEmpty());
+
+        // A new instance replays the journal
+        CognitionStorage reloadedStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled());
+        Assertions.assertTrue(reloadedStorage.exists("journal-user"));
+        reloadedStorage.close();
+
+        // Exceeding the threshold folds the journal into the storage file
+        journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled().setCompactionThreshold(1024));
+        for (int i = 0; i < 20; i++) {
+          journaledStorage.update("journal-user", new User("journal-user", "password-" + i));
+        }
+        journaledStorage.close();
+
+        Assertions.assertFalse(journaledStorage.isEmpty());
+        Assertions.assertEquals("password-19",
+            new CognitionStorage("cognitionJournalTest.json").read("journal-user").getPassword());
+      } finally {
+        journaledStorage.close();
+        Files.deleteIfExists(journaledStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A journaled change that cannot be appended is undone.")
+  void journaledChangeIsUndoneWhenAppendFails() {
+    try {
+      CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled());
+      Path journalPath = StorageJournal.pathFor(journaledStorage.getStoragePath());
+
+      try {
+        // Loads the users, then makes the journal impossible to open
+        Assertions.assertFalse(journaledStorage.exists("failed-user"));
+        Files.createDirectory(journalPath);
+
+        User user = new User("failed-user", "failed-password");
+        String quizUuid = UUID.randomUUID().toString();
+        user.addQuiz(new Quiz(quizUuid, "quiz-name", "description"));
+        Assertions.assertThrows(IOException.class, () -> journaledStorage.create(user));
+
+        Assertions.assertFalse(journaledStorage.exists("failed-user"));
+        Assertions.assertTrue(journaledStorage.readUsers().isEmpty());
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> journaledStorage.readQuizOwner(quizUuid));
+
+        Files.delete(journalPath);
+        journaledStorage.create(user);
+        Assertions.assertEquals("failed-user", journaledStorage.readQuizOwner(quizUuid));
+      } finally {
+        journaledStorage.close();
+        Files.deleteIfExists(journaledStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Concurrent changes are all written to file.")
+  void concurrentChangesAreAllWritten() {
+    int numberOfThreads = 8;
+    List<Thread> threads = new ArrayList<>();
+    List<IOException> failures = new ArrayList<>();
+
+    for (int i = 0; i < numberOfThreads; i++) {
+      User user = new User("concurrent-" + i, "concurrent-password");
+      threads.add(new Thread(() -> {
+        try {
+          cognitionStorage.create(user);
+        } catch (IOException e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      Assertions.assertTrue(failures.isEmpty());
+      Assertions.assertEquals(numberOfThreads,
+          new CognitionStorage("cognitionTest.json").readUsers().size());
+
+      // Only the storage file is left behind, not temporary snapshot files
+      try (var files = Files.list(cognitionStorage.getStoragePath().getParent())) {
+        Assertions.assertTrue(files.noneMatch(file -> file.toString().endsWith(".tmp")));
+      }
+    } catch (IOException | InterruptedException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Concurrent modifications of the same user are not lost.")
+  void concurrentModificationsAreNotLost() {
+    int numberOfThreads = 8;
+    int quizzesPerThread = 5;
+    List<Thread> threads = new ArrayList<>();
+    List<IOException> failures = new ArrayList<>();
+
+    createUser(new User("modified-user", "modified-password"));
+
+    for (int i = 0; i < numberOfThreads; i++) {
+      threads.add(new Thread(() -> {
+        try {
+          for (int j = 0; j < quizzesPerThread; j++) {
+            cognitionStorage.modify("modified-user", user -> {
+              user.addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "description"));
+              return user;
+            });
+          }
+        } catch (IOException e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        }
+      }));
+    }
+
+    threads.forEach(Thread::start);
+
+    try {
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      Assertions.assertTrue(failures.isEmpty());
+      Assertions.assertEquals(numberOfThreads * quizzesPerThread,
+          cognitionStorage.read("modified-user").getQuizzes().size());
+      Assertions.assertThrows(IllegalArgumentException.class,
+          () -> cognitionStorage.modify("modified-user",
+              user -> new User("renamed-user", "modified-password")));
+      Assertions.assertThrows(NoSuchElementException.class,
+          () -> cognitionStorage.modify("missing-user", user -> user));
+    } catch (IOException | InterruptedException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Only one of two users adding the same quiz at the same time gets it.")
+  void concurrentlyAddedQuizHasOneOwner() {
+    try {
+      CognitionStorage keyValueStorage =
+          new CognitionStorage("cognitionKeyValueTest.json", StorageOptions.keyValue());
+      Path directory = KeyValueUsers.directoryFor(keyValueStorage.getStoragePath());
+
+      try {
+        for (CognitionStorage storage : List.of(cognitionStorage, keyValueStorage)) {
+          raceForQuiz(storage);
+        }
+
+        keyValueStorage.close();
+      } finally {
+        try (Stream<Path> paths = Files.walk(directory)) {
+          for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.deleteIfExists(path);
+          }
+        }
+      }
+    } catch (IOException | InterruptedException e) {
+      fail();
+    }
+  }
+
+  private void raceForQuiz(CognitionStorage storage) throws IOException, InterruptedException {
+    List<String> usernames = List.of("first-racer", "second-racer");
+    for (String username : usernames) {
+      storage.create(new User(username, "racer-password"));
+    }
+
+    for (int round = 0; round < 20; round++) {
+      String quizUuid = UUID.randomUUID().toString();
+      CountDownLatch start = new CountDownLatch(1);
+      List<String> owners = Collections.synchronizedList(new ArrayList<>());
+      List<Exception> failures = Collections.synchronizedList(new ArrayList<>());
+      List<Thread> threads = new ArrayList<>();
+
+      for (String username : usernames) {
+        threads.add(new Thread(() -> {
+          try {
+            start.await();
+            storage.modify(username, user -> {
+              user.addQuiz(new Quiz(quizUuid, "quiz-name", "description"));
+              return user;
+            });
+            owners.add(username);
+          } catch (IllegalArgumentException e) {
+            // The other user got the quiz first
+          } catch (IOException | InterruptedException e) {
+            failures.add(e);
+          }
+        }));
+      }
+
+      threads.forEach(Thread::start);
+      start.countDown();
+      for (Thread thread : threads) {
+        thread.join();
+      }
+
+      Assertions.assertTrue(failures.isEmpty());
+      Assertions.assertEquals(1, owners.size());
+      Assertions.assertEquals(owners.get(0), storage.readQuizOwner(quizUuid));
+
+      int holders = 0;
+      for (String username : usernames) {
+        if (storage.read(username).getQuizzes().stream()
+            .anyMatch(quiz -> quiz.getUuid().equals(quizUuid))) {
+          holders++;
+        }
+      }
+      Assertions.assertEquals(1, holders);
+    }
+  }
+
+  @Test
+  @DisplayName("File-backed storage reads users from file on every call.")
+  void fileBackedStorageReadsFromFile() {
+    try {
+      CognitionStorage fileBackedStorage = new CognitionStorage(
+          "cognitionTest.json", StorageOptions.fileBacked());
+
+      String uuid = UUID.randomUUID().toString();
+      User user = new User("file-backed", "file-backed-password");
+      user.addQuiz(new Quiz(uuid, "quiz-name", "quiz-description"));
+      fileBackedStorage.create(user);
+      fileBackedStorage.create(new User("file-backed-other", "file-backed-password"));
+
+      // Changes made through another instance are visible immediately
+      cognitionStorage.delete("file-backed-other");
+
+      Assertions.assertTrue(fileBackedStorage.exists("file-backed"));
+      Assertions.assertFalse(fileBackedStorage.exists("file-backed-other"));
+      Assertions.assertEquals("file-backed", fileBackedStorage.readQuizOwner(uuid));
+      Assertions.assertEquals("quiz-name", fileBackedStorage.readQuiz(uuid).getName());
+      Assertions.assertThrows(NoSuchElementException.class,
+          () -> fileBackedStorage.read("file-backed-other"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("File-backed storage finds quizzes through the index, which is rebuilt if missing.")
+  void fileBackedStorageIndexesQuizzes() {
+    try {
+      CognitionStorage fileBackedStorage = new CognitionStorage(
+          "cognitionTest.json", StorageOptions.fileBacked());
+
+      String uuid = UUID.randomUUID().toString();
+      User user = new User("quiz-index-0", "quiz-index-password");
+      user.addQuiz(new Quiz(uuid, "quiz-name", "quiz-description"));
+      fileBackedStorage.create(user);
+      fileBackedStorage.create(new User("quiz-index-1", "quiz-index-password"));
+
+      Assertions.assertEquals("quiz-index-0", fileBackedStorage.readQuizOwner(uuid));
+
+      // Moving the quiz to another user updates the index
+      Quiz quiz = fileBackedStorage.readQuiz(uuid);
+      fileBackedStorage.modify("quiz-index-0", current -> {
+        current.removeQuiz(quiz);
+        return current;
+      });
+      fileBackedStorage.modify("quiz-index-1", current -> {
+        current.addQuiz(quiz);
+        return current;
+      });
+      Assertions.assertEquals("quiz-index-1", fileBackedStorage.readQuizOwner(uuid));
+
+      Path indexPath = SnapshotIndex.pathFor(fileBackedStorage.getStoragePath());
+      Files.delete(indexPath);
+
+      CognitionStorage reopenedStorage = new CognitionStorage(
+          "cognitionTest.json", StorageOptions.fileBacked());
+      Assertions.assertEquals("quiz-name", reopenedStorage.readQuiz(uuid).getName());
+      Assertions.assertEquals("quiz-index-1", reopenedStorage.readQuizOwner(uuid));
+      Assertions.assertTrue(Files.exists(indexPath));
+      Assertions.assertThrows(NoSuchElementException.class,
+          () -> reopenedStorage.readQuizOwner(UUID.randomUUID().toString()));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Quiz headers are read without flashcards in every mode.")
+  void quizHeadersAreReadInEveryMode() {
+    String uuid = UUID.randomUUID().toString();
+    User user = new User("quiz-headers", "quiz-headers-password");
+    Quiz quiz = new Quiz(uuid, "quiz-name", "quiz-description");
+    quiz.addFlashcard(new Flashcard(UUID.randomUUID().toString(), "front", "answer"));
+    user.addQuiz(quiz);
+
+    for (StorageOptions options : List.of(new StorageOptions(), StorageOptions.fileBacked(),
+        StorageOptions.fileBacked().setMemoryMapped(true),
+        StorageOptions.fileBacked().setCodec(new BinaryCodec()))) {
+      try {
+        clearStorage();
+        CognitionStorage storage = new CognitionStorage("cognitionTest.json", options);
+        storage.create(user);
+
+        List<CompactQuiz> headers = storage.readQuizHeaders("quiz-headers");
+        Assertions.assertEquals(1, headers.size());
+        Assertions.assertEquals(uuid, headers.get(0).getUuid());
+        Assertions.assertEquals("quiz-description", headers.get(0).getDescription());
+        Assertions.assertEquals(1, headers.get(0).getFlashcardCount());
+        Assertions.assertEquals(1, headers.get(0).getVersion());
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> storage.readQuizHeaders("missing-user"));
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Imports users in batches, creating new and replacing existing users.")
+  void usersAreImportedInBatches() {
+    for (StorageOptions options : List.of(new StorageOptions(), StorageOptions.fileBacked(),
+        StorageOptions.writeBehind())) {
+      try {
+        clearStorage();
+        CognitionStorage storage = new CognitionStorage("cognitionTest.json", options);
+        storage.create(new User("imported-0", "old-password"));
+
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 2500; i++) {
+          users.add(new User("imported-" + i, "imported-password"));
+        }
+
+        List<Long> progress = new ArrayList<>();
+        Assertions.assertEquals(2500, storage.importUsers(users.iterator(), progress::add));
+        Assertions.assertEquals(List.of(1000L, 2000L, 2500L), progress);
+
+        // Every batch is persisted before the import continues, also with write-behind
+        CognitionStorage reader = new CognitionStorage("cognitionTest.json");
+        Assertions.assertEquals(2500, reader.readUsers().size());
+        Assertions.assertEquals("imported-password", reader.read("imported-0").getPassword());
+        Assertions.assertEquals(2, reader.read("imported-0").getVersion());
+        Assertions.assertEquals(1, reader.read("imported-2499").getVersion());
+        storage.close();
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Can stream users.")
+  void canStreamUsers() {
+    createUser(new User("streamed-0", "streamed-password"));
+    createUser(new User("streamed-1", "streamed-password"));
+
+    try (Stream<User> users = new CognitionStorage(
+        "cognitionTest.json", StorageOptions.fileBacked()).streamUsers()) {
+      Assertions.assertEquals(List.of("streamed-0", "streamed-1"),
+          users.map(User::getUsername).collect(Collectors.toList()));
+    } catch (IOException e) {
+      fail();
+    }
+
+    try (Stream<User> users = cognitionStorage.streamUsers()) {
+      Assertions.assertEquals(2, users.count());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Memory-mapped storage reads the current file.")
+  void memoryMappedStorageReadsCurrentFile() {
+    try {
+      CognitionStorage mappedStorage = new CognitionStorage("cognitionTest.json",
+          StorageOptions.fileBacked().setMemoryMapped(true));
+
+      createUser(new User("mapped-user", "mapped-password"));
+      Assertions.assertEquals("mapped-password", mappedStorage.read("mapped-user").getPassword());
+
+      // Replacing the file is picked up by the mapped storage
+      cognitionStorage.update("mapped-user", new User("mapped-user", "changed-password"));
+      Assertions.assertEquals("changed-password", mappedStorage.read("mapped-user").getPassword());
+      Assertions.assertEquals(1, mappedStorage.readUsers().size());
+
+      // A resident storage can load its users through the mapping as well
+      Assertions.assertTrue(new CognitionStorage("cognitionTest.json",
+          new StorageOptions().setMemoryMapped(true)).exists("mapped-user"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Resident storage picks up changes made by someone else.")
+  void residentStoragePicksUpExternalChanges() {
+    try {
+      createUser(new User("external-user", "external-password"));
+      Assertions.assertEquals("external-password",
+          cognitionStorage.read("external-user").getPassword());
+
+      // Another program replaces the file with content of the same size
+      Files.writeString(cognitionStorage.getStoragePath(), Files
+          .readString(cognitionStorage.getStoragePath())
+          .replace("external-password", "external-passworD"));
+
+      Assertions.assertEquals("external-passworD",
+          cognitionStorage.read("external-user").getPassword());
+
+      CognitionStorage undetecting = new CognitionStorage("cognitionTest.json",
+          new StorageOptions().setDetectingExternalChanges(false));
+      Assertions.assertTrue(undetecting.exists("external-user"));
+
+      Files.writeString(cognitionStorage.getStoragePath(), "[]");
+      Assertions.assertTrue(undetecting.exists("external-user"));
+      Assertions.assertFalse(cognitionStorage.exists("external-user"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A storage file is only recognized from its metadata once it has settled.")
+  void settledStorageFileIsRecognizedFromMetadata() {
+    try {
+      createUser(new User("settled-user", "settled-password"));
+      Path path = cognitionStorage.getStoragePath();
+
+      // A file written just now could still be changed in place within the same tick
+      Assertions.assertFalse(FileStamp.of(path).isSettledVersionOf(path));
+
+      Files.setLastModifiedTime(path,
+          FileTime.fromMillis(System.currentTimeMillis() - 10_000));
+      FileStamp settled = FileStamp.of(path);
+      Assertions.assertTrue(settled.isSettledVersionOf(path));
+
+      Files.writeString(path, Files.readString(path)
+          .replace("settled-password", "settled-passworD"));
+      Assertions.assertFalse(settled.isSettledVersionOf(path));
+      Assertions.assertEquals("settled-passworD",
+          cognitionStorage.read("settled-user").getPassword());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Versions increase when users and quizzes change.")
+  void versionsIncreaseOnChange() {
+    try {
+      User user = new User("versioned-user", "versioned-password");
+      Quiz changed = new Quiz(UUID.randomUUID().toString(), "changed", "description");
+      Quiz unchanged = new Quiz(UUID.randomUUID().toString(), "unchanged", "description");
+      user.addQuiz(changed);
+      user.addQuiz(unchanged);
+      createUser(user);
+
+      User stored = cognitionStorage.read("versioned-user");
+      Assertions.assertEquals(1, stored.getVersion());
+      Assertions.assertEquals(1, stored.getQuizzes().get(0).getVersion());
+
+      changed.setName("new-name");
+      user.addQuiz(new Quiz(UUID.randomUUID().toString(), "added", "description"));
+      cognitionStorage.update("versioned-user", user, 1);
+
+      stored = cognitionStorage.read("versioned-user");
+      Assertions.assertEquals(2, stored.getVersion());
+      Assertions.assertEquals(2, cognitionStorage.readQuiz(changed.getUuid()).getVersion());
+      Assertions.assertEquals(1, cognitionStorage.readQuiz(unchanged.getUuid()).getVersion());
+      Assertions.assertEquals(1, stored.getQuizzes().get(2).getVersion());
+
+      // A change based on the first version conflicts with the change above
+      Assertions.assertThrows(ConcurrentModificationException.class,
+          () -> cognitionStorage.update("versioned-user", user, 1));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Replaying the journal keeps the versions.")
+  void replayingJournalKeepsVersions() {
+    try {
+      CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled());
+      Path journalPath = StorageJournal.pathFor(journaledStorage.getStoragePath());
+
+      try {
+        journaledStorage.create(new User("journal-user", "journal-password"));
+        journaledStorage.modify("journal-user", user -> {
+          user.addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "description"));
+          return user;
+        });
+        journaledStorage.close();
+
+        CognitionStorage reloadedStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled());
+        User user = reloadedStorage.read("journal-user");
+        reloadedStorage.close();
+
+        Assertions.assertEquals(2, user.getVersion());
+        Assertions.assertEquals(1, user.getQuizzes().get(0).getVersion());
+      } finally {
+        journaledStorage.close();
+        Files.deleteIfExists(journaledStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Replaying the journal stops at the first record with an invalid checksum.")
+  void replayingJournalStopsAtInvalidRecord() {
+    try {
+      CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled());
+      Path journalPath = StorageJournal.pathFor(journaledStorage.getStoragePath());
+
+      try {
+        journaledStorage.create(new User("journal-user", "journal-password"));
+        journaledStorage.close();
+
+        // A record that parses but does not match its checksum, followed by a valid record
+        List<String> records = Files.readAllLines(journalPath, StandardCharsets.UTF_8);
+        String valid = records.get(0).replace("journal-user", "later-user");
+        String damaged = valid.substring(0, 9) + valid.substring(9).replace("later", "wrong");
+        Files.writeString(journalPath, damaged + "\n" + valid + "\n{\"type\":",
+            StandardCharsets.UTF_8, StandardOpenOption.APPEND);
+
+        CognitionStorage recoveredStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled());
+        Assertions.assertTrue(recoveredStorage.exists("journal-user"));
+        Assertions.assertFalse(recoveredStorage.exists("wrong-user"));
+        Assertions.assertFalse(recoveredStorage.exists("later-user"));
+
+        RecoveryReport report = recoveredStorage.getRecoveryReport().orElseThrow();
+        Assertions.assertEquals(1, report.getReplayedRecords());
+        Assertions.assertTrue(report.getDiscardedBytes() > valid.length());
+        Assertions.assertFalse(report.isClean());
+        Assertions.assertFalse(Files.exists(journalPath));
+        recoveredStorage.close();
+      } finally {
+        journaledStorage.close();
+        Files.deleteIfExists(journaledStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A truncated storage file is recovered up to its last complete user.")
+  void truncatedStorageFileIsRecovered() {
+    createUser(new User("complete-user", "complete-password"));
+    createUser(new User("truncated-user", "truncated-password"));
+    Path path = cognitionStorage.getStoragePath();
+    Path damagedPath = path.resolveSibling(path.getFileName() + ".damaged");
+
+    try {
+      String content = Files.readString(path, StandardCharsets.UTF_8);
+      Files.writeString(path, content.substring(0, content.indexOf("truncated-password")),
+          StandardCharsets.UTF_8);
+
+      CognitionStorage recoveredStorage = new CognitionStorage("cognitionTest.json");
+      Assertions.assertTrue(recoveredStorage.exists("complete-user"));
+      Assertions.assertFalse(recoveredStorage.exists("truncated-user"));
+
+      RecoveryReport report = recoveredStorage.getRecoveryReport().orElseThrow();
+      Assertions.assertTrue(report.isSnapshotDamaged());
+      Assertions.assertEquals(1, report.getLoadedUsers());
+
+      // The damaged file is kept, and replaced by a complete one
+      Assertions.assertTrue(Files.exists(damagedPath));
+      Assertions.assertEquals(1, new CognitionStorage("cognitionTest.json").readUsers().size());
+    } catch (IOException e) {
+      fail();
+    } finally {
+      try {
+        Files.deleteIfExists(damagedPath);
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("A storage file that does not match the checksum in its index is reported.")
+  void storageFileIsVerifiedAgainstChecksum() {
+    createUser(new User("checked-user", "checked-password"));
+    Path path = cognitionStorage.getStoragePath();
+    Path damagedPath = path.resolveSibling(path.getFileName() + ".damaged");
+
+    try {
+      CognitionStorage intactStorage = new CognitionStorage("cognitionTest.json");
+      Assertions.assertTrue(intactStorage.exists("checked-user"));
+      Assertions.assertTrue(intactStorage.getRecoveryReport().orElseThrow().isClean());
+
+      // Change a single character, keeping the size and modification time
+      FileTime modified = Files.getLastModifiedTime(path);
+      String content = Files.readString(path, StandardCharsets.UTF_8);
+      Files.writeString(path, content.replace("checked-password", "checked-passwore"),
+          StandardCharsets.UTF_8);
+      Files.setLastModifiedTime(path, modified);
+
+      CognitionStorage recoveredStorage = new CognitionStorage("cognitionTest.json");
+      Assertions.assertTrue(recoveredStorage.exists("checked-user"));
+      Assertions.assertTrue(
+          recoveredStorage.getRecoveryReport().orElseThrow().isSnapshotDamaged());
+      Assertions.assertTrue(Files.exists(damagedPath));
+    } catch (IOException e) {
+      fail();
+    } finally {
+      try {
+        Files.deleteIfExists(damagedPath);
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("A heap image is loaded instead of the storage file, and the journal replayed on it.")
+  void heapImageIsLoadedWithJournal() {
+    try {
+      CognitionStorage imageStorage = new CognitionStorage("cognitionJournalTest.json",
+          new StorageOptions().setHeapImage(true));
+      Path imagePath = HeapImage.pathFor(imageStorage.getStoragePath());
+      Path journalPath = StorageJournal.pathFor(imageStorage.getStoragePath());
+
+      try {
+        User user = new User("image-user", "image-password");
+        user.addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "description"));
+        imageStorage.create(user);
+        imageStorage.close();
+        Assertions.assertTrue(Files.exists(imagePath));
+
+        // Changes journaled after the image are replayed on top of it
+        CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled().setHeapImage(true));
+        Assertions.assertTrue(journaledStorage.getRecoveryReport().isEmpty());
+        journaledStorage.create(new User("journal-user", "journal-password"));
+        Assertions.assertTrue(journaledStorage.getRecoveryReport().orElseThrow().isFromImage());
+        journaledStorage.close();
+
+        CognitionStorage reloadedStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled().setHeapImage(true));
+        Assertions.assertEquals(1,
+            reloadedStorage.read("image-user").getQuizzes().get(0).getVersion());
+        Assertions.assertTrue(reloadedStorage.exists("journal-user"));
+        RecoveryReport report = reloadedStorage.getRecoveryReport().orElseThrow();
+        Assertions.assertTrue(report.isFromImage());
+        Assertions.assertEquals(1, report.getLoadedUsers());
+        Assertions.assertEquals(1, report.getReplayedRecords());
+        reloadedStorage.close();
+
+        // An image of another version of the storage file is ignored
+        new CognitionStorage("cognitionJournalTest.json").delete("image-user");
+        CognitionStorage staleStorage = new CognitionStorage("cognitionJournalTest.json",
+            new StorageOptions().setHeapImage(true));
+        Assertions.assertFalse(staleStorage.exists("image-user"));
+        Assertions.assertFalse(staleStorage.getRecoveryReport().orElseThrow().isFromImage());
+        staleStorage.close();
+      } finally {
+        imageStorage.close();
+        Files.deleteIfExists(imageStorage.getStoragePath());
+        Files.deleteIfExists(imagePath);
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A heap image is ignored once the storage file is rewritten in place.")
+  void heapImageIsIgnoredAfterRewriteInPlace() {
+    try {
+      CognitionStorage imageStorage = new CognitionStorage("cognitionJournalTest.json",
+          new StorageOptions().setHeapImage(true));
+      Path path = imageStorage.getStoragePath();
+      Path imagePath = HeapImage.pathFor(path);
+
+      try {
+        imageStorage.create(new User("image-user", "image-password"));
+        imageStorage.close();
+        Assertions.assertTrue(HeapImage.matches(imagePath, path));
+
+        // Same size and modification time, only the content differs
+        FileTime modified = Files.getLastModifiedTime(path);
+        String content = Files.readString(path);
+        Files.writeString(path, content.replace("image-user", "other-user"),
+            StandardOpenOption.WRITE);
+        Files.setLastModifiedTime(path, modified);
+
+        Assertions.assertFalse(HeapImage.matches(imagePath, path));
+        CognitionStorage rewrittenStorage = new CognitionStorage("cognitionJournalTest.json",
+            new StorageOptions().setHeapImage(true));
+        Assertions.assertTrue(rewrittenStorage.exists("other-user"));
+        rewrittenStorage.close();
+      } finally {
+        imageStorage.close();
+        Files.deleteIfExists(imageStorage.getStoragePath());
+        Files.deleteIfExists(imagePath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Operations and the bytes they write are counted, and exposed over JMX.")
+  void statisticsAreCountedAndRegistered() {
+    try {
+      CognitionStorage monitoredStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled().setMonitored(true));
+      Path journalPath = StorageJournal.pathFor(monitoredStorage.getStoragePath());
+      ObjectName name = new ObjectName(
+          "cognition:type=CognitionStorage,name=\"cognitionJournalTest.json\"");
+      MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+
+      try {
+        monitoredStorage.create(new User("statistics-user", "statistics-password"));
+        monitoredStorage.read("statistics-user");
+        monitoredStorage.modify("statistics-user", user -> user);
+        monitoredStorage.delete("statistics-user");
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> monitoredStorage.read("statistics-user"));
+
+        StorageStatistics statistics = monitoredStorage.getStatistics();
+        Assertions.assertEquals(2, statistics.getReads().getCount());
+        Assertions.assertEquals(1, statistics.getCreates().getCount());
+        Assertions.assertEquals(1, statistics.getUpdates().getCount());
+        Assertions.assertEquals(1, statistics.getDeletes().getCount());
+        Assertions.assertEquals(3, statistics.getChanges());
+        Assertions.assertEquals(Files.size(journalPath), statistics.getBytesWritten());
+        Assertions.assertTrue(statistics.getWriteAmplification() > 0);
+        Assertions.assertTrue(statistics.getFileSize() >= Files.size(journalPath));
+
+        // JMX clients see the same statistics, and can map them back to their Java types
+        StorageStatisticsMXBean proxy =
+            JMX.newMXBeanProxy(server, name, StorageStatisticsMXBean.class);
+        Assertions.assertEquals(2, proxy.getReads().getCount());
+        Assertions.assertEquals(LatencyHistogram.BUCKETS, proxy.getReads().getHistogram().length);
+        Assertions.assertEquals(statistics.getBytesWritten(), server.getAttribute(name, "BytesWritten"));
+
+        monitoredStorage.close();
+        Assertions.assertFalse(server.isRegistered(name));
+      } finally {
+        monitoredStorage.close();
+        Files.deleteIfExists(monitoredStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException | JMException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Flashcards are added, replaced and removed without replacing the user.")
+  void flashcardsCanBeChangedOneAtATime() {
+    String quizUuid = UUID.randomUUID().toString();
+    User user = new User("flashcard-user", "flashcard-password");
+    user.addQuiz(new Quiz(quizUuid, "quiz-name", "quiz-description"));
+    user.addQuiz(new Quiz(UUID.randomUUID().toString(), "other-quiz", "quiz-description"));
+    createUser(user);
+
+    try {
+      Flashcard first = new Flashcard(UUID.randomUUID().toString(), "front", "answer");
+      Flashcard second = new Flashcard(UUID.randomUUID().toString(), "2 + 2", "4");
+      cognitionStorage.addFlashcard(quizUuid, first);
+      cognitionStorage.addFlashcard(quizUuid, second, 2);
+      cognitionStorage.replaceFlashcard(quizUuid,
+          new Flashcard(first.getUuid(), "new front", "new answer"));
+
+      Assertions.assertThrows(IllegalArgumentException.class,
+          () -> cognitionStorage.addFlashcard(quizUuid, second));
+      Assertions.assertThrows(ConcurrentModificationException.class,
+          () -> cognitionStorage.removeFlashcard(quizUuid, second.getUuid(), 2));
+      Assertions.assertThrows(NoSuchElementException.class,
+          () -> cognitionStorage.removeFlashcard(quizUuid, UUID.randomUUID().toString()));
+      Assertions.assertThrows(NoSuchElementException.class,
+          () -> cognitionStorage.addFlashcard(UUID.randomUUID().toString(), first));
+
+      Quiz quiz = cognitionStorage.readQuiz(quizUuid);
+      Assertions.assertEquals(4, quiz.getVersion());
+      Assertions.assertEquals("new front", quiz.getFlashcards().get(0).getFront());
+      Assertions.assertEquals("4", quiz.getFlashcards().get(1).getAnswer());
+
+      cognitionStorage.removeFlashcard(quizUuid, first.getUuid(), 4);
+
+      User stored = cognitionStorage.read("flashcard-user");
+      Assertions.assertEquals(5, stored.getVersion());
+      Assertions.assertEquals(1, stored.getQuizzes().get(1).getVersion());
+      Assertions.assertEquals(List.of(second), stored.getQuizzes().get(0).getFlashcards());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Flashcard changes are journaled and replayed.")
+  void flashcardChangesAreReplayed() {
+    try {
+      CognitionStorage journaledStorage = new CognitionStorage("cognitionJournalTest.json",
+          StorageOptions.journaled());
+      Path journalPath = StorageJournal.pathFor(journaledStorage.getStoragePath());
+      String quizUuid = UUID.randomUUID().toString();
+      Flashcard flashcard = new Flashcard(UUID.randomUUID().toString(), "front", "answer");
+
+      try {
+        User user = new User("journal-user", "journal-password");
+        user.addQuiz(new Quiz(quizUuid, "quiz-name", "description"));
+        journaledStorage.create(user);
+        journaledStorage.addFlashcard(quizUuid, flashcard);
+        journaledStorage.close();
+
+        // The journal entry holds the quiz, not the user
+        Assertions.assertFalse(Files.readAllLines(journalPath).get(1).contains("journal-password"));
+
+        CognitionStorage reloadedStorage = new CognitionStorage("cognitionJournalTest.json",
+            StorageOptions.journaled());
+        User reloaded = reloadedStorage.read("journal-user");
+        reloadedStorage.close();
+
+        Assertions.assertEquals(2, reloaded.getVersion());
+        Assertions.assertEquals(2, reloaded.getQuizzes().get(0).getVersion());
+        Assertions.assertEquals(List.of(flashcard), reloaded.getQuizzes().get(0).getFlashcards());
+      } finally {
+        journaledStorage.close();
+        Files.deleteIfExists(journaledStorage.getStoragePath());
+        Files.deleteIfExists(journalPath);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Key-value storage supports all operations, and takes over the storage file.")
+  void keyValueStorageSupportsAllOperations() {
+    try {
+      CognitionStorage fileStorage = new CognitionStorage("cognitionKeyValueTest.json");
+      Path directory = KeyValueUsers.directoryFor(fileStorage.getStoragePath());
+
+      try {
+        User existing = new User("existing-user", "existing-password");
+        existing.addQuiz(new Quiz(UUID.randomUUID().toString(), "quiz-name", "description"));
+        fileStorage.create(existing);
+
+        CognitionStorage keyValueStorage =
+            new CognitionStorage("cognitionKeyValueTest.json", StorageOptions.keyValue());
+
+        // The users of the storage file are moved into the store when it is created
+        Assertions.assertEquals(1, keyValueStorage.read("existing-user").getVersion());
+        String quizUuid = existing.getQuizzes().get(0).getUuid();
+        Assertions.assertEquals("existing-user", keyValueStorage.readQuizOwner(quizUuid));
+
+        keyValueStorage.create(new User("another-user", "another-password"));
+        keyValueStorage.modify("existing-user", user -> {
+          user.removeQuiz(user.getQuizzes().get(0));
+          return user;
+        });
+        keyValueStorage.modify("another-user", user -> {
+          user.addQuiz(new Quiz(quizUuid, "moved-quiz", "description"));
+          return user;
+        });
+
+        Assertions.assertEquals("another-user", keyValueStorage.readQuizOwner(quizUuid));
+        Assertions.assertEquals("moved-quiz", keyValueStorage.readQuiz(quizUuid).getName());
+
+        keyValueStorage.addFlashcard(quizUuid,
+            new Flashcard(UUID.randomUUID().toString(), "front", "answer"));
+        Assertions.assertEquals(1, keyValueStorage.readQuiz(quizUuid).getFlashcards().size());
+        Assertions.assertEquals(2, keyValueStorage.readQuiz(quizUuid).getVersion());
+        Assertions.assertEquals(List.of("another-user", "existing-user"),
+            keyValueStorage.readUsers().stream().map(User::getUsername)
+                .collect(Collectors.toList()));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> keyValueStorage.create(new User("another-user", "another-password")));
+
+        User imported = new User("imported-user", "imported-password");
+        imported.addQuiz(new Quiz(UUID.randomUUID().toString(), "imported-quiz", "description"));
+        User replaced = keyValueStorage.read("existing-user");
+        replaced.setPassword("imported-password");
+        Assertions.assertEquals(2,
+            keyValueStorage.importUsers(List.of(imported, replaced).iterator(), count -> { }));
+        Assertions.assertEquals("imported-user",
+            keyValueStorage.readQuizOwner(imported.getQuizzes().get(0).getUuid()));
+        Assertions.assertEquals(3, keyValueStorage.read("existing-user").getVersion());
+        keyValueStorage.delete("imported-user");
+
+        keyValueStorage.delete("another-user");
+        Assertions.assertFalse(keyValueStorage.exists("another-user"));
+        Assertions.assertThrows(NoSuchElementException.class,
+            () -> keyValueStorage.readQuizOwner(quizUuid));
+        keyValueStorage.close();
+
+        CognitionStorage reopened =
+            new CognitionStorage("cognitionKeyValueTest.json", StorageOptions.keyValue());
+        Assertions.assertEquals(3, reopened.read("existing-user").getVersion());
+        Assertions.assertTrue(reopened.getRecoveryReport().orElseThrow().getReplayedRecords() > 0);
+        Assertions.assertTrue(reopened.getRecoveryReport().orElseThrow().isClean());
+        Assertions.assertFalse(reopened.isEmpty());
+        reopened.close();
+
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> new CognitionStorage("cognitionKeyValueTest.json",
+                StorageOptions.keyValue().setResident(true)));
+      } finally {
+        Files.deleteIfExists(fileStorage.getStoragePath());
+        try (Stream<Path> paths = Files.walk(directory)) {
+          for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.deleteIfExists(path);
+          }
+        }
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Key-value storage rejects a quiz owned by another user.")
+  void keyValueStorageRejectsQuizOfOtherUser() {
+    try {
+      CognitionStorage keyValueStorage =
+          new CognitionStorage("cognitionKeyValueTest.json", StorageOptions.keyValue());
+      Path directory = KeyValueUsers.directoryFor(keyValueStorage.getStoragePath());
+
+      try {
+        String quizUuid = UUID.randomUUID().toString();
+        User previousOwner = new User("previous-owner", "previous-password");
+        previousOwner.addQuiz(new Quiz(quizUuid, "quiz-name", "description"));
+        keyValueStorage.create(previousOwner);
+
+        User currentOwner = new User("current-owner", "current-password");
+        currentOwner.addQuiz(new Quiz(quizUuid, "quiz-name", "description"));
+        Assertions.assertThrows(IllegalArgumentException.class,
+            () -> keyValueStorage.create(currentOwner));
+        Assertions.assertFalse(keyValueStorage.exists("current-owner"));
+        Assertions.assertEquals("previous-owner", keyValueStorage.readQuizOwner(quizUuid));
+
+        // Once the previous owner removed the quiz, another user can take it
+        keyValueStorage.modify("previous-owner", user -> {
+          user.removeQuiz(user.getQuizzes().get(0));
+          return user;
+        });
+        keyValueStorage.create(currentOwner);
+        Assertions.assertEquals("current-owner", keyValueStorage.readQuizOwner(quizUuid));
+
+        // Deleting the previous owner does not move the key
+        keyValueStorage.delete("previous-owner");
+        Assertions.assertEquals("current-owner", keyValueStorage.readQuizOwner(quizUuid));
+        keyValueStorage.close();
+      } finally {
+        try (Stream<Path> paths = Files.walk(directory)) {
+          for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.deleteIfExists(path);
+          }
+        }
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Options changed after the storage is created have no effect on it.")
+  void optionsAreCopied() {
+    try {
+      StorageOptions options = new StorageOptions();
+      CognitionStorage copiedStorage = new CognitionStorage("cognitionOptionsTest.json", options);
+      options.setMonitored(true);
+      ObjectName name = new ObjectName(
+          "cognition:type=CognitionStorage,name=\"cognitionOptionsCopyTest.json\"");
+
+      try {
+        copiedStorage.setStoragePath("cognitionOptionsCopyTest.json");
+        Assertions.assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(name));
+      } finally {
+        copiedStorage.close();
+      }
+    } catch (IOException | JMException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Key-value storage streams users page by page, in the order of their usernames.")
+  void keyValueStorageStreamsUsersInPages() {
+    try {
+      CognitionStorage keyValueStorage =
+          new CognitionStorage("cognitionKeyValueTest.json", StorageOptions.keyValue());
+      Path directory = KeyValueUsers.directoryFor(keyValueStorage.getStoragePath());
+
+      try {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 600; i++) {
+          users.add(new User(String.format("user-%04d", i), "user-password"));
+        }
+        keyValueStorage.importUsers(users.iterator(), imported -> {
+        });
+
+        try (Stream<User> streamed = keyValueStorage.streamUsers()) {
+          Assertions.assertEquals(
+              users.stream().map(User::getUsername).collect(Collectors.toList()),
+              streamed.map(User::getUsername).collect(Collectors.toList()));
+        }
+        keyValueStorage.close();
+      } finally {
+        try (Stream<Path> paths = Files.walk(directory)) {
+          for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+            Files.deleteIfExists(path);
+          }
+        }
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
 }
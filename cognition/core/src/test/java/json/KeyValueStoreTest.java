@@ -0,0 +1,212 @@
+package json;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class KeyValueStoreTest {
+  private Path directory;
+
+  @BeforeEach
+  void setUp() {
+    try {
+      directory = Files.createTempDirectory("cognition-kv");
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    try (Stream<Path> paths = Files.walk(directory)) {
+      for (Path path : (Iterable<Path>) paths.sorted(Comparator.reverseOrder())::iterator) {
+        Files.deleteIfExists(path);
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Values can be written, overwritten and deleted.")
+  void valuesCanBeWrittenAndDeleted() {
+    try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+      store.write(Map.of("user:a", bytes("1"), "user:b", bytes("2")));
+      store.write(Map.of("user:a", bytes("3")));
+
+      Map<String, byte[]> deletion = new HashMap<>();
+      deletion.put("user:b", null);
+      store.write(deletion);
+
+      Assertions.assertEquals("3", string(store.get("user:a")));
+      Assertions.assertNull(store.get("user:b"));
+      Assertions.assertNull(store.get("user:c"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Values are found in segments, and merged segments drop old values.")
+  void valuesAreFoundInSegments() {
+    try {
+      try (KeyValueStore store = new KeyValueStore(directory, 256, 3)) {
+        for (int i = 0; i < 200; i++) {
+          store.write(Map.of(String.format("user:%03d", i % 50), bytes("value-" + i)));
+        }
+
+        Map<String, byte[]> deletion = new HashMap<>();
+        deletion.put("user:007", null);
+        store.write(deletion);
+
+        Assertions.assertEquals("value-199", string(store.get("user:049")));
+        Assertions.assertEquals("value-150", string(store.get("user:000")));
+        Assertions.assertNull(store.get("user:007"));
+
+        // Merges run in the background until there are fewer segments than the threshold
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (store.segmentCount() >= 3 && System.currentTimeMillis() < deadline) {
+          Thread.sleep(10);
+        }
+        Assertions.assertTrue(store.segmentCount() < 3);
+      }
+
+      try (KeyValueStore store = new KeyValueStore(directory, 256, 3)) {
+        Assertions.assertEquals("value-199", string(store.get("user:049")));
+        Assertions.assertNull(store.get("user:007"));
+
+        List<String> keys = new ArrayList<>();
+        store.scan("user:", (key, value) -> keys.add(key));
+        Assertions.assertEquals(49, keys.size());
+        Assertions.assertEquals("user:000", keys.get(0));
+        Assertions.assertFalse(keys.contains("user:007"));
+      }
+    } catch (IOException | InterruptedException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Scans only visit keys with the given prefix.")
+  void scansVisitPrefix() {
+    try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+      store.write(Map.of("quiz:1", bytes("a"), "user:x", bytes("b"), "user:y", bytes("c"),
+          "users", bytes("d")));
+
+      List<String> keys = new ArrayList<>();
+      store.scan("user:", (key, value) -> keys.add(key));
+      Assertions.assertEquals(List.of("user:x", "user:y"), keys);
+
+      keys.clear();
+      store.scan("user:", (key, value) -> !keys.add(key));
+      Assertions.assertEquals(List.of("user:x"), keys);
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Lookups and scans see all changes of a write or none.")
+  void writesAreSeenAtomically() {
+    try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+      store.write(Map.of("user:a", bytes("0"), "user:b", bytes("0")));
+      AtomicBoolean writing = new AtomicBoolean(true);
+      List<IOException> failures = new ArrayList<>();
+
+      Thread writer = new Thread(() -> {
+        try {
+          for (int i = 1; i <= 2000; i++) {
+            Map<String, byte[]> batch = new LinkedHashMap<>();
+            batch.put("user:a", bytes(Integer.toString(i)));
+            batch.put("user:b", bytes(Integer.toString(i)));
+            store.write(batch);
+          }
+        } catch (IOException e) {
+          synchronized (failures) {
+            failures.add(e);
+          }
+        } finally {
+          writing.set(false);
+        }
+      });
+      writer.start();
+
+      while (writing.get()) {
+        List<String> values = new ArrayList<>();
+        store.scan("user:", (key, value) -> values.add(string(value)));
+        Assertions.assertEquals(2, values.size());
+        Assertions.assertEquals(values.get(0), values.get(1));
+      }
+
+      writer.join();
+      Assertions.assertTrue(failures.isEmpty());
+      Assertions.assertEquals("2000", string(store.get("user:a")));
+    } catch (IOException | InterruptedException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("The log is replayed, ignoring an incomplete last record.")
+  void logIsReplayed() {
+    try {
+      try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+        store.write(Map.of("user:a", bytes("1")));
+        store.write(Map.of("user:b", bytes("2")));
+      }
+
+      // A crash while appending leaves part of a record at the end of the log
+      Files.write(directory.resolve("log.dat"), new byte[] {0, 0, 0, 42, 1, 2},
+          StandardOpenOption.APPEND);
+
+      try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+        Assertions.assertEquals("1", string(store.get("user:a")));
+        Assertions.assertEquals("2", string(store.get("user:b")));
+        store.write(Map.of("user:c", bytes("3")));
+      }
+
+      try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+        Assertions.assertEquals("3", string(store.get("user:c")));
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A directory cannot be used by two stores at once.")
+  void directoryIsLocked() {
+    try (KeyValueStore store = new KeyValueStore(directory, 1024 * 1024, 4)) {
+      Assertions.assertThrows(IOException.class,
+          () -> new KeyValueStore(directory, 1024 * 1024, 4));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  private static byte[] bytes(String string) {
+    return string.getBytes(StandardCharsets.UTF_8);
+  }
+
+  private static String string(byte[] bytes) {
+    return bytes == null ? null : new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,146 @@
+package json;
+
+import com.google.gson.Gson;
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class SnapshotIndexTest {
+  private final Gson gson = new Gson();
+  private CognitionStorage cognitionStorage;
+  private Path indexPath;
+
+  @BeforeEach
+  void setUp() {
+    try {
+      cognitionStorage = new CognitionStorage("cognitionIndexTest.json", StorageOptions.fileBacked());
+      indexPath = SnapshotIndex.pathFor(cognitionStorage.getStoragePath());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    try {
+      Files.deleteIfExists(cognitionStorage.getStoragePath());
+      Files.deleteIfExists(indexPath);
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Writing storage persists an index pointing at each user.")
+  void writingStoragePersistsIndex() {
+    try {
+      cognitionStorage.create(new User("indexed-0", "indexed-password"));
+      cognitionStorage.create(createUserWithQuiz("indexed-1"));
+
+      SnapshotIndex index = SnapshotIndex.read(indexPath);
+      Assertions.assertNotNull(index);
+      Assertions.assertTrue(index.matches(cognitionStorage.getStoragePath()));
+      Assertions.assertEquals(2, index.size());
+
+      // The bytes at the indexed location decode to the user
+      SnapshotIndex.Entry entry = index.get("indexed-1");
+      byte[] content = Files.readAllBytes(cognitionStorage.getStoragePath());
+      String element = new String(content, (int) entry.getOffset(), entry.getLength(),
+          StandardCharsets.UTF_8);
+      Assertions.assertEquals("indexed-1", gson.fromJson(element, User.class).getUsername());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A formatted file written by someone else is indexed by scanning.")
+  void formattedFileIsIndexedByScanning() {
+    String content = """
+        [
+          {
+            "quizzes": [],
+            "username": "scanned-0",
+            "password": "password with \\" and } and ]"
+          },
+          {"quizzes": [], "username": "scanned-1", "password": "scanned-password"}
+        ]""";
+
+    try {
+      Files.writeString(cognitionStorage.getStoragePath(), content, StandardCharsets.UTF_8);
+
+      Assertions.assertEquals("password with \" and } and ]",
+          cognitionStorage.read("scanned-0").getPassword());
+      Assertions.assertEquals("scanned-password",
+          cognitionStorage.read("scanned-1").getPassword());
+      Assertions.assertFalse(cognitionStorage.exists("scanned-2"));
+
+      // Scanning persisted the index
+      Assertions.assertTrue(SnapshotIndex.read(indexPath).matches(cognitionStorage.getStoragePath()));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A stale index is rebuilt.")
+  void staleIndexIsRebuilt() {
+    try {
+      cognitionStorage.create(new User("stale-0", "stale-password"));
+      SnapshotIndex staleIndex = SnapshotIndex.read(indexPath);
+
+      // Replace the storage file without updating the index
+      Files.writeString(cognitionStorage.getStoragePath(),
+          "[" + gson.toJson(new User("replaced-user", "replaced-password")) + "]");
+
+      Assertions.assertFalse(staleIndex.matches(cognitionStorage.getStoragePath()));
+      Assertions.assertTrue(cognitionStorage.exists("replaced-user"));
+      Assertions.assertFalse(cognitionStorage.exists("stale-0"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("An edit keeping the size and modification time makes the index stale.")
+  void editInPlaceMakesIndexStale() {
+    try {
+      cognitionStorage.create(new User("edited-0", "edited-password"));
+      Path path = cognitionStorage.getStoragePath();
+      SnapshotIndex index = SnapshotIndex.read(indexPath);
+
+      FileTime modified = Files.getLastModifiedTime(path);
+      String content = Files.readString(path, StandardCharsets.UTF_8);
+      Files.writeString(path, content.replace("edited-0", "edited-1"), StandardCharsets.UTF_8);
+      Files.setLastModifiedTime(path, modified);
+
+      Assertions.assertFalse(index.matches(path));
+      Assertions.assertTrue(cognitionStorage.exists("edited-1"));
+      Assertions.assertFalse(cognitionStorage.exists("edited-0"));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  private User createUserWithQuiz(String username) {
+    User user = new User(username, "indexed-password");
+    Quiz quiz = new Quiz(UUID.randomUUID().toString(), "quiz-name", "æøå description");
+    quiz.addFlashcard(new Flashcard(UUID.randomUUID().toString(), "front", "answer"));
+    user.addQuiz(quiz);
+    return user;
+  }
+}
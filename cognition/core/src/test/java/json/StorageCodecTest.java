@@ -0,0 +1,303 @@
+package json;
+
+import com.google.gson.Gson;
+import core.CompactQuiz;
+import core.Flashcard;
+import core.Quiz;
+import core.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class StorageCodecTest {
+  private final Gson gson = new Gson();
+
+  @Test
+  @DisplayName("Users are read back unchanged from both formats.")
+  void usersRoundTrip() {
+    List<User> users = createUsers();
+
+    for (StorageCodec codec : List.of(new JsonCodec(), new BinaryCodec(),
+        new GzipCodec(new JsonCodec()), new GzipCodec(new BinaryCodec(), 1))) {
+      try (Stream<User> decoded = codec.read(new ByteArrayInputStream(encode(codec, users)))) {
+        Assertions.assertEquals(gson.toJson(users),
+            gson.toJson(decoded.collect(Collectors.toList())));
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("The binary format is smaller than JSON.")
+  void binaryFormatIsSmaller() {
+    List<User> users = createUsers();
+
+    try {
+      Assertions.assertTrue(
+          encode(new BinaryCodec(), users).length < encode(new JsonCodec(), users).length);
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Compressed files are smaller than uncompressed files.")
+  void compressedFilesAreSmaller() {
+    List<User> users = createUsers();
+
+    try {
+      byte[] json = encode(new JsonCodec(), users);
+      byte[] stored = encode(new GzipCodec(new JsonCodec(), Deflater.NO_COMPRESSION), users);
+      byte[] compressed = encode(new GzipCodec(new JsonCodec(), Deflater.BEST_COMPRESSION), users);
+
+      Assertions.assertTrue(compressed.length < json.length);
+      Assertions.assertTrue(compressed.length < stored.length);
+      Assertions.assertThrows(IllegalArgumentException.class,
+          () -> new GzipCodec(new JsonCodec(), 10));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Identifiers that are not canonical UUIDs are kept as written.")
+  void nonCanonicalUuidsAreKept() {
+    String uuid = UUID.randomUUID().toString().toUpperCase();
+    User user = new User("uppercase-user", "uppercase-password");
+    user.addQuiz(new Quiz(uuid, "quiz-name", "quiz-description"));
+
+    try (Stream<User> decoded = new BinaryCodec().read(
+        new ByteArrayInputStream(encode(new BinaryCodec(), List.of(user))))) {
+      Assertions.assertEquals(uuid,
+          decoded.findFirst().orElseThrow().getQuizzes().get(0).getUuid());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Written and scanned elements can be decoded on their own.")
+  void elementsCanBeDecodedIndividually() {
+    List<User> users = createUsers();
+
+    for (StorageCodec codec : List.of(new JsonCodec(), new BinaryCodec())) {
+      try {
+        List<long[]> written = new ArrayList<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        codec.write(output, users,
+            (username, offset, length) -> written.add(new long[] {offset, length}));
+        byte[] bytes = output.toByteArray();
+
+        List<long[]> scanned = new ArrayList<>();
+        codec.scan(new ByteArrayInputStream(bytes),
+            (username, offset, length) -> scanned.add(new long[] {offset, length}));
+
+        Assertions.assertEquals(users.size(), written.size());
+        for (int i = 0; i < users.size(); i++) {
+          Assertions.assertArrayEquals(written.get(i), scanned.get(i));
+
+          ByteBuffer element = ByteBuffer.wrap(
+              bytes, (int) written.get(i)[0], (int) written.get(i)[1]).slice();
+          Assertions.assertEquals(gson.toJson(users.get(i)), gson.toJson(codec.decode(element)));
+        }
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Quiz headers can be decoded without the flashcards.")
+  void quizHeadersCanBeDecoded() {
+    List<User> users = createUsers();
+    users.get(2).getQuizzes().forEach(quiz -> quiz.setVersion(7));
+
+    for (StorageCodec codec : List.of(new JsonCodec(), new BinaryCodec())) {
+      try {
+        List<long[]> written = new ArrayList<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        codec.write(output, users,
+            (username, offset, length) -> written.add(new long[] {offset, length}));
+        byte[] bytes = output.toByteArray();
+
+        for (int i = 0; i < users.size(); i++) {
+          ByteBuffer element = ByteBuffer.wrap(
+              bytes, (int) written.get(i)[0], (int) written.get(i)[1]).slice();
+          List<CompactQuiz> headers =
+              codec.decodeQuizHeaders(element.duplicate(), users.get(i).getUsername());
+          List<Quiz> quizzes = users.get(i).getQuizzes();
+
+          Assertions.assertEquals(quizzes.size(), headers.size());
+          for (int j = 0; j < quizzes.size(); j++) {
+            Assertions.assertEquals(quizzes.get(j).getUuid(), headers.get(j).getUuid());
+            Assertions.assertEquals(quizzes.get(j).getName(), headers.get(j).getName());
+            Assertions.assertEquals(quizzes.get(j).getDescription(),
+                headers.get(j).getDescription());
+            Assertions.assertEquals(2, headers.get(j).getFlashcardCount());
+            Assertions.assertEquals(quizzes.get(j).getVersion(), headers.get(j).getVersion());
+          }
+
+          // The headers of another user are not returned for a username
+          Assertions.assertThrows(IOException.class,
+              () -> codec.decodeQuizHeaders(element.duplicate(), "another-user"));
+        }
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("A truncated binary file cannot be read.")
+  void truncatedBinaryFileIsRejected() {
+    try {
+      byte[] bytes = encode(new BinaryCodec(), createUsers());
+      byte[] truncated = new byte[bytes.length - 10];
+      System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+
+      Assertions.assertThrows(IOException.class, () ->
+          new BinaryCodec().scan(new ByteArrayInputStream(truncated), (u, o, l) -> {
+          }));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Storage files can be converted between formats.")
+  void storageFilesCanBeConverted() {
+    Path json = null;
+    Path binary = null;
+
+    try {
+      json = Files.createTempFile("cognition", ".json");
+      binary = Files.createTempFile("cognition", ".bin");
+      List<User> users = createUsers();
+      Files.write(json, encode(new JsonCodec(), users));
+
+      Assertions.assertEquals(users.size(),
+          StorageConverter.convert(json, new JsonCodec(), binary, new BinaryCodec()));
+      Assertions.assertEquals(users.size(),
+          StorageConverter.convert(binary, new BinaryCodec(), json, new JsonCodec()));
+      Assertions.assertArrayEquals(encode(new JsonCodec(), users), Files.readAllBytes(json));
+    } catch (IOException e) {
+      fail();
+    } finally {
+      try {
+        if (json != null) {
+          Files.deleteIfExists(json);
+        }
+        if (binary != null) {
+          Files.deleteIfExists(binary);
+        }
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  @Test
+  @DisplayName("Storage can use the binary format.")
+  void storageCanUseBinaryFormat() {
+    try {
+      CognitionStorage cognitionStorage = new CognitionStorage("cognitionBinaryTest.json",
+          StorageOptions.fileBacked().setCodec(new BinaryCodec()));
+
+      try {
+        for (User user : createUsers()) {
+          cognitionStorage.create(user);
+        }
+
+        Assertions.assertEquals("binary-user-1", cognitionStorage.read("binary-user-1").getUsername());
+        Assertions.assertEquals(3, cognitionStorage.readUsers().size());
+
+        CognitionStorage resident = new CognitionStorage("cognitionBinaryTest.json",
+            new StorageOptions().setCodec(new BinaryCodec()));
+        Assertions.assertEquals(2, resident.read("binary-user-2").getQuizzes().size());
+      } finally {
+        Files.deleteIfExists(cognitionStorage.getStoragePath());
+        Files.deleteIfExists(SnapshotIndex.pathFor(cognitionStorage.getStoragePath()));
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Storage can be compressed.")
+  void storageCanBeCompressed() {
+    for (StorageOptions options : List.of(StorageOptions.compressed(Deflater.BEST_SPEED),
+        StorageOptions.compressed(Deflater.BEST_SPEED).setResident(false).setMemoryMapped(true))) {
+      try {
+        CognitionStorage cognitionStorage =
+            new CognitionStorage("cognitionCompressedTest.json", options);
+
+        try {
+          for (User user : createUsers()) {
+            cognitionStorage.create(user);
+          }
+
+          // The file is a GZIP stream, which starts with its magic number
+          byte[] content = Files.readAllBytes(cognitionStorage.getStoragePath());
+          Assertions.assertEquals((byte) 0x1f, content[0]);
+          Assertions.assertEquals((byte) 0x8b, content[1]);
+
+          Assertions.assertEquals(2,
+              cognitionStorage.read("binary-user-2").getQuizzes().size());
+          Assertions.assertFalse(cognitionStorage.exists("binary-user-3"));
+
+          CognitionStorage reopened =
+              new CognitionStorage("cognitionCompressedTest.json", options);
+          Assertions.assertEquals(3, reopened.readUsers().size());
+        } finally {
+          Files.deleteIfExists(cognitionStorage.getStoragePath());
+          Files.deleteIfExists(SnapshotIndex.pathFor(cognitionStorage.getStoragePath()));
+        }
+      } catch (IOException e) {
+        fail();
+      }
+    }
+  }
+
+  private static byte[] encode(StorageCodec codec, List<User> users) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    codec.write(output, users, (username, offset, length) -> {
+    });
+    return output.toByteArray();
+  }
+
+  private static List<User> createUsers() {
+    List<User> users = new ArrayList<>();
+
+    for (int i = 0; i < 3; i++) {
+      User user = new User("binary-user-" + i, "binary-password");
+
+      for (int j = 0; j < i; j++) {
+        Quiz quiz = new Quiz(UUID.randomUUID().toString(), "quiz-" + j, "æøå description");
+        quiz.addFlashcard(new Flashcard(UUID.randomUUID().toString(), "front", "answer"));
+        quiz.addFlashcard(new Flashcard(UUID.randomUUID().toString(), "what is 2+2?", "4"));
+        user.addQuiz(quiz);
+      }
+
+      users.add(user);
+    }
+
+    return users;
+  }
+}
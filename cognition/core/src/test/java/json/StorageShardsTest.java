@@ -0,0 +1,173 @@
+package json;
+
+import com.google.gson.Gson;
+import core.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class StorageShardsTest {
+  private static final String FILENAME = "cognitionShardTest.json";
+  private static final int SHARD_COUNT = 8;
+
+  private final Gson gson = new Gson();
+  private final StorageCodec codec = new JsonCodec(gson);
+  private CognitionStorage cognitionStorage;
+  private StorageShards shards;
+
+  @BeforeEach
+  void setUp() {
+    try {
+      cognitionStorage = new CognitionStorage(FILENAME, StorageOptions.sharded(SHARD_COUNT));
+      shards = new StorageShards(codec, cognitionStorage.getStoragePath(), SHARD_COUNT);
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @AfterEach
+  void tearDown() {
+    try {
+      cognitionStorage.close();
+      Files.deleteIfExists(cognitionStorage.getStoragePath());
+      Files.deleteIfExists(SnapshotIndex.pathFor(cognitionStorage.getStoragePath()));
+
+      if (Files.exists(shards.getDirectory())) {
+        try (Stream<Path> paths = Files.walk(shards.getDirectory())) {
+          for (Path path : paths.sorted(Comparator.reverseOrder()).collect(Collectors.toList())) {
+            Files.delete(path);
+          }
+        }
+      }
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Changing a user only rewrites the shard of that user.")
+  void changingUserOnlyRewritesItsShard() {
+    String first = "shard-user-0";
+    String second = findUsernameInOtherShard(first);
+
+    try {
+      cognitionStorage.create(new User(first, "first-password"));
+      cognitionStorage.create(new User(second, "second-password"));
+
+      Path firstShard = shards.pathOf(shards.shardOf(first));
+      Path secondShard = shards.pathOf(shards.shardOf(second));
+      byte[] firstContent = Files.readAllBytes(firstShard);
+
+      cognitionStorage.update(second, new User(second, "changed-password"));
+
+      Assertions.assertArrayEquals(firstContent, Files.readAllBytes(firstShard));
+      Assertions.assertTrue(Files.readString(secondShard).contains("changed-password"));
+      Assertions.assertFalse(Files.readString(firstShard).contains(second));
+
+      // The storage file itself is not used
+      Assertions.assertTrue(cognitionStorage.isEmpty());
+
+      CognitionStorage reopened = new CognitionStorage(FILENAME, StorageOptions.sharded(SHARD_COUNT));
+      Assertions.assertEquals("changed-password", reopened.read(second).getPassword());
+      Assertions.assertEquals(2, reopened.readUsers().size());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("A renamed user moves to the shard of its new username.")
+  void renamedUserMovesShard() {
+    String original = "shard-rename-0";
+    String renamed = findUsernameInOtherShard(original);
+
+    try {
+      cognitionStorage.create(new User(original, "rename-password"));
+      cognitionStorage.update(original, new User(renamed, "rename-password"));
+
+      Assertions.assertFalse(
+          Files.readString(shards.pathOf(shards.shardOf(original))).contains(original));
+      Assertions.assertTrue(
+          Files.readString(shards.pathOf(shards.shardOf(renamed))).contains(renamed));
+
+      CognitionStorage reopened = new CognitionStorage(FILENAME, StorageOptions.sharded(SHARD_COUNT));
+      Assertions.assertFalse(reopened.exists(original));
+      Assertions.assertTrue(reopened.exists(renamed));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("An existing storage file is split into shards.")
+  void existingStorageFileIsSplit() {
+    List<User> users = List.of(
+        new User("split-user-0", "split-password"),
+        new User("split-user-1", "split-password"),
+        new User("split-user-2", "split-password"));
+
+    try {
+      Files.writeString(cognitionStorage.getStoragePath(), gson.toJson(users));
+
+      Assertions.assertEquals(3, cognitionStorage.readUsers().size());
+      Assertions.assertTrue(Files.isDirectory(shards.getDirectory()));
+      Assertions.assertEquals(3, shards.read().size());
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Changing the number of shards moves users to their new shard.")
+  void changingShardCountMovesUsers() {
+    try {
+      for (int i = 0; i < 20; i++) {
+        cognitionStorage.create(new User("moved-user-" + i, "moved-password"));
+      }
+      cognitionStorage.close();
+
+      CognitionStorage resharded = new CognitionStorage(FILENAME, StorageOptions.sharded(3));
+      Assertions.assertEquals(20, resharded.readUsers().size());
+
+      StorageShards reshardedShards =
+          new StorageShards(codec, resharded.getStoragePath(), 3);
+      Assertions.assertEquals(20, reshardedShards.read().size());
+      Assertions.assertTrue(reshardedShards.isBalanced());
+      Assertions.assertFalse(Files.exists(shards.pathOf(SHARD_COUNT - 1)));
+    } catch (IOException e) {
+      fail();
+    }
+  }
+
+  @Test
+  @DisplayName("Sharding requires a resident repository without journaling.")
+  void shardingRequiresResidentRepository() {
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new CognitionStorage(FILENAME,
+        StorageOptions.fileBacked().setShardCount(SHARD_COUNT)));
+    Assertions.assertThrows(IllegalArgumentException.class, () -> new CognitionStorage(FILENAME,
+        StorageOptions.journaled().setShardCount(SHARD_COUNT)));
+  }
+
+  private String findUsernameInOtherShard(String username) {
+    int shard = shards.shardOf(username);
+
+    for (int i = 1; ; i++) {
+      String candidate = username + "-" + i;
+      if (shards.shardOf(candidate) != shard) {
+        return candidate;
+      }
+    }
+  }
+}